@@ -0,0 +1,72 @@
+package com.micasa.benchmark;
+
+import com.micasa.service.FlatService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+
+/**
+ * Benchmarks of the full FlatController path through MockMvc: dispatcher, interceptors,
+ * argument binding, service, mapping and JSON serialization. No network stack.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlatControllerBenchmark
+{
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+    private List<String> flatIds;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        this.context = FlatServiceContext.start("flatControllerBenchmark");
+        this.flatIds = FlatServiceContext.seed(this.context.getBean(FlatService.class));
+        this.mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) this.context).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.context.close();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse findFlatById() throws Exception
+    {
+        return this.mockMvc.perform(get("/find/flatId/{flatId}", this.randomFlatId())).andReturn().getResponse();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse findFlatsByBlock() throws Exception
+    {
+        String flatBlock = FlatServiceContext.blockName(ThreadLocalRandom.current().nextInt(FlatServiceContext.BLOCKS));
+        return this.mockMvc.perform(get("/find/flatBlock/{flatBlock}", flatBlock)).andReturn().getResponse();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse updateOccupiedStatus() throws Exception
+    {
+        return this.mockMvc.perform(patch("/update/occupied-status/{flatId}/{occupiedStatus}",
+                this.randomFlatId(), ThreadLocalRandom.current().nextBoolean())).andReturn().getResponse();
+    }
+
+    private String randomFlatId()
+    {
+        return this.flatIds.get(ThreadLocalRandom.current().nextInt(this.flatIds.size()));
+    }
+}
@@ -0,0 +1,88 @@
+package com.micasa.benchmark;
+
+import com.micasa.journal.FlatJournal;
+import com.micasa.journal.JournalRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks of FlatJournal appends on the local disk, target is 100k acknowledged appends per second.
+ * durableOccupancy waits for the group commit like write-behind callers do, so throughput grows with the number
+ * of threads sharing one fsync. appendOccupancy measures the mapped append alone.
+ * Point java.io.tmpdir at the disk to measure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlatJournalBenchmark
+{
+    private Path directory;
+    private FlatJournal journal;
+    private String[] flatIds;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+        this.directory = Files.createTempDirectory("flat-journal-benchmark");
+        this.journal = new FlatJournal(this.directory, 64L * 1024 * 1024, new SimpleMeterRegistry());
+        this.journal.open((record, sequence) -> {});
+        this.flatIds = new String[10_000];
+        for(int i = 0; i < this.flatIds.length; i++)
+        {
+            this.flatIds[i] = UUID.randomUUID().toString();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkpoint() throws IOException
+    {
+        this.journal.checkpoint(this.journal.lastSequence());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        this.journal.close();
+        try(Stream<Path> files = Files.walk(this.directory))
+        {
+            for(Path path : files.sorted(Comparator.reverseOrder()).toList())
+            {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long durableOccupancy()
+    {
+        long sequence = this.journal.append(this.randomOccupancy());
+        this.journal.awaitDurable(sequence);
+        return sequence;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long appendOccupancy()
+    {
+        return this.journal.append(this.randomOccupancy());
+    }
+
+    private JournalRecord randomOccupancy()
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return JournalRecord.occupancy(this.flatIds[random.nextInt(this.flatIds.length)], random.nextBoolean());
+    }
+}
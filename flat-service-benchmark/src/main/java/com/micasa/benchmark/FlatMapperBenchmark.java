@@ -0,0 +1,75 @@
+package com.micasa.benchmark;
+
+import com.micasa.dto.FlatDto;
+import com.micasa.dto.SocietyDto;
+import com.micasa.mapper.FlatMapper;
+import com.micasa.mapper.FlatMapperImpl;
+import com.micasa.model.Flat;
+import com.micasa.model.Society;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of FlatMapper entity/dto conversion, single flats and pages of PAGE_SIZE flats.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlatMapperBenchmark
+{
+    private static final int PAGE_SIZE = 50;
+
+    private FlatMapper flatMapper;
+    private Flat flat;
+    private FlatDto flatDto;
+    private List<Flat> flatList;
+    private List<FlatDto> flatDtoList;
+
+    @Setup
+    public void setup()
+    {
+        this.flatMapper = new FlatMapperImpl();
+        Society society = new Society("society-1", "Green Acres", "12 Park Road", null);
+        this.flat = new Flat("101", "A", true, society);
+        this.flat.setFlatId("flat-1");
+        this.flatDto = new FlatDto("flat-1", "101", "A", true, new SocietyDto("society-1", "Green Acres", "12 Park Road"));
+        this.flatList = new ArrayList<>(PAGE_SIZE);
+        for(int i = 0; i < PAGE_SIZE; i++)
+        {
+            Flat pageFlat = new Flat(String.valueOf(i), "A", 0 == i % 2, society);
+            pageFlat.setFlatId("flat-" + i);
+            this.flatList.add(pageFlat);
+        }
+        this.flatDtoList = this.flatMapper.flatEntityListToFlatDtoList(this.flatList);
+    }
+
+    @Benchmark
+    public FlatDto flatEntityToFlatDto()
+    {
+        return this.flatMapper.flatEntityToFlatDto(this.flat);
+    }
+
+    @Benchmark
+    public Flat flatDtoToFlatEntity()
+    {
+        return this.flatMapper.flatDtoToFlatEntity(this.flatDto);
+    }
+
+    @Benchmark
+    public List<FlatDto> flatEntityListToFlatDtoList()
+    {
+        return this.flatMapper.flatEntityListToFlatDtoList(this.flatList);
+    }
+
+    @Benchmark
+    public List<Flat> flatDtoListToFlatEntityList()
+    {
+        return this.flatMapper.flatDtoListToFlatEntityList(this.flatDtoList);
+    }
+}
@@ -0,0 +1,95 @@
+package com.micasa.benchmark;
+
+import com.micasa.dto.FlatDto;
+import com.micasa.dto.FlatPageDto;
+import com.micasa.model.Flat;
+import com.micasa.service.FlatService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of FlatServiceImpl lookups and updates against an embedded H2 database.
+ * Lookups are measured both on the database path and on the cached dto path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlatServiceBenchmark
+{
+    private static final PageRequest PAGE = PageRequest.of(0, 50);
+
+    private ConfigurableApplicationContext context;
+    private FlatService flatService;
+    private List<String> flatIds;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        this.context = FlatServiceContext.start("flatServiceBenchmark");
+        this.flatService = this.context.getBean(FlatService.class);
+        this.flatIds = FlatServiceContext.seed(this.flatService);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.context.close();
+    }
+
+    @Benchmark
+    public Flat findFlatByFlatId()
+    {
+        return this.flatService.findFlatByFlatId(this.randomFlatId());
+    }
+
+    @Benchmark
+    public FlatDto findFlatDtoByFlatId()
+    {
+        return this.flatService.findFlatDtoByFlatId(this.randomFlatId());
+    }
+
+    @Benchmark
+    public Slice<Flat> findFlatByBlockNumber()
+    {
+        return this.flatService.findFlatByBlockNumber(randomBlock(), PAGE);
+    }
+
+    @Benchmark
+    public FlatPageDto findFlatPageByBlockNumber()
+    {
+        return this.flatService.findFlatPageByBlockNumber(randomBlock(), PAGE);
+    }
+
+    @Benchmark
+    public Flat findFlatByBlockNumberAndFlatNumber()
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return this.flatService.findFlatByBlockNumberAndFlatNumber(randomBlock(),
+                String.valueOf(random.nextInt(FlatServiceContext.FLATS_PER_BLOCK)));
+    }
+
+    @Benchmark
+    public Flat updateOccupiedStatus()
+    {
+        return this.flatService.updateOccupiedStatus(this.randomFlatId(), ThreadLocalRandom.current().nextBoolean());
+    }
+
+    private String randomFlatId()
+    {
+        return this.flatIds.get(ThreadLocalRandom.current().nextInt(this.flatIds.size()));
+    }
+
+    private static String randomBlock()
+    {
+        return FlatServiceContext.blockName(ThreadLocalRandom.current().nextInt(FlatServiceContext.BLOCKS));
+    }
+}
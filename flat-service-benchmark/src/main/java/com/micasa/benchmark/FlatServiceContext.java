@@ -0,0 +1,79 @@
+package com.micasa.benchmark;
+
+import com.micasa.FlatServiceApplication;
+import com.micasa.dto.FlatIngestResultDto;
+import com.micasa.model.Flat;
+import com.micasa.service.FlatService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boots flat-service against an embedded H2 database for benchmarks.
+ * Methods:
+ *  1. start(String, String...) : Start flat-service on a fresh in-memory database.
+ *  2. seed(FlatService) : Add BLOCKS * FLATS_PER_BLOCK flats.
+ */
+public final class FlatServiceContext
+{
+    public static final int BLOCKS = 20;
+    public static final int FLATS_PER_BLOCK = 500;
+
+    private FlatServiceContext() {}
+
+    /**
+     * Function to start flat-service on a fresh in-memory H2 database in MySQL mode.
+     * Passed as command line arguments so they win over application.properties of flat-service.
+     * Request logging is turned down to WARN so it does not dominate the measurements.
+     * The R2DBC url points to the same database, it is only used when the reactive profile is active.
+     * @param databaseName : Name of the in-memory database, one per benchmark class.
+     * @param extraArgs : Further command line arguments, e.g. a profile.
+     * @return : Started application context.
+     */
+    public static ConfigurableApplicationContext start(String databaseName, String... extraArgs)
+    {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:" + databaseName + ";MODE=MySQL;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.r2dbc.url=r2dbc:h2:mem:///" + databaseName + ";MODE=MySQL;DB_CLOSE_DELAY=-1",
+                "--spring.r2dbc.username=sa",
+                "--spring.r2dbc.password=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.main.banner-mode=off",
+                "--server.port=0",
+                "--application.log.level=WARN"));
+        args.addAll(List.of(extraArgs));
+        return new SpringApplicationBuilder(FlatServiceApplication.class).run(args.toArray(String[]::new));
+    }
+
+    /**
+     * Function to add benchmark flats, blocks B0..B19 with flat numbers 0..499.
+     * @param flatService : FlatService of the started context.
+     * @return : FlatIds of added flats.
+     */
+    public static List<String> seed(FlatService flatService)
+    {
+        List<Flat> flats = new ArrayList<>(BLOCKS * FLATS_PER_BLOCK);
+        for(int block = 0; block < BLOCKS; block++)
+        {
+            for(int number = 0; number < FLATS_PER_BLOCK; number++)
+            {
+                flats.add(new Flat(String.valueOf(number), blockName(block), 0 == number % 2, null));
+            }
+        }
+        List<String> flatIds = new ArrayList<>(flats.size());
+        for(FlatIngestResultDto result : flatService.addFlats(flats))
+        {
+            flatIds.add(result.getFlatId());
+        }
+        return flatIds;
+    }
+
+    public static String blockName(int block)
+    {
+        return "B" + block;
+    }
+}
@@ -0,0 +1,78 @@
+package com.micasa.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.micasa.dto.FlatDto;
+import com.micasa.dto.SocietyDto;
+import com.micasa.model.Society;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of Jackson serialization of FlatDto and Society, with an ObjectMapper configured like Spring MVC's.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark
+{
+    private static final int PAGE_SIZE = 50;
+
+    private ObjectWriter writer;
+    private ObjectReader flatDtoReader;
+    private FlatDto flatDto;
+    private List<FlatDto> flatDtoList;
+    private Society society;
+    private byte[] flatDtoJson;
+
+    @Setup
+    public void setup() throws JsonProcessingException
+    {
+        ObjectMapper objectMapper = new Jackson2ObjectMapperBuilder().build();
+        this.writer = objectMapper.writer();
+        this.flatDtoReader = objectMapper.readerFor(FlatDto.class);
+        SocietyDto societyDto = new SocietyDto("society-1", "Green Acres", "12 Park Road");
+        this.flatDto = new FlatDto("flat-1", "101", "A", true, societyDto);
+        this.flatDtoList = new ArrayList<>(PAGE_SIZE);
+        for(int i = 0; i < PAGE_SIZE; i++)
+        {
+            this.flatDtoList.add(new FlatDto("flat-" + i, String.valueOf(i), "A", 0 == i % 2, societyDto));
+        }
+        //flatList is left out, its flats point back to the society.
+        this.society = new Society("society-1", "Green Acres", "12 Park Road", null);
+        this.flatDtoJson = this.writer.writeValueAsBytes(this.flatDto);
+    }
+
+    @Benchmark
+    public byte[] writeFlatDto() throws JsonProcessingException
+    {
+        return this.writer.writeValueAsBytes(this.flatDto);
+    }
+
+    @Benchmark
+    public byte[] writeFlatDtoList() throws JsonProcessingException
+    {
+        return this.writer.writeValueAsBytes(this.flatDtoList);
+    }
+
+    @Benchmark
+    public byte[] writeSociety() throws JsonProcessingException
+    {
+        return this.writer.writeValueAsBytes(this.society);
+    }
+
+    @Benchmark
+    public FlatDto readFlatDto() throws Exception
+    {
+        return this.flatDtoReader.readValue(this.flatDtoJson);
+    }
+}
@@ -0,0 +1,95 @@
+package com.micasa.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.micasa.dto.FlatColumnsPageDto;
+import com.micasa.dto.FlatDto;
+import com.micasa.dto.FlatPageDto;
+import com.micasa.dto.SocietyDto;
+import com.micasa.util.FlatColumnsBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the payload formats flat-service negotiates, for a page of flats as rows (flatPageDto) and as
+ * columns (flatColumnsPageDto), encoded as JSON, CBOR and Smile with an ObjectMapper configured like Spring MVC's.
+ * The payload size of every combination is printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadFormatBenchmark
+{
+    private static final int SOCIETIES = 10;
+
+    public enum Format
+    {
+        JSON, CBOR, SMILE
+    }
+
+    @Param({"JSON", "CBOR", "SMILE"})
+    private Format format;
+    @Param({"false", "true"})
+    private boolean columnar;
+    @Param({"500"})
+    private int pageSize;
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private Object page;
+    private byte[] payload;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        JsonFactory factory = switch(this.format)
+        {
+            case JSON -> new JsonFactory();
+            case CBOR -> new CBORFactory();
+            case SMILE -> new SmileFactory();
+        };
+        ObjectMapper objectMapper = new Jackson2ObjectMapperBuilder().factory(factory).build();
+        List<FlatDto> flatDtos = new ArrayList<>(this.pageSize);
+        for(int i = 0; i < this.pageSize; i++)
+        {
+            int society = i % SOCIETIES;
+            SocietyDto societyDto = new SocietyDto("society-" + society, "Green Acres " + society, society + " Park Road");
+            flatDtos.add(new FlatDto(UUID.randomUUID().toString(), String.valueOf(100 + i), String.valueOf((char) ('A' + society)),
+                    0 == i % 2, societyDto));
+        }
+        FlatPageDto flatPageDto = new FlatPageDto(flatDtos, 0, this.pageSize, true);
+        this.page = this.columnar
+                ? new FlatColumnsPageDto(FlatColumnsBuilder.of(flatDtos), 0, this.pageSize, true)
+                : flatPageDto;
+        this.writer = objectMapper.writer();
+        this.reader = objectMapper.readerFor(this.columnar ? FlatColumnsPageDto.class : FlatPageDto.class);
+        this.payload = this.writer.writeValueAsBytes(this.page);
+        System.out.printf("%n%s%s, %d flats: %d bytes, %.1f bytes per flat%n", this.format, this.columnar ? " columnar" : "",
+                this.pageSize, this.payload.length, (double) this.payload.length / this.pageSize);
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException
+    {
+        return this.writer.writeValueAsBytes(this.page);
+    }
+
+    @Benchmark
+    public Object read() throws IOException
+    {
+        return this.reader.readValue(this.payload);
+    }
+}
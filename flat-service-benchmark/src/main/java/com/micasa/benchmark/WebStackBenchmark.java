@@ -0,0 +1,94 @@
+package com.micasa.benchmark;
+
+import com.micasa.service.FlatService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the servlet mode (Tomcat, JPA) and the reactive mode (profile "reactive", Netty, R2DBC) of the
+ * read endpoints over real HTTP, with many concurrent clients.
+ * Caches of the servlet mode are turned off, so both modes read the database on every request and
+ * the difference comes from the web and data access stacks only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(32)
+@Fork(1)
+public class WebStackBenchmark
+{
+    @Param({"servlet", "reactive"})
+    private String mode;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient httpClient;
+    private String baseUrl;
+    private List<String> flatIds;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        String[] modeArgs = "reactive".equals(this.mode)
+                ? new String[] {"--spring.profiles.active=reactive"}
+                : new String[] {"--micasa.flat.cache.max-size=0", "--micasa.flat.cache.lookup.max-size=0",
+                        "--spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                        "--spring.jpa.properties.hibernate.cache.use_query_cache=false"};
+        this.context = FlatServiceContext.start("webStackBenchmark" + this.mode, modeArgs);
+        this.flatIds = FlatServiceContext.seed(this.context.getBean(FlatService.class));
+        this.baseUrl = "http://localhost:" + this.context.getEnvironment().getProperty("local.server.port");
+        this.httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.context.close();
+    }
+
+    @Benchmark
+    public int findFlatById() throws IOException, InterruptedException
+    {
+        return this.get("/find/flatId/" + this.flatIds.get(ThreadLocalRandom.current().nextInt(this.flatIds.size())));
+    }
+
+    @Benchmark
+    public int findFlatsByBlock() throws IOException, InterruptedException
+    {
+        return this.get("/find/flatBlock/" + FlatServiceContext.blockName(ThreadLocalRandom.current().nextInt(FlatServiceContext.BLOCKS)));
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long exportFlats() throws IOException, InterruptedException
+    {
+        HttpResponse<InputStream> response = this.httpClient.send(this.request("/export/flats"), HttpResponse.BodyHandlers.ofInputStream());
+        try(InputStream body = response.body())
+        {
+            return body.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private int get(String path) throws IOException, InterruptedException
+    {
+        return this.httpClient.send(this.request(path), HttpResponse.BodyHandlers.ofByteArray()).body().length;
+    }
+
+    private HttpRequest request(String path)
+    {
+        return HttpRequest.newBuilder(URI.create(this.baseUrl + path)).GET().build();
+    }
+}
@@ -1,7 +1,10 @@
 package com.micasa;
 
+import com.micasa.writebehind.FlatWriteBehind;
+import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
 public class FlatServiceApplication {
@@ -10,4 +13,12 @@ public class FlatServiceApplication {
 		SpringApplication.run(FlatServiceApplication.class, args);
 	}
 
+	/**
+	 * Writes flat mutations replayed from the write-behind journal to the database before the application is ready.
+	 */
+	@Bean
+	public ApplicationRunner flatJournalReplay(FlatWriteBehind flatWriteBehind) {
+		return args -> flatWriteBehind.replay();
+	}
+
 }
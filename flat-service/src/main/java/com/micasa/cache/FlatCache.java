@@ -0,0 +1,327 @@
+package com.micasa.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.micasa.common.util.SingleFlight;
+import com.micasa.common.util.TransactionUtils;
+import com.micasa.dto.CacheStatsDto;
+import com.micasa.dto.FlatDto;
+import com.micasa.dto.FlatPageDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded in-process cache of mapped flats, sits in front of the flat lookups of flatService.
+ * Caches:
+ *  1. flatById : FlatDto by flatId, dropped after every committed write of the flat and loaded again on the next read.
+ *     Writes never put their own copy, after-commit callbacks of concurrent writes may run out of order.
+ *  2. flatLookups : Results of block/number lookups. Keys carry a generation, every committed write
+ *     bumps the generation so older lookups are never read again and age out by size/ttl.
+ *  3. missingFlatIds : FlatIds recently found missing, with a short ttl. Cleared when the flat is added.
+ * Concurrent misses of the same flat share one load, see flatLoads. A load is only cached when no write
+ * committed while it ran, writes bump lookupGeneration before they drop flats to make that check safe.
+ * Entries are shared between callers and must not be modified.
+ */
+@Component
+public class FlatCache
+{
+    public static final String FLAT_BY_ID_CACHE = "flatById";
+    public static final String FLAT_LOOKUPS_CACHE = "flatLookups";
+    public static final String MISSING_FLAT_IDS_CACHE = "missingFlatIds";
+
+    private final Cache<String, FlatDto> flatById;
+    private final Cache<LookupKey, Object> flatLookups;
+    private final Cache<String, Boolean> missingFlatIds;
+    //Generation of flatLookups keys, bumped on every committed write. Also tells loads whether a write raced them.
+    private final AtomicLong lookupGeneration = new AtomicLong();
+    //Running loads of flatById misses, keyed by generation so a read after a write never joins a load started before it.
+    private final SingleFlight<FlatLoadKey, FlatDto> flatLoads;
+
+    @Autowired
+    public FlatCache(@Value("${micasa.flat.cache.max-size:100000}") long maxSize,
+                     @Value("${micasa.flat.cache.ttl:10m}") Duration ttl,
+                     @Value("${micasa.flat.cache.lookup.max-size:10000}") long lookupMaxSize,
+                     @Value("${micasa.flat.cache.lookup.ttl:1m}") Duration lookupTtl,
+                     @Value("${micasa.flat.cache.negative.max-size:100000}") long negativeMaxSize,
+                     @Value("${micasa.flat.cache.negative.ttl:5s}") Duration negativeTtl,
+                     @Value("${micasa.flat.single-flight.timeout:2s}") Duration singleFlightTimeout,
+                     MeterRegistry meterRegistry)
+    {
+        this.flatById = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.flatLookups = Caffeine.newBuilder()
+                .maximumSize(lookupMaxSize)
+                .expireAfterWrite(lookupTtl)
+                .recordStats()
+                .build();
+        this.missingFlatIds = Caffeine.newBuilder()
+                .maximumSize(negativeMaxSize)
+                .expireAfterWrite(negativeTtl)
+                .recordStats()
+                .build();
+        this.flatLoads = new SingleFlight<>(FLAT_BY_ID_CACHE, singleFlightTimeout, meterRegistry);
+    }
+
+    /**
+     * Function to check whether a flat was recently found missing.
+     * @param flatId : FlatId to check.
+     * @return : true if flatId is known to be missing.
+     */
+    public boolean isMissing(String flatId)
+    {
+        return null != this.missingFlatIds.getIfPresent(flatId);
+    }
+
+    /**
+     * Function to remember that a flat is missing.
+     * @param flatId : FlatId that was not found.
+     */
+    public void markMissing(String flatId)
+    {
+        this.missingFlatIds.put(flatId, Boolean.TRUE);
+    }
+
+    /**
+     * Function to get a flat from cache, loading it on a miss.
+     * Concurrent misses of the same flat run loader once and share the result, no lock is held while loader runs.
+     * Exceptions thrown by loader are passed to every waiting caller and nothing is cached.
+     * @param flatId : FlatId to look for.
+     * @param loader : Loads the flat on a miss.
+     * @return : Cached or loaded flatDto.
+     */
+    public FlatDto getFlat(String flatId, Function<String, FlatDto> loader)
+    {
+        FlatDto flatDto = this.flatById.getIfPresent(flatId);
+        if(null != flatDto)
+        {
+            return flatDto;
+        }
+        long generation = this.lookupGeneration.get();
+        FlatDto loaded = this.flatLoads.execute(new FlatLoadKey(flatId, generation), () -> loader.apply(flatId));
+        this.cacheLoaded(flatId, loaded, generation);
+        return loaded;
+    }
+
+    /**
+     * Function to get many flats from cache, loading all misses with one call of loader.
+     * Flats known to be missing are not loaded, flats loader does not return are remembered as missing.
+     * Loaded flats are only cached when no write committed during the load, so a load can not overwrite a newer flat.
+     * @param flatIds : FlatIds to look for.
+     * @param loader : Loads the flats not in cache, returns them by flatId.
+     * @return : Found flatDtos by flatId, missing flats are left out.
+     */
+    public Map<String, FlatDto> getFlats(Collection<String> flatIds, Function<List<String>, Map<String, FlatDto>> loader)
+    {
+        Map<String, FlatDto> found = new HashMap<>(this.flatById.getAllPresent(flatIds));
+        List<String> misses = new ArrayList<>();
+        for(String flatId : flatIds)
+        {
+            if(!found.containsKey(flatId) && !this.isMissing(flatId))
+            {
+                misses.add(flatId);
+            }
+        }
+        if(misses.isEmpty())
+        {
+            return found;
+        }
+        long generation = this.lookupGeneration.get();
+        Map<String, FlatDto> loaded = loader.apply(misses);
+        for(String flatId : misses)
+        {
+            FlatDto flatDto = loaded.get(flatId);
+            if(null != flatDto)
+            {
+                found.put(flatId, flatDto);
+                this.cacheLoaded(flatId, flatDto, generation);
+            }
+            else if(generation == this.lookupGeneration.get())
+            {
+                this.markMissing(flatId);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Function to cache a loaded flat unless a write committed since the load started.
+     * A write may drop the flat between the first check and the put, the second check takes the stale flat out again.
+     * @param flatId : FlatId of loaded flat.
+     * @param flatDto : Loaded flat.
+     * @param generation : lookupGeneration when the load started.
+     */
+    private void cacheLoaded(String flatId, FlatDto flatDto, long generation)
+    {
+        if(generation != this.lookupGeneration.get())
+        {
+            return;
+        }
+        this.flatById.asMap().putIfAbsent(flatId, flatDto);
+        if(generation != this.lookupGeneration.get())
+        {
+            this.flatById.asMap().remove(flatId, flatDto);
+        }
+    }
+
+    /**
+     * Function to get a page of a lookup from cache, loading it on a miss.
+     * @param key : Lookup key, see lookupKey.
+     * @param loader : Loads the page on a miss.
+     * @return : Cached or loaded flatPageDto.
+     */
+    public FlatPageDto getPage(LookupKey key, Function<LookupKey, FlatPageDto> loader)
+    {
+        return (FlatPageDto) this.flatLookups.get(key, loader);
+    }
+
+    /**
+     * Function to get a single flat lookup from cache, loading it on a miss.
+     * @param key : Lookup key, see lookupKey.
+     * @param loader : Loads the flat on a miss.
+     * @return : Cached or loaded flatDto.
+     */
+    public FlatDto getFlat(LookupKey key, Function<LookupKey, FlatDto> loader)
+    {
+        return (FlatDto) this.flatLookups.get(key, loader);
+    }
+
+    /**
+     * Function to build a key for flatLookups in the current generation.
+     * @param type : Kind of lookup.
+     * @param flatBlock : FlatBlock of the lookup, may be null.
+     * @param flatNumber : FlatNumber of the lookup, may be null.
+     * @param pageable : Page of the lookup, may be null.
+     * @return : Lookup key.
+     */
+    public LookupKey lookupKey(LookupType type, String flatBlock, String flatNumber, Pageable pageable)
+    {
+        int page = null == pageable ? 0 : pageable.getPageNumber();
+        int size = null == pageable ? 0 : pageable.getPageSize();
+        return new LookupKey(this.lookupGeneration.get(), type, flatBlock, flatNumber, page, size);
+    }
+
+    /**
+     * Function to remove a flat once the current transaction commits and remember it as missing.
+     * @param flatId : FlatId of removed flat.
+     */
+    public void evictAfterCommit(String flatId)
+    {
+        TransactionUtils.afterCommit(() -> {
+            this.lookupGeneration.incrementAndGet();
+            this.flatById.invalidate(flatId);
+            this.missingFlatIds.put(flatId, Boolean.TRUE);
+        });
+    }
+
+    /**
+     * Function to drop updated flats and all lookups once the current transaction commits.
+     * The flats are not reloaded, the next read loads them again.
+     * @param flatIds : FlatIds of updated flats.
+     */
+    public void invalidateAfterCommit(Collection<String> flatIds)
+    {
+        TransactionUtils.afterCommit(() -> {
+            this.lookupGeneration.incrementAndGet();
+            this.flatById.invalidateAll(flatIds);
+        });
+    }
+
+    /**
+     * Function to drop flats changed by another instance, their missing marks and all lookups right away.
+     * @param flatIds : FlatIds of changed flats.
+     */
+    public void invalidate(Collection<String> flatIds)
+    {
+        this.lookupGeneration.incrementAndGet();
+        this.flatById.invalidateAll(flatIds);
+        this.missingFlatIds.invalidateAll(flatIds);
+    }
+
+    /**
+     * Function to drop every flat, missing mark and lookup right away, when changes of another instance were lost.
+     */
+    public void invalidateAll()
+    {
+        this.lookupGeneration.incrementAndGet();
+        this.flatById.invalidateAll();
+        this.missingFlatIds.invalidateAll();
+    }
+
+    /**
+     * Function to forget added flats as missing and drop all lookups once the current transaction commits.
+     * @param flatIds : FlatIds of added flats.
+     */
+    public void addedAfterCommit(Collection<String> flatIds)
+    {
+        TransactionUtils.afterCommit(() -> {
+            this.missingFlatIds.invalidateAll(flatIds);
+            this.lookupGeneration.incrementAndGet();
+        });
+    }
+
+    /**
+     * Function to read counters of all caches.
+     * @return : Counters by cache name.
+     */
+    public Map<String, CacheStatsDto> stats()
+    {
+        Map<String, CacheStatsDto> stats = new LinkedHashMap<>();
+        stats.put(FLAT_BY_ID_CACHE, toStatsDto(this.flatById));
+        stats.put(FLAT_LOOKUPS_CACHE, toStatsDto(this.flatLookups));
+        stats.put(MISSING_FLAT_IDS_CACHE, toStatsDto(this.missingFlatIds));
+        return stats;
+    }
+
+    private static CacheStatsDto toStatsDto(Cache<?, ?> cache)
+    {
+        CacheStats cacheStats = cache.stats();
+        return CacheStatsDto.builder()
+                .size(cache.estimatedSize())
+                .hitCount(cacheStats.hitCount())
+                .missCount(cacheStats.missCount())
+                .evictionCount(cacheStats.evictionCount())
+                .hitRate(cacheStats.hitRate())
+                .build();
+    }
+
+    /**
+     * Kind of a cached lookup.
+     */
+    public enum LookupType
+    {
+        BLOCK,
+        FLAT_NUMBER,
+        BLOCK_AND_FLAT_NUMBER
+    }
+
+    /**
+     * Key of flatLookups.
+     */
+    public record LookupKey(long generation, LookupType type, String flatBlock, String flatNumber, int page, int size)
+    {
+    }
+
+    /**
+     * Key of flatLoads.
+     */
+    private record FlatLoadKey(String flatId, long generation)
+    {
+    }
+}
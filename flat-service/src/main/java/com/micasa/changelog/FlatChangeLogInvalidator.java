@@ -0,0 +1,70 @@
+package com.micasa.changelog;
+
+import com.micasa.cache.FlatCache;
+import com.micasa.common.changelog.ChangeBatch;
+import com.micasa.common.changelog.ChangeLogInvalidator;
+import com.micasa.index.OccupancyIndex;
+import com.micasa.model.Flat;
+import com.micasa.model.Society;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Drops state of flatService made stale by writes of society-service, see ChangeLogPoller.
+ * Structure:
+ *  1. Second-level cache : changed flats and societies, flat lists of their societies and cached query results.
+ *  2. FlatCache : changed flats and flats of changed societies, their society is part of the flatDto.
+ *  3. OccupancyIndex : changed flats are read again, flats no longer present are removed.
+ */
+@Component
+public class FlatChangeLogInvalidator implements ChangeLogInvalidator
+{
+    private static final String SOCIETY_FLAT_LIST_ROLE = Society.class.getName() + ".flatList";
+
+    private final Cache secondLevelCache;
+    private final FlatCache flatCache;
+    private final OccupancyIndex occupancyIndex;
+
+    @Autowired
+    public FlatChangeLogInvalidator(EntityManagerFactory entityManagerFactory, FlatCache flatCache, OccupancyIndex occupancyIndex)
+    {
+        this.secondLevelCache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        this.flatCache = flatCache;
+        this.occupancyIndex = occupancyIndex;
+    }
+
+    /**
+     * Function to invalidate everything a batch of changes touched.
+     * @param changeBatch : Changes of other instances.
+     */
+    @Override
+    public void invalidate(ChangeBatch changeBatch)
+    {
+        changeBatch.flatIds().forEach(flatId -> this.secondLevelCache.evictEntityData(Flat.class, flatId));
+        changeBatch.societyIds().forEach(societyId -> this.secondLevelCache.evictEntityData(Society.class, societyId));
+        changeBatch.flatSocietyIds().forEach(societyId -> this.secondLevelCache.evictCollectionData(SOCIETY_FLAT_LIST_ROLE, societyId));
+        this.secondLevelCache.evictDefaultQueryRegion();
+
+        Set<String> flatIds = new HashSet<>(changeBatch.flatIds());
+        changeBatch.societyIds().forEach(societyId -> flatIds.addAll(this.occupancyIndex.societyFlatIds(societyId)));
+        this.flatCache.invalidate(flatIds);
+        this.occupancyIndex.refresh(changeBatch.flatIds());
+    }
+
+    /**
+     * Function to drop all cached state and rebuild the occupancy index, when changes of other instances were lost.
+     */
+    @Override
+    public void invalidateAll()
+    {
+        this.secondLevelCache.evictAllRegions();
+        this.flatCache.invalidateAll();
+        this.occupancyIndex.rebuild();
+    }
+}
@@ -0,0 +1,45 @@
+package com.micasa.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+/**
+ * Reports the request execution mode of flatService.
+ * Modes:
+ *  1. platform (default) : Requests are served by Tomcat's platform thread pool.
+ *  2. virtual (profile "virtual") : Requests and blocking repository calls run on virtual threads,
+ *     concurrency is bounded by the hikari pool instead of the thread pool. Needs JDK 21+, startup fails on an
+ *     older JDK rather than running platform threads with the connection and pool limits sized for virtual threads.
+ */
+@Slf4j
+@Configuration
+public class ExecutionModeConfig
+{
+    private static final int VIRTUAL_THREADS_MIN_JAVA_VERSION = 21;
+
+    //Whether virtual threads were requested.
+    private final boolean virtualThreadsEnabled;
+
+    public ExecutionModeConfig(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreadsEnabled)
+    {
+        int javaVersion = Runtime.version().feature();
+        if(virtualThreadsEnabled && javaVersion < VIRTUAL_THREADS_MIN_JAVA_VERSION)
+        {
+            throw new IllegalStateException("Virtual threads need Java " + VIRTUAL_THREADS_MIN_JAVA_VERSION + "+, running on Java "
+                    + javaVersion + ", start without profile \"virtual\"");
+        }
+        this.virtualThreadsEnabled = virtualThreadsEnabled;
+    }
+
+    /**
+     * Logs the execution mode once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void logExecutionMode()
+    {
+        log.info("Serving requests on {} threads", this.virtualThreadsEnabled ? "virtual" : "platform");
+    }
+}
@@ -1,5 +1,7 @@
 package com.micasa.config;
 
+import com.micasa.common.interceptor.MetricsRequestInterceptor;
+import com.micasa.common.metrics.RequestMetrics;
 import com.micasa.interceptor.LoggingRequestInterceptor;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
@@ -11,13 +13,22 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 @Configuration
 public class FlatServiceWebConfig implements WebMvcConfigurer
 {
+    //RequestMetrics instance.
+    private final RequestMetrics requestMetrics;
+
+    public FlatServiceWebConfig(RequestMetrics requestMetrics)
+    {
+        this.requestMetrics = requestMetrics;
+    }
+
     /**
-     * Adds a new request interceptor.
+     * Adds request interceptors, metrics after logging so it still sees the correlationId.
      * @param registry : interceptorRegistry object.
      */
     @Override
     public void addInterceptors(InterceptorRegistry registry)
     {
         registry.addInterceptor(new LoggingRequestInterceptor());
+        registry.addInterceptor(new MetricsRequestInterceptor(this.requestMetrics));
     }
 }
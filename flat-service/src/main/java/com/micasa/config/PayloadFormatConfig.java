@@ -0,0 +1,44 @@
+package com.micasa.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.micasa.constants.CommonConstants;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.util.List;
+
+/**
+ * Binary payload formats of flatService, negotiated with the Accept header next to JSON.
+ * Structure:
+ *  1. CBOR (application/cbor) and Smile (application/x-jackson-smile) converters get an ObjectMapper from Spring Boot's
+ *     builder, so they serialize the same fields the JSON converter does.
+ *  2. Both also take the +cbor and +smile suffixes, used by the columnar batch media types.
+ * Spring Boot puts these beans in place of its default CBOR and Smile converters, clients asking for JSON are not affected.
+ */
+@Configuration
+public class PayloadFormatConfig
+{
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder objectMapperBuilder)
+    {
+        MappingJackson2CborHttpMessageConverter converter =
+                new MappingJackson2CborHttpMessageConverter(objectMapperBuilder.factory(new CBORFactory()).build());
+        converter.setSupportedMediaTypes(List.of(MediaType.APPLICATION_CBOR, new MediaType("application", "*+cbor")));
+        return converter;
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder objectMapperBuilder)
+    {
+        MappingJackson2SmileHttpMessageConverter converter =
+                new MappingJackson2SmileHttpMessageConverter(objectMapperBuilder.factory(new SmileFactory()).build());
+        converter.setSupportedMediaTypes(List.of(MediaType.parseMediaType(CommonConstants.APPLICATION_SMILE_VALUE),
+                new MediaType("application", "*+smile")));
+        return converter;
+    }
+}
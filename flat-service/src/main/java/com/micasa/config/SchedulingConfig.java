@@ -0,0 +1,13 @@
+package com.micasa.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables scheduled tasks, used by ChangeLogPoller to poll and clean up change_log and by OccupancyRollupReconciler.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig
+{
+}
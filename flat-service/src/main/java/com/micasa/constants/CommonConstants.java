@@ -5,7 +5,16 @@ package com.micasa.constants;
  */
 public class CommonConstants
 {
-    public static String CORRELATION_ID_HEADER = "correlationId";
+    //Streaming responses are flushed to the client every this many records.
+    public static int STREAM_FLUSH_EVERY = 1000;
+    //Media type of Smile, Spring only names the CBOR one.
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    //Media types of the columnar batch format, one per encoding, served by list and export endpoints.
+    public static final String FLAT_COLUMNS_JSON_VALUE = "application/vnd.micasa.flat-columns+json";
+    public static final String FLAT_COLUMNS_CBOR_VALUE = "application/vnd.micasa.flat-columns+cbor";
+    public static final String FLAT_COLUMNS_SMILE_VALUE = "application/vnd.micasa.flat-columns+smile";
+    //Flats per batch of a columnar export.
+    public static int COLUMN_BATCH_SIZE = 1000;
 
     private CommonConstants() {}
 }
@@ -6,6 +6,14 @@ package com.micasa.constants;
 public class ExceptionMessages
 {
     public static String NO_RECORD_PRESENT_MSG = "No record present with id: ";
+    public static String NO_RECORD_PRESENT_BLOCK_NUMBER_MSG = "No record present with flatBlock/flatNumber: ";
+    public static String FLAT_ALREADY_EXISTS_MSG = "Flat already exists with flatNumber and flatBlock";
+    public static String FLAT_ALREADY_EXISTS_BLOCK_NUMBER_MSG = "Flat already exists with flatBlock/flatNumber: ";
+    public static String FLAT_NUMBER_BLOCK_REQUIRED_MSG = "flatNumber and flatBlock can not be blank";
+    public static String FLAT_CONCURRENTLY_MODIFIED_MSG = "Flat was modified concurrently, retry with id: ";
+    public static String OCCUPIED_STATUS_MISMATCH_MSG = "Occupied status does not match expected status for id: ";
+    public static String WRITE_QUEUE_FULL_MSG = "Write queue is full, retry later, pending flats limit: ";
+    public static String TOO_MANY_FLAT_IDS_MSG = "Too many flatIds for a JSON multi-get, send them as NDJSON instead, received: ";
 
     private ExceptionMessages() {}
 }
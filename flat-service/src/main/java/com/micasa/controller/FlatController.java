@@ -1,14 +1,51 @@
 package com.micasa.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.micasa.common.constants.CorrelationIdConstants;
+import com.micasa.common.util.NdjsonWriter;
+import com.micasa.constants.CommonConstants;
+import com.micasa.constants.ExceptionMessages;
+import com.micasa.dto.BulkFindResponseDto;
+import com.micasa.dto.BulkIngestResponseDto;
+import com.micasa.dto.BulkOccupancyResponseDto;
+import com.micasa.dto.FlatColumnsPageDto;
 import com.micasa.dto.FlatDto;
+import com.micasa.dto.FlatFindResultDto;
+import com.micasa.dto.FlatIngestResultDto;
+import com.micasa.dto.FlatPageDto;
+import com.micasa.dto.FlatSummaryPageDto;
+import com.micasa.dto.OccupancyUpdateDto;
+import com.micasa.exception.BadRequestException;
 import com.micasa.mapper.FlatMapper;
 import com.micasa.model.Flat;
 import com.micasa.service.FlatService;
+import com.micasa.util.FlatColumnsBuilder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Controller layer to expose endpoints for flat-service.
@@ -16,22 +53,71 @@ import org.springframework.web.bind.annotation.*;
  *  1. addFlat(FlatDto) : Add a new flat to database.
  *  2. findFlatById(String) : Look for a flat with flatId.
  *  3. updateOccupiedStatus(String, boolean) : Update occupied status of a flat.
- *  4.
+ *  4. deleteFlatByFlatId(String) : Delete a flat with flatId.
+ *  5. addFlats(List) : Add flats in bulk from a JSON array.
+ *  6. addFlatsStream(HttpServletRequest) : Add flats in bulk from a NDJSON stream.
+ *  7. findFlatsByBlock(String, int, int) : Look for a page of flats in a block.
+ *  8. findFlatsByFlatNumber(String, int, int) : Look for a page of flats with a flat number.
+ *  9. findFlatByBlockAndFlatNumber(String, String) : Look for a flat with block and flat number.
+ *  10. exportFlats() : Stream all flats as NDJSON.
+ *  11. updateOccupiedStatuses(List, boolean) : Update occupied status of many flats at once.
+ *  12. findFlatSummariesBySociety(String, String, int, int) : Look for a page of flat summaries of a society.
+ *  13. findFlatColumnsByBlock(String, int, int), findFlatColumnsByFlatNumber(String, int, int) : Same lookups as 7 and 8
+ *      in columnar form.
+ *  14. findFlatsByIds(List) : Look for many flats by flatId from a JSON array.
+ *      findFlatsByIdsStream(HttpServletRequest, HttpServletResponse) : Look for any number of flats by flatId from a NDJSON stream.
+ * Responses are JSON, CBOR or Smile as asked for in the Accept header. The flat-columns media types (CommonConstants)
+ * select the columnar form of list and export endpoints, each society is then included once instead of once per flat.
+ * Servlet mode only, the reactive mode (profile "reactive") serves the read endpoints from ReactiveFlatController.
  */
 @Slf4j
 @RestController
+@Profile("!reactive")
 public class FlatController
 {
+    //Columnar batch formats of exportFlats.
+    private static final List<MediaType> FLAT_COLUMNS_MEDIA_TYPES = List.of(MediaType.parseMediaType(CommonConstants.FLAT_COLUMNS_JSON_VALUE),
+            MediaType.parseMediaType(CommonConstants.FLAT_COLUMNS_CBOR_VALUE), MediaType.parseMediaType(CommonConstants.FLAT_COLUMNS_SMILE_VALUE));
+    //Formats of exportFlats in order of preference, rows first, then columnar batches.
+    private static final List<MediaType> EXPORT_MEDIA_TYPES = List.of(MediaType.APPLICATION_NDJSON, MediaType.APPLICATION_CBOR,
+            MediaType.parseMediaType(CommonConstants.APPLICATION_SMILE_VALUE), FLAT_COLUMNS_MEDIA_TYPES.get(0),
+            FLAT_COLUMNS_MEDIA_TYPES.get(1), FLAT_COLUMNS_MEDIA_TYPES.get(2));
+
     //FlatService instance.
     private final FlatService flatService;
     //FlatMapper instance.
     private final FlatMapper flatMapper;
+    //ObjectMapper instance, used to read NDJSON streams.
+    private final ObjectMapper objectMapper;
+    //Binary converters, their ObjectMappers write binary exports.
+    private final MappingJackson2CborHttpMessageConverter cborHttpMessageConverter;
+    private final MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter;
+    //Number of flats mapped and handed to flatService at once during bulk ingestion.
+    private final int bulkChunkSize;
+    //Largest page size a client may request on lookup endpoints.
+    private final int maxPageSize;
+    //Number of streamed flatIds looked up at once, and most distinct flatIds of a JSON multi-get.
+    private final int multiGetChunkSize;
+    private final int maxMultiGetIds;
 
     @Autowired
-    public FlatController(FlatService flatService, FlatMapper flatMapper)
+    public FlatController(FlatService flatService, FlatMapper flatMapper, ObjectMapper objectMapper,
+                          MappingJackson2CborHttpMessageConverter cborHttpMessageConverter,
+                          MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter,
+                          @Value("${micasa.flat.bulk.chunk-size:500}") int bulkChunkSize,
+                          @Value("${micasa.flat.page.max-size:500}") int maxPageSize,
+                          @Value("${micasa.flat.multi-get.chunk-size:500}") int multiGetChunkSize,
+                          @Value("${micasa.flat.multi-get.max-ids:1000}") int maxMultiGetIds)
     {
         this.flatService = flatService;
         this.flatMapper = flatMapper;
+        this.objectMapper = objectMapper;
+        this.cborHttpMessageConverter = cborHttpMessageConverter;
+        this.smileHttpMessageConverter = smileHttpMessageConverter;
+        this.bulkChunkSize = bulkChunkSize;
+        this.maxPageSize = maxPageSize;
+        this.multiGetChunkSize = Math.max(1, multiGetChunkSize);
+        this.maxMultiGetIds = maxMultiGetIds;
     }
 
     /**
@@ -55,10 +141,101 @@ public class FlatController
         return ResponseEntity.status(HttpStatus.CREATED).body(flatDtoSaved);
     }
 
+    /**
+     * Function to add flats to database in bulk from a JSON array.
+     * Structure:
+     *  1. Map flatDto list to flat in chunks.
+     *  2. Use flatService to save every chunk.
+     *  3. Return per-row results.
+     * @param flatDtoList : Flats to save in database.
+     * @return : Per-row results, HttpStatus 200.
+     */
+    @PostMapping(value = "/add/flats", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkIngestResponseDto> addFlats(@RequestBody List<FlatDto> flatDtoList)
+    {
+        log.info("Received request to add {} flats", flatDtoList.size());
+        List<FlatIngestResultDto> results = new ArrayList<>(flatDtoList.size());
+        for(int from = 0; from < flatDtoList.size(); from += this.bulkChunkSize)
+        {
+            int to = Math.min(from + this.bulkChunkSize, flatDtoList.size());
+            this.addFlatChunk(flatDtoList.subList(from, to), from, results);
+        }
+        return ResponseEntity.status(HttpStatus.OK).body(buildBulkIngestResponse(results));
+    }
+
+    /**
+     * Function to add flats to database in bulk from a NDJSON stream, one flatDto per line.
+     * Structure:
+     *  1. Read flatDto lines from request body without buffering the whole body.
+     *  2. Hand every full chunk to flatService.
+     *  3. Return per-row results.
+     * @param request : request object, body is read as a stream.
+     * @return : Per-row results, HttpStatus 200.
+     * @throws IOException : If request body can not be read.
+     */
+    @PostMapping(value = "/add/flats", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BulkIngestResponseDto> addFlatsStream(HttpServletRequest request) throws IOException
+    {
+        log.info("Received request to add flats from a stream");
+        List<FlatIngestResultDto> results = new ArrayList<>();
+        List<FlatDto> chunk = new ArrayList<>(this.bulkChunkSize);
+        try(MappingIterator<FlatDto> iterator = this.objectMapper.readerFor(FlatDto.class).readValues(request.getInputStream()))
+        {
+            while(iterator.hasNext())
+            {
+                chunk.add(iterator.next());
+                if(chunk.size() == this.bulkChunkSize)
+                {
+                    this.addFlatChunk(chunk, results.size(), results);
+                    chunk.clear();
+                }
+            }
+        }
+        if(!chunk.isEmpty())
+        {
+            this.addFlatChunk(chunk, results.size(), results);
+        }
+        return ResponseEntity.status(HttpStatus.OK).body(buildBulkIngestResponse(results));
+    }
+
+    private void addFlatChunk(List<FlatDto> chunk, int offset, List<FlatIngestResultDto> results)
+    {
+        List<Flat> flats = this.flatMapper.flatDtoListToFlatEntityList(chunk);
+        for(FlatIngestResultDto result : this.flatService.addFlats(flats))
+        {
+            result.setIndex(offset + result.getIndex());
+            results.add(result);
+        }
+    }
+
+    private static BulkIngestResponseDto buildBulkIngestResponse(List<FlatIngestResultDto> results)
+    {
+        int created = 0;
+        int conflicts = 0;
+        for(FlatIngestResultDto result : results)
+        {
+            if(FlatIngestResultDto.Status.CREATED == result.getStatus())
+            {
+                created++;
+            }
+            else if(FlatIngestResultDto.Status.CONFLICT == result.getStatus())
+            {
+                conflicts++;
+            }
+        }
+        return BulkIngestResponseDto.builder()
+                .received(results.size())
+                .created(created)
+                .conflicts(conflicts)
+                .failed(results.size() - created - conflicts)
+                .results(results)
+                .build();
+    }
+
     /**
      * Function to find a flat by using flatId.
      * Structure:
-     *  1. Use flatService to look for a flat with passed flatId.
+     *  1. Use flatService to look for a flat with passed flatId, served from cache when present.
      *  2. Return flatDto of the found flat.
      * @param flatId : Look for flat with this flatId.
      * @return : flatDto of the flat found, HttpStatus 200.
@@ -67,29 +244,377 @@ public class FlatController
     public ResponseEntity<FlatDto> findFlatById(@PathVariable String flatId)
     {
         log.info("Received request to find a flat with id {}", flatId);
-        Flat flat = this.flatService.findFlatByFlatId(flatId);
-        FlatDto flatDto = this.flatMapper.flatEntityToFlatDto(flat);
+        FlatDto flatDto = this.flatService.findFlatDtoByFlatId(flatId);
         return ResponseEntity.status(HttpStatus.OK).body(flatDto);
     }
 
+    /**
+     * Function to find a page of flats in a block.
+     * Structure:
+     *  1. Use flatService to fetch one page of flats in the block, ordered by flat number descending.
+     *  2. Return flatPageDto of the found flats.
+     * @param flatBlock : Look for flats in this block.
+     * @param page : Zero based page number.
+     * @param size : Page size, capped to maxPageSize.
+     * @return : flatPageDto of the found flats, HttpStatus 200.
+     */
+    @GetMapping("/find/flatBlock/{flatBlock}")
+    public ResponseEntity<FlatPageDto> findFlatsByBlock(@PathVariable String flatBlock,
+                                                        @RequestParam(defaultValue = "0") int page,
+                                                        @RequestParam(defaultValue = "50") int size)
+    {
+        log.info("Received request to find flats in block {}, page {}", flatBlock, page);
+        FlatPageDto flatPageDto = this.flatService.findFlatPageByBlockNumber(flatBlock, this.pageRequest(page, size));
+        return ResponseEntity.status(HttpStatus.OK).body(flatPageDto);
+    }
+
+    /**
+     * Function to find a page of flats with a flat number.
+     * Structure:
+     *  1. Use flatService to fetch one page of flats with the flat number, ordered by block descending.
+     *  2. Return flatPageDto of the found flats.
+     * @param flatNumber : Look for flats with this flat number.
+     * @param page : Zero based page number.
+     * @param size : Page size, capped to maxPageSize.
+     * @return : flatPageDto of the found flats, HttpStatus 200.
+     */
+    @GetMapping("/find/flatNumber/{flatNumber}")
+    public ResponseEntity<FlatPageDto> findFlatsByFlatNumber(@PathVariable String flatNumber,
+                                                             @RequestParam(defaultValue = "0") int page,
+                                                             @RequestParam(defaultValue = "50") int size)
+    {
+        log.info("Received request to find flats with flat number {}, page {}", flatNumber, page);
+        FlatPageDto flatPageDto = this.flatService.findFlatPageByFlatNumber(flatNumber, this.pageRequest(page, size));
+        return ResponseEntity.status(HttpStatus.OK).body(flatPageDto);
+    }
+
+    /**
+     * Function to find a page of flats in a block in columnar form, for the flat-columns media types.
+     * Structure:
+     *  1. Use flatService to fetch one page of flats in the block, as findFlatsByBlock does.
+     *  2. Return flatColumnsPageDto of the found flats.
+     * @param flatBlock : Look for flats in this block.
+     * @param page : Zero based page number.
+     * @param size : Page size, capped to maxPageSize.
+     * @return : flatColumnsPageDto of the found flats, HttpStatus 200.
+     */
+    @GetMapping(value = "/find/flatBlock/{flatBlock}", produces = {CommonConstants.FLAT_COLUMNS_JSON_VALUE,
+            CommonConstants.FLAT_COLUMNS_CBOR_VALUE, CommonConstants.FLAT_COLUMNS_SMILE_VALUE})
+    public ResponseEntity<FlatColumnsPageDto> findFlatColumnsByBlock(@PathVariable String flatBlock,
+                                                                     @RequestParam(defaultValue = "0") int page,
+                                                                     @RequestParam(defaultValue = "50") int size)
+    {
+        log.info("Received request to find flat columns in block {}, page {}", flatBlock, page);
+        FlatPageDto flatPageDto = this.flatService.findFlatPageByBlockNumber(flatBlock, this.pageRequest(page, size));
+        return ResponseEntity.status(HttpStatus.OK).body(this.flatColumnsPage(flatPageDto));
+    }
+
+    /**
+     * Function to find a page of flats with a flat number in columnar form, for the flat-columns media types.
+     * Structure:
+     *  1. Use flatService to fetch one page of flats with the flat number, as findFlatsByFlatNumber does.
+     *  2. Return flatColumnsPageDto of the found flats.
+     * @param flatNumber : Look for flats with this flat number.
+     * @param page : Zero based page number.
+     * @param size : Page size, capped to maxPageSize.
+     * @return : flatColumnsPageDto of the found flats, HttpStatus 200.
+     */
+    @GetMapping(value = "/find/flatNumber/{flatNumber}", produces = {CommonConstants.FLAT_COLUMNS_JSON_VALUE,
+            CommonConstants.FLAT_COLUMNS_CBOR_VALUE, CommonConstants.FLAT_COLUMNS_SMILE_VALUE})
+    public ResponseEntity<FlatColumnsPageDto> findFlatColumnsByFlatNumber(@PathVariable String flatNumber,
+                                                                          @RequestParam(defaultValue = "0") int page,
+                                                                          @RequestParam(defaultValue = "50") int size)
+    {
+        log.info("Received request to find flat columns with flat number {}, page {}", flatNumber, page);
+        FlatPageDto flatPageDto = this.flatService.findFlatPageByFlatNumber(flatNumber, this.pageRequest(page, size));
+        return ResponseEntity.status(HttpStatus.OK).body(this.flatColumnsPage(flatPageDto));
+    }
+
+    private FlatColumnsPageDto flatColumnsPage(FlatPageDto flatPageDto)
+    {
+        return FlatColumnsPageDto.builder()
+                .content(FlatColumnsBuilder.of(flatPageDto.getContent()))
+                .page(flatPageDto.getPage())
+                .size(flatPageDto.getSize())
+                .hasNext(flatPageDto.isHasNext())
+                .build();
+    }
+
+    /**
+     * Function to find a flat by block and flat number.
+     * Structure:
+     *  1. Use flatService to look for a flat with passed block and flat number.
+     *  2. Return flatDto of the found flat.
+     * @param flatBlock : Look for flat in this block.
+     * @param flatNumber : Look for flat with this flat number.
+     * @return : flatDto of the flat found, HttpStatus 200.
+     */
+    @GetMapping("/find/flatBlock/{flatBlock}/flatNumber/{flatNumber}")
+    public ResponseEntity<FlatDto> findFlatByBlockAndFlatNumber(@PathVariable String flatBlock, @PathVariable String flatNumber)
+    {
+        log.info("Received request to find flat {} in block {}", flatNumber, flatBlock);
+        FlatDto flatDto = this.flatService.findFlatDtoByBlockNumberAndFlatNumber(flatBlock, flatNumber);
+        return ResponseEntity.status(HttpStatus.OK).body(flatDto);
+    }
+
+    /**
+     * Function to find a page of flat summaries of a society.
+     * Structure:
+     *  1. Use flatService to fetch the society and one page of its flat summaries, optionally of one block only.
+     *  2. Return flatSummaryPageDto, the society is included once for the whole page.
+     * @param societyId : Look for flats of this society.
+     * @param flatBlock : Only look for flats in this block, optional.
+     * @param page : Zero based page number.
+     * @param size : Page size, capped to maxPageSize.
+     * @return : flatSummaryPageDto of the found flats, HttpStatus 200.
+     */
+    @GetMapping("/find/society/{societyId}/flats")
+    public ResponseEntity<FlatSummaryPageDto> findFlatSummariesBySociety(@PathVariable String societyId,
+                                                                         @RequestParam(required = false) String flatBlock,
+                                                                         @RequestParam(defaultValue = "0") int page,
+                                                                         @RequestParam(defaultValue = "50") int size)
+    {
+        log.info("Received request to find flat summaries of society {}, block {}, page {}", societyId, flatBlock, page);
+        FlatSummaryPageDto flatSummaryPageDto = this.flatService.findFlatSummaryPageBySociety(societyId, flatBlock, this.pageRequest(page, size));
+        return ResponseEntity.status(HttpStatus.OK).body(flatSummaryPageDto);
+    }
+
+    /**
+     * Function to find many flats by flatId from a JSON array.
+     * Structure:
+     *  1. Drop duplicate and null flatIds, keeping the first occurrence. At most maxMultiGetIds distinct flatIds.
+     *  2. Use flatService to look for all flats at once, served from cache when present.
+     *  3. Return found flats in request order and the flatIds without a flat.
+     * @param flatIds : Look for flats with these flatIds.
+     * @return : Found flats and missing flatIds, HttpStatus 200.
+     */
+    @PostMapping(value = "/find/flats", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkFindResponseDto> findFlatsByIds(@RequestBody List<String> flatIds)
+    {
+        log.info("Received request to find {} flats by id", flatIds.size());
+        Set<String> distinctFlatIds = new LinkedHashSet<>(flatIds);
+        distinctFlatIds.remove(null);
+        if(distinctFlatIds.size() > this.maxMultiGetIds)
+        {
+            log.error("Multi-get of {} flats exceeds {}", distinctFlatIds.size(), this.maxMultiGetIds);
+            throw BadRequestException.builder()
+                    .message(ExceptionMessages.TOO_MANY_FLAT_IDS_MSG)
+                    .fieldName("flatIds")
+                    .fieldValue(String.valueOf(distinctFlatIds.size()))
+                    .timestamp(System.currentTimeMillis())
+                    .build();
+        }
+        Map<String, FlatDto> found = this.flatService.findFlatDtosByFlatIds(distinctFlatIds);
+        List<String> missingFlatIds = new ArrayList<>();
+        for(String flatId : distinctFlatIds)
+        {
+            if(!found.containsKey(flatId))
+            {
+                missingFlatIds.add(flatId);
+            }
+        }
+        BulkFindResponseDto response = BulkFindResponseDto.builder()
+                .received(flatIds.size())
+                .flats(new ArrayList<>(found.values()))
+                .missingFlatIds(missingFlatIds)
+                .build();
+        return ResponseEntity.status(HttpStatus.OK).body(response);
+    }
+
+    /**
+     * Function to find any number of flats by flatId from a NDJSON stream, one flatId string per line.
+     * Structure:
+     *  1. Read flatId lines from request body without buffering the whole body.
+     *  2. Use flatService to look for every full chunk of multiGetChunkSize flatIds.
+     *  3. Write one flatFindResultDto per requested line as NDJSON, in request order, while reading on.
+     * Memory use does not depend on the number of flatIds.
+     * @param request : request object, body is read as a stream.
+     * @param response : response object, results are written to its stream.
+     * @throws IOException : If request body can not be read or response body can not be written.
+     */
+    @PostMapping(value = "/find/flats", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void findFlatsByIdsStream(HttpServletRequest request, HttpServletResponse response) throws IOException
+    {
+        log.info("Received request to find flats by id from a stream");
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        List<String> chunk = new ArrayList<>(this.multiGetChunkSize);
+        int index = 0;
+        try(MappingIterator<String> iterator = this.objectMapper.readerFor(String.class).readValues(request.getInputStream());
+            NdjsonWriter writer = new NdjsonWriter(this.objectMapper, response.getOutputStream(), CommonConstants.STREAM_FLUSH_EVERY))
+        {
+            while(iterator.hasNext())
+            {
+                chunk.add(iterator.next());
+                if(chunk.size() == this.multiGetChunkSize)
+                {
+                    index = this.writeFlatChunk(chunk, index, writer);
+                    chunk.clear();
+                }
+            }
+            if(!chunk.isEmpty())
+            {
+                index = this.writeFlatChunk(chunk, index, writer);
+            }
+        }
+        log.info("Found flats for {} streamed flatIds", index);
+    }
+
+    private int writeFlatChunk(List<String> chunk, int offset, NdjsonWriter writer)
+    {
+        Set<String> distinctFlatIds = new LinkedHashSet<>(chunk);
+        distinctFlatIds.remove(null);
+        Map<String, FlatDto> found = this.flatService.findFlatDtosByFlatIds(distinctFlatIds);
+        int index = offset;
+        for(String flatId : chunk)
+        {
+            writer.write(FlatFindResultDto.builder()
+                    .index(index++)
+                    .flatId(flatId)
+                    .flat(null == flatId ? null : found.get(flatId))
+                    .build());
+        }
+        return index;
+    }
+
+    private PageRequest pageRequest(int page, int size)
+    {
+        return PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), this.maxPageSize));
+    }
+
+    /**
+     * Function to export all flats, in the format the Accept header asks for.
+     * Structure:
+     *  1. Pick the first of EXPORT_MEDIA_TYPES the client accepts, NDJSON when it accepts anything.
+     *  2. Return a streaming body right away, the export runs on an async request thread.
+     *  3. Use flatService to stream flats from database and write each one as it is read, either one flatDto per
+     *     line (NDJSON) or document (CBOR, Smile), or one flatColumnsDto per COLUMN_BATCH_SIZE flats for the
+     *     flat-columns media types.
+     * Memory use does not depend on the number of flats.
+     * @param accept : Accept header of the request.
+     * @return : Streaming body, HttpStatus 200.
+     */
+    @GetMapping(value = "/export/flats", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            CommonConstants.APPLICATION_SMILE_VALUE, CommonConstants.FLAT_COLUMNS_JSON_VALUE, CommonConstants.FLAT_COLUMNS_CBOR_VALUE,
+            CommonConstants.FLAT_COLUMNS_SMILE_VALUE})
+    public ResponseEntity<StreamingResponseBody> exportFlats(@RequestHeader(value = HttpHeaders.ACCEPT, defaultValue = MediaType.ALL_VALUE) String accept)
+    {
+        MediaType mediaType = this.exportMediaType(accept);
+        log.info("Received request to export all flats as {}", mediaType);
+        ObjectMapper exportObjectMapper = this.exportObjectMapper(mediaType);
+        boolean columnar = FLAT_COLUMNS_MEDIA_TYPES.contains(mediaType);
+        String correlationId = MDC.get(CorrelationIdConstants.CORRELATION_ID_LOG_VAR_NAME);
+        StreamingResponseBody body = outputStream -> {
+            MDC.put(CorrelationIdConstants.CORRELATION_ID_LOG_VAR_NAME, correlationId);
+            try(NdjsonWriter writer = new NdjsonWriter(exportObjectMapper, outputStream, columnar ? 1 : CommonConstants.STREAM_FLUSH_EVERY))
+            {
+                if(!columnar)
+                {
+                    this.flatService.exportFlats(writer::write);
+                    return;
+                }
+                FlatColumnsBuilder builder = new FlatColumnsBuilder(CommonConstants.COLUMN_BATCH_SIZE);
+                this.flatService.exportFlats(flatDto -> {
+                    builder.add(flatDto);
+                    if(CommonConstants.COLUMN_BATCH_SIZE == builder.size())
+                    {
+                        writer.write(builder.build());
+                    }
+                });
+                if(0 < builder.size())
+                {
+                    writer.write(builder.build());
+                }
+            }
+            finally
+            {
+                MDC.remove(CorrelationIdConstants.CORRELATION_ID_LOG_VAR_NAME);
+            }
+        };
+        return ResponseEntity.status(HttpStatus.OK).contentType(mediaType).body(body);
+    }
+
+    private MediaType exportMediaType(String accept)
+    {
+        List<MediaType> acceptedMediaTypes = MediaType.parseMediaTypes(accept);
+        MimeTypeUtils.sortBySpecificity(acceptedMediaTypes);
+        for(MediaType acceptedMediaType : acceptedMediaTypes)
+        {
+            for(MediaType exportMediaType : EXPORT_MEDIA_TYPES)
+            {
+                if(acceptedMediaType.includes(exportMediaType))
+                {
+                    return exportMediaType;
+                }
+            }
+        }
+        return MediaType.APPLICATION_NDJSON;
+    }
+
+    private ObjectMapper exportObjectMapper(MediaType mediaType)
+    {
+        if(this.cborHttpMessageConverter.canWrite(FlatDto.class, mediaType))
+        {
+            return this.cborHttpMessageConverter.getObjectMapper();
+        }
+        if(this.smileHttpMessageConverter.canWrite(FlatDto.class, mediaType))
+        {
+            return this.smileHttpMessageConverter.getObjectMapper();
+        }
+        return this.objectMapper;
+    }
+
     /**
      * Function to update occupied status of a flat.
      * Structure:
      *  1. Use flatService to update occupied status.
+     *     If expected status is passed, update only if the flat currently has it, otherwise HttpStatus 409.
      *  2. Return flatDto of updated flat.
      * @param flatId : FlatId for which occupied status will be updated.
      * @param occupiedStatus : This occupied status will be set.
+     * @param expected : Optional, occupied status the flat must currently have.
      * @return : updated flatDto, HttpStatus 200.
      */
     @PatchMapping("/update/occupied-status/{flatId}/{occupiedStatus}")
-    public ResponseEntity<FlatDto> updateOccupiedStatus(@PathVariable String flatId, @PathVariable boolean occupiedStatus)
+    public ResponseEntity<FlatDto> updateOccupiedStatus(@PathVariable String flatId, @PathVariable boolean occupiedStatus,
+                                                        @RequestParam(required = false) Boolean expected)
     {
         log.info("Received request to update occupied status to {}, of flat with id {}",occupiedStatus, flatId);
-        Flat flat = this.flatService.updateOccupiedStatus(flatId,occupiedStatus);
+        Flat flat = null == expected
+                ? this.flatService.updateOccupiedStatus(flatId,occupiedStatus)
+                : this.flatService.updateOccupiedStatusIfMatches(flatId, expected, occupiedStatus);
         FlatDto flatDto = this.flatMapper.flatEntityToFlatDto(flat);
         return ResponseEntity.status(HttpStatus.OK).body(flatDto);
     }
 
+    /**
+     * Function to update occupied status of many flats at once.
+     * Structure:
+     *  1. Collect requested status by flatId, a later entry for the same flatId wins, entries without flatId are ignored.
+     *  2. Use flatService to apply them with bulk update statements.
+     *  3. Return updated row count and missing flatIds.
+     * @param occupancyUpdateDtoList : Requested occupied status of every flat.
+     * @param optimistic : Skip the existence check, missing flatIds are then not reported.
+     * @return : Result of the update, HttpStatus 200.
+     */
+    @PatchMapping("/update/occupied-status")
+    public ResponseEntity<BulkOccupancyResponseDto> updateOccupiedStatuses(@RequestBody List<OccupancyUpdateDto> occupancyUpdateDtoList,
+                                                                           @RequestParam(defaultValue = "false") boolean optimistic)
+    {
+        log.info("Received request to update occupied status of {} flats", occupancyUpdateDtoList.size());
+        Map<String, Boolean> statusByFlatId = new LinkedHashMap<>();
+        for(OccupancyUpdateDto occupancyUpdateDto : occupancyUpdateDtoList)
+        {
+            if(null != occupancyUpdateDto.getFlatId())
+            {
+                statusByFlatId.put(occupancyUpdateDto.getFlatId(), occupancyUpdateDto.isOccupied());
+            }
+        }
+        BulkOccupancyResponseDto response = this.flatService.updateOccupiedStatuses(statusByFlatId, optimistic);
+        response.setReceived(occupancyUpdateDtoList.size());
+        return ResponseEntity.status(HttpStatus.OK).body(response);
+    }
+
     /**
      * Function to delete a flat with flatId.
      * Structure:
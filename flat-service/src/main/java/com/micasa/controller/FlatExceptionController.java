@@ -1,8 +1,11 @@
 package com.micasa.controller;
 
 import com.micasa.exception.BadRequestException;
+import com.micasa.exception.ConflictException;
 import com.micasa.exception.ExceptionModel;
 import com.micasa.exception.ExceptionResponse;
+import com.micasa.exception.ServiceUnavailableException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -38,4 +41,52 @@ public class FlatExceptionController
                 .exceptionResponse(List.of(exceptionModel)).build();
         return ResponseEntity.badRequest().body(exceptionResponse);
     }
+
+    /**
+     * Exception handler to handle ConflictException
+     * Structure:
+     *  1. Build exceptionModel with conflictException object.
+     *  2. Build a exceptionResponse.
+     *  3. Build a responseEntity.
+     *  4. Return responseEntity, HttpStatus: 409;
+     * @param conflictException : Exception object.
+     * @return : ResponseEntity with status 409.
+     */
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<ExceptionResponse> handleConflictException(ConflictException conflictException)
+    {
+        ExceptionModel exceptionModel = ExceptionModel.builder()
+                .fieldName(conflictException.getFieldName())
+                .message(conflictException.getMessage().concat(conflictException.getFieldValue()))
+                .timestamp(conflictException.getTimestamp())
+                .moreInfo(conflictException.getMoreInfo())
+                .build();
+        ExceptionResponse exceptionResponse = ExceptionResponse.builder()
+                .exceptionResponse(List.of(exceptionModel)).build();
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(exceptionResponse);
+    }
+
+    /**
+     * Exception handler to handle ServiceUnavailableException
+     * Structure:
+     *  1. Build exceptionModel with serviceUnavailableException object.
+     *  2. Build a exceptionResponse.
+     *  3. Build a responseEntity.
+     *  4. Return responseEntity, HttpStatus: 503;
+     * @param serviceUnavailableException : Exception object.
+     * @return : ResponseEntity with status 503.
+     */
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<ExceptionResponse> handleServiceUnavailableException(ServiceUnavailableException serviceUnavailableException)
+    {
+        ExceptionModel exceptionModel = ExceptionModel.builder()
+                .fieldName(serviceUnavailableException.getFieldName())
+                .message(serviceUnavailableException.getMessage().concat(serviceUnavailableException.getFieldValue()))
+                .timestamp(serviceUnavailableException.getTimestamp())
+                .moreInfo(serviceUnavailableException.getMoreInfo())
+                .build();
+        ExceptionResponse exceptionResponse = ExceptionResponse.builder()
+                .exceptionResponse(List.of(exceptionModel)).build();
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(exceptionResponse);
+    }
 }
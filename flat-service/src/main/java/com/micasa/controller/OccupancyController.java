@@ -0,0 +1,98 @@
+package com.micasa.controller;
+
+import com.micasa.dto.OccupancyStatsDto;
+import com.micasa.index.OccupancyIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Controller layer to expose occupancy statistics, answered from the in-memory occupancy index.
+ * Methods:
+ *  1. getSocietyOccupancy(String) : Occupancy counts of a society.
+ *  2. getBlockOccupancy(String) : Occupancy counts of a block.
+ *  3. getSocietyVacantFlats(String, int) : FlatIds of vacant flats in a society.
+ *  4. getBlockVacantFlats(String, int) : FlatIds of vacant flats in a block.
+ */
+@Slf4j
+@RestController
+public class OccupancyController
+{
+    //OccupancyIndex instance.
+    private final OccupancyIndex occupancyIndex;
+    //Largest number of flatIds a client may request on vacancy endpoints.
+    private final int maxVacantLimit;
+
+    @Autowired
+    public OccupancyController(OccupancyIndex occupancyIndex,
+                               @Value("${micasa.flat.page.max-size:500}") int maxVacantLimit)
+    {
+        this.occupancyIndex = occupancyIndex;
+        this.maxVacantLimit = maxVacantLimit;
+    }
+
+    /**
+     * Function to read occupancy counts of a society.
+     * @param societyId : Society to read.
+     * @return : Total, occupied and vacant counts, HttpStatus 200.
+     */
+    @GetMapping("/stats/occupancy/society/{societyId}")
+    public ResponseEntity<OccupancyStatsDto> getSocietyOccupancy(@PathVariable String societyId)
+    {
+        log.debug("Received request for occupancy of society: {}", societyId);
+        return ResponseEntity.status(HttpStatus.OK).body(this.occupancyIndex.societyStats(societyId));
+    }
+
+    /**
+     * Function to read occupancy counts of a block.
+     * @param flatBlock : Block to read.
+     * @return : Total, occupied and vacant counts, HttpStatus 200.
+     */
+    @GetMapping("/stats/occupancy/block/{flatBlock}")
+    public ResponseEntity<OccupancyStatsDto> getBlockOccupancy(@PathVariable String flatBlock)
+    {
+        log.debug("Received request for occupancy of block: {}", flatBlock);
+        return ResponseEntity.status(HttpStatus.OK).body(this.occupancyIndex.blockStats(flatBlock));
+    }
+
+    /**
+     * Function to list vacant flats of a society.
+     * @param societyId : Society to read.
+     * @param limit : Maximum number of flatIds, capped at micasa.flat.page.max-size.
+     * @return : FlatIds of vacant flats, HttpStatus 200.
+     */
+    @GetMapping("/stats/occupancy/society/{societyId}/vacant")
+    public ResponseEntity<List<String>> getSocietyVacantFlats(@PathVariable String societyId,
+                                                              @RequestParam(defaultValue = "50") int limit)
+    {
+        log.debug("Received request for vacant flats of society: {}", societyId);
+        return ResponseEntity.status(HttpStatus.OK).body(this.occupancyIndex.societyVacantFlatIds(societyId, this.clampLimit(limit)));
+    }
+
+    /**
+     * Function to list vacant flats of a block.
+     * @param flatBlock : Block to read.
+     * @param limit : Maximum number of flatIds, capped at micasa.flat.page.max-size.
+     * @return : FlatIds of vacant flats, HttpStatus 200.
+     */
+    @GetMapping("/stats/occupancy/block/{flatBlock}/vacant")
+    public ResponseEntity<List<String>> getBlockVacantFlats(@PathVariable String flatBlock,
+                                                            @RequestParam(defaultValue = "50") int limit)
+    {
+        log.debug("Received request for vacant flats of block: {}", flatBlock);
+        return ResponseEntity.status(HttpStatus.OK).body(this.occupancyIndex.blockVacantFlatIds(flatBlock, this.clampLimit(limit)));
+    }
+
+    private int clampLimit(int limit)
+    {
+        return Math.max(0, Math.min(limit, this.maxVacantLimit));
+    }
+}
@@ -0,0 +1,127 @@
+package com.micasa.controller;
+
+import com.micasa.dto.FlatDto;
+import com.micasa.dto.FlatPageDto;
+import com.micasa.service.ReactiveFlatService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Controller layer of the reactive mode (profile "reactive"), exposes the read endpoints of FlatController on WebFlux.
+ * Methods:
+ *  1. findFlatById(String) : Look for a flat with flatId.
+ *  2. findFlatsByBlock(String, int, int) : Look for a page of flats in a block.
+ *  3. findFlatsByFlatNumber(String, int, int) : Look for a page of flats with a flat number.
+ *  4. findFlatByBlockAndFlatNumber(String, String) : Look for a flat with block and flat number.
+ *  5. exportFlats() : Stream all flats as NDJSON.
+ * Paths, parameters and responses are the same as in FlatController.
+ */
+@Slf4j
+@RestController
+@Profile("reactive")
+public class ReactiveFlatController
+{
+    //ReactiveFlatService instance.
+    private final ReactiveFlatService flatService;
+    //Largest page size a client may request on lookup endpoints.
+    private final int maxPageSize;
+
+    @Autowired
+    public ReactiveFlatController(ReactiveFlatService flatService,
+                                  @Value("${micasa.flat.page.max-size:500}") int maxPageSize)
+    {
+        this.flatService = flatService;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Function to find a flat by using flatId.
+     * @param flatId : Look for flat with this flatId.
+     * @return : flatDto of the flat found, HttpStatus 200.
+     */
+    @GetMapping("/find/flatId/{flatId}")
+    public Mono<ResponseEntity<FlatDto>> findFlatById(@PathVariable String flatId)
+    {
+        log.info("Received request to find a flat with id {}", flatId);
+        return this.flatService.findFlatDtoByFlatId(flatId)
+                .map(flatDto -> ResponseEntity.status(HttpStatus.OK).body(flatDto));
+    }
+
+    /**
+     * Function to find a page of flats in a block.
+     * @param flatBlock : Look for flats in this block.
+     * @param page : Zero based page number.
+     * @param size : Page size, capped to maxPageSize.
+     * @return : flatPageDto of the found flats, HttpStatus 200.
+     */
+    @GetMapping("/find/flatBlock/{flatBlock}")
+    public Mono<ResponseEntity<FlatPageDto>> findFlatsByBlock(@PathVariable String flatBlock,
+                                                              @RequestParam(defaultValue = "0") int page,
+                                                              @RequestParam(defaultValue = "50") int size)
+    {
+        log.info("Received request to find flats in block {}, page {}", flatBlock, page);
+        return this.flatService.findFlatPageByBlockNumber(flatBlock, this.pageRequest(page, size))
+                .map(flatPageDto -> ResponseEntity.status(HttpStatus.OK).body(flatPageDto));
+    }
+
+    /**
+     * Function to find a page of flats with a flat number.
+     * @param flatNumber : Look for flats with this flat number.
+     * @param page : Zero based page number.
+     * @param size : Page size, capped to maxPageSize.
+     * @return : flatPageDto of the found flats, HttpStatus 200.
+     */
+    @GetMapping("/find/flatNumber/{flatNumber}")
+    public Mono<ResponseEntity<FlatPageDto>> findFlatsByFlatNumber(@PathVariable String flatNumber,
+                                                                   @RequestParam(defaultValue = "0") int page,
+                                                                   @RequestParam(defaultValue = "50") int size)
+    {
+        log.info("Received request to find flats with flat number {}, page {}", flatNumber, page);
+        return this.flatService.findFlatPageByFlatNumber(flatNumber, this.pageRequest(page, size))
+                .map(flatPageDto -> ResponseEntity.status(HttpStatus.OK).body(flatPageDto));
+    }
+
+    /**
+     * Function to find a flat by block and flat number.
+     * @param flatBlock : Look for flat in this block.
+     * @param flatNumber : Look for flat with this flat number.
+     * @return : flatDto of the flat found, HttpStatus 200.
+     */
+    @GetMapping("/find/flatBlock/{flatBlock}/flatNumber/{flatNumber}")
+    public Mono<ResponseEntity<FlatDto>> findFlatByBlockAndFlatNumber(@PathVariable String flatBlock, @PathVariable String flatNumber)
+    {
+        log.info("Received request to find flat {} in block {}", flatNumber, flatBlock);
+        return this.flatService.findFlatDtoByBlockNumberAndFlatNumber(flatBlock, flatNumber)
+                .map(flatDto -> ResponseEntity.status(HttpStatus.OK).body(flatDto));
+    }
+
+    /**
+     * Function to export all flats as NDJSON, one flatDto per line.
+     * WebFlux writes each flatDto as it arrives and requests more only as the client reads,
+     * so memory use does not depend on the number of flats.
+     * @return : Flux of all flatDtos, HttpStatus 200.
+     */
+    @GetMapping(value = "/export/flats", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<FlatDto> exportFlats()
+    {
+        log.info("Received request to export all flats");
+        return this.flatService.exportFlats();
+    }
+
+    private PageRequest pageRequest(int page, int size)
+    {
+        return PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), this.maxPageSize));
+    }
+}
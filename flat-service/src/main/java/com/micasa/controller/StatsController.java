@@ -0,0 +1,42 @@
+package com.micasa.controller;
+
+import com.micasa.cache.FlatCache;
+import com.micasa.dto.CacheStatsDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Controller layer to expose operational statistics of flat-service.
+ * Methods:
+ *  1. getCacheStats() : Counters of in-process caches.
+ */
+@Slf4j
+@RestController
+public class StatsController
+{
+    //FlatCache instance.
+    private final FlatCache flatCache;
+
+    @Autowired
+    public StatsController(FlatCache flatCache)
+    {
+        this.flatCache = flatCache;
+    }
+
+    /**
+     * Function to read hit/miss/eviction counters of in-process caches.
+     * @return : Counters by cache name, HttpStatus 200.
+     */
+    @GetMapping("/stats/cache")
+    public ResponseEntity<Map<String, CacheStatsDto>> getCacheStats()
+    {
+        log.debug("Received request for cache stats");
+        return ResponseEntity.status(HttpStatus.OK).body(this.flatCache.stats());
+    }
+}
@@ -0,0 +1,23 @@
+package com.micasa.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Response of the multi-get endpoint.
+ * flats are in order of the requested flatIds, each flat once, missing flatIds are listed instead of failing the request.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkFindResponseDto
+{
+    private int received;
+    private List<FlatDto> flats;
+    private List<String> missingFlatIds;
+}
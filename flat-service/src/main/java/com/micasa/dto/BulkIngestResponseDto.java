@@ -0,0 +1,24 @@
+package com.micasa.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Response of the bulk ingestion endpoints with per-row results.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkIngestResponseDto
+{
+    private int received;
+    private int created;
+    private int conflicts;
+    private int failed;
+    private List<FlatIngestResultDto> results;
+}
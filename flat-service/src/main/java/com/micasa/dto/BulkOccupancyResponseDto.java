@@ -0,0 +1,27 @@
+package com.micasa.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Response of the batch occupancy update endpoint.
+ * missingFlatIds is only filled when existence was checked, in optimistic mode it is null and
+ * updated (rows matched by the update statements) tells how many of the distinct flatIds exist.
+ * queued is set when write-behind is enabled, updated then counts queued flats, written shortly after.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkOccupancyResponseDto
+{
+    private int received;
+    private int updated;
+    private boolean optimistic;
+    private boolean queued;
+    private List<String> missingFlatIds;
+}
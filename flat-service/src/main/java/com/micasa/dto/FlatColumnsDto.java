@@ -0,0 +1,26 @@
+package com.micasa.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Flats in columnar form, one column per field of flatDto with the same flat at the same index in every column.
+ * Each society is included once in societies, societyIndex points into it (-1 for a flat without society).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlatColumnsDto
+{
+    private List<SocietyDto> societies;
+    private List<String> flatId;
+    private List<String> flatNumber;
+    private List<String> flatBlock;
+    private boolean[] occupied;
+    private int[] societyIndex;
+}
@@ -0,0 +1,21 @@
+package com.micasa.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A single page of flats in columnar form, the columnar counterpart of flatPageDto.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlatColumnsPageDto
+{
+    private FlatColumnsDto content;
+    private int page;
+    private int size;
+    private boolean hasNext;
+}
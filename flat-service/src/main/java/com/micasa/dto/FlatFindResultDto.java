@@ -0,0 +1,21 @@
+package com.micasa.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of a streamed multi-get, for the flatId at index of the request stream.
+ * flat is null when no flat exists with flatId.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlatFindResultDto
+{
+    private int index;
+    private String flatId;
+    private FlatDto flat;
+}
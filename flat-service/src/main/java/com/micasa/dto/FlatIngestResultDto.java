@@ -0,0 +1,36 @@
+package com.micasa.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Result of ingesting a single flat through the bulk ingestion endpoints.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlatIngestResultDto
+{
+    private int index;
+    private Status status;
+    private String flatId;
+    private String flatNumber;
+    private String flatBlock;
+    private String message;
+
+    /**
+     * Outcome of a single row.
+     *  1. CREATED : Flat was inserted.
+     *  2. CONFLICT : A flat with same flatNumber and flatBlock already exists.
+     *  3. FAILED : Flat was rejected or could not be inserted.
+     */
+    public enum Status
+    {
+        CREATED,
+        CONFLICT,
+        FAILED
+    }
+}
@@ -0,0 +1,24 @@
+package com.micasa.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A single page of flats returned by the lookup endpoints.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlatPageDto implements Serializable
+{
+    private List<FlatDto> content;
+    private int page;
+    private int size;
+    private boolean hasNext;
+}
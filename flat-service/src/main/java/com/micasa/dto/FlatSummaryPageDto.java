@@ -0,0 +1,25 @@
+package com.micasa.dto;
+
+import com.micasa.projection.FlatSummary;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A single page of flat summaries of one society, the society is included once for the whole page.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlatSummaryPageDto
+{
+    private SocietyDto society;
+    private List<FlatSummary> content;
+    private int page;
+    private int size;
+    private boolean hasNext;
+}
@@ -0,0 +1,20 @@
+package com.micasa.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Occupancy counts of a society or a block.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OccupancyStatsDto
+{
+    private int total;
+    private int occupied;
+    private int vacant;
+}
@@ -0,0 +1,19 @@
+package com.micasa.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Requested occupied status of a single flat in a batch occupancy update.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OccupancyUpdateDto
+{
+    private String flatId;
+    private boolean occupied;
+}
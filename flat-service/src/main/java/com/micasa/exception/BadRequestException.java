@@ -17,4 +17,15 @@ public class BadRequestException extends RuntimeException
     private String fieldValue;
     private String fieldName;
     private String moreInfo;
+
+    /**
+     * BadRequestException reports a client error and is always handled by FlatExceptionController,
+     * its stack trace is never used, so it is not filled in.
+     * @return : this exception.
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace()
+    {
+        return this;
+    }
 }
@@ -0,0 +1,30 @@
+package com.micasa.exception;
+
+import lombok.*;
+
+/**
+ * ConflictException class, thrown when a write loses against a concurrent write.
+ */
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConflictException extends RuntimeException
+{
+    private String message;
+    private long timestamp;
+    private String fieldValue;
+    private String fieldName;
+    private String moreInfo;
+
+    /**
+     * ConflictException is always handled by FlatExceptionController, its stack trace is never used.
+     * @return : this exception.
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace()
+    {
+        return this;
+    }
+}
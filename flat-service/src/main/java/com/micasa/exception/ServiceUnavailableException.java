@@ -0,0 +1,30 @@
+package com.micasa.exception;
+
+import lombok.*;
+
+/**
+ * ServiceUnavailableException class, thrown when a write can not be accepted right now, e.g. the write-behind queue stays full.
+ */
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ServiceUnavailableException extends RuntimeException
+{
+    private String message;
+    private long timestamp;
+    private String fieldValue;
+    private String fieldName;
+    private String moreInfo;
+
+    /**
+     * ServiceUnavailableException is always handled by FlatExceptionController, its stack trace is never used.
+     * @return : this exception.
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace()
+    {
+        return this;
+    }
+}
@@ -0,0 +1,469 @@
+package com.micasa.index;
+
+import com.micasa.common.util.TransactionUtils;
+import com.micasa.dto.OccupancyStatsDto;
+import com.micasa.model.Flat;
+import com.micasa.projection.FlatOccupancyView;
+import com.micasa.repository.FlatRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * In-memory occupancy index of all flats, answers occupancy counts without touching the database.
+ * Structure:
+ *  1. Every flatId gets a dense int slot, slots of deleted flats are reused.
+ *  2. occupiedSlots is a bitset over slots.
+ *  3. Every society and every block is a group with a bitset of member slots and running
+ *     total/occupied counters, so counts are O(1) and vacancy lists scan only words of the bitset.
+ * The index is rebuilt from database at startup and kept current after every committed write of flatService.
+ */
+@Slf4j
+@Component
+public class OccupancyIndex
+{
+    private final FlatRepository flatRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    //Guarded by lock.
+    private Slots slots = new Slots();
+    //Updates applied while a rebuild streams flats, replayed on the rebuilt slots. Guarded by lock, null outside a rebuild.
+    private List<Consumer<Slots>> rebuildUpdates;
+
+    @Autowired
+    public OccupancyIndex(FlatRepository flatRepository, PlatformTransactionManager transactionManager)
+    {
+        this.flatRepository = flatRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Function to rebuild the index from database once the application is ready.
+     * Structure:
+     *  1. Start recording updates, the current index keeps serving reads and writes.
+     *  2. Stream all flats into new slots without holding the lock.
+     *  3. Under the write lock replay recorded updates on the new slots in order and swap them in.
+     * An update replayed over a stream that already saw it writes the same value again, so none is lost.
+     * Rebuilds run one at a time, see FlatChangeLogInvalidator.invalidateAll.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild()
+    {
+        long start = System.currentTimeMillis();
+        this.withWriteLock(() -> this.rebuildUpdates = new ArrayList<>());
+        Slots rebuilt = new Slots();
+        try
+        {
+            int count = this.transactionTemplate.execute(status -> {
+                int loaded = 0;
+                try(Stream<FlatOccupancyView> views = this.flatRepository.streamOccupancy())
+                {
+                    Iterator<FlatOccupancyView> iterator = views.iterator();
+                    while(iterator.hasNext())
+                    {
+                        FlatOccupancyView view = iterator.next();
+                        rebuilt.put(view.getFlatId(), view.getSocietyId(), view.getFlatBlock(), view.isOccupied());
+                        loaded++;
+                    }
+                }
+                return loaded;
+            });
+            this.withWriteLock(() -> {
+                this.rebuildUpdates.forEach(update -> update.accept(rebuilt));
+                log.info("Occupancy index rebuilt with {} flats and {} replayed updates in {} ms", count,
+                        this.rebuildUpdates.size(), System.currentTimeMillis() - start);
+                this.slots = rebuilt;
+            });
+        }
+        finally
+        {
+            this.withWriteLock(() -> this.rebuildUpdates = null);
+        }
+    }
+
+    /**
+     * Function to add or replace a flat once the current transaction commits.
+     * @param flat : Saved flat.
+     */
+    public void putAfterCommit(Flat flat)
+    {
+        String flatId = flat.getFlatId();
+        String societyId = null == flat.getSociety() ? null : flat.getSociety().getSocietyId();
+        String flatBlock = flat.getFlatBlock();
+        boolean occupied = flat.isOccupied();
+        TransactionUtils.afterCommit(() -> this.update(slots -> slots.put(flatId, societyId, flatBlock, occupied)));
+    }
+
+    /**
+     * Function to set occupied status of a flat once the current transaction commits.
+     * @param flatId : Updated flat.
+     * @param occupied : New occupied status.
+     */
+    public void setOccupiedAfterCommit(String flatId, boolean occupied)
+    {
+        TransactionUtils.afterCommit(() -> this.update(slots -> slots.setOccupied(flatId, occupied)));
+    }
+
+    /**
+     * Function to set occupied status of many flats once the current transaction commits, under one lock.
+     * Unknown flatIds are ignored.
+     * @param flatIds : Updated flats.
+     * @param occupied : New occupied status.
+     */
+    public void setOccupiedAfterCommit(Collection<String> flatIds, boolean occupied)
+    {
+        List<String> updatedFlatIds = List.copyOf(flatIds);
+        TransactionUtils.afterCommit(() -> this.update(slots -> updatedFlatIds.forEach(flatId -> slots.setOccupied(flatId, occupied))));
+    }
+
+    /**
+     * Function to remove a flat once the current transaction commits.
+     * @param flatId : Deleted flat.
+     */
+    public void removeAfterCommit(String flatId)
+    {
+        TransactionUtils.afterCommit(() -> this.update(slots -> slots.remove(flatId)));
+    }
+
+    /**
+     * Function to read flats again from database after another instance changed them.
+     * Flats found are put, flats no longer present are removed.
+     * @param flatIds : Changed flats.
+     */
+    public void refresh(Collection<String> flatIds)
+    {
+        if(flatIds.isEmpty())
+        {
+            return;
+        }
+        List<FlatOccupancyView> views = this.transactionTemplate.execute(status -> this.flatRepository.findOccupancyByFlatIdIn(flatIds));
+        Set<String> removedFlatIds = new HashSet<>(flatIds);
+        views.forEach(view -> removedFlatIds.remove(view.getFlatId()));
+        this.update(slots -> {
+            for(FlatOccupancyView view : views)
+            {
+                slots.put(view.getFlatId(), view.getSocietyId(), view.getFlatBlock(), view.isOccupied());
+            }
+            removedFlatIds.forEach(slots::remove);
+        });
+    }
+
+    /**
+     * Function to list all flats of a society.
+     * @param societyId : Society to read.
+     * @return : FlatIds of the society.
+     */
+    public List<String> societyFlatIds(String societyId)
+    {
+        this.lock.readLock().lock();
+        try
+        {
+            Slots slots = this.slots;
+            Group group = slots.societies.get(societyId);
+            if(null == group)
+            {
+                return List.of();
+            }
+            return group.members.stream().mapToObj(slot -> slots.flatIdBySlot[slot]).toList();
+        }
+        finally
+        {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Function to read occupancy counts of a society.
+     * @param societyId : Society to read.
+     * @return : Counts, zero for an unknown society.
+     */
+    public OccupancyStatsDto societyStats(String societyId)
+    {
+        return this.stats(true, societyId);
+    }
+
+    /**
+     * Function to read occupancy counts of a block.
+     * @param flatBlock : Block to read.
+     * @return : Counts, zero for an unknown block.
+     */
+    public OccupancyStatsDto blockStats(String flatBlock)
+    {
+        return this.stats(false, flatBlock);
+    }
+
+    /**
+     * Function to list vacant flats of a society.
+     * @param societyId : Society to read.
+     * @param limit : Maximum number of flatIds returned.
+     * @return : FlatIds of vacant flats.
+     */
+    public List<String> societyVacantFlatIds(String societyId, int limit)
+    {
+        return this.vacantFlatIds(true, societyId, limit);
+    }
+
+    /**
+     * Function to list vacant flats of a block.
+     * @param flatBlock : Block to read.
+     * @param limit : Maximum number of flatIds returned.
+     * @return : FlatIds of vacant flats.
+     */
+    public List<String> blockVacantFlatIds(String flatBlock, int limit)
+    {
+        return this.vacantFlatIds(false, flatBlock, limit);
+    }
+
+    private OccupancyStatsDto stats(boolean society, String key)
+    {
+        this.lock.readLock().lock();
+        try
+        {
+            Group group = (society ? this.slots.societies : this.slots.blocks).get(key);
+            if(null == group)
+            {
+                return new OccupancyStatsDto(0, 0, 0);
+            }
+            return new OccupancyStatsDto(group.total, group.occupied, group.total - group.occupied);
+        }
+        finally
+        {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private List<String> vacantFlatIds(boolean society, String key, int limit)
+    {
+        this.lock.readLock().lock();
+        try
+        {
+            Slots slots = this.slots;
+            Group group = (society ? slots.societies : slots.blocks).get(key);
+            if(null == group)
+            {
+                return List.of();
+            }
+            List<String> flatIds = new ArrayList<>(Math.min(limit, group.total - group.occupied));
+            for(int slot = group.members.nextSetBit(0); slot >= 0 && flatIds.size() < limit; slot = group.members.nextSetBit(slot + 1))
+            {
+                if(!slots.occupiedSlots.get(slot))
+                {
+                    flatIds.add(slots.flatIdBySlot[slot]);
+                }
+            }
+            return flatIds;
+        }
+        finally
+        {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Function to apply an update to the current slots, and record it for replay while a rebuild runs.
+     */
+    private void update(Consumer<Slots> update)
+    {
+        this.withWriteLock(() -> {
+            update.accept(this.slots);
+            if(null != this.rebuildUpdates)
+            {
+                this.rebuildUpdates.add(update);
+            }
+        });
+    }
+
+    private void withWriteLock(Runnable action)
+    {
+        this.lock.writeLock().lock();
+        try
+        {
+            action.run();
+        }
+        finally
+        {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Slots, bitsets and groups of the index. Not thread safe, the index guards it with its lock,
+     * a rebuild fills a new instance on its own thread.
+     */
+    static final class Slots
+    {
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private final Map<String, Integer> slotByFlatId = new HashMap<>();
+        private final Map<String, Group> societies = new HashMap<>();
+        private final Map<String, Group> blocks = new HashMap<>();
+        private final BitSet occupiedSlots = new BitSet();
+        private String[] flatIdBySlot = new String[INITIAL_CAPACITY];
+        private Group[] societyBySlot = new Group[INITIAL_CAPACITY];
+        private Group[] blockBySlot = new Group[INITIAL_CAPACITY];
+        private int[] freeSlots = new int[INITIAL_CAPACITY];
+        private int freeSlotCount;
+        private int nextSlot;
+
+        void put(String flatId, String societyId, String flatBlock, boolean occupied)
+        {
+            this.remove(flatId);
+            int slot = this.allocateSlot();
+            this.slotByFlatId.put(flatId, slot);
+            this.flatIdBySlot[slot] = flatId;
+            this.occupiedSlots.set(slot, occupied);
+            this.societyBySlot[slot] = join(this.societies, societyId, slot, occupied);
+            this.blockBySlot[slot] = join(this.blocks, flatBlock, slot, occupied);
+        }
+
+        void setOccupied(String flatId, boolean occupied)
+        {
+            Integer slot = this.slotByFlatId.get(flatId);
+            if(null == slot || this.occupiedSlots.get(slot) == occupied)
+            {
+                return;
+            }
+            this.occupiedSlots.set(slot, occupied);
+            int delta = occupied ? 1 : -1;
+            if(null != this.societyBySlot[slot])
+            {
+                this.societyBySlot[slot].occupied += delta;
+            }
+            if(null != this.blockBySlot[slot])
+            {
+                this.blockBySlot[slot].occupied += delta;
+            }
+        }
+
+        void remove(String flatId)
+        {
+            Integer slot = this.slotByFlatId.remove(flatId);
+            if(null == slot)
+            {
+                return;
+            }
+            boolean occupied = this.occupiedSlots.get(slot);
+            leave(this.societies, this.societyBySlot[slot], slot, occupied);
+            leave(this.blocks, this.blockBySlot[slot], slot, occupied);
+            this.occupiedSlots.clear(slot);
+            this.flatIdBySlot[slot] = null;
+            this.societyBySlot[slot] = null;
+            this.blockBySlot[slot] = null;
+            if(this.freeSlotCount == this.freeSlots.length)
+            {
+                this.freeSlots = Arrays.copyOf(this.freeSlots, this.freeSlots.length * 2);
+            }
+            this.freeSlots[this.freeSlotCount++] = slot;
+        }
+
+        /**
+         * @return : Slot of the flat, -1 if the flat is not indexed.
+         */
+        int slotOf(String flatId)
+        {
+            return this.slotByFlatId.getOrDefault(flatId, -1);
+        }
+
+        boolean isOccupied(int slot)
+        {
+            return this.occupiedSlots.get(slot);
+        }
+
+        /**
+         * @return : Member slots of the group, empty for an unknown group.
+         */
+        BitSet members(boolean society, String key)
+        {
+            Group group = (society ? this.societies : this.blocks).get(key);
+            return null == group ? new BitSet() : (BitSet) group.members.clone();
+        }
+
+        int groupCount(boolean society)
+        {
+            return (society ? this.societies : this.blocks).size();
+        }
+
+        int slotCount()
+        {
+            return this.nextSlot;
+        }
+
+        private int allocateSlot()
+        {
+            if(this.freeSlotCount > 0)
+            {
+                return this.freeSlots[--this.freeSlotCount];
+            }
+            if(this.nextSlot == this.flatIdBySlot.length)
+            {
+                int capacity = this.flatIdBySlot.length * 2;
+                this.flatIdBySlot = Arrays.copyOf(this.flatIdBySlot, capacity);
+                this.societyBySlot = Arrays.copyOf(this.societyBySlot, capacity);
+                this.blockBySlot = Arrays.copyOf(this.blockBySlot, capacity);
+            }
+            return this.nextSlot++;
+        }
+
+        private static Group join(Map<String, Group> groups, String key, int slot, boolean occupied)
+        {
+            if(null == key)
+            {
+                return null;
+            }
+            Group group = groups.computeIfAbsent(key, Group::new);
+            group.members.set(slot);
+            group.total++;
+            if(occupied)
+            {
+                group.occupied++;
+            }
+            return group;
+        }
+
+        private static void leave(Map<String, Group> groups, Group group, int slot, boolean occupied)
+        {
+            if(null == group)
+            {
+                return;
+            }
+            group.members.clear(slot);
+            group.total--;
+            if(occupied)
+            {
+                group.occupied--;
+            }
+            if(0 == group.total)
+            {
+                groups.remove(group.key);
+            }
+        }
+    }
+
+    /**
+     * Flats of a society or a block.
+     */
+    private static class Group
+    {
+        //SocietyId or flatBlock, the key of the group in its map.
+        private final String key;
+        private final BitSet members = new BitSet();
+        private int total;
+        private int occupied;
+
+        private Group(String key)
+        {
+            this.key = key;
+        }
+    }
+}
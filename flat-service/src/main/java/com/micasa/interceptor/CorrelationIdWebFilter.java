@@ -0,0 +1,63 @@
+package com.micasa.interceptor;
+
+import com.micasa.common.constants.CorrelationIdConstants;
+import io.micrometer.context.ContextRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * Reactive mode counterpart of LoggingRequestInterceptor, sets correlationId to logs.
+ * A request hops between threads, so correlationId is kept in the Reactor context of the request instead of the MDC.
+ * It is registered with the context-propagation ContextRegistry, and with spring.reactor.context-propagation=auto
+ * Reactor restores it to the MDC around every operator, so logs of any thread handling the request carry it.
+ */
+@Slf4j
+@Component
+@Profile("reactive")
+public class CorrelationIdWebFilter implements WebFilter
+{
+    //Variable name that will be used in logs and as key in the Reactor context.
+    private static final String CORRELATION_ID_LOG_VAR_NAME = CorrelationIdConstants.CORRELATION_ID_LOG_VAR_NAME;
+
+    public CorrelationIdWebFilter()
+    {
+        ContextRegistry.getInstance().registerThreadLocalAccessor(CORRELATION_ID_LOG_VAR_NAME,
+                () -> MDC.get(CORRELATION_ID_LOG_VAR_NAME),
+                correlationId -> MDC.put(CORRELATION_ID_LOG_VAR_NAME, correlationId),
+                () -> MDC.remove(CORRELATION_ID_LOG_VAR_NAME));
+    }
+
+    /**
+     * This filters each request.
+     * Structure:
+     *  1. Look for correlationId header.
+     *      If absent
+     *          1.1 Generate new correlationId.
+     *  2. Put correlationId in the Reactor context of the rest of the chain.
+     * @param exchange : exchange object.
+     * @param chain : filter chain.
+     * @return : Completion of the request.
+     */
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain)
+    {
+        String headerValue = exchange.getRequest().getHeaders().getFirst(CorrelationIdConstants.CORRELATION_ID_HEADER);
+        String correlationId = null == headerValue ? UUID.randomUUID().toString() : headerValue;
+        return chain.filter(exchange)
+                .doFirst(() -> {
+                    if(null == headerValue)
+                    {
+                        log.info("No correlation-id present in headers, generated new correlation-id: {}", correlationId);
+                    }
+                })
+                .contextWrite(context -> context.put(CORRELATION_ID_LOG_VAR_NAME, correlationId));
+    }
+}
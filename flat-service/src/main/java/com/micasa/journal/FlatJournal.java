@@ -0,0 +1,699 @@
+package com.micasa.journal;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Segmented, memory-mapped append-only journal of flat mutations.
+ * Files in directory:
+ *  1. segment-{first sequence}.log : Preallocated files of segmentSize bytes. Records are appended until one does
+ *     not fit, then the segment is forced and the next one is started. Space after the last record is zero.
+ *  2. checkpoint : Highest sequence known to be in the database, with its crc32c.
+ * Record: int body length, int crc32c of body, body. Body: long sequence, byte type, flatId, for ADD also flatNumber,
+ * flatBlock and societyId, for ADD and OCCUPANCY a byte occupied. Strings are a short byte count (-1 for null) and UTF-8.
+ * Durability:
+ *  1. append copies records into the mapped segment and returns their sequence, it does not wait for the disk.
+ *     A record larger than a segment is rejected before anything is appended.
+ *  2. awaitDurable blocks until a force covered the sequence. One sync thread forces everything appended since its
+ *     last force, so callers waiting at the same time share a single fsync (group commit).
+ *  3. checkpoint is called after the database committed, segments holding only older records are deleted.
+ *  4. A failed force is final: waiting and later appends fail, records not covered by a force are never acknowledged.
+ * open replays records after the checkpoint, a segment is read up to its first torn or corrupt record.
+ * Appends then go to a new segment. A record can be replayed again if the process stops between database commit
+ * and checkpoint, so applying a record must be harmless the second time.
+ */
+@Slf4j
+public class FlatJournal implements Closeable
+{
+    private static final String METRIC_PREFIX = "micasa.flat.journal";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int MIN_SEGMENT_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    //Signalled on append, wakes the sync thread.
+    private final Condition appended = this.lock.newCondition();
+    //Signalled after every force, wakes callers of awaitDurable.
+    private final Condition synced = this.lock.newCondition();
+    //Segment files by first sequence, the last one is appended to. Guarded by lock.
+    private final NavigableMap<Long, Path> segments = new TreeMap<>();
+    //One checkpoint write at a time, appends are not blocked meanwhile.
+    private final Object checkpointLock = new Object();
+    private final Timer syncTimer;
+    private final DistributionSummary groupSize;
+    private final Counter appendedCounter;
+    private MappedByteBuffer segment;
+    //Position in segment up to which it was forced.
+    private int syncedPosition;
+    private long lastSequence;
+    private long durableSequence;
+    private volatile long checkpointSequence;
+    private volatile int segmentCount;
+    private boolean opened;
+    private boolean closed;
+    private IOException syncFailure;
+    private Thread syncThread;
+
+    public FlatJournal(Path directory, long segmentSize, MeterRegistry meterRegistry)
+    {
+        this.directory = directory;
+        this.segmentSize = (int) Math.max(MIN_SEGMENT_SIZE, Math.min(segmentSize, Integer.MAX_VALUE));
+        this.syncTimer = Timer.builder(METRIC_PREFIX + ".sync")
+                .description("Time of one force of the journal")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.groupSize = DistributionSummary.builder(METRIC_PREFIX + ".group_size")
+                .description("Records made durable by one force")
+                .register(meterRegistry);
+        this.appendedCounter = Counter.builder(METRIC_PREFIX + ".appended")
+                .description("Records appended to the journal")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".segments", this, journal -> journal.segmentCount)
+                .description("Segment files of the journal")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Function to replay the journal and open it for appending.
+     * Structure:
+     *  1. Read the checkpoint.
+     *  2. Read every segment in order and pass records after the checkpoint to consumer.
+     *  3. Delete segments without valid records and segments holding only checkpointed records.
+     *  4. Start a new segment after the last valid record and start the sync thread.
+     * @param consumer : Receives replayed records with their sequence, in order.
+     * @throws IOException : If the directory can not be read or the new segment can not be created.
+     */
+    public void open(ObjLongConsumer<JournalRecord> consumer) throws IOException
+    {
+        this.lock.lock();
+        try
+        {
+            if(this.opened)
+            {
+                throw new IllegalStateException("Journal already opened");
+            }
+            Files.createDirectories(this.directory);
+            this.checkpointSequence = this.readCheckpoint();
+            long sequence = this.checkpointSequence;
+            for(Map.Entry<Long, Path> entry : this.listSegments().entrySet())
+            {
+                long before = sequence;
+                sequence = this.readSegment(entry.getValue(), sequence, consumer);
+                if(sequence == before)
+                {
+                    Files.delete(entry.getValue());
+                }
+                else
+                {
+                    this.segments.put(entry.getKey(), entry.getValue());
+                }
+            }
+            this.lastSequence = sequence;
+            this.durableSequence = sequence;
+            this.startSegment();
+            this.deleteCheckpointedSegments();
+            this.opened = true;
+            log.info("Journal {} opened at sequence {}, {} records after checkpoint {}", this.directory, sequence,
+                    Math.max(0, sequence - this.checkpointSequence), this.checkpointSequence);
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+        this.syncThread = new Thread(this::syncLoop, "flat-journal-sync");
+        this.syncThread.setDaemon(true);
+        this.syncThread.start();
+    }
+
+    /**
+     * Function to append a record, see awaitDurable.
+     * @param record : Record to append.
+     * @return : Sequence of the record.
+     */
+    public long append(JournalRecord record)
+    {
+        return this.append(List.of(record));
+    }
+
+    /**
+     * Function to append records, they get consecutive sequences.
+     * @param records : Records to append, not empty.
+     * @return : Sequence of the last record.
+     * @throws IllegalArgumentException : If a record does not fit a segment, none of the records is appended then.
+     */
+    public long append(List<JournalRecord> records)
+    {
+        byte[][] bodies = new byte[records.size()][];
+        for(int i = 0; i < bodies.length; i++)
+        {
+            bodies[i] = encode(records.get(i));
+            if(HEADER_SIZE + bodies[i].length > this.segmentSize)
+            {
+                throw new IllegalArgumentException("Journal record of " + bodies[i].length + " bytes does not fit a segment of "
+                        + this.segmentSize + " bytes");
+            }
+        }
+        this.lock.lock();
+        try
+        {
+            if(!this.opened || this.closed)
+            {
+                throw new IllegalStateException("Journal is not open");
+            }
+            if(null != this.syncFailure)
+            {
+                throw new UncheckedIOException("Journal could not be forced", this.syncFailure);
+            }
+            CRC32C crc = new CRC32C();
+            for(byte[] body : bodies)
+            {
+                if(this.segment.remaining() < HEADER_SIZE + body.length)
+                {
+                    this.rollSegment();
+                }
+                ByteBuffer.wrap(body).putLong(0, ++this.lastSequence);
+                crc.reset();
+                crc.update(body);
+                this.segment.putInt(body.length);
+                this.segment.putInt((int) crc.getValue());
+                this.segment.put(body);
+            }
+            this.appended.signal();
+            return this.lastSequence;
+        }
+        catch(IOException ioException)
+        {
+            throw new UncheckedIOException("Journal segment could not be started", ioException);
+        }
+        finally
+        {
+            this.lock.unlock();
+            this.appendedCounter.increment(bodies.length);
+        }
+    }
+
+    /**
+     * Function to wait until a record is on disk.
+     * @param sequence : Sequence returned by append.
+     */
+    public void awaitDurable(long sequence)
+    {
+        this.lock.lock();
+        try
+        {
+            while(this.durableSequence < sequence)
+            {
+                if(null != this.syncFailure)
+                {
+                    throw new UncheckedIOException("Journal could not be forced", this.syncFailure);
+                }
+                this.synced.awaitUninterruptibly();
+            }
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Function to read the sequence of the last appended record.
+     * @return : Last sequence, the checkpoint if nothing was appended.
+     */
+    public long lastSequence()
+    {
+        this.lock.lock();
+        try
+        {
+            return this.lastSequence;
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Function to record that the database has every record up to sequence, and drop segments no longer needed.
+     * Lower sequences than the current checkpoint are ignored.
+     * @param sequence : Highest sequence whose records are all committed.
+     * @throws IOException : If the checkpoint can not be written.
+     */
+    public void checkpoint(long sequence) throws IOException
+    {
+        synchronized(this.checkpointLock)
+        {
+            if(sequence <= this.checkpointSequence)
+            {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + Integer.BYTES);
+            buffer.putLong(sequence);
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.array(), 0, Long.BYTES);
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            Path checkpointFile = this.directory.resolve(CHECKPOINT_FILE);
+            Path tmpFile = this.directory.resolve(CHECKPOINT_FILE + ".tmp");
+            try(FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING))
+            {
+                channel.write(buffer);
+                channel.force(true);
+            }
+            Files.move(tmpFile, checkpointFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            this.checkpointSequence = sequence;
+        }
+        this.lock.lock();
+        try
+        {
+            this.deleteCheckpointedSegments();
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Function to force what was appended and stop the sync thread. Appends fail afterwards.
+     */
+    @Override
+    public void close()
+    {
+        this.lock.lock();
+        try
+        {
+            this.closed = true;
+            this.appended.signal();
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+        if(null != this.syncThread)
+        {
+            try
+            {
+                this.syncThread.join();
+            }
+            catch(InterruptedException interruptedException)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void syncLoop()
+    {
+        while(true)
+        {
+            MappedByteBuffer target;
+            int from;
+            int to;
+            long sequence;
+            this.lock.lock();
+            try
+            {
+                while(!this.closed && this.lastSequence == this.durableSequence)
+                {
+                    this.appended.awaitUninterruptibly();
+                }
+                if(this.lastSequence == this.durableSequence)
+                {
+                    return;
+                }
+                target = this.segment;
+                from = this.syncedPosition;
+                to = this.segment.position();
+                sequence = this.lastSequence;
+            }
+            finally
+            {
+                this.lock.unlock();
+            }
+            long start = System.nanoTime();
+            try
+            {
+                this.force(target, from, to - from);
+            }
+            catch(UncheckedIOException uncheckedIOException)
+            {
+                this.lock.lock();
+                try
+                {
+                    this.syncFailed(uncheckedIOException);
+                }
+                finally
+                {
+                    this.lock.unlock();
+                }
+                return;
+            }
+            this.syncTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            this.lock.lock();
+            try
+            {
+                if(sequence > this.durableSequence)
+                {
+                    this.groupSize.record(sequence - this.durableSequence);
+                    this.durableSequence = sequence;
+                }
+                if(target == this.segment)
+                {
+                    this.syncedPosition = Math.max(this.syncedPosition, to);
+                }
+                this.synced.signalAll();
+            }
+            finally
+            {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Function to write a range of a segment to disk.
+     * @param target : Segment to force.
+     * @param from : First byte to force.
+     * @param length : Number of bytes to force.
+     */
+    void force(MappedByteBuffer target, int from, int length)
+    {
+        target.force(from, length);
+    }
+
+    /**
+     * Function to fail every current and later wait for durability, called with lock held.
+     */
+    private void syncFailed(UncheckedIOException uncheckedIOException)
+    {
+        log.error("Journal {} could not be forced, appends are no longer acknowledged", this.directory, uncheckedIOException);
+        this.syncFailure = uncheckedIOException.getCause();
+        this.synced.signalAll();
+    }
+
+    /**
+     * Function to force the full segment and continue in a new one, called with lock held.
+     */
+    private void rollSegment() throws IOException
+    {
+        try
+        {
+            this.force(this.segment, 0, this.segment.position());
+        }
+        catch(UncheckedIOException uncheckedIOException)
+        {
+            this.syncFailed(uncheckedIOException);
+            throw uncheckedIOException;
+        }
+        if(this.lastSequence > this.durableSequence)
+        {
+            this.groupSize.record(this.lastSequence - this.durableSequence);
+            this.durableSequence = this.lastSequence;
+            this.synced.signalAll();
+        }
+        this.startSegment();
+    }
+
+    private void startSegment() throws IOException
+    {
+        long firstSequence = this.lastSequence + 1;
+        Path path = this.directory.resolve(segmentName(firstSequence));
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            this.segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.segmentSize);
+        }
+        this.syncedPosition = 0;
+        this.segments.put(firstSequence, path);
+        this.segmentCount = this.segments.size();
+    }
+
+    /**
+     * Function to delete every segment whose successor starts at or before checkpoint + 1, called with lock held.
+     * The segment appended to is never deleted.
+     */
+    private void deleteCheckpointedSegments()
+    {
+        while(this.segments.size() > 1)
+        {
+            Map.Entry<Long, Path> oldest = this.segments.firstEntry();
+            long nextFirstSequence = this.segments.higherKey(oldest.getKey());
+            if(nextFirstSequence - 1 > this.checkpointSequence)
+            {
+                break;
+            }
+            try
+            {
+                Files.deleteIfExists(oldest.getValue());
+            }
+            catch(IOException ioException)
+            {
+                log.warn("Journal segment {} could not be deleted: {}", oldest.getValue(), ioException.getMessage());
+                break;
+            }
+            this.segments.pollFirstEntry();
+        }
+        this.segmentCount = this.segments.size();
+    }
+
+    private NavigableMap<Long, Path> listSegments() throws IOException
+    {
+        NavigableMap<Long, Path> found = new TreeMap<>();
+        try(Stream<Path> files = Files.list(this.directory))
+        {
+            files.forEach(path -> {
+                String name = path.getFileName().toString();
+                if(name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                {
+                    try
+                    {
+                        found.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), path);
+                    }
+                    catch(NumberFormatException numberFormatException)
+                    {
+                        log.warn("Ignoring unexpected file {} in journal", path);
+                    }
+                }
+            });
+        }
+        return found;
+    }
+
+    /**
+     * Function to read the valid records of a segment.
+     * @param path : Segment file.
+     * @param lastSequence : Last sequence read so far, records up to it are skipped.
+     * @param consumer : Receives records after the checkpoint.
+     * @return : Last sequence read, lastSequence if the segment holds no newer valid record.
+     */
+    private long readSegment(Path path, long lastSequence, ObjLongConsumer<JournalRecord> consumer) throws IOException
+    {
+        MappedByteBuffer buffer;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        CRC32C crc = new CRC32C();
+        while(buffer.remaining() >= HEADER_SIZE)
+        {
+            int position = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if(0 == length && 0 == checksum)
+            {
+                break;
+            }
+            if(length <= 0 || length > buffer.remaining())
+            {
+                log.warn("Journal segment {} ends with a torn record at position {}", path, position);
+                break;
+            }
+            byte[] body = new byte[length];
+            buffer.get(body);
+            crc.reset();
+            crc.update(body);
+            if((int) crc.getValue() != checksum)
+            {
+                log.warn("Journal segment {} ends with a corrupt record at position {}", path, position);
+                break;
+            }
+            ByteBuffer bodyBuffer = ByteBuffer.wrap(body);
+            long sequence = bodyBuffer.getLong();
+            JournalRecord record = decode(bodyBuffer);
+            if(null == record)
+            {
+                log.warn("Journal segment {} has an unknown record at position {}", path, position);
+                break;
+            }
+            if(sequence <= lastSequence)
+            {
+                continue;
+            }
+            lastSequence = sequence;
+            if(sequence > this.checkpointSequence)
+            {
+                consumer.accept(record, sequence);
+            }
+        }
+        return lastSequence;
+    }
+
+    private long readCheckpoint() throws IOException
+    {
+        Path checkpointFile = this.directory.resolve(CHECKPOINT_FILE);
+        if(!Files.exists(checkpointFile))
+        {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(checkpointFile));
+        if(buffer.remaining() != Long.BYTES + Integer.BYTES)
+        {
+            log.warn("Journal checkpoint {} is damaged, replaying every segment", checkpointFile);
+            return 0;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 0, Long.BYTES);
+        long sequence = buffer.getLong();
+        if(buffer.getInt() != (int) crc.getValue())
+        {
+            log.warn("Journal checkpoint {} is damaged, replaying every segment", checkpointFile);
+            return 0;
+        }
+        return sequence;
+    }
+
+    private static String segmentName(long firstSequence)
+    {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX);
+    }
+
+    private static byte[] encode(JournalRecord record)
+    {
+        byte[] flatId = utf8(record.flatId());
+        boolean add = JournalRecordType.ADD == record.type();
+        byte[] flatNumber = add ? utf8(record.flatNumber()) : null;
+        byte[] flatBlock = add ? utf8(record.flatBlock()) : null;
+        byte[] societyId = add ? utf8(record.societyId()) : null;
+        int size = Long.BYTES + 1 + stringSize(flatId);
+        if(add)
+        {
+            size += stringSize(flatNumber) + stringSize(flatBlock) + stringSize(societyId);
+        }
+        if(JournalRecordType.DELETE != record.type())
+        {
+            size += 1;
+        }
+        ByteBuffer body = ByteBuffer.allocate(size);
+        body.putLong(0L);
+        body.put(record.type().code());
+        putString(body, flatId);
+        if(add)
+        {
+            putString(body, flatNumber);
+            putString(body, flatBlock);
+            putString(body, societyId);
+        }
+        if(JournalRecordType.DELETE != record.type())
+        {
+            body.put((byte) (record.occupied() ? 1 : 0));
+        }
+        return body.array();
+    }
+
+    private static JournalRecord decode(ByteBuffer body)
+    {
+        try
+        {
+            JournalRecordType type = JournalRecordType.of(body.get());
+            if(null == type)
+            {
+                return null;
+            }
+            String flatId = getString(body);
+            return switch(type)
+            {
+                case ADD -> JournalRecord.add(flatId, getString(body), getString(body), getString(body), 0 != body.get());
+                case OCCUPANCY -> JournalRecord.occupancy(flatId, 0 != body.get());
+                case DELETE -> JournalRecord.delete(flatId);
+            };
+        }
+        catch(BufferUnderflowException bufferUnderflowException)
+        {
+            return null;
+        }
+    }
+
+    private static byte[] utf8(String value)
+    {
+        if(null == value)
+        {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if(bytes.length > Short.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Journal values are limited to " + Short.MAX_VALUE + " bytes");
+        }
+        return bytes;
+    }
+
+    private static int stringSize(byte[] value)
+    {
+        return Short.BYTES + (null == value ? 0 : value.length);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value)
+    {
+        if(null == value)
+        {
+            buffer.putShort((short) -1);
+            return;
+        }
+        buffer.putShort((short) value.length);
+        buffer.put(value);
+    }
+
+    private static String getString(ByteBuffer buffer)
+    {
+        short length = buffer.getShort();
+        if(length < 0)
+        {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
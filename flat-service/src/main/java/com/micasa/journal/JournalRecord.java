@@ -0,0 +1,24 @@
+package com.micasa.journal;
+
+/**
+ * A flat mutation as written to FlatJournal.
+ * ADD carries every column of the flat, OCCUPANCY only flatId and occupied, DELETE only flatId.
+ */
+public record JournalRecord(JournalRecordType type, String flatId, String flatNumber, String flatBlock,
+                            String societyId, boolean occupied)
+{
+    public static JournalRecord add(String flatId, String flatNumber, String flatBlock, String societyId, boolean occupied)
+    {
+        return new JournalRecord(JournalRecordType.ADD, flatId, flatNumber, flatBlock, societyId, occupied);
+    }
+
+    public static JournalRecord occupancy(String flatId, boolean occupied)
+    {
+        return new JournalRecord(JournalRecordType.OCCUPANCY, flatId, null, null, null, occupied);
+    }
+
+    public static JournalRecord delete(String flatId)
+    {
+        return new JournalRecord(JournalRecordType.DELETE, flatId, null, null, null, false);
+    }
+}
@@ -0,0 +1,40 @@
+package com.micasa.journal;
+
+/**
+ * Kind of a flat mutation in FlatJournal, code is the byte written to disk.
+ */
+public enum JournalRecordType
+{
+    ADD((byte) 1),
+    OCCUPANCY((byte) 2),
+    DELETE((byte) 3);
+
+    private final byte code;
+
+    JournalRecordType(byte code)
+    {
+        this.code = code;
+    }
+
+    public byte code()
+    {
+        return this.code;
+    }
+
+    /**
+     * Function to find a type by its code.
+     * @param code : Code read from disk.
+     * @return : Type, null for an unknown code.
+     */
+    public static JournalRecordType of(byte code)
+    {
+        for(JournalRecordType type : values())
+        {
+            if(type.code == code)
+            {
+                return type;
+            }
+        }
+        return null;
+    }
+}
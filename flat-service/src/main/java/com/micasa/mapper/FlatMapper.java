@@ -1,8 +1,15 @@
 package com.micasa.mapper;
 
 import com.micasa.dto.FlatDto;
+import com.micasa.dto.SocietyDto;
 import com.micasa.model.Flat;
+import com.micasa.model.FlatRow;
+import com.micasa.model.Society;
+import com.micasa.model.SocietyRow;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+import java.util.List;
 
 /**
  * Mapper class for Flat and FlatDto.
@@ -15,6 +22,7 @@ public interface FlatMapper
      * @param flatDto : FlatDto object.
      * @return : Flat object.
      */
+    @Mapping(target = "version", ignore = true)
     Flat flatDtoToFlatEntity(FlatDto flatDto);
     /**
      * This function maps flat to flatDto.
@@ -22,4 +30,44 @@ public interface FlatMapper
      * @return : FlatDto object.
      */
     FlatDto flatEntityToFlatDto(Flat flat);
+    /**
+     * This function maps flat to flatDto with an already mapped society, flat.society is not read.
+     * @param flat : Flat object.
+     * @param society : Mapped society of the flat, may be null.
+     * @return : FlatDto object.
+     */
+    @Mapping(target = "society", source = "society")
+    FlatDto flatEntityToFlatDto(Flat flat, SocietyDto society);
+    /**
+     * This function maps a list of flatDto to a list of flat.
+     * @param flatDtoList : List of FlatDto objects.
+     * @return : List of Flat objects.
+     */
+    List<Flat> flatDtoListToFlatEntityList(List<FlatDto> flatDtoList);
+    /**
+     * This function maps a list of flat to a list of flatDto.
+     * @param flatList : List of Flat objects.
+     * @return : List of FlatDto objects.
+     */
+    List<FlatDto> flatEntityListToFlatDtoList(List<Flat> flatList);
+    /**
+     * This function maps society to societyDto.
+     * @param society : Society object.
+     * @return : SocietyDto object.
+     */
+    SocietyDto societyEntityToSocietyDto(Society society);
+    /**
+     * This function maps a flat row of the reactive mode and its society to flatDto.
+     * @param flatRow : FlatRow object.
+     * @param society : Mapped society of the flat, may be null.
+     * @return : FlatDto object.
+     */
+    @Mapping(target = "society", source = "society")
+    FlatDto flatRowToFlatDto(FlatRow flatRow, SocietyDto society);
+    /**
+     * This function maps a society row of the reactive mode to societyDto.
+     * @param societyRow : SocietyRow object.
+     * @return : SocietyDto object.
+     */
+    SocietyDto societyRowToSocietyDto(SocietyRow societyRow);
 }
@@ -0,0 +1,139 @@
+package com.micasa.mapper;
+
+import com.micasa.dto.FlatDto;
+import com.micasa.dto.SocietyDto;
+import com.micasa.model.Flat;
+import com.micasa.model.Society;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnitUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps lists of flats with their societies resolved in one batch, instead of one proxy initialization per distinct society.
+ * Structure:
+ *  1. Collect the societyIds of all flats, their lazy society proxies are not initialized.
+ *  2. Take societies mapped earlier in the same request from the request memo.
+ *  3. Load the rest with one multi-id load, which checks the persistence context and second-level cache first
+ *     and reads the remaining societies with a single IN query.
+ *  4. Map every society once and every flat with its mapped society, like the reactive mode does.
+ * Outside of a request (streaming and write-behind threads) the memo only lives for one call.
+ */
+@Slf4j
+@Component
+public class SocietyDtoResolver
+{
+    private static final String MEMO_ATTRIBUTE = SocietyDtoResolver.class.getName() + ".memo";
+
+    //FlatMapper instance.
+    private final FlatMapper flatMapper;
+    //Entity manager, its session loads societies by id in one batch.
+    private final EntityManager entityManager;
+    //Reads the id of a society proxy without initializing it.
+    private final PersistenceUnitUtil persistenceUnitUtil;
+
+    @Autowired
+    public SocietyDtoResolver(FlatMapper flatMapper, EntityManager entityManager, EntityManagerFactory entityManagerFactory)
+    {
+        this.flatMapper = flatMapper;
+        this.entityManager = entityManager;
+        this.persistenceUnitUtil = entityManagerFactory.getPersistenceUnitUtil();
+    }
+
+    /**
+     * Function to map flats to flatDtos, resolving all their societies at once.
+     * Must be called inside a transaction.
+     * @param flatList : Flats to map.
+     * @return : Mapped flatDtos, in order of flatList.
+     */
+    public List<FlatDto> flatEntityListToFlatDtoList(List<Flat> flatList)
+    {
+        Set<String> societyIds = new LinkedHashSet<>();
+        for(Flat flat : flatList)
+        {
+            if(null != flat.getSociety())
+            {
+                societyIds.add(this.societyId(flat.getSociety()));
+            }
+        }
+        Map<String, SocietyDto> societyById = this.resolve(societyIds);
+        List<FlatDto> flatDtoList = new ArrayList<>(flatList.size());
+        for(Flat flat : flatList)
+        {
+            SocietyDto society = null == flat.getSociety() ? null : societyById.get(this.societyId(flat.getSociety()));
+            flatDtoList.add(this.flatMapper.flatEntityToFlatDto(flat, society));
+        }
+        return flatDtoList;
+    }
+
+    /**
+     * Function to resolve societies by societyId, from the request memo or with one batch load.
+     * Must be called inside a transaction.
+     * @param societyIds : SocietyIds to resolve.
+     * @return : Mapped societies by societyId, at least those of societyIds that exist.
+     */
+    public Map<String, SocietyDto> resolve(Set<String> societyIds)
+    {
+        Map<String, SocietyDto> memo = this.memo();
+        List<String> misses = new ArrayList<>();
+        for(String societyId : societyIds)
+        {
+            if(!memo.containsKey(societyId))
+            {
+                misses.add(societyId);
+            }
+        }
+        if(!misses.isEmpty())
+        {
+            List<Society> societies = this.entityManager.unwrap(Session.class)
+                    .byMultipleIds(Society.class)
+                    .with(CacheMode.NORMAL)
+                    .enableSessionCheck(true)
+                    .multiLoad(misses);
+            for(Society society : societies)
+            {
+                if(null != society)
+                {
+                    memo.put(society.getSocietyId(), this.flatMapper.societyEntityToSocietyDto(society));
+                }
+            }
+            log.debug("Resolved {} of {} societies with one batch load", misses.size(), societyIds.size());
+        }
+        return memo;
+    }
+
+    private String societyId(Society society)
+    {
+        return (String) this.persistenceUnitUtil.getIdentifier(society);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, SocietyDto> memo()
+    {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if(null == requestAttributes)
+        {
+            return new HashMap<>();
+        }
+        Map<String, SocietyDto> memo = (Map<String, SocietyDto>) requestAttributes.getAttribute(MEMO_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if(null == memo)
+        {
+            memo = new HashMap<>();
+            requestAttributes.setAttribute(MEMO_ATTRIBUTE, memo, RequestAttributes.SCOPE_REQUEST);
+        }
+        return memo;
+    }
+}
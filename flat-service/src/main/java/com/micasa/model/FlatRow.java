@@ -0,0 +1,28 @@
+package com.micasa.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Read model of a flat for the reactive mode, mapped by R2DBC to the flats table of Flat.
+ * R2DBC has no relations, the society is referenced by societyId only.
+ */
+@Data
+@NoArgsConstructor
+@Table("flats")
+public class FlatRow
+{
+    @Id
+    @Column("flat_id")
+    private String flatId;
+    @Column("flat_number")
+    private String flatNumber;
+    @Column("flat_block")
+    private String flatBlock;
+    private boolean occupied;
+    @Column("society_id")
+    private String societyId;
+}
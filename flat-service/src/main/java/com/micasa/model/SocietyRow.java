@@ -0,0 +1,23 @@
+package com.micasa.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Read model of a society for the reactive mode, mapped by R2DBC to the societies table of Society.
+ */
+@Data
+@NoArgsConstructor
+@Table("societies")
+public class SocietyRow
+{
+    @Id
+    @Column("society_id")
+    private String societyId;
+    @Column("society_name")
+    private String societyName;
+    private String address;
+}
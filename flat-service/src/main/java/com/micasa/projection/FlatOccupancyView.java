@@ -0,0 +1,12 @@
+package com.micasa.projection;
+
+/**
+ * Projection of a flat with only the columns needed by the occupancy index.
+ */
+public interface FlatOccupancyView
+{
+    String getFlatId();
+    String getFlatBlock();
+    boolean isOccupied();
+    String getSocietyId();
+}
@@ -0,0 +1,11 @@
+package com.micasa.projection;
+
+import java.io.Serializable;
+
+/**
+ * Projection of a flat for listing screens, built by the query straight from the result set.
+ * No entity, no society proxy, the society is sent once per response by the caller.
+ */
+public record FlatSummary(String flatId, String flatNumber, String flatBlock, boolean occupied) implements Serializable
+{
+}
@@ -1,32 +1,47 @@
 package com.micasa.repository;
 
 import com.micasa.model.Flat;
+import com.micasa.projection.FlatOccupancyView;
+import com.micasa.projection.FlatSummary;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository to interact with database for database queries related to flat.
+ * Derived finders are cacheable in the query cache, results are invalidated on every write to flats.
  */
 @Repository(value = "flatRepository")
 public interface FlatRepository extends JpaRepository<Flat, String>
 {
     /**
-     * This function finds all flat with passed flat number and returns in descending order wrt flatBlock.
+     * This function finds a page of flats with passed flat number in descending order wrt flatBlock.
      * @param flatNumber : FlatNumber for which flats will be searched.
-     * @return : List of found flats.
+     * @param pageable : Page to fetch.
+     * @return : Slice of found flats.
      */
-    Optional<List<Flat>> findByFlatNumberOrderByFlatBlockDesc(String flatNumber);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    Slice<Flat> findByFlatNumberOrderByFlatBlockDesc(String flatNumber, Pageable pageable);
     /**
-     * This function finds all flat with passed flat block and returns in descending order wrt flatNumber.
+     * This function finds a page of flats with passed flat block in descending order wrt flatNumber.
      * @param flatBlock : FlatBlock for which flats will be searched.
-     * @return : List of found flats.
+     * @param pageable : Page to fetch.
+     * @return : Slice of found flats.
      */
-    Optional<List<Flat>> findByFlatBlockOrderByFlatNumberDesc(String flatBlock);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    Slice<Flat> findByFlatBlockOrderByFlatNumberDesc(String flatBlock, Pageable pageable);
 
     /**
      * This flat finds a flat with passed flatNumber and flatBlock.
@@ -34,5 +49,143 @@ public interface FlatRepository extends JpaRepository<Flat, String>
      * @param flatBlock : FlatBlock for which flat will be searched.
      * @return : Found flat.
      */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Flat> findByFlatNumberAndFlatBlock(String flatNumber, String flatBlock);
+
+    /**
+     * This function finds all flats whose flatBlock and flatNumber are among the passed values.
+     * Used by bulk ingestion to detect (flatNumber, flatBlock) conflicts for a whole chunk in one query,
+     * callers must still match the exact pairs.
+     * @param flatBlocks : FlatBlocks for which flats will be searched.
+     * @param flatNumbers : FlatNumbers for which flats will be searched.
+     * @return : List of found flats.
+     */
+    List<Flat> findByFlatBlockInAndFlatNumberIn(Collection<String> flatBlocks, Collection<String> flatNumbers);
+
+    /**
+     * This function finds the flats with passed flatIds together with their society, in one query.
+     * Callers keep the IN list short, see micasa.flat.multi-get.chunk-size.
+     * @param flatIds : FlatIds for which flats will be searched.
+     * @return : List of found flats, in no particular order.
+     */
+    @Query("select f from flats f left join fetch f.society where f.flatId in :flatIds")
+    List<Flat> findAllWithSocietyByFlatIdIn(@Param("flatIds") Collection<String> flatIds);
+
+    /**
+     * This function finds a page of flat summaries of a society ordered by flatBlock and flatNumber.
+     * Rows are read into FlatSummary directly, flats and their society are not loaded.
+     * @param societyId : Society for which flats will be searched.
+     * @param pageable : Page to fetch.
+     * @return : Slice of found flat summaries.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("select new com.micasa.projection.FlatSummary(f.flatId, f.flatNumber, f.flatBlock, f.occupied) " +
+            "from flats f where f.society.societyId = :societyId order by f.flatBlock, f.flatNumber")
+    Slice<FlatSummary> findSummariesBySocietyId(@Param("societyId") String societyId, Pageable pageable);
+
+    /**
+     * This function finds a page of flat summaries of a block in a society ordered by flatNumber.
+     * @param societyId : Society for which flats will be searched.
+     * @param flatBlock : FlatBlock for which flats will be searched.
+     * @param pageable : Page to fetch.
+     * @return : Slice of found flat summaries.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("select new com.micasa.projection.FlatSummary(f.flatId, f.flatNumber, f.flatBlock, f.occupied) " +
+            "from flats f where f.society.societyId = :societyId and f.flatBlock = :flatBlock order by f.flatNumber")
+    Slice<FlatSummary> findSummariesBySocietyIdAndFlatBlock(@Param("societyId") String societyId, @Param("flatBlock") String flatBlock,
+                                                            Pageable pageable);
+
+    /**
+     * This function streams all flats with their society, forward only.
+     * Rows are fetched from the database 1000 at a time (needs useCursorFetch=true on mysql), must be consumed
+     * inside a transaction and closed.
+     * @return : Stream of all flats.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select f from flats f left join fetch f.society")
+    Stream<Flat> streamAll();
+
+    /**
+     * This function streams flatId, flatBlock, occupied and societyId of all flats, forward only.
+     * Must be consumed inside a transaction and closed.
+     * @return : Stream of occupancy views of all flats.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select f.flatId as flatId, f.flatBlock as flatBlock, f.occupied as occupied, s.societyId as societyId " +
+            "from flats f left join f.society s")
+    Stream<FlatOccupancyView> streamOccupancy();
+
+    /**
+     * This function reads occupancy views of the passed flats, flats that do not exist are left out.
+     * @param flatIds : FlatIds to read.
+     * @return : Occupancy views of existing flats.
+     */
+    @Query("select f.flatId as flatId, f.flatBlock as flatBlock, f.occupied as occupied, s.societyId as societyId " +
+            "from flats f left join f.society s where f.flatId in :flatIds")
+    List<FlatOccupancyView> findOccupancyByFlatIdIn(@Param("flatIds") Collection<String> flatIds);
+
+    /**
+     * This function reads occupancy views of the passed flats and locks their rows until the transaction ends,
+     * so a bulk update or delete that follows changes exactly the rows read. Societies are not joined, nor locked.
+     * @param flatIds : FlatIds to read.
+     * @return : Occupancy views of existing flats.
+     */
+    @Query(value = "select flat_id as flatId, flat_block as flatBlock, occupied as occupied, society_id as societyId " +
+            "from flats where flat_id in (:flatIds) for update", nativeQuery = true)
+    List<FlatOccupancyView> lockOccupancyByFlatIdIn(@Param("flatIds") Collection<String> flatIds);
+
+    /**
+     * This function finds which of the passed flatIds exist, without loading the flats.
+     * @param flatIds : FlatIds to check.
+     * @return : Existing flatIds.
+     */
+    @Query("select f.flatId from flats f where f.flatId in :flatIds")
+    List<String> findExistingFlatIds(@Param("flatIds") Collection<String> flatIds);
+
+    /**
+     * This function finds which of the passed societyIds exist, used before inserting queued flats.
+     * @param societyIds : SocietyIds to check.
+     * @return : Existing societyIds.
+     */
+    @Query("select s.societyId from societies s where s.societyId in :societyIds")
+    List<String> findExistingSocietyIds(@Param("societyIds") Collection<String> societyIds);
+
+    /**
+     * This function sets occupied status of all passed flats with a single update statement and bumps their version.
+     * Entities are not loaded, the persistence context is cleared after the update.
+     * @param flatIds : FlatIds to update.
+     * @param occupied : Occupied status to set.
+     * @return : Number of rows matched by the update.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update flats f set f.occupied = :occupied, f.version = f.version + 1 where f.flatId in :flatIds")
+    int updateOccupiedByFlatIdIn(@Param("flatIds") Collection<String> flatIds, @Param("occupied") boolean occupied);
+
+    /**
+     * This function sets occupied status of a flat only if it currently has the expected status, and bumps its version.
+     * Compare and set in a single statement, the row is locked only while the statement runs.
+     * @param flatId : FlatId to update.
+     * @param expected : Occupied status the flat must currently have.
+     * @param occupied : Occupied status to set.
+     * @return : 1 if updated, 0 if the flat is missing or its status did not match.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update flats f set f.occupied = :occupied, f.version = f.version + 1 where f.flatId = :flatId and f.occupied = :expected")
+    int compareAndSetOccupied(@Param("flatId") String flatId, @Param("expected") boolean expected, @Param("occupied") boolean occupied);
+
+    /**
+     * This function deletes all passed flats with a single delete statement, flats are not loaded.
+     * @param flatIds : FlatIds to delete.
+     * @return : Number of deleted rows.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from flats f where f.flatId in :flatIds")
+    int deleteByFlatIdIn(@Param("flatIds") Collection<String> flatIds);
 }
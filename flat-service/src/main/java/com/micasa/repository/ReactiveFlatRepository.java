@@ -0,0 +1,44 @@
+package com.micasa.repository;
+
+import com.micasa.model.FlatRow;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of FlatRepository, used only by the reactive mode (profile "reactive").
+ * Page queries take limit and offset, callers ask for one row more than the page to know if there is a next page.
+ */
+@Repository
+public interface ReactiveFlatRepository extends R2dbcRepository<FlatRow, String>
+{
+    /**
+     * This function finds flats of a block, ordered by flat number descending.
+     * @param flatBlock : Block to read.
+     * @param limit : Maximum number of rows.
+     * @param offset : Rows to skip.
+     * @return : Flux of found flats.
+     */
+    @Query("select * from flats where flat_block = :flatBlock order by flat_number desc limit :limit offset :offset")
+    Flux<FlatRow> findByFlatBlock(String flatBlock, int limit, long offset);
+
+    /**
+     * This function finds flats with a flat number, ordered by block descending.
+     * @param flatNumber : Flat number to read.
+     * @param limit : Maximum number of rows.
+     * @param offset : Rows to skip.
+     * @return : Flux of found flats.
+     */
+    @Query("select * from flats where flat_number = :flatNumber order by flat_block desc limit :limit offset :offset")
+    Flux<FlatRow> findByFlatNumber(String flatNumber, int limit, long offset);
+
+    /**
+     * This function finds a flat by flat number and block.
+     * @param flatNumber : Flat number of the flat.
+     * @param flatBlock : Block of the flat.
+     * @return : Mono of the found flat, empty if none.
+     */
+    Mono<FlatRow> findByFlatNumberAndFlatBlock(String flatNumber, String flatBlock);
+}
@@ -0,0 +1,13 @@
+package com.micasa.repository;
+
+import com.micasa.model.SocietyRow;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Reactive reads of societies, used to attach societies to flats in the reactive mode.
+ */
+@Repository
+public interface ReactiveSocietyRepository extends R2dbcRepository<SocietyRow, String>
+{
+}
@@ -0,0 +1,13 @@
+package com.micasa.repository;
+
+import com.micasa.model.Society;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository to read societies referenced by flats, societies are written by society-service.
+ */
+@Repository(value = "societyRepository")
+public interface SocietyRepository extends JpaRepository<Society, String>
+{
+}
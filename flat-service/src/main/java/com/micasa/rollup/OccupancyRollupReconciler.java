@@ -0,0 +1,153 @@
+package com.micasa.rollup;
+
+import com.micasa.rollup.OccupancyRollupRecorder.Delta;
+import com.micasa.rollup.OccupancyRollupRecorder.RollupKey;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * Repairs drift of occupancy_rollup against flats, e.g. after writes made before the rollup existed or
+ * by other tools, and fills the table on first start.
+ * Structure:
+ *  1. Walk society ids of societies and occupancy_rollup in order, chunk-size at a time, flats without
+ *     a society (counted under '') first. Each chunk is one short transaction.
+ *  2. Lock the rollup rows of the chunk, so writers of those societies wait at their upsert until the chunk commits,
+ *     then count flats of the chunk by society and block. Writers commit either before both reads or after the chunk.
+ *  3. Add the difference to each drifted row with the same upserts writers use and delete rows left empty.
+ * Repaired rows are counted as micasa.occupancy_rollup.repairs.
+ */
+@Slf4j
+@Component
+public class OccupancyRollupReconciler
+{
+    private static final String NEXT_SOCIETY_IDS_SQL = "select society_id from societies where society_id > ? "
+            + "union select society_id from occupancy_rollup where society_id > ? order by society_id limit ?";
+    private static final String NO_SOCIETY_ROLLUP_CONDITION = "society_id = ''";
+    private static final String NO_SOCIETY_FLATS_CONDITION = "society_id is null";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OccupancyRollupRecorder occupancyRollupRecorder;
+    //Runs each chunk in its own repeatable read transaction, rows locked in step 2 also lock the gaps between them.
+    private final TransactionTemplate transactionTemplate;
+    //Number of societies reconciled per transaction.
+    private final int chunkSize;
+    private final Counter repairCounter;
+
+    @Autowired
+    public OccupancyRollupReconciler(JdbcTemplate jdbcTemplate,
+                                     OccupancyRollupRecorder occupancyRollupRecorder,
+                                     PlatformTransactionManager transactionManager,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${micasa.flat.rollup.reconcile-chunk-size:100}") int chunkSize)
+    {
+        this.jdbcTemplate = jdbcTemplate;
+        this.occupancyRollupRecorder = occupancyRollupRecorder;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.repairCounter = Counter.builder("micasa.occupancy_rollup.repairs")
+                .description("Rows of occupancy_rollup that had drifted from flats and were repaired")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Function to reconcile all of occupancy_rollup, one chunk of societies at a time.
+     */
+    @Scheduled(fixedDelayString = "${micasa.flat.rollup.reconcile-interval-ms:600000}",
+            initialDelayString = "${micasa.flat.rollup.reconcile-initial-delay-ms:10000}")
+    public synchronized void reconcile()
+    {
+        try
+        {
+            int repaired = this.reconcileChunk(NO_SOCIETY_ROLLUP_CONDITION, NO_SOCIETY_FLATS_CONDITION, List.of());
+            long societies = 0;
+            String lastSocietyId = "";
+            List<String> societyIds;
+            do
+            {
+                societyIds = this.jdbcTemplate.queryForList(NEXT_SOCIETY_IDS_SQL, String.class, lastSocietyId, lastSocietyId, this.chunkSize);
+                if(societyIds.isEmpty())
+                {
+                    break;
+                }
+                String condition = "society_id in (" + String.join(", ", Collections.nCopies(societyIds.size(), "?")) + ")";
+                repaired += this.reconcileChunk(condition, condition, societyIds);
+                societies += societyIds.size();
+                lastSocietyId = societyIds.get(societyIds.size() - 1);
+            }
+            while(societyIds.size() == this.chunkSize);
+            if(0 < repaired)
+            {
+                log.warn("Occupancy rollup of {} societies reconciled, {} drifted rows repaired", societies, repaired);
+            }
+            else
+            {
+                log.debug("Occupancy rollup of {} societies reconciled, no drift", societies);
+            }
+        }
+        catch(RuntimeException exception)
+        {
+            log.warn("Occupancy rollup reconciliation failed: {}", exception.getMessage());
+        }
+    }
+
+    /**
+     * Function to reconcile the rollup rows of one chunk of societies in one transaction.
+     * @param rollupCondition : Selects the rows of the chunk in occupancy_rollup.
+     * @param flatsCondition : Selects the flats of the chunk.
+     * @param args : Arguments of both conditions.
+     * @return : Number of repaired rows.
+     */
+    private int reconcileChunk(String rollupCondition, String flatsCondition, List<String> args)
+    {
+        Object[] parameters = args.toArray();
+        Integer repaired = this.transactionTemplate.execute(status -> {
+            Map<RollupKey, Delta> stored = this.counts("select society_id, flat_block, total_flats, occupied_flats from occupancy_rollup where "
+                    + rollupCondition + " for update", parameters);
+            Map<RollupKey, Delta> actual = this.counts("select society_id, flat_block, count(*), sum(case when occupied then 1 else 0 end) "
+                    + "from flats where " + flatsCondition + " group by society_id, flat_block", parameters);
+            Map<RollupKey, Delta> repairs = new TreeMap<>();
+            boolean emptied = false;
+            for(Map.Entry<RollupKey, Delta> entry : stored.entrySet())
+            {
+                Delta counted = actual.getOrDefault(entry.getKey(), new Delta(0, 0));
+                repairs.put(entry.getKey(), new Delta(counted.total() - entry.getValue().total(), counted.occupied() - entry.getValue().occupied()));
+                emptied |= counted.isZero();
+            }
+            actual.forEach(repairs::putIfAbsent);
+            int changed = this.occupancyRollupRecorder.apply(repairs);
+            if(emptied)
+            {
+                this.jdbcTemplate.update("delete from occupancy_rollup where " + rollupCondition + " and total_flats = 0 and occupied_flats = 0",
+                        parameters);
+            }
+            return changed;
+        });
+        int repairedRows = null == repaired ? 0 : repaired;
+        this.repairCounter.increment(repairedRows);
+        return repairedRows;
+    }
+
+    private Map<RollupKey, Delta> counts(String sql, Object[] parameters)
+    {
+        Map<RollupKey, Delta> counts = new HashMap<>();
+        this.jdbcTemplate.query(sql, (RowCallbackHandler) resultSet -> counts.merge(
+                RollupKey.of(resultSet.getString(1), resultSet.getString(2)),
+                new Delta(resultSet.getLong(3), resultSet.getLong(4)),
+                Delta::plus), parameters);
+        return counts;
+    }
+}
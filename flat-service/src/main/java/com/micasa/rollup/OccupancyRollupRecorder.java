@@ -0,0 +1,175 @@
+package com.micasa.rollup;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps occupancy_rollup, flats and occupied flats per society and block, current with every flat write.
+ * Deltas of a transaction are summed per row and applied right before it commits, in the same transaction,
+ * with one JDBC batch of upserts in key order, so concurrent writers lock rows in the same order.
+ * A row changes if and only if the flat write committed. Outside of a transaction deltas are applied right away.
+ * Flats without a society or block are counted under ''.
+ */
+@Component
+public class OccupancyRollupRecorder
+{
+    private static final String UPSERT_SQL = "insert into occupancy_rollup (society_id, flat_block, total_flats, occupied_flats) "
+            + "values (?, ?, ?, ?) on duplicate key update total_flats = total_flats + values(total_flats), "
+            + "occupied_flats = occupied_flats + values(occupied_flats)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public OccupancyRollupRecorder(JdbcTemplate jdbcTemplate)
+    {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Function to count a new flat.
+     * @param societyId : Society of the flat, may be null.
+     * @param flatBlock : Block of the flat, may be null.
+     * @param occupied : Occupied status of the flat.
+     */
+    public void flatAdded(String societyId, String flatBlock, boolean occupied)
+    {
+        this.record(societyId, flatBlock, 1, occupied ? 1 : 0);
+    }
+
+    /**
+     * Function to stop counting a deleted flat.
+     * @param societyId : Society of the flat, may be null.
+     * @param flatBlock : Block of the flat, may be null.
+     * @param occupied : Occupied status the flat had when deleted.
+     */
+    public void flatRemoved(String societyId, String flatBlock, boolean occupied)
+    {
+        this.record(societyId, flatBlock, -1, occupied ? -1 : 0);
+    }
+
+    /**
+     * Function to count a flat whose occupied status flipped.
+     * @param societyId : Society of the flat, may be null.
+     * @param flatBlock : Block of the flat, may be null.
+     * @param occupied : New occupied status, the old one was the opposite.
+     */
+    public void occupiedChanged(String societyId, String flatBlock, boolean occupied)
+    {
+        this.record(societyId, flatBlock, 0, occupied ? 1 : -1);
+    }
+
+    private void record(String societyId, String flatBlock, long totalDelta, long occupiedDelta)
+    {
+        RollupKey key = RollupKey.of(societyId, flatBlock);
+        if(!TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            this.apply(Map.of(key, new Delta(totalDelta, occupiedDelta)));
+            return;
+        }
+        this.pendingDeltas().merge(key, new Delta(totalDelta, occupiedDelta), Delta::plus);
+    }
+
+    /**
+     * Function to find the deltas collected for the current transaction.
+     * The buffer lives in a synchronization of the transaction, so a suspended outer transaction keeps its own.
+     * @return : Deltas to apply before commit, by row.
+     */
+    private Map<RollupKey, Delta> pendingDeltas()
+    {
+        for(TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations())
+        {
+            if(synchronization instanceof PendingDeltas pendingDeltas && pendingDeltas.recorder() == this)
+            {
+                return pendingDeltas.deltas();
+            }
+        }
+        PendingDeltas pendingDeltas = new PendingDeltas(this, new TreeMap<>());
+        TransactionSynchronizationManager.registerSynchronization(pendingDeltas);
+        return pendingDeltas.deltas();
+    }
+
+    /**
+     * Function to add deltas to their rows with one batch of upserts, in key order, rows that do not exist are created.
+     * Used by OccupancyRollupReconciler for its repairs as well.
+     * @param deltas : Deltas by row, zero deltas are skipped.
+     * @return : Number of rows changed.
+     */
+    int apply(Map<RollupKey, Delta> deltas)
+    {
+        List<Map.Entry<RollupKey, Delta>> changes = new ArrayList<>(deltas.size());
+        for(Map.Entry<RollupKey, Delta> entry : deltas.entrySet())
+        {
+            if(!entry.getValue().isZero())
+            {
+                changes.add(entry);
+            }
+        }
+        if(changes.isEmpty())
+        {
+            return 0;
+        }
+        changes.sort(Map.Entry.comparingByKey());
+        this.jdbcTemplate.batchUpdate(UPSERT_SQL, changes, changes.size(), (PreparedStatement statement, Map.Entry<RollupKey, Delta> change) -> {
+            statement.setString(1, change.getKey().societyId());
+            statement.setString(2, change.getKey().flatBlock());
+            statement.setLong(3, change.getValue().total());
+            statement.setLong(4, change.getValue().occupied());
+        });
+        return changes.size();
+    }
+
+    /**
+     * Row of occupancy_rollup, with null society and block stored as ''.
+     */
+    record RollupKey(String societyId, String flatBlock) implements Comparable<RollupKey>
+    {
+        private static final Comparator<RollupKey> ORDER = Comparator.comparing(RollupKey::societyId).thenComparing(RollupKey::flatBlock);
+
+        static RollupKey of(String societyId, String flatBlock)
+        {
+            return new RollupKey(null == societyId ? "" : societyId, null == flatBlock ? "" : flatBlock);
+        }
+
+        @Override
+        public int compareTo(RollupKey other)
+        {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    /**
+     * Change of the flat count and occupied flat count of a row.
+     */
+    record Delta(long total, long occupied)
+    {
+        Delta plus(Delta other)
+        {
+            return new Delta(this.total + other.total, this.occupied + other.occupied);
+        }
+
+        boolean isZero()
+        {
+            return 0 == this.total && 0 == this.occupied;
+        }
+    }
+
+    /**
+     * Deltas of one transaction, applied before it commits.
+     */
+    private record PendingDeltas(OccupancyRollupRecorder recorder, Map<RollupKey, Delta> deltas) implements TransactionSynchronization
+    {
+        @Override
+        public void beforeCommit(boolean readOnly)
+        {
+            this.recorder.apply(this.deltas);
+        }
+    }
+}
@@ -1,16 +1,39 @@
 package com.micasa.service;
 
+import com.micasa.dto.BulkOccupancyResponseDto;
+import com.micasa.dto.FlatDto;
+import com.micasa.dto.FlatIngestResultDto;
+import com.micasa.dto.FlatPageDto;
+import com.micasa.dto.FlatSummaryPageDto;
 import com.micasa.model.Flat;
+import com.micasa.writebehind.FlatWriteBatch;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface FlatService
 {
     Flat addFlat(Flat flat);
+    List<FlatIngestResultDto> addFlats(List<Flat> flats);
     Flat updateOccupiedStatus(String flatId, boolean occupiedStatus);
+    Flat updateOccupiedStatusIfMatches(String flatId, boolean expectedStatus, boolean occupiedStatus);
+    BulkOccupancyResponseDto updateOccupiedStatuses(Map<String, Boolean> statusByFlatId, boolean optimistic);
+    Set<String> writeFlats(FlatWriteBatch flatWriteBatch);
     void deleteFlatById(String flatId);
     Flat findFlatByFlatId(String flatId);
-    List<Flat> findFlatByBlockNumber(String blockNumber);
-    List<Flat> findFlatByFlatNumber(String flatNumber);
+    Slice<Flat> findFlatByBlockNumber(String blockNumber, Pageable pageable);
+    Slice<Flat> findFlatByFlatNumber(String flatNumber, Pageable pageable);
     Flat findFlatByBlockNumberAndFlatNumber(String blockNumber, String flatNumber);
+    FlatDto findFlatDtoByFlatId(String flatId);
+    FlatPageDto findFlatPageByBlockNumber(String blockNumber, Pageable pageable);
+    FlatPageDto findFlatPageByFlatNumber(String flatNumber, Pageable pageable);
+    FlatDto findFlatDtoByBlockNumberAndFlatNumber(String blockNumber, String flatNumber);
+    FlatSummaryPageDto findFlatSummaryPageBySociety(String societyId, String flatBlock, Pageable pageable);
+    Map<String, FlatDto> findFlatDtosByFlatIds(Collection<String> flatIds);
+    long exportFlats(Consumer<FlatDto> consumer);
 }
@@ -1,41 +1,155 @@
 package com.micasa.service;
 
+import com.micasa.cache.FlatCache;
+import com.micasa.common.changelog.ChangeLogPublisher;
+import com.micasa.common.util.TransactionUtils;
 import com.micasa.constants.ExceptionMessages;
+import com.micasa.dto.BulkOccupancyResponseDto;
 import com.micasa.dto.FlatDto;
+import com.micasa.dto.FlatIngestResultDto;
+import com.micasa.dto.FlatPageDto;
+import com.micasa.dto.FlatSummaryPageDto;
 import com.micasa.exception.BadRequestException;
+import com.micasa.exception.ConflictException;
+import com.micasa.index.OccupancyIndex;
+import com.micasa.journal.JournalRecordType;
+import com.micasa.mapper.FlatMapper;
+import com.micasa.mapper.SocietyDtoResolver;
 import com.micasa.model.Flat;
+import com.micasa.model.Society;
+import com.micasa.projection.FlatOccupancyView;
+import com.micasa.projection.FlatSummary;
 import com.micasa.repository.FlatRepository;
+import com.micasa.repository.SocietyRepository;
+import com.micasa.rollup.OccupancyRollupRecorder;
+import com.micasa.util.LogRateLimiter;
+import com.micasa.writebehind.FlatWriteBatch;
+import com.micasa.writebehind.FlatWriteBehind;
+import com.micasa.writebehind.PendingWrite;
+import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.List;
-import java.util.Optional;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Service class implementation for flatService.
  * Methods:
  *     1. addFlat(Flat); Add a new flat to database.
- *     2. updateOccupiedStatus(String, boolean); Update occupied status of a flat
+ *        addFlats(List); Add flats in bulk with JDBC batching, reporting per-row results.
+ *     2. updateOccupiedStatus(String, boolean); Update occupied status of a flat, retrying lost races.
+ *        updateOccupiedStatusIfMatches(String, boolean, boolean); Compare and set occupied status of a flat.
+ *        updateOccupiedStatuses(Map, boolean); Update occupied status of many flats with bulk update statements.
+ *        writeFlats(FlatWriteBatch); Write flat mutations queued by flatWriteBehind.
  *     3. deleteFlatById(String); Delete a flat by flatId.
  *     4. findFlatByFlatId(String); Find a flat by flatId.
- *     5. findFlatByBlockNumber(String); Find a flat by block number.
- *     6. findFlatByFlatNumber(String); Find a flat by flat number.
+ *     5. findFlatByBlockNumber(String, Pageable); Find a page of flats by block number.
+ *     6. findFlatByFlatNumber(String, Pageable); Find a page of flats by flat number.
  *     7. findFlatByBlockNumberAndFlatNumber(String, String); Find a flat by block number and flat number.
+ *     8. findFlatDtoByFlatId(String), findFlatPageByBlockNumber(String, Pageable),
+ *        findFlatPageByFlatNumber(String, Pageable), findFlatDtoByBlockNumberAndFlatNumber(String, String);
+ *        Same lookups returning mapped dtos, read through flatCache.
+ * With micasa.flat.write-behind.enabled adds, occupancy updates and deletes are queued and lookups show queued writes.
+ *     9. exportFlats(Consumer); Stream all flats to a consumer with constant memory.
+ *    10. findFlatSummaryPageBySociety(String, String, Pageable); Find a page of flat summaries of a society.
+ *    11. findFlatDtosByFlatIds(Collection); Find many flats by flatId, read through flatCache, missing flats are left out.
+ * Every write also updates the flat counts per society and block in occupancy_rollup before it commits, see OccupancyRollupRecorder.
  */
 @Slf4j
 @Service(value = "flatService")
 @Transactional
 public class FlatServiceImpl implements FlatService
 {
+    private static final String INSERT_FLAT_SQL =
+            "insert into flats (flat_id, flat_number, flat_block, occupied, version, society_id) values (?, ?, ?, ?, 0, ?)";
+    private static final String SOCIETY_FLAT_LIST_ROLE = Society.class.getName() + ".flatList";
+
     //Flat repository instance.
     private final FlatRepository flatRepository;
+    //Society repository instance, loads the society of summary pages.
+    private final SocietyRepository societyRepository;
+    //FlatMapper instance, flats are mapped once and cached as dto.
+    private final FlatMapper flatMapper;
+    //Maps pages of flats with all their societies resolved in one batch.
+    private final SocietyDtoResolver societyDtoResolver;
+    //Cache of mapped flats and lookups.
+    private final FlatCache flatCache;
+    //In-memory occupancy index, kept current after every committed write.
+    private final OccupancyIndex occupancyIndex;
+    //Records committed writes in change_log, so society-service drops its cached copies.
+    private final ChangeLogPublisher changeLogPublisher;
+    //Keeps flat counts per society and block in occupancy_rollup, in the transaction of every write.
+    private final OccupancyRollupRecorder occupancyRollupRecorder;
+    //Queues flat mutations when write-behind is enabled.
+    private final FlatWriteBehind flatWriteBehind;
+    //Writes queued flats with plain JDBC batches.
+    private final JdbcTemplate jdbcTemplate;
+    //Entity manager, used to resolve society references and clear the context between bulk chunks.
+    private final EntityManager entityManager;
+    //Runs each bulk ingestion chunk, each occupancy update attempt and each flat load of findFlatDtoByFlatId in its own transaction.
+    private final TransactionTemplate transactionTemplate;
+    //Number of flats written per transaction during bulk ingestion.
+    private final int bulkChunkSize;
+    //Limits logging of flat-not-found, which clients polling for new flats hit constantly.
+    private final LogRateLimiter notFoundLogLimiter;
+    //Attempts of an occupancy update before a lost race is reported as conflict.
+    private final int occupancyMaxAttempts;
+    //Base and cap of the backoff between occupancy update attempts.
+    private final Duration occupancyBackoff;
+    private final Duration occupancyMaxBackoff;
+    //Number of flatIds per IN query of a multi-get.
+    private final int multiGetChunkSize;
 
     @Autowired
-    public FlatServiceImpl(FlatRepository flatRepository)
+    public FlatServiceImpl(FlatRepository flatRepository, SocietyRepository societyRepository, FlatMapper flatMapper,
+                           SocietyDtoResolver societyDtoResolver, FlatCache flatCache,
+                           OccupancyIndex occupancyIndex, ChangeLogPublisher changeLogPublisher,
+                           OccupancyRollupRecorder occupancyRollupRecorder, FlatWriteBehind flatWriteBehind,
+                           EntityManager entityManager, JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                           @Value("${micasa.flat.bulk.chunk-size:500}") int bulkChunkSize,
+                           @Value("${micasa.flat.not-found.log-interval:10s}") Duration notFoundLogInterval,
+                           @Value("${micasa.flat.occupancy.retry.max-attempts:3}") int occupancyMaxAttempts,
+                           @Value("${micasa.flat.occupancy.retry.backoff:5ms}") Duration occupancyBackoff,
+                           @Value("${micasa.flat.occupancy.retry.max-backoff:50ms}") Duration occupancyMaxBackoff,
+                           @Value("${micasa.flat.multi-get.chunk-size:500}") int multiGetChunkSize)
     {
         this.flatRepository = flatRepository;
+        this.societyRepository = societyRepository;
+        this.flatMapper = flatMapper;
+        this.societyDtoResolver = societyDtoResolver;
+        this.flatCache = flatCache;
+        this.occupancyIndex = occupancyIndex;
+        this.changeLogPublisher = changeLogPublisher;
+        this.occupancyRollupRecorder = occupancyRollupRecorder;
+        this.flatWriteBehind = flatWriteBehind;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.bulkChunkSize = bulkChunkSize;
+        this.notFoundLogLimiter = new LogRateLimiter(notFoundLogInterval);
+        this.occupancyMaxAttempts = Math.max(1, occupancyMaxAttempts);
+        this.occupancyBackoff = occupancyBackoff;
+        this.occupancyMaxBackoff = occupancyMaxBackoff;
+        this.multiGetChunkSize = Math.max(1, multiGetChunkSize);
     }
 
     /**
@@ -43,99 +157,1138 @@ public class FlatServiceImpl implements FlatService
      * Structure:
      *  1. Take a flat
      *  2. Save to database.
+     * With write-behind enabled the flat is queued instead, see queueAddFlat.
+     * Runs without a surrounding transaction, a queued add must not hold a connection while it waits for the journal.
      * @param flat : Flat object
      * @return Saved Flat object.
      */
     @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
     public Flat addFlat(Flat flat)
+    {
+        if(this.flatWriteBehind.isEnabled())
+        {
+            return this.queueAddFlat(flat);
+        }
+        return this.transactionTemplate.execute(status -> this.saveFlat(flat));
+    }
+
+    private Flat saveFlat(Flat flat)
     {
         Flat savedFlat = this.flatRepository.save(flat);
+        this.flatCache.addedAfterCommit(List.of(savedFlat.getFlatId()));
+        this.occupancyIndex.putAfterCommit(savedFlat);
+        this.changeLogPublisher.flatChanged(savedFlat.getFlatId(), societyIdOf(savedFlat));
+        this.occupancyRollupRecorder.flatAdded(societyIdOf(savedFlat), savedFlat.getFlatBlock(), savedFlat.isOccupied());
         log.debug("Added new flat: {}", savedFlat);
         return savedFlat;
     }
 
+    /**
+     * Function to queue a new flat in write-behind mode.
+     * Structure:
+     *  1. Reject the flat if its flatNumber/flatBlock is taken, by a stored flat without pending delete or by a pending add.
+     *  2. Reject the flat if its society does not exist.
+     *  3. Assign the flatId and queue the add, it is durable in the journal once queued.
+     * @param flat : Flat object
+     * @return : Queued flat object.
+     */
+    private Flat queueAddFlat(Flat flat)
+    {
+        String key = flat.getFlatBlock() + "/" + flat.getFlatNumber();
+        Optional<Flat> existing = this.flatRepository.findByFlatNumberAndFlatBlock(flat.getFlatNumber(), flat.getFlatBlock());
+        if(existing.isPresent() && !this.isPendingDelete(existing.get().getFlatId()))
+        {
+            throw this.flatConflict(ExceptionMessages.FLAT_ALREADY_EXISTS_BLOCK_NUMBER_MSG, key);
+        }
+        String societyId = societyIdOf(flat);
+        if(null != societyId && null == this.entityManager.find(Society.class, societyId))
+        {
+            throw BadRequestException.builder()
+                    .message(ExceptionMessages.NO_RECORD_PRESENT_MSG)
+                    .fieldValue(societyId)
+                    .timestamp(System.currentTimeMillis())
+                    .build();
+        }
+        flat.setFlatId(UUID.randomUUID().toString());
+        if(!this.flatWriteBehind.add(flat))
+        {
+            throw this.flatConflict(ExceptionMessages.FLAT_ALREADY_EXISTS_BLOCK_NUMBER_MSG, key);
+        }
+        log.debug("Queued new flat: {}", flat);
+        return flat;
+    }
+
+    private boolean isPendingDelete(String flatId)
+    {
+        PendingWrite pendingWrite = this.flatWriteBehind.pendingWrite(flatId);
+        return null != pendingWrite && JournalRecordType.DELETE == pendingWrite.type();
+    }
+
+    /**
+     * Function to add flats to database in bulk.
+     * Structure:
+     *  1. Split flats into chunks of bulkChunkSize.
+     *  2. Ingest every chunk in its own transaction, so a failing chunk does not abort the others.
+     *  3. Return per-row results, index is the position in the passed list.
+     * @param flats : Flats to save in database.
+     * @return : Result for every passed flat, in the same order.
+     */
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public List<FlatIngestResultDto> addFlats(List<Flat> flats)
+    {
+        List<FlatIngestResultDto> results = new ArrayList<>(flats.size());
+        for(int from = 0; from < flats.size(); from += this.bulkChunkSize)
+        {
+            int to = Math.min(from + this.bulkChunkSize, flats.size());
+            results.addAll(this.addFlatChunk(flats.subList(from, to), from));
+        }
+        log.info("Bulk ingestion of {} flats done", flats.size());
+        return results;
+    }
+
+    /**
+     * Function to ingest a single chunk of flats.
+     * Structure:
+     *  1. Reject flats without flatNumber/flatBlock and duplicates within the chunk.
+     *  2. In one transaction look up existing (flatNumber, flatBlock) pairs with a single query,
+     *     batch insert the remaining flats and flush.
+     *  3. If the batch still hits the unique constraint (concurrent writer), fall back to inserting
+     *     the chunk row by row so only the conflicting rows are reported.
+     * @param chunk : Flats to ingest.
+     * @param offset : Position of the chunk in the whole request.
+     * @return : Result for every flat of the chunk.
+     */
+    private List<FlatIngestResultDto> addFlatChunk(List<Flat> chunk, int offset)
+    {
+        FlatIngestResultDto[] results = new FlatIngestResultDto[chunk.size()];
+        List<Integer> candidates = new ArrayList<>(chunk.size());
+        Set<String> chunkKeys = new HashSet<>();
+        for(int i = 0; i < chunk.size(); i++)
+        {
+            Flat flat = chunk.get(i);
+            if(isBlank(flat.getFlatNumber()) || isBlank(flat.getFlatBlock()))
+            {
+                results[i] = buildIngestResult(offset + i, flat, FlatIngestResultDto.Status.FAILED,
+                        ExceptionMessages.FLAT_NUMBER_BLOCK_REQUIRED_MSG);
+            }
+            else if(!chunkKeys.add(flatKey(flat.getFlatNumber(), flat.getFlatBlock())))
+            {
+                results[i] = buildIngestResult(offset + i, flat, FlatIngestResultDto.Status.CONFLICT,
+                        ExceptionMessages.FLAT_ALREADY_EXISTS_MSG);
+            }
+            else
+            {
+                candidates.add(i);
+            }
+        }
+        try
+        {
+            Set<Integer> conflicts = this.transactionTemplate.execute(status -> this.insertFlats(chunk, candidates));
+            for(int i : candidates)
+            {
+                Flat flat = chunk.get(i);
+                results[i] = conflicts.contains(i)
+                        ? buildIngestResult(offset + i, flat, FlatIngestResultDto.Status.CONFLICT, ExceptionMessages.FLAT_ALREADY_EXISTS_MSG)
+                        : buildIngestResult(offset + i, flat, FlatIngestResultDto.Status.CREATED, null);
+            }
+        }
+        catch(DataIntegrityViolationException dataIntegrityViolationException)
+        {
+            log.warn("Batch insert of chunk at offset {} failed, retrying row by row", offset);
+            for(int i : candidates)
+            {
+                results[i] = this.insertFlat(chunk.get(i), offset + i);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Function to batch insert flats of a chunk that do not exist yet.
+     * Must be called in a transaction.
+     * @param chunk : Flats of the chunk.
+     * @param candidates : Positions in chunk to insert.
+     * @return : Positions that were skipped because the flat already exists.
+     */
+    private Set<Integer> insertFlats(List<Flat> chunk, List<Integer> candidates)
+    {
+        Set<String> flatBlocks = new HashSet<>();
+        Set<String> flatNumbers = new HashSet<>();
+        for(int i : candidates)
+        {
+            flatBlocks.add(chunk.get(i).getFlatBlock());
+            flatNumbers.add(chunk.get(i).getFlatNumber());
+        }
+        Set<String> existingKeys = new HashSet<>();
+        for(Flat existing : this.flatRepository.findByFlatBlockInAndFlatNumberIn(flatBlocks, flatNumbers))
+        {
+            existingKeys.add(flatKey(existing.getFlatNumber(), existing.getFlatBlock()));
+        }
+        Set<Integer> conflicts = new HashSet<>();
+        List<Flat> toInsert = new ArrayList<>(candidates.size());
+        for(int i : candidates)
+        {
+            Flat flat = chunk.get(i);
+            if(existingKeys.contains(flatKey(flat.getFlatNumber(), flat.getFlatBlock())))
+            {
+                conflicts.add(i);
+                continue;
+            }
+            flat.setSociety(this.resolveSociety(flat.getSociety()));
+            toInsert.add(flat);
+        }
+        this.flatRepository.saveAllAndFlush(toInsert);
+        this.entityManager.clear();
+        this.flatCache.addedAfterCommit(toInsert.stream().map(Flat::getFlatId).toList());
+        toInsert.forEach(this.occupancyIndex::putAfterCommit);
+        toInsert.forEach(flat -> this.changeLogPublisher.flatChanged(flat.getFlatId(), societyIdOf(flat)));
+        toInsert.forEach(flat -> this.occupancyRollupRecorder.flatAdded(societyIdOf(flat), flat.getFlatBlock(), flat.isOccupied()));
+        return conflicts;
+    }
+
+    /**
+     * Function to insert a single flat in its own transaction, used when a batch hit the unique constraint.
+     * @param flat : Flat to insert.
+     * @param index : Position of the flat in the whole request.
+     * @return : Result of the insert.
+     */
+    private FlatIngestResultDto insertFlat(Flat flat, int index)
+    {
+        flat.setFlatId(null);
+        try
+        {
+            boolean created = Boolean.TRUE.equals(this.transactionTemplate.execute(status -> {
+                if(this.flatRepository.findByFlatNumberAndFlatBlock(flat.getFlatNumber(), flat.getFlatBlock()).isPresent())
+                {
+                    return false;
+                }
+                flat.setSociety(this.resolveSociety(flat.getSociety()));
+                this.flatRepository.saveAndFlush(flat);
+                this.flatCache.addedAfterCommit(List.of(flat.getFlatId()));
+                this.occupancyIndex.putAfterCommit(flat);
+                this.changeLogPublisher.flatChanged(flat.getFlatId(), societyIdOf(flat));
+                this.occupancyRollupRecorder.flatAdded(societyIdOf(flat), flat.getFlatBlock(), flat.isOccupied());
+                return true;
+            }));
+            return created
+                    ? buildIngestResult(index, flat, FlatIngestResultDto.Status.CREATED, null)
+                    : buildIngestResult(index, flat, FlatIngestResultDto.Status.CONFLICT, ExceptionMessages.FLAT_ALREADY_EXISTS_MSG);
+        }
+        catch(DataIntegrityViolationException dataIntegrityViolationException)
+        {
+            return buildIngestResult(index, flat, FlatIngestResultDto.Status.CONFLICT, ExceptionMessages.FLAT_ALREADY_EXISTS_MSG);
+        }
+        catch(RuntimeException runtimeException)
+        {
+            log.error("Failed to add flat at index {}", index, runtimeException);
+            return buildIngestResult(index, flat, FlatIngestResultDto.Status.FAILED, runtimeException.getMessage());
+        }
+    }
+
+    /**
+     * Function to replace a mapped society with a reference, so inserts do not select the society first.
+     * @param society : Society mapped from dto, may be null.
+     * @return : Society reference or null.
+     */
+    private Society resolveSociety(Society society)
+    {
+        if(null == society || null == society.getSocietyId())
+        {
+            return null;
+        }
+        return this.entityManager.getReference(Society.class, society.getSocietyId());
+    }
+
+    private static FlatIngestResultDto buildIngestResult(int index, Flat flat, FlatIngestResultDto.Status status, String message)
+    {
+        return FlatIngestResultDto.builder()
+                .index(index)
+                .status(status)
+                .flatId(FlatIngestResultDto.Status.CREATED == status ? flat.getFlatId() : null)
+                .flatNumber(flat.getFlatNumber())
+                .flatBlock(flat.getFlatBlock())
+                .message(message)
+                .build();
+    }
+
+    private static String societyIdOf(Flat flat)
+    {
+        return null == flat.getSociety() ? null : flat.getSociety().getSocietyId();
+    }
+
+    private static String flatKey(String flatNumber, String flatBlock)
+    {
+        return flatNumber + '\u0000' + flatBlock;
+    }
+
+    private static boolean isBlank(String value)
+    {
+        return null == value || value.isBlank();
+    }
+
     /**
      * Function to update occupied status of a flat.
      * Structure:
-     *  1. Look for a flat with passed flatId
+     *  1. In a new transaction look for a flat with passed flatId
      *      If found
      *          1.1 Set new occupied status
-     *          1.2 Update in database.
-     *          1.3 Return updated flat.
+     *          1.2 Update in database, the update only matches the version that was read.
+     *          1.3 Update flatCache and occupancyIndex once committed.
+     *          1.4 Return updated flat.
      *      Else
      *          1.1 Throw BadRequestException
+     *  2. If a concurrent update bumped the version, back off and retry from 1.
+     *  3. After occupancyMaxAttempts lost races throw ConflictException, callers never wait on row locks.
+     * With write-behind enabled the update is only queued, see queueOccupiedStatus.
      * @param flatId : FlatId for which occupied status has to be updated.
      * @param occupiedStatus : This occupied status will be set.
      * @return : updated flat object.
      */
     @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
     public Flat updateOccupiedStatus(String flatId, boolean occupiedStatus)
     {
-        Flat flat = this.findFlatByFlatId(flatId);
+        if(this.flatWriteBehind.isEnabled())
+        {
+            return this.queueOccupiedStatus(flatId, occupiedStatus);
+        }
+        for(int attempt = 1; ; attempt++)
+        {
+            try
+            {
+                return this.transactionTemplate.execute(status -> this.applyOccupiedStatus(flatId, occupiedStatus));
+            }
+            catch(OptimisticLockingFailureException optimisticLockingFailureException)
+            {
+                if(attempt >= this.occupancyMaxAttempts)
+                {
+                    log.warn("Flat with flatId: {} still modified concurrently after {} attempts", flatId, attempt);
+                    throw this.flatConflict(ExceptionMessages.FLAT_CONCURRENTLY_MODIFIED_MSG, flatId);
+                }
+                //The second-level cache may hold the stale version, e.g. written by society-service.
+                this.entityManager.getEntityManagerFactory().getCache().evict(Flat.class, flatId);
+                this.backOff(attempt, flatId);
+            }
+        }
+    }
+
+    private Flat applyOccupiedStatus(String flatId, boolean occupiedStatus)
+    {
+        Flat flat = this.loadFlat(flatId);
+        if(flat.isOccupied() != occupiedStatus)
+        {
+            //A stale read fails the versioned update below, so the flip is only counted if it happens.
+            this.occupancyRollupRecorder.occupiedChanged(societyIdOf(flat), flat.getFlatBlock(), occupiedStatus);
+        }
         flat.setOccupied(occupiedStatus);
-        flat = this.flatRepository.save(flat);
+        flat = this.flatRepository.saveAndFlush(flat);
+        this.flatCache.invalidateAfterCommit(List.of(flatId));
+        this.occupancyIndex.setOccupiedAfterCommit(flatId, occupiedStatus);
+        this.changeLogPublisher.flatsChanged(List.of(flatId));
         log.info("Flat with flatId: {} updated with occupied status: {}", flatId, occupiedStatus);
         return flat;
     }
 
+    /**
+     * Function to queue an occupancy update in write-behind mode.
+     * Structure:
+     *  1. Look for the flat, unknown flats are rejected right away.
+     *  2. Queue the update, it is durable in the journal once queued.
+     *  3. Return the flat with the new status, detached so it is never written from here.
+     * @param flatId : FlatId for which occupied status has to be updated.
+     * @param occupiedStatus : This occupied status will be set.
+     * @return : flat object with the queued status.
+     */
+    private Flat queueOccupiedStatus(String flatId, boolean occupiedStatus)
+    {
+        Flat flat = this.findFlatByFlatId(flatId);
+        this.flatWriteBehind.updateOccupancy(Map.of(flatId, occupiedStatus));
+        this.entityManager.detach(flat);
+        flat.setOccupied(occupiedStatus);
+        log.info("Flat with flatId: {} queued with occupied status: {}", flatId, occupiedStatus);
+        return flat;
+    }
+
+    /**
+     * Function to sleep before retrying an update that lost against a concurrent update.
+     * Exponential backoff with full jitter, so retrying callers spread out instead of colliding again.
+     * @param attempt : Number of the failed attempt, starting at 1.
+     * @param flatId : FlatId being updated.
+     */
+    private void backOff(int attempt, String flatId)
+    {
+        long ceiling = Math.min(this.occupancyMaxBackoff.toNanos(), this.occupancyBackoff.toNanos() << Math.min(attempt - 1, 20));
+        try
+        {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        }
+        catch(InterruptedException interruptedException)
+        {
+            Thread.currentThread().interrupt();
+            throw this.flatConflict(ExceptionMessages.FLAT_CONCURRENTLY_MODIFIED_MSG, flatId);
+        }
+    }
+
+    /**
+     * Function to update occupied status of a flat only if it currently has the expected status.
+     * Structure:
+     *  1. Compare and set the status with a single update statement, nothing is read first.
+     *      If updated
+     *          1.1 Update flatCache and occupancyIndex once committed.
+     *          1.2 Return updated flat.
+     *      Else if flat exists
+     *          1.1 Throw ConflictException, the status did not match.
+     *      Else
+     *          1.1 Throw BadRequestException
+     * With write-behind enabled the status is compared with the pending one, if any, and the update is queued
+     * without a surrounding transaction.
+     * @param flatId : FlatId for which occupied status has to be updated.
+     * @param expectedStatus : Occupied status the flat must currently have.
+     * @param occupiedStatus : This occupied status will be set.
+     * @return : updated flat object.
+     */
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public Flat updateOccupiedStatusIfMatches(String flatId, boolean expectedStatus, boolean occupiedStatus)
+    {
+        if(this.flatCache.isMissing(flatId))
+        {
+            throw this.flatNotFound(flatId);
+        }
+        if(this.flatWriteBehind.isEnabled())
+        {
+            return this.queueOccupiedStatusIfMatches(flatId, expectedStatus, occupiedStatus);
+        }
+        return this.transactionTemplate.execute(status -> this.applyOccupiedStatusIfMatches(flatId, expectedStatus, occupiedStatus));
+    }
+
+    private Flat applyOccupiedStatusIfMatches(String flatId, boolean expectedStatus, boolean occupiedStatus)
+    {
+        int updated = this.flatRepository.compareAndSetOccupied(flatId, expectedStatus, occupiedStatus);
+        Optional<Flat> flatOptional = this.flatRepository.findById(flatId);
+        if(flatOptional.isEmpty())
+        {
+            this.flatCache.markMissing(flatId);
+            throw this.flatNotFound(flatId);
+        }
+        if(0 == updated)
+        {
+            log.info("Flat with flatId: {} not updated, occupied status is not {}", flatId, expectedStatus);
+            throw this.flatConflict(ExceptionMessages.OCCUPIED_STATUS_MISMATCH_MSG, flatId);
+        }
+        Flat flat = flatOptional.get();
+        //The row was updated, the flat read may still hold the old status from the second-level cache.
+        this.entityManager.detach(flat);
+        flat.setOccupied(occupiedStatus);
+        this.flatCache.invalidateAfterCommit(List.of(flatId));
+        this.occupancyIndex.setOccupiedAfterCommit(flatId, occupiedStatus);
+        this.changeLogPublisher.flatsChanged(List.of(flatId));
+        if(expectedStatus != occupiedStatus)
+        {
+            this.occupancyRollupRecorder.occupiedChanged(societyIdOf(flat), flat.getFlatBlock(), occupiedStatus);
+        }
+        log.info("Flat with flatId: {} updated from occupied status: {} to {}", flatId, expectedStatus, occupiedStatus);
+        return flat;
+    }
+
+    private Flat queueOccupiedStatusIfMatches(String flatId, boolean expectedStatus, boolean occupiedStatus)
+    {
+        Flat flat = this.findFlatByFlatId(flatId);
+        //Read through a query, the persistence context may hold a status older than the last flush.
+        boolean queued = this.flatWriteBehind.compareAndUpdateOccupancy(flatId, expectedStatus, occupiedStatus,
+                () -> this.flatRepository.findOccupancyByFlatIdIn(List.of(flatId)).stream()
+                        .findFirst()
+                        .map(FlatOccupancyView::isOccupied)
+                        .orElseThrow(() -> this.flatNotFound(flatId)));
+        if(!queued)
+        {
+            log.info("Flat with flatId: {} not queued, occupied status is not {}", flatId, expectedStatus);
+            throw this.flatConflict(ExceptionMessages.OCCUPIED_STATUS_MISMATCH_MSG, flatId);
+        }
+        this.entityManager.detach(flat);
+        flat.setOccupied(occupiedStatus);
+        log.info("Flat with flatId: {} queued from occupied status: {} to {}", flatId, expectedStatus, occupiedStatus);
+        return flat;
+    }
+
+    private ConflictException flatConflict(String message, String flatId)
+    {
+        return ConflictException.builder()
+                .message(message)
+                .fieldValue(flatId)
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+
+    /**
+     * Function to update occupied status of many flats at once.
+     * Structure:
+     *  1. Group flatIds by target status.
+     *  2. Unless optimistic, look up which flatIds exist with one query per chunk and skip the missing ones.
+     *  3. Per status, update all flats with one update statement per chunk of bulkChunkSize flatIds,
+     *     flats are never loaded.
+     *  4. Drop updated flats from flatCache and update occupancyIndex once committed.
+     * With write-behind enabled existing flats, including pending adds, are queued instead without a surrounding
+     * transaction, updated is then the number of queued flats.
+     * @param statusByFlatId : Requested occupied status by flatId.
+     * @param optimistic : Skip the existence check, missing flats are then only visible in the affected row count.
+     * @return : Number of updated rows and, unless optimistic, missing flatIds.
+     */
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public BulkOccupancyResponseDto updateOccupiedStatuses(Map<String, Boolean> statusByFlatId, boolean optimistic)
+    {
+        if(!this.flatWriteBehind.isEnabled())
+        {
+            return this.transactionTemplate.execute(status -> this.applyOccupiedStatuses(statusByFlatId, optimistic));
+        }
+        List<String> missingFlatIds = null;
+        Map<String, Boolean> queuedStatusByFlatId = statusByFlatId;
+        if(!optimistic)
+        {
+            Set<String> existingFlatIds = this.findExistingFlatIds(statusByFlatId.keySet());
+            for(String flatId : statusByFlatId.keySet())
+            {
+                PendingWrite pendingWrite = this.flatWriteBehind.pendingWrite(flatId);
+                if(null != pendingWrite && JournalRecordType.DELETE == pendingWrite.type())
+                {
+                    existingFlatIds.remove(flatId);
+                }
+                else if(null != pendingWrite)
+                {
+                    existingFlatIds.add(flatId);
+                }
+            }
+            missingFlatIds = statusByFlatId.keySet().stream().filter(flatId -> !existingFlatIds.contains(flatId)).toList();
+            queuedStatusByFlatId = new LinkedHashMap<>(statusByFlatId);
+            queuedStatusByFlatId.keySet().retainAll(existingFlatIds);
+        }
+        this.flatWriteBehind.updateOccupancy(queuedStatusByFlatId);
+        log.info("Bulk occupancy update of {} flats queued", queuedStatusByFlatId.size());
+        return BulkOccupancyResponseDto.builder()
+                .received(statusByFlatId.size())
+                .updated(queuedStatusByFlatId.size())
+                .optimistic(optimistic)
+                .queued(true)
+                .missingFlatIds(missingFlatIds)
+                .build();
+    }
+
+    /**
+     * Function to write flat mutations queued by flatWriteBehind, in a new transaction.
+     * Structure:
+     *  1. Delete flats with one bulk delete statement per chunk.
+     *  2. Insert new flats with JDBC batches, see insertQueuedFlats.
+     *  3. Update occupied status as an optimistic bulk update.
+     *  4. flatCache, occupancyIndex, change log and occupancy rollup follow as for the synchronous writes.
+     * Writing a batch again is harmless, flats already inserted are skipped by flatId.
+     * Runs in its own transaction, it is called by the flush thread of flatWriteBehind and never joins a caller's transaction.
+     * @param flatWriteBatch : Queued writes, at most one per flatId.
+     * @return : FlatIds of adds that could not be inserted.
+     */
+    @Override
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public Set<String> writeFlats(FlatWriteBatch flatWriteBatch)
+    {
+        for(List<String> chunk : this.chunks(flatWriteBatch.deletes()))
+        {
+            this.deleteFlats(chunk);
+        }
+        Set<String> rejectedFlatIds = new HashSet<>();
+        List<Flat> adds = flatWriteBatch.adds();
+        for(int from = 0; from < adds.size(); from += this.bulkChunkSize)
+        {
+            rejectedFlatIds.addAll(this.insertQueuedFlats(adds.subList(from, Math.min(from + this.bulkChunkSize, adds.size()))));
+        }
+        if(!flatWriteBatch.occupiedByFlatId().isEmpty())
+        {
+            this.applyOccupiedStatuses(flatWriteBatch.occupiedByFlatId(), true);
+        }
+        return rejectedFlatIds;
+    }
+
+    private void deleteFlats(List<String> flatIds)
+    {
+        List<FlatOccupancyView> deletedFlats = this.flatRepository.lockOccupancyByFlatIdIn(flatIds);
+        this.flatRepository.deleteByFlatIdIn(flatIds);
+        for(FlatOccupancyView deletedFlat : deletedFlats)
+        {
+            this.flatCache.evictAfterCommit(deletedFlat.getFlatId());
+            this.occupancyIndex.removeAfterCommit(deletedFlat.getFlatId());
+            this.changeLogPublisher.flatChanged(deletedFlat.getFlatId(), deletedFlat.getSocietyId());
+            this.occupancyRollupRecorder.flatRemoved(deletedFlat.getSocietyId(), deletedFlat.getFlatBlock(), deletedFlat.isOccupied());
+        }
+    }
+
+    /**
+     * Function to insert a chunk of queued flats.
+     * Structure:
+     *  1. Skip flats already inserted, by flatId.
+     *  2. Reject flats whose flatNumber/flatBlock is taken or whose society no longer exists.
+     *  3. Insert the rest with one JDBC batch. If a concurrent writer still makes it fail, insert row by row.
+     * @param flats : Queued flats with their flatId.
+     * @return : FlatIds of rejected flats.
+     */
+    private Set<String> insertQueuedFlats(List<Flat> flats)
+    {
+        List<String> flatIds = flats.stream().map(Flat::getFlatId).toList();
+        Set<String> insertedFlatIds = new HashSet<>(this.flatRepository.findExistingFlatIds(flatIds));
+        Set<String> flatBlocks = new HashSet<>();
+        Set<String> flatNumbers = new HashSet<>();
+        Set<String> societyIds = new HashSet<>();
+        for(Flat flat : flats)
+        {
+            flatBlocks.add(flat.getFlatBlock());
+            flatNumbers.add(flat.getFlatNumber());
+            if(null != societyIdOf(flat))
+            {
+                societyIds.add(societyIdOf(flat));
+            }
+        }
+        Set<String> takenKeys = new HashSet<>();
+        for(Flat existing : this.flatRepository.findByFlatBlockInAndFlatNumberIn(flatBlocks, flatNumbers))
+        {
+            takenKeys.add(flatKey(existing.getFlatNumber(), existing.getFlatBlock()));
+        }
+        Set<String> existingSocietyIds = societyIds.isEmpty() ? Set.of() : new HashSet<>(this.flatRepository.findExistingSocietyIds(societyIds));
+        Set<String> rejectedFlatIds = new HashSet<>();
+        List<Flat> toInsert = new ArrayList<>(flats.size());
+        for(Flat flat : flats)
+        {
+            if(insertedFlatIds.contains(flat.getFlatId()))
+            {
+                continue;
+            }
+            String societyId = societyIdOf(flat);
+            if(!takenKeys.add(flatKey(flat.getFlatNumber(), flat.getFlatBlock())) || (null != societyId && !existingSocietyIds.contains(societyId)))
+            {
+                rejectedFlatIds.add(flat.getFlatId());
+                continue;
+            }
+            toInsert.add(flat);
+        }
+        List<Flat> inserted = toInsert;
+        try
+        {
+            this.jdbcTemplate.batchUpdate(INSERT_FLAT_SQL, toInsert, toInsert.size(), (statement, flat) -> {
+                statement.setString(1, flat.getFlatId());
+                statement.setString(2, flat.getFlatNumber());
+                statement.setString(3, flat.getFlatBlock());
+                statement.setBoolean(4, flat.isOccupied());
+                statement.setString(5, societyIdOf(flat));
+            });
+        }
+        catch(DataIntegrityViolationException dataIntegrityViolationException)
+        {
+            log.warn("Batch insert of {} queued flats failed, retrying row by row", toInsert.size());
+            Set<String> batchInsertedFlatIds = new HashSet<>(this.flatRepository.findExistingFlatIds(toInsert.stream().map(Flat::getFlatId).toList()));
+            inserted = new ArrayList<>(toInsert.size());
+            for(Flat flat : toInsert)
+            {
+                if(batchInsertedFlatIds.contains(flat.getFlatId()) || this.insertQueuedFlat(flat))
+                {
+                    inserted.add(flat);
+                }
+                else
+                {
+                    rejectedFlatIds.add(flat.getFlatId());
+                }
+            }
+        }
+        this.flatCache.addedAfterCommit(inserted.stream().map(Flat::getFlatId).toList());
+        inserted.forEach(this.occupancyIndex::putAfterCommit);
+        inserted.forEach(flat -> this.changeLogPublisher.flatChanged(flat.getFlatId(), societyIdOf(flat)));
+        inserted.forEach(flat -> this.occupancyRollupRecorder.flatAdded(societyIdOf(flat), flat.getFlatBlock(), flat.isOccupied()));
+        this.evictSecondLevelCacheAfterCommit(inserted);
+        return rejectedFlatIds;
+    }
+
+    /**
+     * Function to drop cached queries and society flat lists once the current transaction commits.
+     * Needed after JDBC inserts, hibernate does not see them and would keep serving cached results.
+     * @param flats : Inserted flats.
+     */
+    private void evictSecondLevelCacheAfterCommit(List<Flat> flats)
+    {
+        if(flats.isEmpty())
+        {
+            return;
+        }
+        Set<String> societyIds = new HashSet<>();
+        flats.stream().map(FlatServiceImpl::societyIdOf).filter(Objects::nonNull).forEach(societyIds::add);
+        Cache secondLevelCache = this.entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache();
+        TransactionUtils.afterCommit(() -> {
+            societyIds.forEach(societyId -> secondLevelCache.evictCollectionData(SOCIETY_FLAT_LIST_ROLE, societyId));
+            secondLevelCache.evictDefaultQueryRegion();
+        });
+    }
+
+    private boolean insertQueuedFlat(Flat flat)
+    {
+        try
+        {
+            this.jdbcTemplate.update(INSERT_FLAT_SQL, flat.getFlatId(), flat.getFlatNumber(), flat.getFlatBlock(), flat.isOccupied(), societyIdOf(flat));
+            return true;
+        }
+        catch(DataIntegrityViolationException dataIntegrityViolationException)
+        {
+            return false;
+        }
+    }
+
+    private BulkOccupancyResponseDto applyOccupiedStatuses(Map<String, Boolean> statusByFlatId, boolean optimistic)
+    {
+        List<String> missingFlatIds = null;
+        Set<String> flatIds = statusByFlatId.keySet();
+        if(!optimistic)
+        {
+            Set<String> existingFlatIds = this.findExistingFlatIds(flatIds);
+            missingFlatIds = flatIds.stream().filter(flatId -> !existingFlatIds.contains(flatId)).toList();
+            flatIds = existingFlatIds;
+        }
+        List<String> occupiedFlatIds = new ArrayList<>();
+        List<String> vacantFlatIds = new ArrayList<>();
+        for(String flatId : flatIds)
+        {
+            (statusByFlatId.get(flatId) ? occupiedFlatIds : vacantFlatIds).add(flatId);
+        }
+        int updated = this.updateOccupied(occupiedFlatIds, true) + this.updateOccupied(vacantFlatIds, false);
+        log.info("Bulk occupancy update of {} flats done, {} rows updated", statusByFlatId.size(), updated);
+        return BulkOccupancyResponseDto.builder()
+                .received(statusByFlatId.size())
+                .updated(updated)
+                .optimistic(optimistic)
+                .missingFlatIds(missingFlatIds)
+                .build();
+    }
+
+    private Set<String> findExistingFlatIds(Set<String> flatIds)
+    {
+        Set<String> existingFlatIds = new HashSet<>(flatIds.size());
+        for(List<String> chunk : this.chunks(flatIds))
+        {
+            existingFlatIds.addAll(this.flatRepository.findExistingFlatIds(chunk));
+        }
+        return existingFlatIds;
+    }
+
+    /**
+     * Function to set occupied status of flats with one bulk update per chunk.
+     * The rows of a chunk are locked and read first, so occupancy_rollup counts exactly the flats the update flips.
+     */
+    private int updateOccupied(List<String> flatIds, boolean occupied)
+    {
+        int updated = 0;
+        for(List<String> chunk : this.chunks(flatIds))
+        {
+            for(FlatOccupancyView flat : this.flatRepository.lockOccupancyByFlatIdIn(chunk))
+            {
+                if(flat.isOccupied() != occupied)
+                {
+                    this.occupancyRollupRecorder.occupiedChanged(flat.getSocietyId(), flat.getFlatBlock(), occupied);
+                }
+            }
+            updated += this.flatRepository.updateOccupiedByFlatIdIn(chunk, occupied);
+        }
+        this.flatCache.invalidateAfterCommit(flatIds);
+        this.occupancyIndex.setOccupiedAfterCommit(flatIds, occupied);
+        this.changeLogPublisher.flatsChanged(flatIds);
+        return updated;
+    }
+
+    private List<List<String>> chunks(Collection<String> flatIds)
+    {
+        List<String> list = new ArrayList<>(flatIds);
+        List<List<String>> chunks = new ArrayList<>();
+        for(int from = 0; from < list.size(); from += this.bulkChunkSize)
+        {
+            chunks.add(list.subList(from, Math.min(from + this.bulkChunkSize, list.size())));
+        }
+        return chunks;
+    }
+
     /**
      * Function to delete a flat by flatId.
      * Structure:
      *  1. Look for flat with passed flatId.
      *      If found
      *          1.1 Delete the flat.
+     *          1.2 Evict it from flatCache and occupancyIndex once committed.
      *      Else
      *          1.1 Throw BadRequestException.
+     * With write-behind enabled the delete is queued once the flat is found, without a surrounding transaction.
      * @param flatId : Flat with this flatId will be deleted.
      */
     @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
     public void deleteFlatById(String flatId)
     {
-        Flat flat = this.findFlatByFlatId(flatId);
+        if(this.flatWriteBehind.isEnabled())
+        {
+            this.findFlatByFlatId(flatId);
+            this.flatWriteBehind.delete(flatId);
+            log.info("Flat with flatId: {} queued for delete", flatId);
+            return;
+        }
+        this.transactionTemplate.executeWithoutResult(status -> this.deleteFlat(flatId));
+    }
+
+    private void deleteFlat(String flatId)
+    {
+        Flat flat = this.loadFlat(flatId);
+        String societyId = societyIdOf(flat);
         this.flatRepository.delete(flat);
+        this.flatCache.evictAfterCommit(flatId);
+        this.occupancyIndex.removeAfterCommit(flatId);
+        this.changeLogPublisher.flatChanged(flatId, societyId);
+        this.occupancyRollupRecorder.flatRemoved(societyId, flat.getFlatBlock(), flat.isOccupied());
         log.info("Flat with flatId: {} deleted", flatId);
     }
 
     /**
      * Function to find a flat by flatId.
      * Structure:
-     *  1. Look for a flat with passed flatId
+     *  1. If flatId was recently found missing, throw BadRequestException without a database call.
+     *  2. Look for a flat with passed flatId
      *      If found
-     *          1.1 Return updated flat.
+     *          2.1 Return updated flat.
      *      Else
-     *          1.1 Throw BadRequestException
+     *          2.1 Remember flatId as missing.
+     *          2.2 Throw BadRequestException
+     * A queued write of the flat is checked first: a queued delete throws BadRequestException, a queued add is
+     * returned as queued and a queued occupancy update is applied to the flat, detached.
      * @param flatId : Search for flat with this flatId.
      * @return : Found flat object.
      */
     @Override
     public Flat findFlatByFlatId(String flatId)
     {
+        PendingWrite pendingWrite = this.flatWriteBehind.pendingWrite(flatId);
+        if(null == pendingWrite)
+        {
+            return this.loadFlat(flatId);
+        }
+        switch(pendingWrite.type())
+        {
+            case DELETE -> throw this.flatNotFound(flatId);
+            case ADD -> {
+                String societyId = pendingWrite.societyId();
+                Flat flat = new Flat(pendingWrite.flatNumber(), pendingWrite.flatBlock(), pendingWrite.occupied(),
+                        null == societyId ? null : this.entityManager.find(Society.class, societyId));
+                flat.setFlatId(flatId);
+                return flat;
+            }
+            default -> {
+                Flat flat = this.loadFlat(flatId);
+                if(pendingWrite.occupied() != flat.isOccupied())
+                {
+                    this.entityManager.detach(flat);
+                    flat.setOccupied(pendingWrite.occupied());
+                }
+                return flat;
+            }
+        }
+    }
+
+    private Flat loadFlat(String flatId)
+    {
+        if(this.flatCache.isMissing(flatId))
+        {
+            throw this.flatNotFound(flatId);
+        }
         Optional<Flat> flatOptional = this.flatRepository.findById(flatId);
-        Flat flat = flatOptional.orElseThrow(() -> {
-            log.error("Flat not found with flat Id: {}", flatId);
+        if(flatOptional.isEmpty())
+        {
+            this.flatCache.markMissing(flatId);
+            throw this.flatNotFound(flatId);
+        }
+        log.debug("Flat with id: {} found", flatId);
+        return flatOptional.get();
+    }
+
+    /**
+     * Function to build the exception for a missing flat.
+     * Misses are frequent and expected, so logging is rate limited and the exception carries no stack trace.
+     * @param flatId : FlatId that was not found.
+     * @return : BadRequestException to throw.
+     */
+    private BadRequestException flatNotFound(String flatId)
+    {
+        if(this.notFoundLogLimiter.tryAcquire())
+        {
+            log.error("Flat not found with flat Id: {} ({} similar messages suppressed)", flatId, this.notFoundLogLimiter.drainSuppressed());
+        }
+        return BadRequestException.builder()
+                .message(ExceptionMessages.NO_RECORD_PRESENT_MSG)
+                .fieldValue(flatId)
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+
+    /**
+     * Function to find a page of flats by block number, ordered by flat number descending.
+     * @param blockNumber : Search for flats in this block.
+     * @param pageable : Page to fetch.
+     * @return : Slice of found flats.
+     */
+    @Override
+    public Slice<Flat> findFlatByBlockNumber(String blockNumber, Pageable pageable)
+    {
+        Slice<Flat> flats = this.flatRepository.findByFlatBlockOrderByFlatNumberDesc(blockNumber, pageable);
+        log.debug("Found {} flats in block: {}", flats.getNumberOfElements(), blockNumber);
+        return flats;
+    }
+
+    /**
+     * Function to find a page of flats by flat number, ordered by block number descending.
+     * @param flatNumber : Search for flats with this flat number.
+     * @param pageable : Page to fetch.
+     * @return : Slice of found flats.
+     */
+    @Override
+    public Slice<Flat> findFlatByFlatNumber(String flatNumber, Pageable pageable)
+    {
+        Slice<Flat> flats = this.flatRepository.findByFlatNumberOrderByFlatBlockDesc(flatNumber, pageable);
+        log.debug("Found {} flats with flat number: {}", flats.getNumberOfElements(), flatNumber);
+        return flats;
+    }
+
+    /**
+     * Function to find a flat by block number and flat number.
+     * Structure:
+     *  1. Look for a flat with passed block number and flat number
+     *      If found
+     *          1.1 Return found flat.
+     *      Else
+     *          1.1 Throw BadRequestException
+     * @param blockNumber : Search for flat in this block.
+     * @param flatNumber : Search for flat with this flat number.
+     * @return : Found flat object.
+     */
+    @Override
+    public Flat findFlatByBlockNumberAndFlatNumber(String blockNumber, String flatNumber)
+    {
+        Optional<Flat> flatOptional = this.flatRepository.findByFlatNumberAndFlatBlock(flatNumber, blockNumber);
+        return flatOptional.orElseThrow(() -> this.flatNotFound(blockNumber, flatNumber));
+    }
+
+    private BadRequestException flatNotFound(String blockNumber, String flatNumber)
+    {
+        log.error("Flat not found with flat block: {} and flat number: {}", blockNumber, flatNumber);
+        return BadRequestException.builder()
+                .message(ExceptionMessages.NO_RECORD_PRESENT_BLOCK_NUMBER_MSG)
+                .fieldValue(blockNumber + "/" + flatNumber)
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+
+    /**
+     * Function to find a mapped flat by flatId, read through flatCache. Queued writes are applied as in findFlatByFlatId.
+     * Runs without a transaction, so a cache hit or a caller waiting for the same flat in flatCache holds no connection.
+     * Only the load runs in a transaction of its own.
+     * @param flatId : Search for flat with this flatId.
+     * @return : Found flatDto, shared with other callers.
+     */
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public FlatDto findFlatDtoByFlatId(String flatId)
+    {
+        PendingWrite pendingWrite = this.flatWriteBehind.pendingWrite(flatId);
+        if(null != pendingWrite && JournalRecordType.ADD == pendingWrite.type())
+        {
+            return this.transactionTemplate.execute(status -> this.flatMapper.flatEntityToFlatDto(this.findFlatByFlatId(flatId)));
+        }
+        FlatDto flatDto = this.flatWriteBehind.overlay(this.flatCache.getFlat(flatId,
+                id -> this.transactionTemplate.execute(status -> this.flatMapper.flatEntityToFlatDto(this.loadFlat(id)))));
+        if(null == flatDto)
+        {
+            throw this.flatNotFound(flatId);
+        }
+        return flatDto;
+    }
+
+    /**
+     * Function to find a mapped page of flats by block number, read through flatCache.
+     * @param blockNumber : Search for flats in this block.
+     * @param pageable : Page to fetch.
+     * @return : Found page, shared with other callers.
+     */
+    @Override
+    public FlatPageDto findFlatPageByBlockNumber(String blockNumber, Pageable pageable)
+    {
+        FlatCache.LookupKey key = this.flatCache.lookupKey(FlatCache.LookupType.BLOCK, blockNumber, null, pageable);
+        return this.flatWriteBehind.overlay(this.flatCache.getPage(key, k -> this.buildFlatPage(this.findFlatByBlockNumber(blockNumber, pageable))));
+    }
+
+    /**
+     * Function to find a mapped page of flats by flat number, read through flatCache.
+     * @param flatNumber : Search for flats with this flat number.
+     * @param pageable : Page to fetch.
+     * @return : Found page, shared with other callers.
+     */
+    @Override
+    public FlatPageDto findFlatPageByFlatNumber(String flatNumber, Pageable pageable)
+    {
+        FlatCache.LookupKey key = this.flatCache.lookupKey(FlatCache.LookupType.FLAT_NUMBER, null, flatNumber, pageable);
+        return this.flatWriteBehind.overlay(this.flatCache.getPage(key, k -> this.buildFlatPage(this.findFlatByFlatNumber(flatNumber, pageable))));
+    }
+
+    /**
+     * Function to find a mapped flat by block number and flat number, read through flatCache.
+     * A queued add of the flat is found first, a flat with a queued delete is not found.
+     * @param blockNumber : Search for flat in this block.
+     * @param flatNumber : Search for flat with this flat number.
+     * @return : Found flatDto, shared with other callers.
+     */
+    @Override
+    public FlatDto findFlatDtoByBlockNumberAndFlatNumber(String blockNumber, String flatNumber)
+    {
+        String pendingFlatId = this.flatWriteBehind.pendingFlatId(flatNumber, blockNumber);
+        if(null != pendingFlatId)
+        {
+            return this.findFlatDtoByFlatId(pendingFlatId);
+        }
+        FlatCache.LookupKey key = this.flatCache.lookupKey(FlatCache.LookupType.BLOCK_AND_FLAT_NUMBER, blockNumber, flatNumber, null);
+        FlatDto flatDto = this.flatWriteBehind.overlay(this.flatCache.getFlat(key, k -> this.flatMapper.flatEntityToFlatDto(this.findFlatByBlockNumberAndFlatNumber(blockNumber, flatNumber))));
+        if(null == flatDto)
+        {
+            throw this.flatNotFound(blockNumber, flatNumber);
+        }
+        return flatDto;
+    }
+
+    /**
+     * Function to find a page of flat summaries of a society.
+     * Structure:
+     *  1. Load the society once, it is returned once for the whole page.
+     *  2. Read the summaries straight from the result set, no flat entity is created.
+     *  3. Apply pending writes of flatWriteBehind, pending adds are not listed.
+     * @param societyId : Society whose flats are listed.
+     * @param flatBlock : Only list flats of this block, every block when null.
+     * @param pageable : Page to fetch, ordered by block and flat number.
+     * @return : Page of summaries with the society.
+     */
+    @Override
+    public FlatSummaryPageDto findFlatSummaryPageBySociety(String societyId, String flatBlock, Pageable pageable)
+    {
+        Society society = this.societyRepository.findById(societyId).orElseThrow(() -> {
+            log.error("Society not found with society Id: {}", societyId);
             return BadRequestException.builder()
                     .message(ExceptionMessages.NO_RECORD_PRESENT_MSG)
-                    .fieldValue(flatId)
+                    .fieldValue(societyId)
                     .timestamp(System.currentTimeMillis())
                     .build();
         });
-        log.debug("Flat with id: {} found", flatId);
-        return flat;
+        Slice<FlatSummary> flatSummaries = null == flatBlock
+                ? this.flatRepository.findSummariesBySocietyId(societyId, pageable)
+                : this.flatRepository.findSummariesBySocietyIdAndFlatBlock(societyId, flatBlock, pageable);
+        return FlatSummaryPageDto.builder()
+                .society(this.flatMapper.societyEntityToSocietyDto(society))
+                .content(this.flatWriteBehind.overlaySummaries(flatSummaries.getContent()))
+                .page(flatSummaries.getNumber())
+                .size(flatSummaries.getSize())
+                .hasNext(flatSummaries.hasNext())
+                .build();
     }
 
+    /**
+     * Function to find many flats by flatId.
+     * Structure:
+     *  1. Flats with a pending add of flatWriteBehind are built from the pending write.
+     *  2. Every other flat is read through flatCache, all misses are loaded by loadFlatDtos in chunks.
+     *  3. Apply pending writes of flatWriteBehind, pending deletes count as missing.
+     * @param flatIds : FlatIds to look for, duplicates are looked up once.
+     * @return : Found flats by flatId in order of flatIds, missing flats are left out.
+     */
     @Override
-    public List<Flat> findFlatByBlockNumber(String blockNumber)
+    public Map<String, FlatDto> findFlatDtosByFlatIds(Collection<String> flatIds)
     {
-        return List.of();
+        List<String> cachedIds = new ArrayList<>(flatIds.size());
+        Map<String, FlatDto> pendingAdds = new HashMap<>();
+        for(String flatId : flatIds)
+        {
+            PendingWrite pendingWrite = this.flatWriteBehind.pendingWrite(flatId);
+            if(null != pendingWrite && JournalRecordType.ADD == pendingWrite.type())
+            {
+                pendingAdds.put(flatId, this.flatMapper.flatEntityToFlatDto(this.findFlatByFlatId(flatId)));
+            }
+            else
+            {
+                cachedIds.add(flatId);
+            }
+        }
+        Map<String, FlatDto> cached = cachedIds.isEmpty() ? Map.of() : this.flatCache.getFlats(cachedIds, this::loadFlatDtos);
+        Map<String, FlatDto> found = new LinkedHashMap<>();
+        for(String flatId : flatIds)
+        {
+            FlatDto flatDto = pendingAdds.containsKey(flatId) ? pendingAdds.get(flatId) : this.flatWriteBehind.overlay(cached.get(flatId));
+            if(null != flatDto)
+            {
+                found.put(flatId, flatDto);
+            }
+        }
+        return found;
     }
 
-    @Override
-    public List<Flat> findFlatByFlatNumber(String flatNumber) {
-        return List.of();
+    /**
+     * Function to load and map flats with one IN query per chunk of multiGetChunkSize flatIds.
+     * Flats are detached once mapped, so a large multi-get does not grow the persistence context.
+     * @param flatIds : FlatIds not found in flatCache.
+     * @return : Found flatDtos by flatId.
+     */
+    private Map<String, FlatDto> loadFlatDtos(List<String> flatIds)
+    {
+        Map<String, FlatDto> loaded = new HashMap<>();
+        for(int from = 0; from < flatIds.size(); from += this.multiGetChunkSize)
+        {
+            List<String> chunk = flatIds.subList(from, Math.min(flatIds.size(), from + this.multiGetChunkSize));
+            for(Flat flat : this.flatRepository.findAllWithSocietyByFlatIdIn(chunk))
+            {
+                loaded.put(flat.getFlatId(), this.flatMapper.flatEntityToFlatDto(flat));
+                this.entityManager.detach(flat);
+            }
+        }
+        log.debug("Loaded {} of {} flats by flatId", loaded.size(), flatIds.size());
+        return loaded;
     }
 
+    /**
+     * Function to export all flats.
+     * Structure:
+     *  1. Stream flats from database, forward only.
+     *  2. Map every flat and hand it to consumer.
+     *  3. Detach the flat so the persistence context does not grow with the export.
+     * @param consumer : Receives every flat, in the calling thread.
+     * @return : Number of exported flats.
+     */
     @Override
-    public Flat findFlatByBlockNumberAndFlatNumber(String blockNumber, String flatNumber) {
-        return null;
+    public long exportFlats(Consumer<FlatDto> consumer)
+    {
+        long count = 0;
+        try(Stream<Flat> flats = this.flatRepository.streamAll())
+        {
+            Iterator<Flat> iterator = flats.iterator();
+            while(iterator.hasNext())
+            {
+                Flat flat = iterator.next();
+                consumer.accept(this.flatMapper.flatEntityToFlatDto(flat));
+                this.entityManager.detach(flat);
+                count++;
+            }
+        }
+        log.info("Exported {} flats", count);
+        return count;
+    }
+
+    private FlatPageDto buildFlatPage(Slice<Flat> flats)
+    {
+        return FlatPageDto.builder()
+                .content(this.societyDtoResolver.flatEntityListToFlatDtoList(flats.getContent()))
+                .page(flats.getNumber())
+                .size(flats.getSize())
+                .hasNext(flats.hasNext())
+                .build();
     }
 }
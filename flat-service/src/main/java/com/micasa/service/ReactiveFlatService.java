@@ -0,0 +1,16 @@
+package com.micasa.service;
+
+import com.micasa.dto.FlatDto;
+import com.micasa.dto.FlatPageDto;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveFlatService
+{
+    Mono<FlatDto> findFlatDtoByFlatId(String flatId);
+    Mono<FlatPageDto> findFlatPageByBlockNumber(String blockNumber, Pageable pageable);
+    Mono<FlatPageDto> findFlatPageByFlatNumber(String flatNumber, Pageable pageable);
+    Mono<FlatDto> findFlatDtoByBlockNumberAndFlatNumber(String blockNumber, String flatNumber);
+    Flux<FlatDto> exportFlats();
+}
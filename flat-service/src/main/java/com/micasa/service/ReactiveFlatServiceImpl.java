@@ -0,0 +1,189 @@
+package com.micasa.service;
+
+import com.micasa.constants.ExceptionMessages;
+import com.micasa.dto.FlatDto;
+import com.micasa.dto.FlatPageDto;
+import com.micasa.dto.SocietyDto;
+import com.micasa.exception.BadRequestException;
+import com.micasa.mapper.FlatMapper;
+import com.micasa.model.FlatRow;
+import com.micasa.model.SocietyRow;
+import com.micasa.repository.ReactiveFlatRepository;
+import com.micasa.repository.ReactiveSocietyRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Non-blocking read service of the reactive mode (profile "reactive"), reads flats through R2DBC.
+ * Methods:
+ *     1. findFlatDtoByFlatId(String); Find a mapped flat by flatId.
+ *     2. findFlatPageByBlockNumber(String, Pageable); Find a mapped page of flats by block number.
+ *     3. findFlatPageByFlatNumber(String, Pageable); Find a mapped page of flats by flat number.
+ *     4. findFlatDtoByBlockNumberAndFlatNumber(String, String); Find a mapped flat by block and flat number.
+ *     5. exportFlats(); Stream all mapped flats, at the pace the client reads them.
+ * Societies are read with one query per page or export batch and mapped with flatMapper, like the servlet mode.
+ * Reads do not go through flatCache, every read goes to the database.
+ */
+@Slf4j
+@Service(value = "reactiveFlatService")
+@Profile("reactive")
+public class ReactiveFlatServiceImpl implements ReactiveFlatService
+{
+    //Number of exported flats whose societies are read with one query.
+    private static final int EXPORT_BATCH_SIZE = 500;
+
+    //Reactive flat repository instance.
+    private final ReactiveFlatRepository flatRepository;
+    //Reactive society repository instance.
+    private final ReactiveSocietyRepository societyRepository;
+    //FlatMapper instance, shared with the servlet mode.
+    private final FlatMapper flatMapper;
+
+    @Autowired
+    public ReactiveFlatServiceImpl(ReactiveFlatRepository flatRepository, ReactiveSocietyRepository societyRepository,
+                                   FlatMapper flatMapper)
+    {
+        this.flatRepository = flatRepository;
+        this.societyRepository = societyRepository;
+        this.flatMapper = flatMapper;
+    }
+
+    /**
+     * Function to find a mapped flat by flatId.
+     * @param flatId : Search for flat with this flatId.
+     * @return : Mono of found flatDto, BadRequestException if there is none.
+     */
+    @Override
+    public Mono<FlatDto> findFlatDtoByFlatId(String flatId)
+    {
+        return this.flatRepository.findById(flatId)
+                .switchIfEmpty(Mono.error(() -> {
+                    log.error("Flat not found with flat Id: {}", flatId);
+                    return notFound(ExceptionMessages.NO_RECORD_PRESENT_MSG, flatId);
+                }))
+                .flatMap(this::toFlatDto);
+    }
+
+    /**
+     * Function to find a mapped page of flats by block number, ordered by flat number descending.
+     * @param blockNumber : Search for flats in this block.
+     * @param pageable : Page to fetch.
+     * @return : Mono of flatPageDto.
+     */
+    @Override
+    public Mono<FlatPageDto> findFlatPageByBlockNumber(String blockNumber, Pageable pageable)
+    {
+        return this.findPage(pageable, (limit, offset) -> this.flatRepository.findByFlatBlock(blockNumber, limit, offset))
+                .doOnNext(page -> log.debug("Found {} flats in block: {}", page.getContent().size(), blockNumber));
+    }
+
+    /**
+     * Function to find a mapped page of flats by flat number, ordered by block descending.
+     * @param flatNumber : Search for flats with this flat number.
+     * @param pageable : Page to fetch.
+     * @return : Mono of flatPageDto.
+     */
+    @Override
+    public Mono<FlatPageDto> findFlatPageByFlatNumber(String flatNumber, Pageable pageable)
+    {
+        return this.findPage(pageable, (limit, offset) -> this.flatRepository.findByFlatNumber(flatNumber, limit, offset))
+                .doOnNext(page -> log.debug("Found {} flats with flat number: {}", page.getContent().size(), flatNumber));
+    }
+
+    /**
+     * Function to find a mapped flat by block number and flat number.
+     * @param blockNumber : Search for flat in this block.
+     * @param flatNumber : Search for flat with this flat number.
+     * @return : Mono of found flatDto, BadRequestException if there is none.
+     */
+    @Override
+    public Mono<FlatDto> findFlatDtoByBlockNumberAndFlatNumber(String blockNumber, String flatNumber)
+    {
+        return this.flatRepository.findByFlatNumberAndFlatBlock(flatNumber, blockNumber)
+                .switchIfEmpty(Mono.error(() -> {
+                    log.error("Flat not found with flat block: {} and flat number: {}", blockNumber, flatNumber);
+                    return notFound(ExceptionMessages.NO_RECORD_PRESENT_BLOCK_NUMBER_MSG, blockNumber + "/" + flatNumber);
+                }))
+                .flatMap(this::toFlatDto);
+    }
+
+    /**
+     * Function to stream all mapped flats.
+     * Structure:
+     *  1. Read flats as a flux, rows are fetched only as fast as the client reads the response.
+     *  2. Group them in batches of EXPORT_BATCH_SIZE and read the societies of a batch with one query.
+     *  3. Map one batch at a time, so at most one batch is held in memory.
+     * @return : Flux of all flatDtos.
+     */
+    @Override
+    public Flux<FlatDto> exportFlats()
+    {
+        return this.flatRepository.findAll()
+                .buffer(EXPORT_BATCH_SIZE)
+                .concatMap(this::toFlatDtos, 1)
+                .doOnComplete(() -> log.info("Exported all flats"));
+    }
+
+    private Mono<FlatPageDto> findPage(Pageable pageable, BiFunction<Integer, Long, Flux<FlatRow>> query)
+    {
+        int size = pageable.getPageSize();
+        return query.apply(size + 1, pageable.getOffset())
+                .collectList()
+                .flatMap(flatRows -> {
+                    boolean hasNext = flatRows.size() > size;
+                    List<FlatRow> content = hasNext ? flatRows.subList(0, size) : flatRows;
+                    return this.toFlatDtos(content)
+                            .collectList()
+                            .map(flatDtos -> new FlatPageDto(flatDtos, pageable.getPageNumber(), size, hasNext));
+                });
+    }
+
+    private Mono<FlatDto> toFlatDto(FlatRow flatRow)
+    {
+        if(null == flatRow.getSocietyId())
+        {
+            return Mono.just(this.flatMapper.flatRowToFlatDto(flatRow, null));
+        }
+        return this.societyRepository.findById(flatRow.getSocietyId())
+                .map(this.flatMapper::societyRowToSocietyDto)
+                .map(society -> this.flatMapper.flatRowToFlatDto(flatRow, society))
+                .defaultIfEmpty(this.flatMapper.flatRowToFlatDto(flatRow, null));
+    }
+
+    private Flux<FlatDto> toFlatDtos(List<FlatRow> flatRows)
+    {
+        Set<String> societyIds = flatRows.stream()
+                .map(FlatRow::getSocietyId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Mono<Map<String, SocietyDto>> societies = societyIds.isEmpty()
+                ? Mono.just(Map.of())
+                : this.societyRepository.findAllById(societyIds)
+                        .collectMap(SocietyRow::getSocietyId, this.flatMapper::societyRowToSocietyDto);
+        return societies.flatMapIterable(societyById -> flatRows.stream()
+                .map(flatRow -> this.flatMapper.flatRowToFlatDto(flatRow,
+                        null == flatRow.getSocietyId() ? null : societyById.get(flatRow.getSocietyId())))
+                .toList());
+    }
+
+    private static BadRequestException notFound(String message, String fieldValue)
+    {
+        return BadRequestException.builder()
+                .message(message)
+                .fieldValue(fieldValue)
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+}
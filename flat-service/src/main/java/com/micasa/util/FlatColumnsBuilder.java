@@ -0,0 +1,119 @@
+package com.micasa.util;
+
+import com.micasa.dto.FlatColumnsDto;
+import com.micasa.dto.FlatDto;
+import com.micasa.dto.SocietyDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects flatDtos into a flatColumnsDto, each society is kept once however many flats point to it.
+ * build() hands out the collected flats and starts over, so one builder can cut a stream into batches.
+ * Not thread safe.
+ */
+public class FlatColumnsBuilder
+{
+    private final int capacity;
+    private Map<String, Integer> societyIndexById;
+    private List<SocietyDto> societies;
+    private List<String> flatIds;
+    private List<String> flatNumbers;
+    private List<String> flatBlocks;
+    private boolean[] occupied;
+    private int[] societyIndex;
+    private int size;
+
+    /**
+     * @param capacity : Expected number of flats per build, columns grow beyond it when needed.
+     */
+    public FlatColumnsBuilder(int capacity)
+    {
+        this.capacity = Math.max(1, capacity);
+        this.reset();
+    }
+
+    /**
+     * Function to add a flat as the next row of every column.
+     * @param flatDto : Flat to add.
+     */
+    public void add(FlatDto flatDto)
+    {
+        if(this.size == this.occupied.length)
+        {
+            this.occupied = Arrays.copyOf(this.occupied, this.size * 2);
+            this.societyIndex = Arrays.copyOf(this.societyIndex, this.size * 2);
+        }
+        this.flatIds.add(flatDto.getFlatId());
+        this.flatNumbers.add(flatDto.getFlatNumber());
+        this.flatBlocks.add(flatDto.getFlatBlock());
+        this.occupied[this.size] = flatDto.isOccupied();
+        this.societyIndex[this.size] = this.indexOf(flatDto.getSociety());
+        this.size++;
+    }
+
+    /**
+     * @return : Number of flats added since the last build.
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Function to take the flats added so far, the builder is empty afterwards.
+     * @return : Added flats in columnar form.
+     */
+    public FlatColumnsDto build()
+    {
+        FlatColumnsDto flatColumnsDto = FlatColumnsDto.builder()
+                .societies(this.societies)
+                .flatId(this.flatIds)
+                .flatNumber(this.flatNumbers)
+                .flatBlock(this.flatBlocks)
+                .occupied(Arrays.copyOf(this.occupied, this.size))
+                .societyIndex(Arrays.copyOf(this.societyIndex, this.size))
+                .build();
+        this.reset();
+        return flatColumnsDto;
+    }
+
+    /**
+     * Function to make a flatColumnsDto of a list of flats.
+     * @param flatDtos : Flats in row order.
+     * @return : Same flats in columnar form.
+     */
+    public static FlatColumnsDto of(List<FlatDto> flatDtos)
+    {
+        FlatColumnsBuilder builder = new FlatColumnsBuilder(flatDtos.size());
+        flatDtos.forEach(builder::add);
+        return builder.build();
+    }
+
+    private int indexOf(SocietyDto societyDto)
+    {
+        if(null == societyDto)
+        {
+            return -1;
+        }
+        return this.societyIndexById.computeIfAbsent(societyDto.getSocietyId(), societyId -> {
+            this.societies.add(societyDto);
+            return this.societies.size() - 1;
+        });
+    }
+
+    private void reset()
+    {
+        this.societyIndexById = new HashMap<>();
+        this.societies = new ArrayList<>();
+        this.flatIds = new ArrayList<>(this.capacity);
+        this.flatNumbers = new ArrayList<>(this.capacity);
+        this.flatBlocks = new ArrayList<>(this.capacity);
+        this.occupied = new boolean[this.capacity];
+        this.societyIndex = new int[this.capacity];
+        this.size = 0;
+    }
+}
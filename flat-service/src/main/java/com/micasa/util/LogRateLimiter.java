@@ -0,0 +1,48 @@
+package com.micasa.util;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lets a log statement through at most once per interval and counts the suppressed ones.
+ * Usage:
+ *  if(limiter.tryAcquire()) log.warn("... ({} similar messages suppressed)", ..., limiter.drainSuppressed());
+ */
+public class LogRateLimiter
+{
+    private final long intervalNanos;
+    private final AtomicLong nextAllowedNanos;
+    private final LongAdder suppressed = new LongAdder();
+
+    public LogRateLimiter(Duration interval)
+    {
+        this.intervalNanos = interval.toNanos();
+        this.nextAllowedNanos = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Function to check whether the caller may log now.
+     * @return : true if the interval has passed since the last permitted message.
+     */
+    public boolean tryAcquire()
+    {
+        long now = System.nanoTime();
+        long nextAllowed = this.nextAllowedNanos.get();
+        if(now - nextAllowed >= 0 && this.nextAllowedNanos.compareAndSet(nextAllowed, now + this.intervalNanos))
+        {
+            return true;
+        }
+        this.suppressed.increment();
+        return false;
+    }
+
+    /**
+     * Function to read and reset the number of suppressed messages.
+     * @return : Messages suppressed since the last call.
+     */
+    public long drainSuppressed()
+    {
+        return this.suppressed.sumThenReset();
+    }
+}
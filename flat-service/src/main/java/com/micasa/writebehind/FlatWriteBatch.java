@@ -0,0 +1,14 @@
+package com.micasa.writebehind;
+
+import com.micasa.model.Flat;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pending writes of FlatWriteBehind taken in one flush, at most one per flatId.
+ * Adds carry their flatId and a society holding only its societyId.
+ */
+public record FlatWriteBatch(List<String> deletes, List<Flat> adds, Map<String, Boolean> occupiedByFlatId)
+{
+}
@@ -0,0 +1,715 @@
+package com.micasa.writebehind;
+
+import com.micasa.constants.ExceptionMessages;
+import com.micasa.dto.FlatDto;
+import com.micasa.dto.FlatPageDto;
+import com.micasa.exception.ServiceUnavailableException;
+import com.micasa.journal.FlatJournal;
+import com.micasa.journal.JournalRecord;
+import com.micasa.journal.JournalRecordType;
+import com.micasa.model.Flat;
+import com.micasa.model.Society;
+import com.micasa.projection.FlatSummary;
+import com.micasa.service.FlatService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Optional write-behind of flat mutations (micasa.flat.write-behind.enabled).
+ * Structure:
+ *  1. Adds, occupancy updates and deletes are appended to FlatJournal and acknowledged once a force covered them,
+ *     callers acknowledged at the same time share one fsync. Until then they wait in unpublished, in journal order.
+ *  2. Once durable they are published to a pending map with one entry per flatId, which reads and flushes see:
+ *     an occupancy update replaces an earlier one (last write wins) or is folded into a pending add, a delete replaces anything.
+ *     Checks of a write (pending add of the same flat, expected occupancy) also look at unpublished records.
+ *  3. Pending writes are written by flatService.writeFlats in one transaction per flush on the flush thread, every
+ *     flush-interval or as soon as flush-threshold flats are pending.
+ *  4. After commit, entries are removed unless a newer write replaced them, and the journal is checkpointed up to the
+ *     oldest record still pending or unpublished.
+ *  5. When max-pending flats are pending, callers wait up to max-wait for the flush thread to make room, then their
+ *     write is rejected with ServiceUnavailableException. Callers never flush themselves.
+ *  6. The journal is replayed into the pending map when this bean is created, FlatServiceApplication writes it to the
+ *     database before the application is ready.
+ * Reads of flatService consult pendingWrite, so callers see their acknowledged writes right away.
+ * Lookups by block or flat number do not list pending adds.
+ */
+@Slf4j
+@Component
+public class FlatWriteBehind
+{
+    private static final String METRIC_PREFIX = "micasa.flat.write_behind";
+
+    //Whether flat mutations are queued, otherwise this class stays idle.
+    @Getter
+    private final boolean enabled;
+    private final ObjectProvider<FlatService> flatServiceProvider;
+    private final Duration flushInterval;
+    private final int flushThreshold;
+    private final int maxPending;
+    private final long maxWaitNanos;
+    //Pending write by flatId, at most one per flat.
+    private final Map<String, PendingWrite> pendingByFlatId = new ConcurrentHashMap<>();
+    //FlatId of pending adds by flatNumber/flatBlock, to reject a second add of the same flat.
+    private final Map<String, String> pendingFlatIdByKey = new ConcurrentHashMap<>();
+    //Appended records not yet known to be durable, in sequence order. Guarded by stateLock.
+    private final Deque<Unpublished> unpublished = new ArrayDeque<>();
+    //Guards journal appends and changes of the pending maps, so the journal order matches the pending state.
+    //Notified whenever a flush took writes off the pending map.
+    private final Object stateLock = new Object();
+    //One flush at a time, by the flush thread, on replay or on shutdown.
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    //Bumped with stateLock held by every flush once its writes are off the pending map, read without it.
+    private volatile long flushes;
+    private final FlatJournal journal;
+    private final ScheduledExecutorService flushExecutor;
+    private final Timer lagTimer;
+    private final Timer flushTimer;
+    private final Timer failedFlushTimer;
+    private final Counter coalescedCounter;
+    private final Counter rejectedCounter;
+    private final Counter fullCounter;
+
+    @Autowired
+    public FlatWriteBehind(ObjectProvider<FlatService> flatServiceProvider, MeterRegistry meterRegistry,
+                           @Value("${micasa.flat.write-behind.enabled:false}") boolean enabled,
+                           @Value("${micasa.flat.write-behind.journal.directory:data/journal}") Path journalDirectory,
+                           @Value("${micasa.flat.write-behind.journal.segment-size:64MB}") DataSize segmentSize,
+                           @Value("${micasa.flat.write-behind.flush-interval:200ms}") Duration flushInterval,
+                           @Value("${micasa.flat.write-behind.flush-threshold:1000}") int flushThreshold,
+                           @Value("${micasa.flat.write-behind.max-pending:100000}") int maxPending,
+                           @Value("${micasa.flat.write-behind.max-wait:1s}") Duration maxWait) throws IOException
+    {
+        this.enabled = enabled;
+        this.flatServiceProvider = flatServiceProvider;
+        this.flushInterval = flushInterval;
+        this.flushThreshold = Math.max(1, flushThreshold);
+        this.maxPending = Math.max(this.flushThreshold, maxPending);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.lagTimer = Timer.builder(METRIC_PREFIX + ".lag")
+                .description("Time from acknowledging a flat write until it was committed")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder(METRIC_PREFIX + ".flush").tag("outcome", "success").register(meterRegistry);
+        this.failedFlushTimer = Timer.builder(METRIC_PREFIX + ".flush").tag("outcome", "failure").register(meterRegistry);
+        this.coalescedCounter = Counter.builder(METRIC_PREFIX + ".coalesced")
+                .description("Flat writes folded into a pending write of the same flat")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder(METRIC_PREFIX + ".rejected")
+                .description("Acknowledged adds the database refused, flatNumber/flatBlock taken or society missing")
+                .register(meterRegistry);
+        this.fullCounter = Counter.builder(METRIC_PREFIX + ".full")
+                .description("Flat writes rejected because the queue stayed full for max-wait")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".depth", this.pendingByFlatId, Map::size)
+                .description("Flats with a pending write")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".oldest", this, FlatWriteBehind::oldestPendingSeconds)
+                .description("Age of the oldest pending write")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        if(!enabled)
+        {
+            this.journal = null;
+            this.flushExecutor = null;
+            return;
+        }
+        this.journal = new FlatJournal(journalDirectory, segmentSize.toBytes(), meterRegistry);
+        long now = System.nanoTime();
+        this.journal.open((record, sequence) -> this.apply(record, sequence, now));
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "flat-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Function to write what the journal replay left pending, before the application takes traffic.
+     * Called once by FlatServiceApplication, a failure stops the startup.
+     */
+    public void replay()
+    {
+        if(!this.enabled || this.pendingByFlatId.isEmpty())
+        {
+            return;
+        }
+        int pending = this.pendingByFlatId.size();
+        long start = System.nanoTime();
+        this.flush();
+        log.info("Replayed {} pending flat writes from journal in {} ms", pending, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Function to start flushing once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start()
+    {
+        if(this.enabled)
+        {
+            long intervalNanos = this.flushInterval.toNanos();
+            this.flushExecutor.scheduleWithFixedDelay(this::flushQuietly, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Function to accept a new flat, it is durable when this returns.
+     * @param flat : Flat with its flatId already assigned.
+     * @return : false if an add of the same flatNumber/flatBlock is already pending.
+     */
+    public boolean add(Flat flat)
+    {
+        String societyId = null == flat.getSociety() ? null : flat.getSociety().getSocietyId();
+        JournalRecord record = JournalRecord.add(flat.getFlatId(), flat.getFlatNumber(), flat.getFlatBlock(), societyId, flat.isOccupied());
+        long sequence;
+        synchronized(this.stateLock)
+        {
+            this.awaitCapacity(1);
+            if(this.isAddPending(flatKey(flat.getFlatNumber(), flat.getFlatBlock())))
+            {
+                return false;
+            }
+            sequence = this.append(List.of(record));
+        }
+        this.publish(sequence);
+        return true;
+    }
+
+    /**
+     * Function to accept occupancy updates, they are durable when this returns.
+     * @param statusByFlatId : Occupied status by flatId.
+     */
+    public void updateOccupancy(Map<String, Boolean> statusByFlatId)
+    {
+        if(statusByFlatId.isEmpty())
+        {
+            return;
+        }
+        List<JournalRecord> records = new ArrayList<>(statusByFlatId.size());
+        statusByFlatId.forEach((flatId, occupied) -> records.add(JournalRecord.occupancy(flatId, occupied)));
+        long lastSequence;
+        synchronized(this.stateLock)
+        {
+            this.awaitCapacity(records.size());
+            lastSequence = this.append(records);
+        }
+        this.publish(lastSequence);
+    }
+
+    /**
+     * Function to accept an occupancy update only if the flat currently has the expected status.
+     * The current status is the pending one, or the persisted one when nothing is pending.
+     * Structure:
+     *  1. Read the persisted status without the queue locked, unless the flat has a pending write.
+     *  2. With the queue locked, compare with the pending or unpublished write of the flat if there is one.
+     *     Else compare with the persisted status, unless a flush committed since it was read, then start over.
+     * @param flatId : Flat to update.
+     * @param expectedStatus : Occupied status the flat must currently have.
+     * @param occupiedStatus : New occupied status.
+     * @param persistedStatus : Reads the persisted status, called without the queue locked.
+     * @return : true if accepted, false if the current status did not match or a delete is pending.
+     */
+    public boolean compareAndUpdateOccupancy(String flatId, boolean expectedStatus, boolean occupiedStatus, BooleanSupplier persistedStatus)
+    {
+        JournalRecord record = JournalRecord.occupancy(flatId, occupiedStatus);
+        long sequence;
+        while(true)
+        {
+            long flushes = this.flushes;
+            Boolean persisted = this.pendingByFlatId.containsKey(flatId) ? null : persistedStatus.getAsBoolean();
+            synchronized(this.stateLock)
+            {
+                this.awaitCapacity(1);
+                PendingWrite pendingWrite = this.latestWrite(flatId);
+                if(null == pendingWrite && (null == persisted || flushes != this.flushes))
+                {
+                    continue;
+                }
+                if(null != pendingWrite && JournalRecordType.DELETE == pendingWrite.type())
+                {
+                    return false;
+                }
+                boolean currentStatus = null == pendingWrite ? persisted : pendingWrite.occupied();
+                if(currentStatus != expectedStatus)
+                {
+                    return false;
+                }
+                sequence = this.append(List.of(record));
+            }
+            this.publish(sequence);
+            return true;
+        }
+    }
+
+    /**
+     * Function to accept a delete, it is durable when this returns.
+     * @param flatId : Flat to delete.
+     */
+    public void delete(String flatId)
+    {
+        JournalRecord record = JournalRecord.delete(flatId);
+        long sequence;
+        synchronized(this.stateLock)
+        {
+            this.awaitCapacity(1);
+            sequence = this.append(List.of(record));
+        }
+        this.publish(sequence);
+    }
+
+    /**
+     * Function to read the pending write of a flat.
+     * @param flatId : Flat to read.
+     * @return : Pending write, null if nothing is pending.
+     */
+    public PendingWrite pendingWrite(String flatId)
+    {
+        return this.pendingByFlatId.get(flatId);
+    }
+
+    /**
+     * Function to find a pending add by flatNumber and flatBlock.
+     * @param flatNumber : FlatNumber to look for.
+     * @param flatBlock : FlatBlock to look for.
+     * @return : FlatId of the pending add, null if there is none.
+     */
+    public String pendingFlatId(String flatNumber, String flatBlock)
+    {
+        return this.pendingFlatIdByKey.get(flatKey(flatNumber, flatBlock));
+    }
+
+    /**
+     * Function to apply a pending write to a flatDto.
+     * @param flatDto : Flat as read from cache or database, not modified.
+     * @return : Passed flatDto, a copy with the pending status, or null if a delete is pending.
+     */
+    public FlatDto overlay(FlatDto flatDto)
+    {
+        PendingWrite pendingWrite = null == flatDto ? null : this.pendingByFlatId.get(flatDto.getFlatId());
+        if(null == pendingWrite || (JournalRecordType.DELETE != pendingWrite.type() && pendingWrite.occupied() == flatDto.isOccupied()))
+        {
+            return flatDto;
+        }
+        if(JournalRecordType.DELETE == pendingWrite.type())
+        {
+            return null;
+        }
+        return new FlatDto(flatDto.getFlatId(), flatDto.getFlatNumber(), flatDto.getFlatBlock(), pendingWrite.occupied(), flatDto.getSociety());
+    }
+
+    /**
+     * Function to apply pending writes to a page of flats, flats with a pending delete are left out.
+     * @param flatPageDto : Page as read from cache or database, not modified.
+     * @return : Passed flatPageDto, or a copy with pending writes applied.
+     */
+    public FlatPageDto overlay(FlatPageDto flatPageDto)
+    {
+        if(this.pendingByFlatId.isEmpty() || null == flatPageDto.getContent())
+        {
+            return flatPageDto;
+        }
+        List<FlatDto> content = flatPageDto.getContent().stream().map(this::overlay).filter(Objects::nonNull).toList();
+        return new FlatPageDto(content, flatPageDto.getPage(), flatPageDto.getSize(), flatPageDto.isHasNext());
+    }
+
+    /**
+     * Function to apply pending writes to flat summaries, flats with a pending delete are left out.
+     * @param flatSummaries : Summaries as read from database, not modified.
+     * @return : Passed list, or a copy with pending writes applied.
+     */
+    public List<FlatSummary> overlaySummaries(List<FlatSummary> flatSummaries)
+    {
+        if(this.pendingByFlatId.isEmpty())
+        {
+            return flatSummaries;
+        }
+        List<FlatSummary> overlaid = new ArrayList<>(flatSummaries.size());
+        for(FlatSummary flatSummary : flatSummaries)
+        {
+            PendingWrite pendingWrite = this.pendingByFlatId.get(flatSummary.flatId());
+            if(null == pendingWrite || (JournalRecordType.DELETE != pendingWrite.type() && pendingWrite.occupied() == flatSummary.occupied()))
+            {
+                overlaid.add(flatSummary);
+            }
+            else if(JournalRecordType.DELETE != pendingWrite.type())
+            {
+                overlaid.add(new FlatSummary(flatSummary.flatId(), flatSummary.flatNumber(), flatSummary.flatBlock(), pendingWrite.occupied()));
+            }
+        }
+        return overlaid;
+    }
+
+    /**
+     * Function to write all pending writes now.
+     * Structure:
+     *  1. Take a snapshot of the pending map and write it with flatService.writeFlats.
+     *  2. Remove written entries unless a newer write replaced them, a replaced add becomes an occupancy update.
+     *  3. Checkpoint the journal up to the oldest record still pending or unpublished, and wake callers waiting for room.
+     * @return : Number of flats written.
+     */
+    public int flush()
+    {
+        this.flushLock.lock();
+        try
+        {
+            if(this.pendingByFlatId.isEmpty())
+            {
+                return 0;
+            }
+            Map<String, PendingWrite> snapshot = new HashMap<>(this.pendingByFlatId);
+            long start = System.nanoTime();
+            Set<String> rejectedFlatIds;
+            try
+            {
+                rejectedFlatIds = this.flatServiceProvider.getObject().writeFlats(toBatch(snapshot));
+            }
+            catch(RuntimeException runtimeException)
+            {
+                this.failedFlushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                throw runtimeException;
+            }
+            long committed = System.nanoTime();
+            this.flushTimer.record(committed - start, TimeUnit.NANOSECONDS);
+            if(!rejectedFlatIds.isEmpty())
+            {
+                this.rejectedCounter.increment(rejectedFlatIds.size());
+                log.warn("{} acknowledged flat adds were refused by the database: {}", rejectedFlatIds.size(), rejectedFlatIds);
+            }
+            long checkpoint;
+            synchronized(this.stateLock)
+            {
+                snapshot.forEach((flatId, written) -> this.written(flatId, written, committed));
+                this.flushes++;
+                checkpoint = this.journal.lastSequence();
+                for(PendingWrite pendingWrite : this.pendingByFlatId.values())
+                {
+                    checkpoint = Math.min(checkpoint, pendingWrite.firstSequence() - 1);
+                }
+                if(!this.unpublished.isEmpty())
+                {
+                    checkpoint = Math.min(checkpoint, this.unpublished.peekFirst().sequence() - 1);
+                }
+                this.stateLock.notifyAll();
+            }
+            this.journal.checkpoint(checkpoint);
+            log.debug("Flushed {} pending flat writes in {} ms", snapshot.size(), TimeUnit.NANOSECONDS.toMillis(committed - start));
+            return snapshot.size();
+        }
+        catch(IOException ioException)
+        {
+            throw new UncheckedIOException("Journal checkpoint could not be written", ioException);
+        }
+        finally
+        {
+            this.flushLock.unlock();
+        }
+    }
+
+    /**
+     * Function to write what is pending and release the journal on shutdown.
+     */
+    @PreDestroy
+    public void stop()
+    {
+        if(!this.enabled)
+        {
+            return;
+        }
+        this.flushExecutor.shutdown();
+        try
+        {
+            this.flushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            this.flush();
+        }
+        catch(InterruptedException interruptedException)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch(RuntimeException runtimeException)
+        {
+            log.warn("Pending flat writes not flushed on shutdown, replayed on next start: {}", runtimeException.getMessage());
+        }
+        this.journal.close();
+    }
+
+    /**
+     * Function to append records to the journal and hold them until they are durable, called with stateLock held.
+     * @return : Sequence of the last record.
+     */
+    private long append(List<JournalRecord> records)
+    {
+        long lastSequence = this.journal.append(records);
+        long now = System.nanoTime();
+        long sequence = lastSequence - records.size();
+        for(JournalRecord record : records)
+        {
+            this.unpublished.addLast(new Unpublished(record, ++sequence, now));
+        }
+        return lastSequence;
+    }
+
+    /**
+     * Function to wait until a record is durable and publish it with every earlier record, in journal order.
+     * Nothing is published when the journal could not be forced, the write then fails without being acknowledged.
+     * @param sequence : Sequence returned by append.
+     */
+    private void publish(long sequence)
+    {
+        this.journal.awaitDurable(sequence);
+        synchronized(this.stateLock)
+        {
+            while(!this.unpublished.isEmpty() && this.unpublished.peekFirst().sequence() <= sequence)
+            {
+                Unpublished next = this.unpublished.pollFirst();
+                this.apply(next.record(), next.sequence(), next.enqueuedNanos());
+            }
+        }
+        this.requestFlushIfFull();
+    }
+
+    /**
+     * Function to read the write a flat will have once everything appended is published, called with stateLock held.
+     * @return : Pending write with unpublished records folded in, null if nothing is pending.
+     */
+    private PendingWrite latestWrite(String flatId)
+    {
+        PendingWrite latest = this.pendingByFlatId.get(flatId);
+        for(Unpublished next : this.unpublished)
+        {
+            if(flatId.equals(next.record().flatId()))
+            {
+                latest = fold(latest, next.record(), next.sequence(), next.enqueuedNanos());
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Function to check whether an add of flatNumber/flatBlock is pending or unpublished, called with stateLock held.
+     */
+    private boolean isAddPending(String key)
+    {
+        if(this.pendingFlatIdByKey.containsKey(key))
+        {
+            return true;
+        }
+        for(Unpublished next : this.unpublished)
+        {
+            if(JournalRecordType.ADD == next.record().type() && key.equals(flatKey(next.record().flatNumber(), next.record().flatBlock())))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Function to fold a journal record into the pending map, called with stateLock held or during replay.
+     */
+    private void apply(JournalRecord record, long sequence, long now)
+    {
+        String flatId = record.flatId();
+        PendingWrite current = this.pendingByFlatId.get(flatId);
+        PendingWrite next = fold(current, record, sequence, now);
+        if(JournalRecordType.ADD == record.type())
+        {
+            this.pendingFlatIdByKey.put(flatKey(record.flatNumber(), record.flatBlock()), flatId);
+        }
+        else if(JournalRecordType.DELETE == record.type() && null != current && JournalRecordType.ADD == current.type())
+        {
+            this.pendingFlatIdByKey.remove(flatKey(current.flatNumber(), current.flatBlock()), flatId);
+        }
+        if(null != current)
+        {
+            this.coalescedCounter.increment();
+        }
+        this.pendingByFlatId.put(flatId, next);
+    }
+
+    private static PendingWrite fold(PendingWrite current, JournalRecord record, long sequence, long now)
+    {
+        return switch(record.type())
+        {
+            case ADD -> PendingWrite.of(record, sequence, now);
+            case OCCUPANCY -> null == current
+                    ? PendingWrite.of(record, sequence, now)
+                    : switch(current.type())
+                    {
+                        case ADD -> current.withOccupied(record.occupied(), sequence);
+                        case OCCUPANCY -> new PendingWrite(JournalRecordType.OCCUPANCY, null, null, null, record.occupied(),
+                                sequence, sequence, current.enqueuedNanos());
+                        case DELETE -> current;
+                    };
+            case DELETE -> new PendingWrite(JournalRecordType.DELETE, null, null, null, false,
+                    sequence, sequence, null == current ? now : current.enqueuedNanos());
+        };
+    }
+
+    /**
+     * Function to update the pending map after a write committed, called with stateLock held.
+     */
+    private void written(String flatId, PendingWrite written, long committed)
+    {
+        if(JournalRecordType.ADD == written.type())
+        {
+            this.pendingFlatIdByKey.remove(flatKey(written.flatNumber(), written.flatBlock()), flatId);
+        }
+        PendingWrite current = this.pendingByFlatId.get(flatId);
+        if(current == written)
+        {
+            this.pendingByFlatId.remove(flatId);
+            this.lagTimer.record(committed - written.enqueuedNanos(), TimeUnit.NANOSECONDS);
+        }
+        else if(null != current && JournalRecordType.ADD == written.type() && JournalRecordType.ADD == current.type())
+        {
+            this.pendingByFlatId.put(flatId, current.asOccupancy());
+        }
+    }
+
+    private static FlatWriteBatch toBatch(Map<String, PendingWrite> snapshot)
+    {
+        List<String> deletes = new ArrayList<>();
+        List<Flat> adds = new ArrayList<>();
+        Map<String, Boolean> occupiedByFlatId = new LinkedHashMap<>();
+        snapshot.forEach((flatId, pendingWrite) -> {
+            switch(pendingWrite.type())
+            {
+                case DELETE -> deletes.add(flatId);
+                case OCCUPANCY -> occupiedByFlatId.put(flatId, pendingWrite.occupied());
+                case ADD -> {
+                    Society society = null;
+                    if(null != pendingWrite.societyId())
+                    {
+                        society = new Society();
+                        society.setSocietyId(pendingWrite.societyId());
+                    }
+                    Flat flat = new Flat(pendingWrite.flatNumber(), pendingWrite.flatBlock(), pendingWrite.occupied(), society);
+                    flat.setFlatId(flatId);
+                    adds.add(flat);
+                }
+            }
+        });
+        return new FlatWriteBatch(deletes, adds, occupiedByFlatId);
+    }
+
+    /**
+     * Function to wait until count more writes fit, called with stateLock held, which the wait releases.
+     * A single write larger than max-pending is let through once nothing else is queued.
+     */
+    private void awaitCapacity(int count)
+    {
+        long deadline = System.nanoTime() + this.maxWaitNanos;
+        while(this.pendingByFlatId.size() + this.unpublished.size() + count > this.maxPending
+                && !(this.pendingByFlatId.isEmpty() && this.unpublished.isEmpty()))
+        {
+            this.requestFlush();
+            long remaining = deadline - System.nanoTime();
+            try
+            {
+                if(remaining <= 0)
+                {
+                    throw this.queueFull();
+                }
+                TimeUnit.NANOSECONDS.timedWait(this.stateLock, remaining);
+            }
+            catch(InterruptedException interruptedException)
+            {
+                Thread.currentThread().interrupt();
+                throw this.queueFull();
+            }
+        }
+    }
+
+    private ServiceUnavailableException queueFull()
+    {
+        this.fullCounter.increment();
+        return ServiceUnavailableException.builder()
+                .message(ExceptionMessages.WRITE_QUEUE_FULL_MSG)
+                .fieldValue(String.valueOf(this.maxPending))
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+
+    private void requestFlushIfFull()
+    {
+        if(this.pendingByFlatId.size() >= this.flushThreshold)
+        {
+            this.requestFlush();
+        }
+    }
+
+    private void requestFlush()
+    {
+        if(this.flushRequested.compareAndSet(false, true))
+        {
+            this.flushExecutor.execute(() -> {
+                this.flushRequested.set(false);
+                this.flushQuietly();
+            });
+        }
+    }
+
+    private void flushQuietly()
+    {
+        try
+        {
+            this.flush();
+        }
+        catch(RuntimeException runtimeException)
+        {
+            log.error("Flush of {} pending flat writes failed, retrying: {}", this.pendingByFlatId.size(), runtimeException.getMessage());
+        }
+    }
+
+    private double oldestPendingSeconds()
+    {
+        long now = System.nanoTime();
+        long oldest = 0;
+        for(PendingWrite pendingWrite : this.pendingByFlatId.values())
+        {
+            oldest = Math.max(oldest, now - pendingWrite.enqueuedNanos());
+        }
+        return oldest / 1e9;
+    }
+
+    private static String flatKey(String flatNumber, String flatBlock)
+    {
+        return flatBlock + '\u0000' + flatNumber;
+    }
+
+    private record Unpublished(JournalRecord record, long sequence, long enqueuedNanos) {}
+}
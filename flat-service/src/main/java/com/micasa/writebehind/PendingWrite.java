@@ -0,0 +1,39 @@
+package com.micasa.writebehind;
+
+import com.micasa.journal.JournalRecord;
+import com.micasa.journal.JournalRecordType;
+
+/**
+ * Write of a flat acknowledged by FlatWriteBehind and not yet in the database.
+ * @param type : ADD (with every column), OCCUPANCY or DELETE.
+ * @param firstSequence : Oldest journal record still needed to rebuild this write.
+ * @param lastSequence : Newest journal record folded into this write.
+ * @param enqueuedNanos : When the oldest write folded into this one was acknowledged.
+ */
+public record PendingWrite(JournalRecordType type, String flatNumber, String flatBlock, String societyId, boolean occupied,
+                           long firstSequence, long lastSequence, long enqueuedNanos)
+{
+    static PendingWrite of(JournalRecord record, long sequence, long enqueuedNanos)
+    {
+        return new PendingWrite(record.type(), record.flatNumber(), record.flatBlock(), record.societyId(),
+                record.occupied(), sequence, sequence, enqueuedNanos);
+    }
+
+    /**
+     * Function to fold a later occupancy update into a pending add, the add record is still needed.
+     */
+    PendingWrite withOccupied(boolean occupied, long sequence)
+    {
+        return new PendingWrite(this.type, this.flatNumber, this.flatBlock, this.societyId, occupied,
+                this.firstSequence, sequence, this.enqueuedNanos);
+    }
+
+    /**
+     * Function to turn a pending add into an occupancy update once an earlier version of the add was written.
+     */
+    PendingWrite asOccupancy()
+    {
+        return new PendingWrite(JournalRecordType.OCCUPANCY, null, null, null, this.occupied,
+                this.lastSequence, this.lastSequence, this.enqueuedNanos);
+    }
+}
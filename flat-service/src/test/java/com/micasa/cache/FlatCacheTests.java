@@ -0,0 +1,181 @@
+package com.micasa.cache;
+
+import com.micasa.dto.FlatDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * FlatCache with writes simulated as transactions, after-commit callbacks are run by hand.
+ */
+class FlatCacheTests
+{
+    private static final String FLAT_ID = "flat-1";
+
+    //Committed state of the flat, what a load reads.
+    private final Map<String, FlatDto> database = new ConcurrentHashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private FlatCache flatCache;
+
+    @BeforeEach
+    void setUp()
+    {
+        this.flatCache = new FlatCache(100, Duration.ofMinutes(10), 100, Duration.ofMinutes(1), 100, Duration.ofSeconds(5),
+                Duration.ofSeconds(2), new SimpleMeterRegistry());
+        this.database.put(FLAT_ID, flat(false));
+    }
+
+    @Test
+    void readAfterWriteLoadsCommittedFlat()
+    {
+        assertThat(this.read().isOccupied()).isFalse();
+
+        List<TransactionSynchronization> update = this.update(true);
+        commit(update);
+
+        assertThat(this.read().isOccupied()).isTrue();
+        assertThat(this.read().isOccupied()).isTrue();
+        assertThat(this.loads).hasValue(2);
+    }
+
+    @Test
+    void concurrentUpdatesCommittingOutOfOrderLeaveNoStaleFlat() throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            CountDownLatch firstCommitted = new CountDownLatch(1);
+            CountDownLatch secondDone = new CountDownLatch(1);
+            //First writer commits first, its after-commit callback is delayed until the second writer is done.
+            Future<?> first = executor.submit(() -> {
+                List<TransactionSynchronization> update = this.update(true);
+                firstCommitted.countDown();
+                await(secondDone);
+                commit(update);
+            });
+            Future<?> second = executor.submit(() -> {
+                await(firstCommitted);
+                commit(this.update(false));
+                assertThat(this.read().isOccupied()).isFalse();
+                secondDone.countDown();
+            });
+            second.get(10, TimeUnit.SECONDS);
+            first.get(10, TimeUnit.SECONDS);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        assertThat(this.database.get(FLAT_ID).isOccupied()).isFalse();
+        assertThat(this.read().isOccupied()).isFalse();
+    }
+
+    @Test
+    void loadRacingAnUpdateIsNotCached()
+    {
+        List<TransactionSynchronization> update = this.update(true);
+        FlatDto loaded = this.flatCache.getFlat(FLAT_ID, flatId -> {
+            FlatDto flatDto = flat(false);
+            commit(update);
+            return flatDto;
+        });
+
+        assertThat(loaded.isOccupied()).isFalse();
+        assertThat(this.read().isOccupied()).isTrue();
+    }
+
+    @Test
+    void readAfterWriteDoesNotJoinLoadStartedBeforeIt() throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            CountDownLatch loading = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Future<FlatDto> before = executor.submit(() -> this.flatCache.getFlat(FLAT_ID, flatId -> {
+                FlatDto flatDto = this.database.get(flatId);
+                loading.countDown();
+                await(release);
+                return flatDto;
+            }));
+            await(loading);
+            commit(this.update(true));
+
+            assertThat(this.read().isOccupied()).isTrue();
+            assertThat(this.loads).hasValue(1);
+
+            release.countDown();
+            assertThat(before.get(10, TimeUnit.SECONDS).isOccupied()).isFalse();
+            assertThat(this.read().isOccupied()).isTrue();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private FlatDto read()
+    {
+        return this.flatCache.getFlat(FLAT_ID, flatId -> {
+            this.loads.incrementAndGet();
+            return this.database.get(flatId);
+        });
+    }
+
+    /**
+     * Function to write the flat in a simulated transaction, returns its synchronizations to commit later.
+     */
+    private List<TransactionSynchronization> update(boolean occupied)
+    {
+        TransactionSynchronizationManager.initSynchronization();
+        try
+        {
+            this.database.put(FLAT_ID, flat(occupied));
+            this.flatCache.invalidateAfterCommit(List.of(FLAT_ID));
+            return TransactionSynchronizationManager.getSynchronizations();
+        }
+        finally
+        {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static void commit(List<TransactionSynchronization> synchronizations)
+    {
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+    }
+
+    private static void await(CountDownLatch latch)
+    {
+        try
+        {
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        }
+        catch(InterruptedException interruptedException)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(interruptedException);
+        }
+    }
+
+    private static FlatDto flat(boolean occupied)
+    {
+        return new FlatDto(FLAT_ID, "101", "A", occupied, null);
+    }
+}
@@ -0,0 +1,135 @@
+package com.micasa.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.micasa.constants.ExceptionMessages;
+import com.micasa.dto.BulkFindResponseDto;
+import com.micasa.dto.BulkIngestResponseDto;
+import com.micasa.dto.FlatDto;
+import com.micasa.dto.FlatFindResultDto;
+import com.micasa.dto.FlatIngestResultDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Multi-get through POST /find/flats as JSON and as NDJSON on H2.
+ * A JSON multi-get takes at most three distinct flatIds, a stream is looked up two flatIds at a time.
+ */
+@SpringBootTest(properties = {"micasa.flat.multi-get.max-ids=3", "micasa.flat.multi-get.chunk-size=2"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class FlatMultiGetTests
+{
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void jsonMultiGetDropsDuplicatesAndListsMissingFlats() throws Exception
+    {
+        List<String> flatIds = this.addFlats("101", "102");
+        String missingFlatId = UUID.randomUUID().toString();
+
+        BulkFindResponseDto response = this.postJson(List.of(flatIds.get(1), missingFlatId, flatIds.get(0), flatIds.get(1)));
+
+        assertThat(response.getReceived()).isEqualTo(4);
+        assertThat(response.getFlats()).extracting(FlatDto::getFlatId).containsExactly(flatIds.get(1), flatIds.get(0));
+        assertThat(response.getMissingFlatIds()).containsExactly(missingFlatId);
+    }
+
+    @Test
+    void jsonMultiGetOverMaxIdsIsBadRequest() throws Exception
+    {
+        List<String> flatIds = this.addFlats("201", "202", "203");
+
+        //Duplicates do not count against the cap.
+        assertThat(this.postJson(List.of(flatIds.get(0), flatIds.get(1), flatIds.get(2), flatIds.get(0))).getFlats()).hasSize(3);
+
+        String body = this.objectMapper.writeValueAsString(List.of(flatIds.get(0), flatIds.get(1), flatIds.get(2),
+                UUID.randomUUID().toString()));
+        this.mockMvc.perform(post("/find/flats").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.exceptionResponse[0].fieldName").value("flatIds"))
+                .andExpect(jsonPath("$.exceptionResponse[0].message").value(ExceptionMessages.TOO_MANY_FLAT_IDS_MSG + "4"));
+    }
+
+    @Test
+    void ndjsonMultiGetAnswersEveryLineInOrder() throws Exception
+    {
+        List<String> flatIds = this.addFlats("301", "302");
+        String missingFlatId = UUID.randomUUID().toString();
+        List<String> requested = List.of(flatIds.get(0), missingFlatId, flatIds.get(1), flatIds.get(0), missingFlatId);
+        StringBuilder body = new StringBuilder();
+        for(String flatId : requested)
+        {
+            body.append(this.objectMapper.writeValueAsString(flatId)).append('\n');
+        }
+
+        String content = this.mockMvc.perform(post("/find/flats").contentType(MediaType.APPLICATION_NDJSON)
+                        .accept(MediaType.APPLICATION_NDJSON).content(body.toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        List<FlatFindResultDto> results = Arrays.stream(content.split("\n"))
+                .map(this::readResult)
+                .toList();
+
+        assertThat(results).extracting(FlatFindResultDto::getIndex).containsExactly(0, 1, 2, 3, 4);
+        assertThat(results).extracting(FlatFindResultDto::getFlatId).containsExactlyElementsOf(requested);
+        assertThat(results).extracting(result -> null == result.getFlat() ? null : result.getFlat().getFlatId())
+                .containsExactly(flatIds.get(0), null, flatIds.get(1), flatIds.get(0), null);
+    }
+
+    /**
+     * Function to add flats with the given flat numbers in a new block, returns their flatIds in the same order.
+     */
+    private List<String> addFlats(String... flatNumbers) throws Exception
+    {
+        String block = "M" + UUID.randomUUID().toString().substring(0, 8);
+        String body = Arrays.stream(flatNumbers)
+                .map(flatNumber -> "{\"flatNumber\":\"" + flatNumber + "\",\"flatBlock\":\"" + block + "\",\"occupied\":false}")
+                .reduce((left, right) -> left + "," + right)
+                .map(flats -> "[" + flats + "]")
+                .orElse("[]");
+        String content = this.mockMvc.perform(post("/add/flats").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return this.objectMapper.readValue(content, BulkIngestResponseDto.class).getResults().stream()
+                .map(FlatIngestResultDto::getFlatId)
+                .toList();
+    }
+
+    private BulkFindResponseDto postJson(List<String> flatIds) throws Exception
+    {
+        String content = this.mockMvc.perform(post("/find/flats").contentType(MediaType.APPLICATION_JSON)
+                        .content(this.objectMapper.writeValueAsString(flatIds)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return this.objectMapper.readValue(content, BulkFindResponseDto.class);
+    }
+
+    private FlatFindResultDto readResult(String line)
+    {
+        try
+        {
+            return this.objectMapper.readValue(line, FlatFindResultDto.class);
+        }
+        catch(Exception exception)
+        {
+            throw new IllegalStateException(exception);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.micasa.index;
+
+import com.micasa.dto.OccupancyStatsDto;
+import com.micasa.model.Flat;
+import com.micasa.projection.FlatOccupancyView;
+import com.micasa.repository.FlatRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * OccupancyIndex slots and bitsets, and a rebuild racing writes, with a mocked repository.
+ */
+class OccupancyIndexTests
+{
+    @Test
+    void joinSetsMemberBitsAndCounts()
+    {
+        OccupancyIndex.Slots slots = new OccupancyIndex.Slots();
+        slots.put("f1", "s1", "A", true);
+        slots.put("f2", "s1", "B", false);
+        slots.put("f3", null, "A", false);
+
+        assertThat(slots.members(true, "s1")).isEqualTo(bits(slots.slotOf("f1"), slots.slotOf("f2")));
+        assertThat(slots.members(false, "A")).isEqualTo(bits(slots.slotOf("f1"), slots.slotOf("f3")));
+        assertThat(slots.isOccupied(slots.slotOf("f1"))).isTrue();
+        assertThat(slots.isOccupied(slots.slotOf("f2"))).isFalse();
+        assertThat(slots.groupCount(true)).isEqualTo(1);
+        assertThat(slots.groupCount(false)).isEqualTo(2);
+    }
+
+    @Test
+    void leaveDropsEmptyGroups()
+    {
+        OccupancyIndex.Slots slots = new OccupancyIndex.Slots();
+        slots.put("f1", "s1", "A", true);
+        slots.put("f2", "s1", "A", false);
+        int slot = slots.slotOf("f1");
+
+        slots.remove("f1");
+
+        assertThat(slots.slotOf("f1")).isEqualTo(-1);
+        assertThat(slots.isOccupied(slot)).isFalse();
+        assertThat(slots.members(true, "s1")).isEqualTo(bits(slots.slotOf("f2")));
+
+        slots.remove("f2");
+
+        assertThat(slots.groupCount(true)).isZero();
+        assertThat(slots.groupCount(false)).isZero();
+        assertThat(slots.members(false, "A").isEmpty()).isTrue();
+    }
+
+    @Test
+    void moveBetweenBlocksUpdatesBothGroups()
+    {
+        OccupancyIndex index = index();
+        index.putAfterCommit(flat("f1", "A", true));
+        index.putAfterCommit(flat("f2", "A", false));
+
+        index.putAfterCommit(flat("f1", "B", true));
+
+        assertThat(index.blockStats("A")).isEqualTo(new OccupancyStatsDto(1, 0, 1));
+        assertThat(index.blockStats("B")).isEqualTo(new OccupancyStatsDto(1, 1, 0));
+        assertThat(index.blockVacantFlatIds("A", 10)).containsExactly("f2");
+
+        index.setOccupiedAfterCommit("f1", false);
+        index.putAfterCommit(flat("f1", "A", false));
+
+        assertThat(index.blockStats("A")).isEqualTo(new OccupancyStatsDto(2, 0, 2));
+        assertThat(index.blockStats("B")).isEqualTo(new OccupancyStatsDto(0, 0, 0));
+    }
+
+    @Test
+    void freedSlotIsReused()
+    {
+        OccupancyIndex.Slots slots = new OccupancyIndex.Slots();
+        slots.put("f1", null, "A", true);
+        slots.put("f2", null, "A", false);
+        int freed = slots.slotOf("f1");
+
+        slots.remove("f1");
+        slots.put("f3", null, "B", false);
+
+        assertThat(slots.slotOf("f3")).isEqualTo(freed);
+        assertThat(slots.slotCount()).isEqualTo(2);
+        assertThat(slots.isOccupied(freed)).isFalse();
+        assertThat(slots.members(false, "A")).isEqualTo(bits(slots.slotOf("f2")));
+        assertThat(slots.members(false, "B")).isEqualTo(bits(freed));
+    }
+
+    @Test
+    void rebuildReplaysWritesArrivingDuringStream()
+    {
+        FlatRepository flatRepository = mock(FlatRepository.class);
+        OccupancyIndex index = new OccupancyIndex(flatRepository, mock(PlatformTransactionManager.class));
+        AtomicBoolean streaming = new AtomicBoolean();
+        //Writes and reads from another thread while the first flat is streamed, neither may wait for the rebuild.
+        when(flatRepository.streamOccupancy()).thenAnswer(invocation -> Stream.of(view("f1", "A", false), view("f2", "A", false))
+                .peek(view -> {
+                    if(streaming.compareAndSet(false, true))
+                    {
+                        CompletableFuture.runAsync(() -> {
+                            index.setOccupiedAfterCommit("f2", true);
+                            index.putAfterCommit(flat("f3", "A", false));
+                            index.removeAfterCommit("f1");
+                            index.blockStats("A");
+                        }).orTimeout(10, TimeUnit.SECONDS).join();
+                    }
+                }));
+
+        index.rebuild();
+
+        assertThat(index.blockStats("A")).isEqualTo(new OccupancyStatsDto(2, 1, 1));
+        assertThat(index.blockVacantFlatIds("A", 10)).containsExactly("f3");
+    }
+
+    private static OccupancyIndex index()
+    {
+        return new OccupancyIndex(mock(FlatRepository.class), mock(PlatformTransactionManager.class));
+    }
+
+    private static Flat flat(String flatId, String flatBlock, boolean occupied)
+    {
+        Flat flat = new Flat(flatId, flatBlock, occupied, null);
+        flat.setFlatId(flatId);
+        return flat;
+    }
+
+    private static FlatOccupancyView view(String flatId, String flatBlock, boolean occupied)
+    {
+        return new FlatOccupancyView()
+        {
+            @Override
+            public String getFlatId()
+            {
+                return flatId;
+            }
+
+            @Override
+            public String getFlatBlock()
+            {
+                return flatBlock;
+            }
+
+            @Override
+            public boolean isOccupied()
+            {
+                return occupied;
+            }
+
+            @Override
+            public String getSocietyId()
+            {
+                return null;
+            }
+        };
+    }
+
+    private static BitSet bits(int... slots)
+    {
+        BitSet bitSet = new BitSet();
+        for(int slot : slots)
+        {
+            bitSet.set(slot);
+        }
+        return bitSet;
+    }
+}
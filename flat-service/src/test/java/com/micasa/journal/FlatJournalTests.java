@@ -0,0 +1,194 @@
+package com.micasa.journal;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * FlatJournal on a temporary directory: replay, checkpoints, segment rolls and failing forces.
+ */
+class FlatJournalTests
+{
+    private static final int SEGMENT_SIZE = 64 * 1024;
+    //Occupancy record with a 36 character flatId: header 8, sequence 8, type 1, flatId 2 + 36, occupied 1.
+    private static final int OCCUPANCY_RECORD_SIZE = 56;
+
+    @TempDir
+    private Path directory;
+    private final List<FlatJournal> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown()
+    {
+        this.opened.forEach(FlatJournal::close);
+    }
+
+    @Test
+    void appendedRecordsAreReplayedInOrder() throws IOException
+    {
+        FlatJournal journal = this.open(new ArrayList<>());
+        journal.append(occupancy(1, true));
+        long sequence = journal.append(List.of(occupancy(2, false), JournalRecord.delete(flatId(3)),
+                JournalRecord.add(flatId(4), "101", "A", null, true)));
+        journal.awaitDurable(sequence);
+        journal.close();
+
+        List<Replayed> replayed = new ArrayList<>();
+        this.open(replayed);
+
+        assertThat(replayed).extracting(Replayed::sequence).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(replayed).extracting(entry -> entry.record().type()).containsExactly(JournalRecordType.OCCUPANCY,
+                JournalRecordType.OCCUPANCY, JournalRecordType.DELETE, JournalRecordType.ADD);
+        assertThat(replayed.get(3).record()).isEqualTo(JournalRecord.add(flatId(4), "101", "A", null, true));
+    }
+
+    @Test
+    void replayStopsAtTruncatedRecordAndContinuesInNewSegment() throws IOException
+    {
+        FlatJournal journal = this.open(new ArrayList<>());
+        for(int i = 1; i <= 10; i++)
+        {
+            journal.awaitDurable(journal.append(occupancy(i, true)));
+        }
+        journal.close();
+        Path segment = this.segmentFiles().get(0);
+        try(FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE))
+        {
+            channel.truncate(9L * OCCUPANCY_RECORD_SIZE + 20);
+        }
+
+        List<Replayed> replayed = new ArrayList<>();
+        journal = this.open(replayed);
+        assertThat(replayed).extracting(Replayed::sequence).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L);
+        journal.awaitDurable(journal.append(occupancy(11, false)));
+        journal.close();
+
+        replayed.clear();
+        this.open(replayed);
+        assertThat(replayed).extracting(Replayed::sequence).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+        assertThat(replayed.get(9).record()).isEqualTo(occupancy(11, false));
+    }
+
+    @Test
+    void replayStartsAfterCheckpoint() throws IOException
+    {
+        FlatJournal journal = this.open(new ArrayList<>());
+        long sequence = 0;
+        for(int i = 1; i <= 5; i++)
+        {
+            sequence = journal.append(occupancy(i, true));
+        }
+        journal.awaitDurable(sequence);
+        journal.checkpoint(3);
+        journal.checkpoint(2);
+        journal.close();
+
+        List<Replayed> replayed = new ArrayList<>();
+        journal = this.open(replayed);
+
+        assertThat(replayed).extracting(Replayed::sequence).containsExactly(4L, 5L);
+        assertThat(journal.lastSequence()).isEqualTo(5);
+    }
+
+    @Test
+    void fullSegmentRollsAndCheckpointDeletesOldSegments() throws IOException
+    {
+        FlatJournal journal = this.open(new ArrayList<>());
+        int records = 3 * SEGMENT_SIZE / OCCUPANCY_RECORD_SIZE;
+        long sequence = 0;
+        for(int i = 1; i <= records; i++)
+        {
+            sequence = journal.append(occupancy(i, 0 == i % 2));
+        }
+        journal.awaitDurable(sequence);
+        assertThat(this.segmentFiles()).hasSize(3);
+
+        journal.checkpoint(records - 1);
+        assertThat(this.segmentFiles()).hasSize(1);
+        journal.close();
+
+        List<Replayed> replayed = new ArrayList<>();
+        this.open(replayed);
+        assertThat(replayed).extracting(Replayed::sequence).containsExactly((long) records);
+    }
+
+    @Test
+    void recordLargerThanSegmentIsRejected() throws IOException
+    {
+        FlatJournal journal = this.open(new ArrayList<>());
+        String large = "x".repeat(30000);
+        JournalRecord record = JournalRecord.add(flatId(1), large, large, large, false);
+
+        assertThatThrownBy(() -> journal.append(List.of(occupancy(2, true), record))).isInstanceOf(IllegalArgumentException.class);
+        assertThat(journal.lastSequence()).isZero();
+
+        journal.awaitDurable(journal.append(occupancy(3, true)));
+        journal.close();
+        List<Replayed> replayed = new ArrayList<>();
+        this.open(replayed);
+        assertThat(replayed).extracting(Replayed::record).containsExactly(occupancy(3, true));
+    }
+
+    @Test
+    void failedForceFailsWaitersAndLaterAppends() throws IOException
+    {
+        FlatJournal journal = new FlatJournal(this.directory, SEGMENT_SIZE, new SimpleMeterRegistry())
+        {
+            @Override
+            void force(MappedByteBuffer target, int from, int length)
+            {
+                throw new UncheckedIOException(new IOException("disk gone"));
+            }
+        };
+        this.opened.add(journal);
+        journal.open((record, sequence) -> {});
+
+        long sequence = journal.append(occupancy(1, true));
+
+        assertThatThrownBy(() -> journal.awaitDurable(sequence)).isInstanceOf(UncheckedIOException.class).hasRootCauseMessage("disk gone");
+        assertThatThrownBy(() -> journal.append(occupancy(2, true))).isInstanceOf(UncheckedIOException.class);
+    }
+
+    private FlatJournal open(List<Replayed> replayed) throws IOException
+    {
+        FlatJournal journal = new FlatJournal(this.directory, SEGMENT_SIZE, new SimpleMeterRegistry());
+        this.opened.add(journal);
+        journal.open((record, sequence) -> replayed.add(new Replayed(record, sequence)));
+        return journal;
+    }
+
+    private List<Path> segmentFiles() throws IOException
+    {
+        try(Stream<Path> files = Files.list(this.directory))
+        {
+            return files.filter(path -> path.getFileName().toString().startsWith("segment-")).sorted().toList();
+        }
+    }
+
+    private static JournalRecord occupancy(int flat, boolean occupied)
+    {
+        return JournalRecord.occupancy(flatId(flat), occupied);
+    }
+
+    private static String flatId(int flat)
+    {
+        return String.format("00000000-0000-0000-0000-%012d", flat);
+    }
+
+    private record Replayed(JournalRecord record, long sequence) {}
+}
@@ -0,0 +1,103 @@
+package com.micasa.mapper;
+
+import com.micasa.common.metrics.PersistenceStats;
+import com.micasa.dto.FlatDto;
+import com.micasa.model.Flat;
+import com.micasa.model.Society;
+import com.micasa.repository.FlatRepository;
+import com.micasa.repository.SocietyRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * SocietyDtoResolver on H2, the societies of a page of flats are read with one query however many there are.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class SocietyDtoResolverTests
+{
+    private static final int SOCIETIES = 4;
+    private static final int FLATS_PER_SOCIETY = 3;
+
+    @Autowired
+    private SocietyDtoResolver societyDtoResolver;
+    @Autowired
+    private FlatRepository flatRepository;
+    @Autowired
+    private SocietyRepository societyRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void pageOfFlatsResolvesAllSocietiesWithOneQuery()
+    {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(this.transactionManager);
+        String block = "D" + UUID.randomUUID().toString().substring(0, 8);
+        List<String> societyIds = transactionTemplate.execute(status -> this.addSocietiesWithFlats(block));
+        this.entityManagerFactory.getCache().evictAll();
+
+        PersistenceStats coldLoad = this.mapPage(transactionTemplate, block, societyIds);
+        assertThat(coldLoad.getStatements()).isEqualTo(1);
+        assertThat(coldLoad.getEntityLoads()).isEqualTo(SOCIETIES);
+
+        //The batch load put the societies in the second-level cache.
+        PersistenceStats cachedLoad = this.mapPage(transactionTemplate, block, societyIds);
+        assertThat(cachedLoad.getStatements()).isZero();
+        assertThat(cachedLoad.getEntityLoads()).isZero();
+    }
+
+    /**
+     * Function to map a page with all flats of the block, and check every flat got its society.
+     * @return : Persistence activity of the mapping alone, the page is read before.
+     */
+    private PersistenceStats mapPage(TransactionTemplate transactionTemplate, String block, List<String> societyIds)
+    {
+        return transactionTemplate.execute(status -> {
+            List<Flat> page = this.flatRepository.findByFlatBlockOrderByFlatNumberDesc(block,
+                    PageRequest.of(0, SOCIETIES * FLATS_PER_SOCIETY)).getContent();
+            PersistenceStats before = PersistenceStats.current().snapshot();
+            List<FlatDto> flatDtoList = this.societyDtoResolver.flatEntityListToFlatDtoList(page);
+            PersistenceStats mapping = new PersistenceStats();
+            mapping.addSince(before);
+
+            assertThat(flatDtoList).hasSize(SOCIETIES * FLATS_PER_SOCIETY);
+            assertThat(flatDtoList).allSatisfy(flatDto -> assertThat(flatDto.getSociety().getSocietyName())
+                    .isEqualTo("Society " + flatDto.getSociety().getSocietyId()));
+            assertThat(flatDtoList).extracting(flatDto -> flatDto.getSociety().getSocietyId())
+                    .containsOnlyElementsOf(societyIds);
+            return mapping;
+        });
+    }
+
+    private List<String> addSocietiesWithFlats(String block)
+    {
+        List<String> societyIds = new ArrayList<>();
+        List<Flat> flats = new ArrayList<>();
+        for(int i = 0; i < SOCIETIES; i++)
+        {
+            String societyId = UUID.randomUUID().toString();
+            Society society = this.societyRepository.save(new Society(societyId, "Society " + societyId, "Address " + i, null));
+            societyIds.add(societyId);
+            for(int j = 0; j < FLATS_PER_SOCIETY; j++)
+            {
+                flats.add(new Flat(String.valueOf(100 * (i + 1) + j), block, false, society));
+            }
+        }
+        this.flatRepository.saveAll(flats);
+        return societyIds;
+    }
+}
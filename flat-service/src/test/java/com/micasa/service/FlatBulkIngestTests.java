@@ -0,0 +1,165 @@
+package com.micasa.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.micasa.dto.BulkIngestResponseDto;
+import com.micasa.dto.FlatIngestResultDto;
+import com.micasa.model.Flat;
+import com.micasa.repository.FlatRepository;
+import com.micasa.writebehind.FlatWriteBatch;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Bulk ingestion through POST /add/flats (JSON and NDJSON), FlatService.addFlats and FlatService.writeFlats on H2.
+ * Chunks hold two flats, so a request spans several chunks and transactions.
+ */
+@SpringBootTest(properties = "micasa.flat.bulk.chunk-size=2")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class FlatBulkIngestTests
+{
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private FlatService flatService;
+    @Autowired
+    private FlatRepository flatRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void duplicateRowsInOneBatchAreConflicts() throws Exception
+    {
+        String block = newBlock();
+        BulkIngestResponseDto response = this.postJson("[" + flatJson("101", block) + "," + flatJson("101", block) + ","
+                + flatJson("102", block) + "," + flatJson("101", block) + "]");
+
+        assertThat(response.getReceived()).isEqualTo(4);
+        assertThat(response.getCreated()).isEqualTo(2);
+        assertThat(response.getConflicts()).isEqualTo(2);
+        assertThat(statuses(response)).containsExactly(FlatIngestResultDto.Status.CREATED, FlatIngestResultDto.Status.CONFLICT,
+                FlatIngestResultDto.Status.CREATED, FlatIngestResultDto.Status.CONFLICT);
+        assertThat(this.flatRepository.findByFlatBlockOrderByFlatNumberDesc(block, PageRequest.of(0, 10)).getContent())
+                .extracting(Flat::getFlatNumber)
+                .containsExactly("102", "101");
+    }
+
+    @Test
+    void partialFailureIsReportedPerRow() throws Exception
+    {
+        String block = newBlock();
+        this.postJson("[" + flatJson("201", block) + "]");
+
+        BulkIngestResponseDto response = this.postJson("[" + flatJson("202", block) + "," + flatJson("", block) + ","
+                + flatJson("201", block) + "," + flatJson("203", null) + "," + flatJson("204", block) + "]");
+
+        assertThat(response.getReceived()).isEqualTo(5);
+        assertThat(response.getCreated()).isEqualTo(2);
+        assertThat(response.getConflicts()).isEqualTo(1);
+        assertThat(response.getFailed()).isEqualTo(2);
+        assertThat(response.getResults()).extracting(FlatIngestResultDto::getIndex).containsExactly(0, 1, 2, 3, 4);
+        assertThat(statuses(response)).containsExactly(FlatIngestResultDto.Status.CREATED, FlatIngestResultDto.Status.FAILED,
+                FlatIngestResultDto.Status.CONFLICT, FlatIngestResultDto.Status.FAILED, FlatIngestResultDto.Status.CREATED);
+        assertThat(response.getResults().get(0).getFlatId()).isNotNull();
+        assertThat(response.getResults().get(1).getMessage()).isNotBlank();
+    }
+
+    @Test
+    void ndjsonStreamReportsSameResultsAsJson() throws Exception
+    {
+        String block = newBlock();
+        String body = String.join("\n", flatJson("301", block), flatJson("302", block), flatJson("301", block),
+                flatJson("303", null), flatJson("304", block)) + "\n";
+
+        String content = this.mockMvc.perform(post("/add/flats").contentType(MediaType.APPLICATION_NDJSON).content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        BulkIngestResponseDto response = this.objectMapper.readValue(content, BulkIngestResponseDto.class);
+
+        assertThat(response.getReceived()).isEqualTo(5);
+        assertThat(response.getResults()).extracting(FlatIngestResultDto::getIndex).containsExactly(0, 1, 2, 3, 4);
+        assertThat(statuses(response)).containsExactly(FlatIngestResultDto.Status.CREATED, FlatIngestResultDto.Status.CREATED,
+                FlatIngestResultDto.Status.CONFLICT, FlatIngestResultDto.Status.FAILED, FlatIngestResultDto.Status.CREATED);
+    }
+
+    @Test
+    void addFlatsReportsFlatsAlreadyStoredAsConflicts()
+    {
+        String block = newBlock();
+        this.flatService.addFlats(List.of(new Flat("401", block, false, null)));
+
+        List<FlatIngestResultDto> results = this.flatService.addFlats(List.of(new Flat("401", block, false, null),
+                new Flat("402", block, true, null), new Flat("401", block, true, null)));
+
+        assertThat(results).extracting(FlatIngestResultDto::getStatus).containsExactly(FlatIngestResultDto.Status.CONFLICT,
+                FlatIngestResultDto.Status.CREATED, FlatIngestResultDto.Status.CONFLICT);
+    }
+
+    @Test
+    void writeFlatsEvictsCachedQueriesAfterCommit()
+    {
+        String block = newBlock();
+        this.flatService.addFlats(List.of(new Flat("501", block, false, null)));
+        Statistics statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        assertThat(this.findFlatNumbers(block)).containsExactly("501");
+        long hits = statistics.getQueryCacheHitCount();
+        assertThat(this.findFlatNumbers(block)).containsExactly("501");
+        assertThat(statistics.getQueryCacheHitCount()).isGreaterThan(hits);
+
+        Flat queued = new Flat("502", block, true, null);
+        queued.setFlatId(UUID.randomUUID().toString());
+        this.flatService.writeFlats(new FlatWriteBatch(List.of(), List.of(queued), Map.of()));
+
+        assertThat(this.findFlatNumbers(block)).containsExactly("502", "501");
+    }
+
+    private List<String> findFlatNumbers(String block)
+    {
+        return this.flatRepository.findByFlatBlockOrderByFlatNumberDesc(block, PageRequest.of(0, 10)).getContent().stream()
+                .map(Flat::getFlatNumber)
+                .toList();
+    }
+
+    private BulkIngestResponseDto postJson(String body) throws Exception
+    {
+        String content = this.mockMvc.perform(post("/add/flats").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return this.objectMapper.readValue(content, BulkIngestResponseDto.class);
+    }
+
+    private static List<FlatIngestResultDto.Status> statuses(BulkIngestResponseDto response)
+    {
+        return response.getResults().stream().map(FlatIngestResultDto::getStatus).toList();
+    }
+
+    private static String flatJson(String flatNumber, String flatBlock)
+    {
+        return "{\"flatNumber\":\"" + flatNumber + "\",\"flatBlock\":" + (null == flatBlock ? "null" : "\"" + flatBlock + "\"")
+                + ",\"occupied\":false}";
+    }
+
+    private static String newBlock()
+    {
+        return "T" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
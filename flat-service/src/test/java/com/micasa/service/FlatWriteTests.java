@@ -0,0 +1,120 @@
+package com.micasa.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.micasa.dto.FlatDto;
+import com.micasa.repository.FlatRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Synchronous flat writes through FlatController on H2, every write is committed before the response.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class FlatWriteTests
+{
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private FlatRepository flatRepository;
+
+    @Test
+    void compareAndSetReturnsUpdatedFlat() throws Exception
+    {
+        String flatId = this.addFlat();
+
+        this.mockMvc.perform(patch("/update/occupied-status/{flatId}/true", flatId).param("expected", "false"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.occupied").value(true));
+        this.mockMvc.perform(patch("/update/occupied-status/{flatId}/false", flatId).param("expected", "false"))
+                .andExpect(status().isConflict());
+
+        this.mockMvc.perform(get("/find/flatId/{flatId}", flatId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.occupied").value(true));
+        assertThat(this.flatRepository.findById(flatId)).hasValueSatisfying(flat -> assertThat(flat.isOccupied()).isTrue());
+    }
+
+    @Test
+    void bulkUpdateAndDeleteAreCommitted() throws Exception
+    {
+        String flatId = this.addFlat();
+
+        this.mockMvc.perform(patch("/update/occupied-status").contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"flatId\":\"" + flatId + "\",\"occupied\":true}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.queued").value(false))
+                .andExpect(jsonPath("$.updated").value(1));
+        assertThat(this.flatRepository.findById(flatId)).hasValueSatisfying(flat -> assertThat(flat.isOccupied()).isTrue());
+
+        this.mockMvc.perform(delete("/delete/flat/{flatId}", flatId)).andExpect(status().isNoContent());
+        this.mockMvc.perform(get("/find/flatId/{flatId}", flatId)).andExpect(status().isBadRequest());
+        assertThat(this.flatRepository.findById(flatId)).isEmpty();
+    }
+
+    @Test
+    void bulkUpdateReportsMissingFlatIds() throws Exception
+    {
+        String firstFlatId = this.addFlat();
+        String secondFlatId = this.addFlat();
+        String missingFlatId = UUID.randomUUID().toString();
+
+        this.mockMvc.perform(patch("/update/occupied-status").contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"flatId\":\"" + firstFlatId + "\",\"occupied\":true},"
+                                + "{\"flatId\":\"" + missingFlatId + "\",\"occupied\":true},"
+                                + "{\"flatId\":\"" + secondFlatId + "\",\"occupied\":false}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(3))
+                .andExpect(jsonPath("$.updated").value(2))
+                .andExpect(jsonPath("$.optimistic").value(false))
+                .andExpect(jsonPath("$.missingFlatIds.length()").value(1))
+                .andExpect(jsonPath("$.missingFlatIds[0]").value(missingFlatId));
+        assertThat(this.flatRepository.findById(firstFlatId)).hasValueSatisfying(flat -> assertThat(flat.isOccupied()).isTrue());
+        assertThat(this.flatRepository.findById(missingFlatId)).isEmpty();
+    }
+
+    @Test
+    void optimisticBulkUpdateCountsAffectedRows() throws Exception
+    {
+        String flatId = this.addFlat();
+        String missingFlatId = UUID.randomUUID().toString();
+
+        //Missing flatIds are not looked up, they only do not add to the updated rows.
+        this.mockMvc.perform(patch("/update/occupied-status").param("optimistic", "true").contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"flatId\":\"" + flatId + "\",\"occupied\":true},"
+                                + "{\"flatId\":\"" + missingFlatId + "\",\"occupied\":true}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(1))
+                .andExpect(jsonPath("$.optimistic").value(true))
+                .andExpect(jsonPath("$.missingFlatIds").doesNotExist());
+        assertThat(this.flatRepository.findById(flatId)).hasValueSatisfying(flat -> assertThat(flat.isOccupied()).isTrue());
+    }
+
+    private String addFlat() throws Exception
+    {
+        String block = "S" + UUID.randomUUID().toString().substring(0, 8);
+        String content = this.mockMvc.perform(post("/add/flat").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"flatNumber\":\"101\",\"flatBlock\":\"" + block + "\",\"occupied\":false}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return this.objectMapper.readValue(content, FlatDto.class).getFlatId();
+    }
+}
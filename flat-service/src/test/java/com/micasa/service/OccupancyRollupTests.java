@@ -0,0 +1,126 @@
+package com.micasa.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.micasa.dto.FlatDto;
+import com.micasa.rollup.OccupancyRollupReconciler;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Flat counts in occupancy_rollup after writes through FlatController on H2, and their repair by OccupancyRollupReconciler.
+ * Flats are added without a society, each test uses its own block, so it reads its own row under society ''.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class OccupancyRollupTests
+{
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private OccupancyRollupReconciler occupancyRollupReconciler;
+
+    @Test
+    void singleAndBulkAddsAreCounted() throws Exception
+    {
+        String block = this.newBlock();
+
+        this.addFlat(block, "101", true);
+        assertThat(this.rollup(block)).containsExactly(1L, 1L);
+
+        this.mockMvc.perform(post("/add/flats").contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + this.flatJson(block, "102", false) + "," + this.flatJson(block, "103", true) + "]"))
+                .andExpect(status().isOk());
+        assertThat(this.rollup(block)).containsExactly(3L, 2L);
+    }
+
+    @Test
+    void occupancyChangesAndDeletesAreCounted() throws Exception
+    {
+        String block = this.newBlock();
+        String firstFlatId = this.addFlat(block, "101", false);
+        String secondFlatId = this.addFlat(block, "102", false);
+
+        this.mockMvc.perform(patch("/update/occupied-status/{flatId}/true", firstFlatId).param("expected", "false"))
+                .andExpect(status().isOk());
+        this.mockMvc.perform(patch("/update/occupied-status/{flatId}/false", firstFlatId).param("expected", "false"))
+                .andExpect(status().isConflict());
+        assertThat(this.rollup(block)).containsExactly(2L, 1L);
+
+        //Only the second flat flips, the first one is occupied already.
+        this.mockMvc.perform(patch("/update/occupied-status").contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"flatId\":\"" + firstFlatId + "\",\"occupied\":true},"
+                                + "{\"flatId\":\"" + secondFlatId + "\",\"occupied\":true}]"))
+                .andExpect(status().isOk());
+        assertThat(this.rollup(block)).containsExactly(2L, 2L);
+
+        this.mockMvc.perform(delete("/delete/flat/{flatId}", firstFlatId)).andExpect(status().isNoContent());
+        assertThat(this.rollup(block)).containsExactly(1L, 1L);
+    }
+
+    @Test
+    void reconcileRepairsDriftedRows() throws Exception
+    {
+        String block = this.newBlock();
+        String emptyBlock = this.newBlock();
+        this.addFlat(block, "101", true);
+        this.addFlat(block, "102", false);
+        this.jdbcTemplate.update("update occupancy_rollup set total_flats = 7, occupied_flats = 5 where society_id = '' and flat_block = ?", block);
+        this.jdbcTemplate.update("insert into occupancy_rollup (society_id, flat_block, total_flats, occupied_flats) values ('', ?, 3, 1)",
+                emptyBlock);
+
+        this.occupancyRollupReconciler.reconcile();
+
+        assertThat(this.rollup(block)).containsExactly(2L, 1L);
+        assertThat(this.rollup(emptyBlock)).isEmpty();
+    }
+
+    /**
+     * Function to read the flat count and occupied flat count of a block, empty if it has no row.
+     */
+    private List<Long> rollup(String block)
+    {
+        return this.jdbcTemplate.query("select total_flats, occupied_flats from occupancy_rollup where society_id = '' and flat_block = ?",
+                        (resultSet, rowNumber) -> List.of(resultSet.getLong(1), resultSet.getLong(2)), block).stream()
+                .findFirst()
+                .orElse(List.of());
+    }
+
+    private String addFlat(String block, String flatNumber, boolean occupied) throws Exception
+    {
+        String content = this.mockMvc.perform(post("/add/flat").contentType(MediaType.APPLICATION_JSON)
+                        .content(this.flatJson(block, flatNumber, occupied)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return this.objectMapper.readValue(content, FlatDto.class).getFlatId();
+    }
+
+    private String flatJson(String block, String flatNumber, boolean occupied)
+    {
+        return "{\"flatNumber\":\"" + flatNumber + "\",\"flatBlock\":\"" + block + "\",\"occupied\":" + occupied + "}";
+    }
+
+    private String newBlock()
+    {
+        return "R" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
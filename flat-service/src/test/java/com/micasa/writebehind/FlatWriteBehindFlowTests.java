@@ -0,0 +1,93 @@
+package com.micasa.writebehind;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.micasa.constants.ExceptionMessages;
+import com.micasa.dto.FlatDto;
+import com.micasa.repository.FlatRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Flat writes through FlatController with write-behind enabled, on H2 and a journal in a temporary directory.
+ * Writes are queued outside of any transaction and reach the database on flush.
+ */
+@SpringBootTest(properties = {"micasa.flat.write-behind.enabled=true", "micasa.flat.write-behind.flush-interval=1h"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class FlatWriteBehindFlowTests
+{
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private FlatWriteBehind flatWriteBehind;
+    @Autowired
+    private FlatRepository flatRepository;
+
+    @DynamicPropertySource
+    static void journalDirectory(DynamicPropertyRegistry registry) throws IOException
+    {
+        String directory = Files.createTempDirectory("flat-journal").toString();
+        registry.add("micasa.flat.write-behind.journal.directory", () -> directory);
+    }
+
+    @Test
+    void queuedWritesAreReadBackAndFlushed() throws Exception
+    {
+        String block = "W" + UUID.randomUUID().toString().substring(0, 8);
+        String content = this.mockMvc.perform(post("/add/flat").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"flatNumber\":\"101\",\"flatBlock\":\"" + block + "\",\"occupied\":false}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String flatId = this.objectMapper.readValue(content, FlatDto.class).getFlatId();
+        assertThat(this.flatRepository.findById(flatId)).isEmpty();
+        this.mockMvc.perform(post("/add/flat").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"flatNumber\":\"101\",\"flatBlock\":\"" + block + "\",\"occupied\":false}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.exceptionResponse[0].message")
+                        .value(ExceptionMessages.FLAT_ALREADY_EXISTS_BLOCK_NUMBER_MSG + block + "/101"));
+
+        this.mockMvc.perform(patch("/update/occupied-status/{flatId}/true", flatId).param("expected", "false"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.occupied").value(true));
+        this.mockMvc.perform(patch("/update/occupied-status/{flatId}/false", flatId).param("expected", "false"))
+                .andExpect(status().isConflict());
+        this.mockMvc.perform(get("/find/flatId/{flatId}", flatId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.occupied").value(true));
+
+        this.flatWriteBehind.flush();
+        assertThat(this.flatRepository.findById(flatId)).hasValueSatisfying(flat -> assertThat(flat.isOccupied()).isTrue());
+
+        this.mockMvc.perform(patch("/update/occupied-status").contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"flatId\":\"" + flatId + "\",\"occupied\":false}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.queued").value(true))
+                .andExpect(jsonPath("$.updated").value(1));
+        this.mockMvc.perform(delete("/delete/flat/{flatId}", flatId)).andExpect(status().isNoContent());
+        this.mockMvc.perform(get("/find/flatId/{flatId}", flatId)).andExpect(status().isBadRequest());
+
+        this.flatWriteBehind.flush();
+        assertThat(this.flatRepository.findById(flatId)).isEmpty();
+    }
+}
@@ -0,0 +1,154 @@
+package com.micasa.writebehind;
+
+import com.micasa.exception.ServiceUnavailableException;
+import com.micasa.service.FlatService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * FlatWriteBehind with a real journal and a mocked flatService, whose writes are held on a latch.
+ * The queue holds two flats, so the third write finds it full.
+ */
+class FlatWriteBehindTests
+{
+    @TempDir
+    private Path directory;
+    private final CountDownLatch release = new CountDownLatch(1);
+    //Threads that called flatService.writeFlats.
+    private final CopyOnWriteArrayList<Thread> writers = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<FlatWriteBatch> batches = new CopyOnWriteArrayList<>();
+    private FlatService flatService;
+    private FlatWriteBehind flatWriteBehind;
+
+    @BeforeEach
+    void setUp()
+    {
+        FlatService flatService = mock(FlatService.class);
+        when(flatService.writeFlats(any())).thenAnswer(invocation -> {
+            this.writers.add(Thread.currentThread());
+            this.batches.add(invocation.getArgument(0));
+            assertThat(this.release.await(10, TimeUnit.SECONDS)).isTrue();
+            return Set.of();
+        });
+        this.flatService = flatService;
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        this.release.countDown();
+        if(null != this.flatWriteBehind)
+        {
+            this.flatWriteBehind.stop();
+        }
+    }
+
+    @Test
+    void acknowledgedWriteIsPendingRightAway() throws Exception
+    {
+        this.flatWriteBehind = this.flatWriteBehind(Duration.ofSeconds(1));
+
+        this.flatWriteBehind.updateOccupancy(Map.of("f1", true));
+
+        assertThat(this.flatWriteBehind.pendingWrite("f1").occupied()).isTrue();
+        assertThat(this.flatWriteBehind.compareAndUpdateOccupancy("f1", false, false, () -> false)).isFalse();
+        assertThat(this.flatWriteBehind.compareAndUpdateOccupancy("f1", true, false, () -> true)).isTrue();
+        assertThat(this.flatWriteBehind.pendingWrite("f1").occupied()).isFalse();
+    }
+
+    @Test
+    void persistedStatusIsReadAgainWhenFlushCommitsInBetween()
+    {
+        this.flatWriteBehind = this.flatWriteBehind(Duration.ofSeconds(1));
+        this.release.countDown();
+        AtomicInteger reads = new AtomicInteger();
+
+        //The first read sees the status from before a flush that commits right after it.
+        boolean queued = this.flatWriteBehind.compareAndUpdateOccupancy("f1", true, false, () -> {
+            if(1 == reads.incrementAndGet())
+            {
+                this.flatWriteBehind.updateOccupancy(Map.of("f1", true));
+                this.flatWriteBehind.flush();
+                return false;
+            }
+            return true;
+        });
+
+        assertThat(queued).isTrue();
+        assertThat(reads).hasValue(2);
+        assertThat(this.flatWriteBehind.pendingWrite("f1").occupied()).isFalse();
+    }
+
+    @Test
+    void fullQueueRejectsAfterMaxWaitWithoutFlushingOnCallerThread()
+    {
+        this.flatWriteBehind = this.flatWriteBehind(Duration.ofMillis(200));
+        this.flatWriteBehind.updateOccupancy(Map.of("f1", true));
+        this.flatWriteBehind.updateOccupancy(Map.of("f2", true));
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> this.flatWriteBehind.delete("f3")).isInstanceOf(ServiceUnavailableException.class);
+
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+        assertThat(this.writers).isNotEmpty().doesNotContain(Thread.currentThread());
+        assertThat(this.flatWriteBehind.pendingWrite("f3")).isNull();
+    }
+
+    @Test
+    void waitingWriterIsAcceptedOnceFlushMakesRoom() throws Exception
+    {
+        this.flatWriteBehind = this.flatWriteBehind(Duration.ofSeconds(10));
+        this.flatWriteBehind.updateOccupancy(Map.of("f1", true));
+        this.flatWriteBehind.updateOccupancy(Map.of("f2", true));
+
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> this.flatWriteBehind.delete("f3"));
+        Thread.sleep(100);
+        assertThat(waiting).isNotDone();
+
+        this.release.countDown();
+        waiting.get(10, TimeUnit.SECONDS);
+
+        assertThat(this.writers).doesNotContain(Thread.currentThread());
+        this.flatWriteBehind.flush();
+        assertThat(this.batches).flatExtracting(FlatWriteBatch::deletes).containsExactly("f3");
+    }
+
+    private FlatWriteBehind flatWriteBehind(Duration maxWait)
+    {
+        @SuppressWarnings("unchecked")
+        ObjectProvider<FlatService> flatServiceProvider = mock(ObjectProvider.class);
+        when(flatServiceProvider.getObject()).thenReturn(this.flatService);
+        try
+        {
+            return new FlatWriteBehind(flatServiceProvider, new SimpleMeterRegistry(), true, this.directory, DataSize.ofKilobytes(64),
+                    Duration.ofHours(1), 2, 2, maxWait);
+        }
+        catch(IOException ioException)
+        {
+            throw new UncheckedIOException(ioException);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.micasa.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Ids the load test can pick at random, taking an id out removes it so no later request picks it.
+ */
+class IdPool
+{
+    private final List<String> ids = new ArrayList<>();
+
+    synchronized void add(String id)
+    {
+        this.ids.add(id);
+    }
+
+    synchronized int size()
+    {
+        return this.ids.size();
+    }
+
+    /**
+     * @return : A random id, null when the pool is empty.
+     */
+    synchronized String pick()
+    {
+        return this.ids.isEmpty() ? null : this.ids.get(ThreadLocalRandom.current().nextInt(this.ids.size()));
+    }
+
+    /**
+     * @return : A random id removed from the pool, null when the pool is empty.
+     */
+    synchronized String take()
+    {
+        if(this.ids.isEmpty())
+        {
+            return null;
+        }
+        int index = ThreadLocalRandom.current().nextInt(this.ids.size());
+        String last = this.ids.remove(this.ids.size() - 1);
+        return index == this.ids.size() ? last : this.ids.set(index, last);
+    }
+}
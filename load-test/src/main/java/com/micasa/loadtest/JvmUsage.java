@@ -0,0 +1,16 @@
+package com.micasa.loadtest;
+
+/**
+ * GC and allocation of a service, totals since start or the difference over a phase.
+ * @param gcPauses : Number of GC pauses.
+ * @param gcPauseMillis : Time spent in GC pauses.
+ * @param allocatedMb : Heap allocated, in MiB.
+ */
+public record JvmUsage(double gcPauses, double gcPauseMillis, double allocatedMb)
+{
+    JvmUsage minus(JvmUsage before)
+    {
+        return new JvmUsage(this.gcPauses - before.gcPauses, this.gcPauseMillis - before.gcPauseMillis,
+                this.allocatedMb - before.allocatedMb);
+    }
+}
@@ -0,0 +1,205 @@
+package com.micasa.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.h2.tools.Server;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Load and soak test of flat-service and society-service through their REST endpoints.
+ * Structure:
+ *  1. Start an H2 TCP server in MySQL mode, a stand-in for the MySQL database both services share.
+ *  2. Fork flat-service, wait until healthy so its schema exists, then fork society-service. See ServiceProcess.
+ *  3. Seed societies and flats through the REST endpoints, see Workload.
+ *  4. Run each phase: warmup, then the recorded duration, both at the same open-model rate. See OpenModelDriver.
+ *  5. Report throughput, p50/p99/p999 latency per operation, and GC pauses and allocation of each service per phase.
+ *  6. Write results.json and one HdrHistogram percentile file per operation, and compare with a baseline when given.
+ * Run from load-test: mvn -B -q compile exec:exec -Dload-test.args="--rate=500 --duration=60s", options in LoadTestOptions.
+ * Exits with 1 when an operation regressed against the baseline.
+ */
+public class LoadTest
+{
+    private static final String MIX_PHASE = "mix";
+    private static final String ALL_OPERATIONS = "all";
+
+    private final LoadTestOptions options;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper;
+    private final ServiceProcess flatService;
+    private final ServiceProcess societyService;
+
+    private LoadTest(LoadTestOptions options, HttpClient client, ObjectMapper objectMapper, ServiceProcess flatService,
+                     ServiceProcess societyService)
+    {
+        this.options = options;
+        this.client = client;
+        this.objectMapper = objectMapper;
+        this.flatService = flatService;
+        this.societyService = societyService;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        Files.createDirectories(options.output);
+        ObjectMapper objectMapper = new ObjectMapper();
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        Server database = Server.createTcpServer("-tcpPort", String.valueOf(options.dbPort), "-tcpDaemon", "-ifNotExists").start();
+        String jdbcUrl = "jdbc:h2:tcp://localhost:" + options.dbPort + "/mem:micasa;MODE=MySQL;DB_CLOSE_DELAY=-1";
+        List<PhaseResult> results;
+        try(ServiceProcess flatService = ServiceProcess.start("flat-service", options.flatServiceDir, "com.micasa.FlatServiceApplication",
+                options.flatServicePort, jdbcUrl, options, options.flatServiceArgs))
+        {
+            System.out.println("Starting flat-service on port " + options.flatServicePort);
+            flatService.awaitReady(client, options.startupTimeout);
+            try(ServiceProcess societyService = ServiceProcess.start("society-service", options.societyServiceDir,
+                    "com.micasa.societyservice.SocietyServiceApplication", options.societyServicePort, jdbcUrl, options,
+                    options.societyServiceArgs))
+            {
+                System.out.println("Starting society-service on port " + options.societyServicePort);
+                societyService.awaitReady(client, options.startupTimeout);
+                results = new LoadTest(options, client, objectMapper, flatService, societyService).run();
+            }
+        }
+        finally
+        {
+            database.stop();
+        }
+        Path resultsFile = options.output.resolve("results.json");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(resultsFile.toFile(), results);
+        System.out.println("Results written to " + resultsFile);
+        boolean regressed = null != options.baseline && regressed(results, options, objectMapper);
+        System.exit(regressed ? 1 : 0);
+    }
+
+    private List<PhaseResult> run() throws IOException, InterruptedException
+    {
+        Workload workload = new Workload(this.flatService.uri(), this.societyService.uri(), this.objectMapper);
+        System.out.printf("Seeding %d societies and %d flats%n", this.options.societies, this.options.flats);
+        workload.seed(this.client, this.options.societies, this.options.flats);
+        System.out.printf("Seeded %d flats, running %s at %.0f requests/s, warmup %s, duration %s%n%n", workload.flatCount(),
+                this.options.phases, this.options.rate, this.options.warmup, this.options.duration);
+        System.out.printf("%-10s %-10s %9s %7s %8s %9s %9s %9s %9s %9s%n", "phase", "operation", "requests", "errors",
+                "dropped", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        OpenModelDriver driver = new OpenModelDriver(this.client, workload, this.options.maxInFlight);
+        List<PhaseResult> results = new ArrayList<>();
+        for(String phase : this.options.phases)
+        {
+            Map<Operation, Integer> weights = MIX_PHASE.equals(phase) ? this.options.mix : Map.of(Operation.of(phase), 1);
+            driver.run(weights, this.options.rate, this.options.warmup);
+            JvmUsage flatServiceBefore = this.flatService.jvmUsage(this.client, this.objectMapper);
+            JvmUsage societyServiceBefore = this.societyService.jvmUsage(this.client, this.objectMapper);
+            long start = System.nanoTime();
+            Map<Operation, OperationStats> stats = driver.run(weights, this.options.rate, this.options.duration);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            JvmUsage flatServiceUsage = this.flatService.jvmUsage(this.client, this.objectMapper).minus(flatServiceBefore);
+            JvmUsage societyServiceUsage = this.societyService.jvmUsage(this.client, this.objectMapper).minus(societyServiceBefore);
+            results.add(this.report(phase, stats, seconds, flatServiceUsage, societyServiceUsage));
+        }
+        return results;
+    }
+
+    private PhaseResult report(String phase, Map<Operation, OperationStats> stats, double seconds, JvmUsage flatServiceUsage,
+                               JvmUsage societyServiceUsage) throws IOException
+    {
+        List<OperationResult> operations = new ArrayList<>();
+        Histogram all = new Histogram(3);
+        long requests = 0, errors = 0, dropped = 0;
+        for(Map.Entry<Operation, OperationStats> entry : stats.entrySet())
+        {
+            OperationStats operationStats = entry.getValue();
+            Histogram histogram = operationStats.histogram();
+            all.add(histogram);
+            requests += operationStats.completed.sum();
+            errors += operationStats.errors.sum();
+            dropped += operationStats.dropped.sum();
+            operations.add(this.operationResult(phase, entry.getKey().label(), histogram, operationStats.completed.sum(),
+                    operationStats.errors.sum(), operationStats.dropped.sum(), seconds));
+            if(0 < operationStats.skipped.sum())
+            {
+                System.out.printf("%-10s %-10s %d requests skipped, no flat or society left%n", phase, entry.getKey().label(),
+                        operationStats.skipped.sum());
+            }
+        }
+        if(1 < stats.size())
+        {
+            operations.add(this.operationResult(phase, ALL_OPERATIONS, all, requests, errors, dropped, seconds));
+        }
+        double allocatedKbPerRequest = 0 == requests ? 0 : (flatServiceUsage.allocatedMb() + societyServiceUsage.allocatedMb()) * 1024 / requests;
+        System.out.printf("%-10s flat-service: %.0f GC pauses, %.1f ms, %.1f MiB allocated; society-service: %.0f GC pauses, %.1f ms, "
+                        + "%.1f MiB allocated; %.1f KiB allocated per request%n", phase, flatServiceUsage.gcPauses(),
+                flatServiceUsage.gcPauseMillis(), flatServiceUsage.allocatedMb(), societyServiceUsage.gcPauses(),
+                societyServiceUsage.gcPauseMillis(), societyServiceUsage.allocatedMb(), allocatedKbPerRequest);
+        return new PhaseResult(phase, this.options.rate, operations, flatServiceUsage, societyServiceUsage, allocatedKbPerRequest);
+    }
+
+    private OperationResult operationResult(String phase, String operation, Histogram histogram, long requests, long errors,
+                                            long dropped, double seconds) throws IOException
+    {
+        OperationResult result = new OperationResult(operation, requests, errors, dropped, requests / seconds,
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMaxValue() / 1000.0);
+        System.out.printf("%-10s %-10s %9d %7d %8d %9.1f %9.2f %9.2f %9.2f %9.2f%n", phase, operation, result.requests(),
+                result.errors(), result.dropped(), result.throughput(), result.p50Millis(), result.p99Millis(),
+                result.p999Millis(), result.maxMillis());
+        try(PrintStream out = new PrintStream(this.options.output.resolve(phase + "-" + operation + ".hgrm").toFile()))
+        {
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+        return result;
+    }
+
+    /**
+     * Function to compare results with a baseline run, operations missing from the baseline are not compared.
+     * @return : true if p99 latency grew or throughput dropped by more than tolerance for any operation.
+     */
+    private static boolean regressed(List<PhaseResult> results, LoadTestOptions options, ObjectMapper objectMapper) throws IOException
+    {
+        List<PhaseResult> baseline = objectMapper.readValue(options.baseline.toFile(), new TypeReference<List<PhaseResult>>() {});
+        Map<String, OperationResult> baselineByKey = new HashMap<>();
+        for(PhaseResult phaseResult : baseline)
+        {
+            phaseResult.operations().forEach(result -> baselineByKey.put(phaseResult.phase() + "/" + result.operation(), result));
+        }
+        boolean regressed = false;
+        for(PhaseResult phaseResult : results)
+        {
+            for(OperationResult result : phaseResult.operations())
+            {
+                String key = phaseResult.phase() + "/" + result.operation();
+                OperationResult expected = baselineByKey.get(key);
+                if(null == expected)
+                {
+                    continue;
+                }
+                if(result.p99Millis() > expected.p99Millis() * (1 + options.tolerance))
+                {
+                    System.out.printf("REGRESSION %s: p99 %.2f ms, baseline %.2f ms%n", key, result.p99Millis(), expected.p99Millis());
+                    regressed = true;
+                }
+                if(result.throughput() < expected.throughput() * (1 - options.tolerance))
+                {
+                    System.out.printf("REGRESSION %s: %.1f requests/s, baseline %.1f requests/s%n", key, result.throughput(),
+                            expected.throughput());
+                    regressed = true;
+                }
+            }
+        }
+        System.out.println(regressed ? "Regressions against " + options.baseline : "No regressions against " + options.baseline);
+        return regressed;
+    }
+}
@@ -0,0 +1,139 @@
+package com.micasa.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Options of a load test run, passed as --name=value arguments. Every option has a default.
+ *  --societies=100, --flats=20000 : Data seeded through the REST endpoints before the first phase.
+ *  --rate=200 : Requests started per second, whether or not earlier ones completed (open model).
+ *  --warmup=10s, --duration=30s : Unrecorded and recorded time of each phase.
+ *  --phases=find,add,occupancy,delete,society,mix : Phases in order, one per operation and "mix" for the weighted mix.
+ *  --mix=find:50,occupancy:25,add:10,delete:5,society:10 : Weights of the mix phase.
+ *  --max-in-flight=5000 : Requests due while this many are outstanding are dropped and counted.
+ *  --service-jvm-args="-Xms512m -Xmx512m", --flat-service-args, --society-service-args : Extra arguments of the forked
+ *   services, e.g. --flat-service-args=--spring.profiles.active=virtual.
+ *  --db-port=19092, --flat-service-port=18080, --society-service-port=18081 : Local ports.
+ *  --output=target/load-test : Directory of results.json, histograms and service logs.
+ *  --baseline=path/results.json, --tolerance=0.2 : Fail the run when p99 or throughput of an operation is worse than in
+ *   the baseline by more than tolerance.
+ */
+public class LoadTestOptions
+{
+    int societies = 100;
+    int flats = 20_000;
+    double rate = 200;
+    Duration warmup = Duration.ofSeconds(10);
+    Duration duration = Duration.ofSeconds(30);
+    List<String> phases = List.of("find", "add", "occupancy", "delete", "society", "mix");
+    Map<Operation, Integer> mix = parseMix("find:50,occupancy:25,add:10,delete:5,society:10");
+    int maxInFlight = 5000;
+    List<String> serviceJvmArgs = List.of("-Xms512m", "-Xmx512m");
+    List<String> flatServiceArgs = List.of();
+    List<String> societyServiceArgs = List.of();
+    int dbPort = 19092;
+    int flatServicePort = 18080;
+    int societyServicePort = 18081;
+    Path flatServiceDir = Path.of("..", "flat-service");
+    Path societyServiceDir = Path.of("..", "society-service");
+    Path output = Path.of("target", "load-test");
+    Duration startupTimeout = Duration.ofMinutes(3);
+    Path baseline;
+    double tolerance = 0.2;
+
+    static LoadTestOptions parse(String[] args)
+    {
+        Map<String, String> values = new HashMap<>();
+        for(String arg : args)
+        {
+            if(arg.isBlank())
+            {
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            if(!arg.startsWith("--") || separator < 0)
+            {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        LoadTestOptions options = new LoadTestOptions();
+        for(Map.Entry<String, String> entry : values.entrySet())
+        {
+            String value = entry.getValue();
+            switch(entry.getKey())
+            {
+                case "societies" -> options.societies = Integer.parseInt(value);
+                case "flats" -> options.flats = Integer.parseInt(value);
+                case "rate" -> options.rate = Double.parseDouble(value);
+                case "warmup" -> options.warmup = parseDuration(value);
+                case "duration" -> options.duration = parseDuration(value);
+                case "phases" -> options.phases = split(value, ",");
+                case "mix" -> options.mix = parseMix(value);
+                case "max-in-flight" -> options.maxInFlight = Integer.parseInt(value);
+                case "service-jvm-args" -> options.serviceJvmArgs = split(value, " ");
+                case "flat-service-args" -> options.flatServiceArgs = split(value, " ");
+                case "society-service-args" -> options.societyServiceArgs = split(value, " ");
+                case "db-port" -> options.dbPort = Integer.parseInt(value);
+                case "flat-service-port" -> options.flatServicePort = Integer.parseInt(value);
+                case "society-service-port" -> options.societyServicePort = Integer.parseInt(value);
+                case "flat-service-dir" -> options.flatServiceDir = Path.of(value);
+                case "society-service-dir" -> options.societyServiceDir = Path.of(value);
+                case "output" -> options.output = Path.of(value);
+                case "startup-timeout" -> options.startupTimeout = parseDuration(value);
+                case "baseline" -> options.baseline = Path.of(value);
+                case "tolerance" -> options.tolerance = Double.parseDouble(value);
+                default -> throw new IllegalArgumentException("Unknown option --" + entry.getKey());
+            }
+        }
+        for(String phase : options.phases)
+        {
+            if(!"mix".equals(phase))
+            {
+                Operation.of(phase);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Function to parse a duration like 500ms, 30s or 2m, a plain number is seconds.
+     */
+    static Duration parseDuration(String value)
+    {
+        if(value.endsWith("ms"))
+        {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if(value.endsWith("s"))
+        {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if(value.endsWith("m"))
+        {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(value));
+    }
+
+    private static Map<Operation, Integer> parseMix(String value)
+    {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for(String weight : split(value, ","))
+        {
+            String[] parts = weight.split(":");
+            mix.put(Operation.of(parts[0]), Integer.parseInt(parts[1]));
+        }
+        return mix;
+    }
+
+    private static List<String> split(String value, String separator)
+    {
+        return Arrays.stream(value.split(separator)).map(String::trim).filter(part -> !part.isEmpty()).toList();
+    }
+}
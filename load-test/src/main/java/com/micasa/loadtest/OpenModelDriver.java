@@ -0,0 +1,116 @@
+package com.micasa.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests at a fixed rate regardless of how fast responses come back (open model), like independent clients do.
+ * Structure:
+ *  1. Request i is due at start + i / rate, the driver sleeps until then and sends it asynchronously.
+ *  2. The operation of each request is drawn from the weights.
+ *  3. Response callbacks record latency from the due time into the stats of the operation.
+ *  4. At the end the driver waits for outstanding requests, so the next phase starts from an idle service.
+ * A service slower than the rate shows up as growing latency, and as dropped requests once maxInFlight are outstanding.
+ */
+class OpenModelDriver
+{
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(60);
+
+    private final HttpClient client;
+    private final Workload workload;
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    OpenModelDriver(HttpClient client, Workload workload, int maxInFlight)
+    {
+        this.client = client;
+        this.workload = workload;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Function to run load for a while.
+     * @param weights : Relative weight of each operation.
+     * @param rate : Requests per second.
+     * @param duration : How long requests are sent.
+     * @return : Stats of each operation with a weight.
+     */
+    Map<Operation, OperationStats> run(Map<Operation, Integer> weights, double rate, Duration duration) throws InterruptedException
+    {
+        Operation[] operations = weights.keySet().toArray(Operation[]::new);
+        int[] cumulativeWeights = new int[operations.length];
+        int totalWeight = 0;
+        Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+        for(int i = 0; i < operations.length; i++)
+        {
+            totalWeight += weights.get(operations[i]);
+            cumulativeWeights[i] = totalWeight;
+            stats.put(operations[i], new OperationStats());
+        }
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        for(long i = 0; ; i++)
+        {
+            long due = start + i * intervalNanos;
+            if(due >= end)
+            {
+                break;
+            }
+            long wait;
+            while((wait = due - System.nanoTime()) > 0)
+            {
+                LockSupport.parkNanos(wait);
+            }
+            int draw = ThreadLocalRandom.current().nextInt(totalWeight);
+            int index = 0;
+            while(cumulativeWeights[index] <= draw)
+            {
+                index++;
+            }
+            this.send(operations[index], stats.get(operations[index]), due);
+        }
+        long drainDeadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        while(0 < this.inFlight.get() && System.nanoTime() < drainDeadline)
+        {
+            Thread.sleep(10);
+        }
+        return stats;
+    }
+
+    private void send(Operation operation, OperationStats stats, long due)
+    {
+        if(this.inFlight.get() >= this.maxInFlight)
+        {
+            stats.dropped.increment();
+            return;
+        }
+        HttpRequest request = this.workload.request(operation);
+        if(null == request)
+        {
+            stats.skipped.increment();
+            return;
+        }
+        this.inFlight.incrementAndGet();
+        this.client.sendAsync(request, this.workload.bodyHandler(operation)).whenComplete((response, throwable) -> {
+            stats.record(due, System.nanoTime());
+            stats.completed.increment();
+            if(null != throwable || 400 <= response.statusCode())
+            {
+                stats.errors.increment();
+            }
+            else
+            {
+                this.workload.completed(operation, response);
+            }
+            this.inFlight.decrementAndGet();
+        });
+    }
+}
@@ -0,0 +1,30 @@
+package com.micasa.loadtest;
+
+import java.util.Locale;
+
+/**
+ * Requests the load test sends, each against the REST endpoint a client would use.
+ *  1. FIND : GET /find/flatId/{flatId} of flat-service.
+ *  2. ADD : POST /add/flat of flat-service, the new flat can be picked by later requests.
+ *  3. OCCUPANCY : PATCH /update/occupied-status/{flatId}/{occupiedStatus} of flat-service.
+ *  4. DELETE : DELETE /delete/flat/{flatId} of flat-service, the flat is no longer picked.
+ *  5. SOCIETY : GET /get/society/{societyId} of society-service, with its flats.
+ */
+public enum Operation
+{
+    FIND,
+    ADD,
+    OCCUPANCY,
+    DELETE,
+    SOCIETY;
+
+    static Operation of(String name)
+    {
+        return Operation.valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    String label()
+    {
+        return this.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,13 @@
+package com.micasa.loadtest;
+
+/**
+ * Measured outcome of one operation in a phase, written to results.json.
+ * @param requests : Requests that completed, with or without error.
+ * @param errors : Completed with a status of 400 or above, or failed.
+ * @param dropped : Due while maxInFlight requests were outstanding.
+ * @param throughput : Completed requests per second of the phase.
+ */
+public record OperationResult(String operation, long requests, long errors, long dropped, double throughput,
+                              double p50Millis, double p99Millis, double p999Millis, double maxMillis)
+{
+}
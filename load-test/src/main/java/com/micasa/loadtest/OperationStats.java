@@ -0,0 +1,33 @@
+package com.micasa.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and outcome counts of one operation during a phase, updated from response callbacks.
+ * Latency is taken from the time a request was due, not when it was sent, so a stalled service is not hidden
+ * by requests that could not go out in time (coordinated omission).
+ */
+class OperationStats
+{
+    //Latency in microseconds.
+    private final Recorder recorder = new Recorder(3);
+    final LongAdder completed = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    //Due while maxInFlight requests were outstanding, never sent.
+    final LongAdder dropped = new LongAdder();
+    //Due but no flat or society left to pick, never sent.
+    final LongAdder skipped = new LongAdder();
+
+    void record(long dueNanos, long completedNanos)
+    {
+        this.recorder.recordValue(Math.max(0, completedNanos - dueNanos) / 1000);
+    }
+
+    Histogram histogram()
+    {
+        return this.recorder.getIntervalHistogram();
+    }
+}
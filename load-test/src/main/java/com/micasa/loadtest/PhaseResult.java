@@ -0,0 +1,15 @@
+package com.micasa.loadtest;
+
+import java.util.List;
+
+/**
+ * Measured outcome of a phase, written to results.json.
+ * @param operations : One entry per operation, the mix phase also has an "all" entry.
+ * @param flatService : GC and allocation of flat-service during the phase.
+ * @param societyService : GC and allocation of society-service during the phase.
+ * @param allocatedKbPerRequest : Heap allocated by both services per completed request.
+ */
+public record PhaseResult(String phase, double rate, List<OperationResult> operations, JvmUsage flatService,
+                          JvmUsage societyService, double allocatedKbPerRequest)
+{
+}
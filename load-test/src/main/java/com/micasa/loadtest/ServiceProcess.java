@@ -0,0 +1,208 @@
+package com.micasa.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A service forked in its own JVM with its own classpath (target/classes and its dependencies, plus H2),
+ * so flat-service and society-service run exactly as deployed, each with its own heap and GC.
+ * Output goes to a log file, the process is killed when the load test exits.
+ */
+class ServiceProcess implements Closeable
+{
+    private final String name;
+    private final Process process;
+    private final URI uri;
+    private final Path logFile;
+
+    private ServiceProcess(String name, Process process, URI uri, Path logFile)
+    {
+        this.name = name;
+        this.process = process;
+        this.uri = uri;
+        this.logFile = logFile;
+    }
+
+    /**
+     * Function to fork a service.
+     * @param name : Service name, also the name of the classpath file written by the load-test build.
+     * @param serviceDir : Project directory of the service.
+     * @param mainClass : Spring Boot application class.
+     * @param port : Port the service listens on.
+     * @param jdbcUrl : Database of the service.
+     * @param options : Options of the run, for JVM arguments and the output directory.
+     * @param args : Extra application arguments.
+     * @return : Started process, not yet ready.
+     */
+    static ServiceProcess start(String name, Path serviceDir, String mainClass, int port, String jdbcUrl,
+                                LoadTestOptions options, List<String> args) throws IOException
+    {
+        Path directory = serviceDir.toAbsolutePath().normalize();
+        Path classpathFile = Path.of("target", name + ".classpath");
+        if(!Files.exists(classpathFile))
+        {
+            throw new IOException(classpathFile + " is missing, run through \"mvn compile exec:exec\"");
+        }
+        String classpath = String.join(File.pathSeparator, directory.resolve("target").resolve("classes").toString(),
+                Files.readString(classpathFile).trim(), h2Jar().toString());
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(options.serviceJvmArgs);
+        command.add("-cp");
+        command.add(classpath);
+        command.add(mainClass);
+        command.add("--server.port=" + port);
+        command.add("--spring.datasource.url=" + jdbcUrl);
+        command.add("--spring.datasource.username=sa");
+        command.add("--spring.datasource.password=");
+        command.add("--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect");
+        command.add("--spring.devtools.restart.enabled=false");
+        command.add("--management.endpoints.web.exposure.include=health,metrics");
+        command.addAll(args);
+        Path logFile = options.output.resolve(name + ".log").toAbsolutePath();
+        Process process = new ProcessBuilder(command)
+                .directory(directory.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(logFile.toFile())
+                .start();
+        Runtime.getRuntime().addShutdownHook(new Thread(process::destroyForcibly));
+        return new ServiceProcess(name, process, URI.create("http://localhost:" + port), logFile);
+    }
+
+    /**
+     * Function to wait until the service reports healthy.
+     * @param client : Client to poll with.
+     * @param timeout : Longest wait, the service failed to start after it.
+     */
+    void awaitReady(HttpClient client, Duration timeout) throws IOException, InterruptedException
+    {
+        HttpRequest request = HttpRequest.newBuilder(this.uri.resolve("/actuator/health")).timeout(Duration.ofSeconds(5)).build();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while(System.nanoTime() < deadline)
+        {
+            if(!this.process.isAlive())
+            {
+                throw new IOException(this.name + " exited with " + this.process.exitValue() + ", see " + this.logFile);
+            }
+            try
+            {
+                if(200 == client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode())
+                {
+                    return;
+                }
+            }
+            catch(IOException notListening)
+            {
+                //Still starting.
+            }
+            Thread.sleep(500);
+        }
+        throw new IOException(this.name + " not ready after " + timeout + ", see " + this.logFile);
+    }
+
+    /**
+     * Function to read the GC and allocation meters of the service from its actuator.
+     * jvm.gc.memory.allocated only grows at young collections, so the eden in use, allocated since the last one, is added.
+     * @return : Totals since the service started.
+     */
+    JvmUsage jvmUsage(HttpClient client, ObjectMapper objectMapper) throws IOException, InterruptedException
+    {
+        double allocatedBytes = this.measurement(client, objectMapper, "jvm.gc.memory.allocated", "COUNT");
+        JsonNode memoryUsed = this.meter(client, objectMapper, "jvm.memory.used");
+        for(JsonNode tag : memoryUsed.path("availableTags"))
+        {
+            if(!"id".equals(tag.path("tag").asText()))
+            {
+                continue;
+            }
+            for(JsonNode id : tag.path("values"))
+            {
+                if(id.asText().contains("Eden"))
+                {
+                    String query = "?tag=id:" + URLEncoder.encode(id.asText(), StandardCharsets.UTF_8).replace("+", "%20");
+                    allocatedBytes += this.measurement(client, objectMapper, "jvm.memory.used" + query, "VALUE");
+                }
+            }
+        }
+        return new JvmUsage(this.measurement(client, objectMapper, "jvm.gc.pause", "COUNT"),
+                this.measurement(client, objectMapper, "jvm.gc.pause", "TOTAL_TIME") * 1000,
+                allocatedBytes / (1024 * 1024));
+    }
+
+    URI uri()
+    {
+        return this.uri;
+    }
+
+    @Override
+    public void close()
+    {
+        this.process.destroy();
+        try
+        {
+            if(!this.process.waitFor(30, TimeUnit.SECONDS))
+            {
+                this.process.destroyForcibly();
+            }
+        }
+        catch(InterruptedException interruptedException)
+        {
+            this.process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private double measurement(HttpClient client, ObjectMapper objectMapper, String meter, String statistic)
+            throws IOException, InterruptedException
+    {
+        for(JsonNode measurement : this.meter(client, objectMapper, meter).path("measurements"))
+        {
+            if(statistic.equals(measurement.path("statistic").asText()))
+            {
+                return measurement.path("value").asDouble();
+            }
+        }
+        return 0;
+    }
+
+    private JsonNode meter(HttpClient client, ObjectMapper objectMapper, String meter) throws IOException, InterruptedException
+    {
+        HttpRequest request = HttpRequest.newBuilder(this.uri.resolve("/actuator/metrics/" + meter)).timeout(Duration.ofSeconds(5)).build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if(404 == response.statusCode())
+        {
+            //Meter not registered yet, e.g. no GC happened so far.
+            return objectMapper.createObjectNode();
+        }
+        return objectMapper.readTree(response.body());
+    }
+
+    private static Path h2Jar() throws IOException
+    {
+        try
+        {
+            return Path.of(org.h2.Driver.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        }
+        catch(URISyntaxException uriSyntaxException)
+        {
+            throw new IOException(uriSyntaxException);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.micasa.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds the request of each operation and tracks the flats and societies requests can pick.
+ * Structure:
+ *  1. seed adds societies to society-service and flats to flat-service in bulk, through the same REST endpoints.
+ *  2. request builds the next request of an operation for a random flat or society.
+ *  3. completed registers flats added by the load test, deleted flats were taken out of the pool in step 2.
+ */
+class Workload
+{
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final int SEED_CHUNK_SIZE = 500;
+    private static final int SEED_BLOCKS = 20;
+
+    private final URI flatService;
+    private final URI societyService;
+    private final ObjectMapper objectMapper;
+    private final IdPool flatIds = new IdPool();
+    private final IdPool societyIds = new IdPool();
+    //Flats added during the run get flat numbers unique to this run.
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong addedFlats = new AtomicLong();
+
+    Workload(URI flatService, URI societyService, ObjectMapper objectMapper)
+    {
+        this.flatService = flatService;
+        this.societyService = societyService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Function to add societies and flats, flats are spread evenly over the societies.
+     * @param client : Client to send requests with.
+     * @param societies : Number of societies to add.
+     * @param flats : Number of flats to add.
+     */
+    void seed(HttpClient client, int societies, int flats) throws IOException, InterruptedException
+    {
+        String[] societyIds = new String[societies];
+        for(int i = 0; i < societies; i++)
+        {
+            ObjectNode society = this.objectMapper.createObjectNode()
+                    .put("societyName", "Load Test Society " + i)
+                    .put("address", i + " Load Test Road");
+            JsonNode saved = this.send(client, this.post(this.societyService.resolve("/add/society"), society));
+            societyIds[i] = saved.path("societyId").asText();
+            this.societyIds.add(societyIds[i]);
+        }
+        for(int from = 0; from < flats; from += SEED_CHUNK_SIZE)
+        {
+            ArrayNode chunk = this.objectMapper.createArrayNode();
+            for(int i = from; i < Math.min(flats, from + SEED_CHUNK_SIZE); i++)
+            {
+                chunk.add(this.flat("N" + i, "B" + (i % SEED_BLOCKS), societyIds[i % societies]));
+            }
+            JsonNode response = this.send(client, this.post(this.flatService.resolve("/add/flats"), chunk));
+            for(JsonNode result : response.path("results"))
+            {
+                if("CREATED".equals(result.path("status").asText()))
+                {
+                    this.flatIds.add(result.path("flatId").asText());
+                }
+            }
+        }
+    }
+
+    int flatCount()
+    {
+        return this.flatIds.size();
+    }
+
+    /**
+     * Function to build the next request of an operation.
+     * @param operation : Operation to build a request for.
+     * @return : Request, null when no flat or society is left to pick.
+     */
+    HttpRequest request(Operation operation)
+    {
+        switch(operation)
+        {
+            case FIND ->
+            {
+                String flatId = this.flatIds.pick();
+                return null == flatId ? null : this.get(this.flatService.resolve("/find/flatId/" + flatId));
+            }
+            case ADD ->
+            {
+                String societyId = this.societyIds.pick();
+                if(null == societyId)
+                {
+                    return null;
+                }
+                ObjectNode flat = this.flat("L" + this.runId + "-" + this.addedFlats.incrementAndGet(), "L", societyId);
+                return this.post(this.flatService.resolve("/add/flat"), flat);
+            }
+            case OCCUPANCY ->
+            {
+                String flatId = this.flatIds.pick();
+                boolean occupied = ThreadLocalRandom.current().nextBoolean();
+                return null == flatId ? null : this.builder(this.flatService.resolve("/update/occupied-status/" + flatId + "/" + occupied))
+                        .method("PATCH", HttpRequest.BodyPublishers.noBody())
+                        .build();
+            }
+            case DELETE ->
+            {
+                String flatId = this.flatIds.take();
+                return null == flatId ? null : this.builder(this.flatService.resolve("/delete/flat/" + flatId)).DELETE().build();
+            }
+            case SOCIETY ->
+            {
+                String societyId = this.societyIds.pick();
+                return null == societyId ? null : this.get(this.societyService.resolve("/get/society/" + societyId));
+            }
+            default -> throw new IllegalArgumentException(operation.name());
+        }
+    }
+
+    /**
+     * @return : Keeps the body of adds, which carries the new flatId, and discards every other body.
+     */
+    HttpResponse.BodyHandler<String> bodyHandler(Operation operation)
+    {
+        return Operation.ADD == operation ? HttpResponse.BodyHandlers.ofString() : HttpResponse.BodyHandlers.replacing(null);
+    }
+
+    /**
+     * Function to track the flat a successful add created.
+     */
+    void completed(Operation operation, HttpResponse<String> response)
+    {
+        if(Operation.ADD != operation || 300 <= response.statusCode())
+        {
+            return;
+        }
+        try
+        {
+            this.flatIds.add(this.objectMapper.readTree(response.body()).path("flatId").asText());
+        }
+        catch(IOException ioException)
+        {
+            //Not tracked, the add itself was measured.
+        }
+    }
+
+    private ObjectNode flat(String flatNumber, String flatBlock, String societyId)
+    {
+        ObjectNode flat = this.objectMapper.createObjectNode()
+                .put("flatNumber", flatNumber)
+                .put("flatBlock", flatBlock)
+                .put("occupied", false);
+        flat.putObject("society").put("societyId", societyId);
+        return flat;
+    }
+
+    private JsonNode send(HttpClient client, HttpRequest request) throws IOException, InterruptedException
+    {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if(300 <= response.statusCode())
+        {
+            throw new IOException(request.method() + " " + request.uri() + " returned " + response.statusCode() + ": " + response.body());
+        }
+        return this.objectMapper.readTree(response.body());
+    }
+
+    private HttpRequest get(URI uri)
+    {
+        return this.builder(uri).GET().build();
+    }
+
+    private HttpRequest post(URI uri, JsonNode body)
+    {
+        return this.builder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+    }
+
+    private HttpRequest.Builder builder(URI uri)
+    {
+        return HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT);
+    }
+}
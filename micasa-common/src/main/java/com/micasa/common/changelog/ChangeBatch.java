@@ -0,0 +1,38 @@
+package com.micasa.common.changelog;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Changes of other instances read in one poll, de-duplicated.
+ * @param flatIds : Changed flats.
+ * @param flatSocietyIds : Societies whose flat list changed.
+ * @param societyIds : Changed societies.
+ */
+public record ChangeBatch(Set<String> flatIds, Set<String> flatSocietyIds, Set<String> societyIds)
+{
+    public ChangeBatch()
+    {
+        this(new HashSet<>(), new HashSet<>(), new HashSet<>());
+    }
+
+    void add(ChangedEntity entity, String entityId, String societyId)
+    {
+        if(ChangedEntity.SOCIETY == entity)
+        {
+            this.societyIds.add(entityId);
+            this.flatSocietyIds.add(entityId);
+            return;
+        }
+        this.flatIds.add(entityId);
+        if(null != societyId)
+        {
+            this.flatSocietyIds.add(societyId);
+        }
+    }
+
+    public boolean isEmpty()
+    {
+        return this.flatIds.isEmpty() && this.societyIds.isEmpty() && this.flatSocietyIds.isEmpty();
+    }
+}
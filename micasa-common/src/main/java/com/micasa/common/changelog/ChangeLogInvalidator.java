@@ -0,0 +1,19 @@
+package com.micasa.common.changelog;
+
+/**
+ * Drops state of a service made stale by writes of other instances, called by ChangeLogPoller.
+ * Each service implements it for its own caches.
+ */
+public interface ChangeLogInvalidator
+{
+    /**
+     * Function to invalidate everything a batch of changes touched.
+     * @param changeBatch : Changes of other instances.
+     */
+    void invalidate(ChangeBatch changeBatch);
+
+    /**
+     * Function to drop all cached state, when changes of other instances were lost.
+     */
+    void invalidateAll();
+}
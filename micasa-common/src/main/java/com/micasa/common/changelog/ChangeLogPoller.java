@@ -0,0 +1,229 @@
+package com.micasa.common.changelog;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Reads change_log incrementally and hands changes of other instances to ChangeLogInvalidator.
+ * Structure:
+ *  1. Starts after the newest entry present at startup, caches are empty at that point anyway.
+ *  2. Every poll reads entries after lastId in batches until a short batch, and invalidates once per batch.
+ *     lastId only moves past a batch once it was invalidated, a failed invalidation reads the batch again on the next poll.
+ *  3. Ids are allocated at insert but become visible at commit, so an id skipped over may still show up.
+ *     Skipped ids are kept as gaps and read again on every poll until they show up or gap-timeout passes.
+ *     At most MAX_GAPS gaps are kept, ids skipped beyond that can not be followed, so all caches are invalidated
+ *     right away and once more after gap-timeout, when those ids would have expired as gaps.
+ *  4. Entries older than retention are deleted periodically.
+ * Propagation lag (now - created_at of applied entries) is recorded as micasa.change_log.propagation.
+ */
+@Slf4j
+@Component
+public class ChangeLogPoller
+{
+    private static final String SELECT_COLUMNS = "select id, entity, entity_id, society_id, origin, created_at from change_log";
+    private static final int MAX_GAPS = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChangeLogInvalidator changeLogInvalidator;
+    //Origin of this instance, its own entries are skipped.
+    private final String origin;
+    private final int batchSize;
+    private final long gapTimeoutMillis;
+    private final Duration retention;
+    private final Timer propagationTimer;
+    private final RowMapper<Entry> entryMapper = (resultSet, rowNum) -> new Entry(
+            resultSet.getLong("id"),
+            ChangedEntity.valueOf(resultSet.getString("entity")),
+            resultSet.getString("entity_id"),
+            resultSet.getString("society_id"),
+            resultSet.getString("origin"),
+            resultSet.getLong("created_at"));
+
+    //Guarded by this.
+    private final Map<Long, Long> firstSeenByGapId = new LinkedHashMap<>();
+    //When all caches are invalidated again for ids skipped beyond MAX_GAPS, 0 if none are pending.
+    private long untrackedGapsExpireAt;
+    private volatile long lastId = -1;
+    //Propagation lag of the latest applied entry of another instance.
+    private volatile long lastLagMillis;
+    private volatile int gapCount;
+
+    @Autowired
+    public ChangeLogPoller(JdbcTemplate jdbcTemplate,
+                           ChangeLogPublisher changeLogPublisher,
+                           ChangeLogInvalidator changeLogInvalidator,
+                           MeterRegistry meterRegistry,
+                           @Value("${micasa.change-log.batch-size:1000}") int batchSize,
+                           @Value("${micasa.change-log.gap-timeout:30s}") Duration gapTimeout,
+                           @Value("${micasa.change-log.retention:1h}") Duration retention)
+    {
+        this.jdbcTemplate = jdbcTemplate;
+        this.changeLogInvalidator = changeLogInvalidator;
+        this.origin = changeLogPublisher.getOrigin();
+        this.batchSize = batchSize;
+        this.gapTimeoutMillis = gapTimeout.toMillis();
+        this.retention = retention;
+        this.propagationTimer = Timer.builder("micasa.change_log.propagation")
+                .description("Time from commit of a change in another instance until it was invalidated here")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("micasa.change_log.lag", this, poller -> poller.lastLagMillis)
+                .description("Propagation lag of the latest change applied from another instance")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("micasa.change_log.gaps", this, poller -> poller.gapCount)
+                .description("Skipped change_log ids still waiting for their transaction to commit")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Function to start polling after the newest entry present at startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start()
+    {
+        Long maxId = this.jdbcTemplate.queryForObject("select max(id) from change_log", Long.class);
+        this.lastId = null == maxId ? 0 : maxId;
+        log.info("Change log polling starts after id {}", this.lastId);
+    }
+
+    /**
+     * Function to read and apply new entries and entries of gaps.
+     */
+    @Scheduled(fixedDelayString = "${micasa.change-log.poll-interval-ms:500}")
+    public synchronized void poll()
+    {
+        if(this.lastId < 0)
+        {
+            return;
+        }
+        try
+        {
+            this.pollGaps();
+            List<Entry> entries;
+            do
+            {
+                entries = this.jdbcTemplate.query(SELECT_COLUMNS + " where id > ? order by id limit ?",
+                        this.entryMapper, this.lastId, this.batchSize);
+                this.apply(entries);
+            }
+            while(entries.size() == this.batchSize);
+            this.gapCount = this.firstSeenByGapId.size();
+        }
+        catch(RuntimeException exception)
+        {
+            log.warn("Change log poll failed after id {}: {}", this.lastId, exception.getMessage());
+        }
+    }
+
+    /**
+     * Function to delete entries older than retention.
+     */
+    @Scheduled(fixedDelayString = "${micasa.change-log.cleanup-interval-ms:600000}",
+            initialDelayString = "${micasa.change-log.cleanup-interval-ms:600000}")
+    public void cleanup()
+    {
+        long before = System.currentTimeMillis() - this.retention.toMillis();
+        int deleted = this.jdbcTemplate.update("delete from change_log where created_at < ?", before);
+        log.debug("Deleted {} change log entries", deleted);
+    }
+
+    private void pollGaps()
+    {
+        long now = System.currentTimeMillis();
+        if(0 != this.untrackedGapsExpireAt && now >= this.untrackedGapsExpireAt)
+        {
+            this.untrackedGapsExpireAt = 0;
+            log.warn("Untracked change log gaps expired, invalidating all caches again");
+            this.changeLogInvalidator.invalidateAll();
+        }
+        if(this.firstSeenByGapId.isEmpty())
+        {
+            return;
+        }
+        long expiredBefore = now - this.gapTimeoutMillis;
+        this.firstSeenByGapId.values().removeIf(firstSeen -> firstSeen < expiredBefore);
+        if(this.firstSeenByGapId.isEmpty())
+        {
+            return;
+        }
+        String placeholders = this.firstSeenByGapId.keySet().stream().map(id -> "?").collect(Collectors.joining(","));
+        List<Entry> entries = this.jdbcTemplate.query(SELECT_COLUMNS + " where id in (" + placeholders + ")",
+                this.entryMapper, this.firstSeenByGapId.keySet().toArray());
+        this.invalidate(entries);
+        entries.forEach(entry -> this.firstSeenByGapId.remove(entry.id()));
+    }
+
+    private void apply(List<Entry> entries)
+    {
+        long now = System.currentTimeMillis();
+        long last = this.lastId;
+        Map<Long, Long> gaps = new LinkedHashMap<>();
+        long untracked = 0;
+        for(Entry entry : entries)
+        {
+            for(long gapId = last + 1; gapId < entry.id(); gapId++)
+            {
+                if(this.firstSeenByGapId.size() + gaps.size() < MAX_GAPS)
+                {
+                    gaps.put(gapId, now);
+                }
+                else
+                {
+                    untracked += entry.id() - gapId;
+                    break;
+                }
+            }
+            last = entry.id();
+        }
+        this.invalidate(entries);
+        this.firstSeenByGapId.putAll(gaps);
+        this.lastId = last;
+        if(untracked > 0)
+        {
+            log.warn("Change log skipped {} ids beyond {} tracked gaps up to id {}, invalidating all caches",
+                    untracked, MAX_GAPS, this.lastId);
+            this.untrackedGapsExpireAt = now + this.gapTimeoutMillis;
+            this.changeLogInvalidator.invalidateAll();
+        }
+    }
+
+    private void invalidate(List<Entry> entries)
+    {
+        ChangeBatch changeBatch = new ChangeBatch();
+        long now = System.currentTimeMillis();
+        for(Entry entry : entries)
+        {
+            if(this.origin.equals(entry.origin()))
+            {
+                continue;
+            }
+            changeBatch.add(entry.entity(), entry.entityId(), entry.societyId());
+            this.lastLagMillis = Math.max(0, now - entry.createdAt());
+            this.propagationTimer.record(this.lastLagMillis, TimeUnit.MILLISECONDS);
+        }
+        if(!changeBatch.isEmpty())
+        {
+            this.changeLogInvalidator.invalidate(changeBatch);
+            log.debug("Invalidated {} flats, {} societies from change log, lag {} ms",
+                    changeBatch.flatIds().size(), changeBatch.societyIds().size(), this.lastLagMillis);
+        }
+    }
+
+    private record Entry(long id, ChangedEntity entity, String entityId, String societyId, String origin, long createdAt) {}
+}
@@ -0,0 +1,147 @@
+package com.micasa.common.changelog;
+
+import lombok.Getter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writes changes of this instance to change_log, so other instances (flat-service, society-service) invalidate their caches.
+ * Changes of a transaction are collected and written with one JDBC batch right before it commits, in the same
+ * transaction, so an entry exists if and only if the change committed. Outside of a transaction they are written right away.
+ */
+@Component
+public class ChangeLogPublisher
+{
+    private static final String INSERT_SQL =
+            "insert into change_log (entity, entity_id, society_id, origin, created_at) values (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    //Identifies this instance in change_log.
+    @Getter
+    private final String origin = UUID.randomUUID().toString();
+
+    public ChangeLogPublisher(JdbcTemplate jdbcTemplate)
+    {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Function to record a change of a flat that may have moved it in or out of a society.
+     * @param flatId : Changed flat.
+     * @param societyId : Society of the flat, may be null.
+     */
+    public void flatChanged(String flatId, String societyId)
+    {
+        this.pendingChanges().add(new Change(ChangedEntity.FLAT, flatId, societyId));
+    }
+
+    /**
+     * Function to record changes of flats that stay in their society.
+     * @param flatIds : Changed flats.
+     */
+    public void flatsChanged(Collection<String> flatIds)
+    {
+        List<Change> changes = this.pendingChanges();
+        for(String flatId : flatIds)
+        {
+            changes.add(new Change(ChangedEntity.FLAT, flatId, null));
+        }
+    }
+
+    /**
+     * Function to record a change of a society.
+     * @param societyId : Changed society.
+     */
+    public void societyChanged(String societyId)
+    {
+        this.pendingChanges().add(new Change(ChangedEntity.SOCIETY, societyId, null));
+    }
+
+    /**
+     * Function to find the changes collected for the current transaction.
+     * The buffer lives in a synchronization of the transaction, so a suspended outer transaction keeps its own.
+     * @return : Changes to write before commit.
+     */
+    private List<Change> pendingChanges()
+    {
+        if(!TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            return new ImmediateChanges();
+        }
+        for(TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations())
+        {
+            if(synchronization instanceof PendingChanges pendingChanges && pendingChanges.publisher() == this)
+            {
+                return pendingChanges.changes();
+            }
+        }
+        PendingChanges pendingChanges = new PendingChanges(this, new ArrayList<>());
+        TransactionSynchronizationManager.registerSynchronization(pendingChanges);
+        return pendingChanges.changes();
+    }
+
+    private void write(List<Change> changes)
+    {
+        if(changes.isEmpty())
+        {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        this.jdbcTemplate.batchUpdate(INSERT_SQL, changes, changes.size(), (PreparedStatement statement, Change change) -> {
+            statement.setString(1, change.entity().name());
+            statement.setString(2, change.entityId());
+            setNullableString(statement, 3, change.societyId());
+            statement.setString(4, this.origin);
+            statement.setLong(5, now);
+        });
+    }
+
+    private static void setNullableString(PreparedStatement statement, int index, String value) throws SQLException
+    {
+        if(null == value)
+        {
+            statement.setNull(index, Types.VARCHAR);
+        }
+        else
+        {
+            statement.setString(index, value);
+        }
+    }
+
+    private record Change(ChangedEntity entity, String entityId, String societyId) {}
+
+    /**
+     * Changes of one transaction, written before it commits.
+     */
+    private record PendingChanges(ChangeLogPublisher publisher, List<Change> changes) implements TransactionSynchronization
+    {
+        @Override
+        public void beforeCommit(boolean readOnly)
+        {
+            this.publisher.write(this.changes);
+        }
+    }
+
+    /**
+     * Changes made outside of a transaction, written as soon as they are added.
+     */
+    private class ImmediateChanges extends ArrayList<Change>
+    {
+        @Override
+        public boolean add(Change change)
+        {
+            ChangeLogPublisher.this.write(List.of(change));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.micasa.common.changelog;
+
+/**
+ * Kind of row a change_log entry refers to.
+ *  1. FLAT : Row of flats, entityId is the flatId.
+ *  2. SOCIETY : Row of societies, entityId is the societyId.
+ */
+public enum ChangedEntity
+{
+    FLAT,
+    SOCIETY
+}
@@ -0,0 +1,27 @@
+package com.micasa.common.config;
+
+import com.micasa.common.metrics.PersistenceStatsInterceptor;
+import com.micasa.common.metrics.PersistenceStatsListener;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Hooks persistence instrumentation into Hibernate.
+ *  1. PersistenceStatsListener and PersistenceStatsInterceptor count per thread activity,
+ *     reported per request and per repository method by RequestMetrics.
+ *  2. Global statistics (hibernate.generate_statistics) and slow query logging are set in application.properties.
+ */
+@Configuration
+public class PersistenceInstrumentationConfig
+{
+    @Bean
+    public HibernatePropertiesCustomizer persistenceStatsCustomizer()
+    {
+        return properties -> {
+            properties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, PersistenceStatsListener.class.getName());
+            properties.put(AvailableSettings.INTERCEPTOR, new PersistenceStatsInterceptor());
+        };
+    }
+}
@@ -0,0 +1,13 @@
+package com.micasa.common.constants;
+
+/**
+ * Names of the correlationId, the same in every service so a request can be followed across them.
+ */
+public class CorrelationIdConstants
+{
+    public static String CORRELATION_ID_HEADER = "correlationId";
+    //Variable name of correlationId in logs (MDC).
+    public static String CORRELATION_ID_LOG_VAR_NAME = "correlationId";
+
+    private CorrelationIdConstants() {}
+}
@@ -0,0 +1,113 @@
+package com.micasa.common.interceptor;
+
+import com.micasa.common.metrics.PersistenceStats;
+import com.micasa.common.metrics.RequestMetrics;
+import com.micasa.common.metrics.RequestTiming;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * This class intercepts each request and records its metrics, see RequestMetrics.
+ * Must be registered after LoggingRequestInterceptor, so correlationId is still in logs (MDC) when the
+ * request is recorded and lands as exemplar.
+ */
+@Slf4j
+public class MetricsRequestInterceptor implements AsyncHandlerInterceptor
+{
+    private static final String UNKNOWN_ENDPOINT = "UNKNOWN";
+
+    //RequestMetrics instance.
+    private final RequestMetrics requestMetrics;
+
+    public MetricsRequestInterceptor(RequestMetrics requestMetrics)
+    {
+        this.requestMetrics = requestMetrics;
+    }
+
+    /**
+     * This intercepts request before handling.
+     * Starts timing on the first dispatch of a request, an async dispatch keeps the timing of the first one.
+     * Error dispatches are not timed, the failed request was already recorded.
+     * Every dispatch snapshots the Hibernate counters of its thread.
+     * @param request : request object.
+     * @param response : response object.
+     * @param handler : handler object.
+     * @return : true/false
+     * @throws Exception : Exception
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception
+    {
+        if(DispatcherType.ERROR != request.getDispatcherType())
+        {
+            RequestTiming timing = (RequestTiming) request.getAttribute(RequestTiming.ATTRIBUTE);
+            if(null == timing)
+            {
+                timing = new RequestTiming(System.nanoTime());
+                request.setAttribute(RequestTiming.ATTRIBUTE, timing);
+                this.requestMetrics.requestStarted();
+            }
+            timing.dispatchStarted();
+        }
+        return AsyncHandlerInterceptor.super.preHandle(request, response, handler);
+    }
+
+    /**
+     * Perform operation after response is sent.
+     * Records latency, db time and errors of the request. Exceptions handled by an exception handler do not
+     * reach here as ex, they are read from the request attribute DispatcherServlet sets for them.
+     * @param request : request object.
+     * @param response : response object.
+     * @param handler : handler object.
+     * @param ex : exception object.
+     * @throws Exception : Exception.
+     */
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception
+    {
+        RequestTiming timing = (RequestTiming) request.getAttribute(RequestTiming.ATTRIBUTE);
+        if(null != timing)
+        {
+            timing.dispatchEnded();
+            request.removeAttribute(RequestTiming.ATTRIBUTE);
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            Throwable exception = null != ex ? ex : (Throwable) request.getAttribute(DispatcherServlet.EXCEPTION_ATTRIBUTE);
+            int status = null != ex && response.getStatus() < 400 ? 500 : response.getStatus();
+            this.requestMetrics.requestCompleted(timing, null == pattern ? UNKNOWN_ENDPOINT : pattern.toString(),
+                    request.getMethod(), status, exception);
+            if(log.isDebugEnabled())
+            {
+                PersistenceStats persistence = timing.getPersistence();
+                log.debug("{} {} db: {} ms in {} calls, statements: {}, entity loads: {}, cache hits/misses: {}/{}, flushes: {}",
+                        request.getMethod(), request.getRequestURI(), timing.getDbNanos() / 1_000_000, timing.getDbCalls(),
+                        persistence.getStatements(), persistence.getEntityLoads(), persistence.getCacheHits(),
+                        persistence.getCacheMisses(), persistence.getFlushes());
+            }
+        }
+        AsyncHandlerInterceptor.super.afterCompletion(request, response, handler, ex);
+    }
+
+    /**
+     * Perform operation when request handling continues asynchronously and the request thread is released.
+     * Adds Hibernate activity of this dispatch, the request stays in flight until the async dispatch completes.
+     * @param request : request object.
+     * @param response : response object.
+     * @param handler : handler object.
+     * @throws Exception : Exception.
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception
+    {
+        RequestTiming timing = (RequestTiming) request.getAttribute(RequestTiming.ATTRIBUTE);
+        if(null != timing)
+        {
+            timing.dispatchEnded();
+        }
+        AsyncHandlerInterceptor.super.afterConcurrentHandlingStarted(request, response, handler);
+    }
+}
@@ -0,0 +1,34 @@
+package com.micasa.common.metrics;
+
+import com.micasa.common.constants.CorrelationIdConstants;
+import io.prometheus.client.exemplars.tracer.common.SpanContextSupplier;
+import org.slf4j.MDC;
+import org.springframework.stereotype.Component;
+
+/**
+ * Supplies the correlationId of the current request as exemplar of histogram buckets and counters,
+ * so a slow bucket on the scrape endpoint leads to the logs of a request that landed in it.
+ * There is no tracing, correlationId is used as both trace and span id.
+ * Exemplars are only shown in the OpenMetrics format (Accept: application/openmetrics-text).
+ */
+@Component
+public class CorrelationIdSpanContextSupplier implements SpanContextSupplier
+{
+    @Override
+    public String getTraceId()
+    {
+        return MDC.get(CorrelationIdConstants.CORRELATION_ID_LOG_VAR_NAME);
+    }
+
+    @Override
+    public String getSpanId()
+    {
+        return MDC.get(CorrelationIdConstants.CORRELATION_ID_LOG_VAR_NAME);
+    }
+
+    @Override
+    public boolean isSampled()
+    {
+        return null != MDC.get(CorrelationIdConstants.CORRELATION_ID_LOG_VAR_NAME);
+    }
+}
@@ -0,0 +1,94 @@
+package com.micasa.common.metrics;
+
+import lombok.Getter;
+
+/**
+ * Hibernate activity counters of the current thread, written by PersistenceStatsListener and
+ * PersistenceStatsInterceptor. Counters only grow, activity of a request or a repository call is the
+ * difference of a snapshot taken before and after it on the same thread.
+ */
+@Getter
+public class PersistenceStats
+{
+    private static final ThreadLocal<PersistenceStats> CURRENT = ThreadLocal.withInitial(PersistenceStats::new);
+
+    //Executed jdbc statements and batches.
+    private long statements;
+    //Entities loaded from jdbc results.
+    private long entityLoads;
+    //Second-level cache gets that found / did not find the entry.
+    private long cacheHits;
+    private long cacheMisses;
+    //Session flushes, including partial ones before queries.
+    private long flushes;
+
+    /**
+     * Function to get the counters of the current thread.
+     * @return : Live counters, must not be kept across threads.
+     */
+    public static PersistenceStats current()
+    {
+        return CURRENT.get();
+    }
+
+    void statementExecuted()
+    {
+        this.statements++;
+    }
+
+    void entityLoaded()
+    {
+        this.entityLoads++;
+    }
+
+    void cacheGet(boolean hit)
+    {
+        if(hit)
+        {
+            this.cacheHits++;
+        }
+        else
+        {
+            this.cacheMisses++;
+        }
+    }
+
+    void flushed()
+    {
+        this.flushes++;
+    }
+
+    /**
+     * Function to copy the counters.
+     * @return : Snapshot of the counters.
+     */
+    public PersistenceStats snapshot()
+    {
+        PersistenceStats snapshot = new PersistenceStats();
+        snapshot.add(this);
+        return snapshot;
+    }
+
+    /**
+     * Function to add activity done since a snapshot of the current thread's counters.
+     * @param since : Snapshot taken before the activity.
+     */
+    public void addSince(PersistenceStats since)
+    {
+        PersistenceStats current = current();
+        this.statements += current.statements - since.statements;
+        this.entityLoads += current.entityLoads - since.entityLoads;
+        this.cacheHits += current.cacheHits - since.cacheHits;
+        this.cacheMisses += current.cacheMisses - since.cacheMisses;
+        this.flushes += current.flushes - since.flushes;
+    }
+
+    private void add(PersistenceStats other)
+    {
+        this.statements += other.statements;
+        this.entityLoads += other.entityLoads;
+        this.cacheHits += other.cacheHits;
+        this.cacheMisses += other.cacheMisses;
+        this.flushes += other.flushes;
+    }
+}
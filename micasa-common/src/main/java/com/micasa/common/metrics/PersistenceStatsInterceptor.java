@@ -0,0 +1,17 @@
+package com.micasa.common.metrics;
+
+import org.hibernate.Interceptor;
+import org.hibernate.type.Type;
+
+/**
+ * Hibernate interceptor counting entity loads into PersistenceStats, session events do not report them.
+ */
+public class PersistenceStatsInterceptor implements Interceptor
+{
+    @Override
+    public boolean onLoad(Object entity, Object id, Object[] state, String[] propertyNames, Type[] types)
+    {
+        PersistenceStats.current().entityLoaded();
+        return false;
+    }
+}
@@ -0,0 +1,40 @@
+package com.micasa.common.metrics;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Session event listener counting statements, second-level cache gets and flushes into PersistenceStats.
+ * Hibernate creates one per session (hibernate.session.events.auto), sessions are used by one thread at a time.
+ */
+public class PersistenceStatsListener extends BaseSessionEventListener
+{
+    @Override
+    public void jdbcExecuteStatementEnd()
+    {
+        PersistenceStats.current().statementExecuted();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd()
+    {
+        PersistenceStats.current().statementExecuted();
+    }
+
+    @Override
+    public void cacheGetEnd(boolean hit)
+    {
+        PersistenceStats.current().cacheGet(hit);
+    }
+
+    @Override
+    public void flushEnd(int numberOfEntities, int numberOfCollections)
+    {
+        PersistenceStats.current().flushed();
+    }
+
+    @Override
+    public void partialFlushEnd(int numberOfEntities, int numberOfCollections)
+    {
+        PersistenceStats.current().flushed();
+    }
+}
@@ -0,0 +1,62 @@
+package com.micasa.common.metrics;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times every repository call and counts its Hibernate activity, per repository method and towards the
+ * db time of the current request.
+ * Streams returned by repositories are timed until they are returned, not until they are consumed.
+ */
+@Aspect
+@Component
+public class RepositoryTimingAspect
+{
+    //RequestMetrics instance.
+    private final RequestMetrics requestMetrics;
+    //Repository interface name by proxy class.
+    private final Map<Class<?>, String> repositoryNames = new ConcurrentHashMap<>();
+
+    public RepositoryTimingAspect(RequestMetrics requestMetrics)
+    {
+        this.requestMetrics = requestMetrics;
+    }
+
+    @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+    public Object timeRepositoryCall(ProceedingJoinPoint joinPoint) throws Throwable
+    {
+        PersistenceStats before = PersistenceStats.current().snapshot();
+        long start = System.nanoTime();
+        try
+        {
+            return joinPoint.proceed();
+        }
+        finally
+        {
+            long elapsed = System.nanoTime() - start;
+            PersistenceStats persistence = new PersistenceStats();
+            persistence.addSince(before);
+            this.requestMetrics.repositoryCall(this.repositoryName(joinPoint.getThis()), joinPoint.getSignature().getName(),
+                    elapsed, persistence);
+            RequestTiming timing = RequestTiming.current();
+            if(null != timing)
+            {
+                timing.addDbCall(elapsed);
+            }
+        }
+    }
+
+    private String repositoryName(Object repository)
+    {
+        return this.repositoryNames.computeIfAbsent(repository.getClass(), proxyClass -> {
+            Class<?>[] interfaces = AopProxyUtils.proxiedUserInterfaces(repository);
+            return interfaces.length > 0 ? interfaces[0].getSimpleName() : proxyClass.getSimpleName();
+        });
+    }
+}
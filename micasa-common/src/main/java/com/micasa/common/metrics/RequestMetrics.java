@@ -0,0 +1,183 @@
+package com.micasa.common.metrics;
+
+import io.micrometer.core.instrument.*;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Request level meters, recorded by MetricsRequestInterceptor and RepositoryTimingAspect.
+ * Meters:
+ *  1. micasa.http.requests : Handler latency by endpoint pattern, method and status, as percentile histogram.
+ *  2. micasa.http.db.time : Time spent in repository calls per request, by endpoint pattern.
+ *  3. micasa.http.db.calls : Repository calls per request, by endpoint pattern.
+ *  4. micasa.http.inflight : Requests currently being handled, including async ones.
+ *  5. micasa.http.errors : Requests that ended with an exception, by endpoint pattern and exception type.
+ *  6. micasa.repository.calls : Latency of every repository method, as percentile histogram.
+ *  7. micasa.http.persistence / micasa.repository.persistence : Hibernate activity per request / per repository
+ *     call, tag kind is one of statements, entity_loads, cache_hits, cache_misses, flushes.
+ * Meters are looked up once per tag combination and kept, so recording does not go through the registry.
+ * Histograms are bucketed, recording a value does not allocate.
+ */
+@Component
+public class RequestMetrics
+{
+    private static final Duration MIN_EXPECTED = Duration.ofMillis(1).dividedBy(10);
+    private static final Duration MAX_EXPECTED = Duration.ofSeconds(30);
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ConcurrentMap<RequestKey, Timer> requestTimers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, EndpointMeters> endpointMeters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ErrorKey, Counter> errorCounters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<RepositoryKey, Timer> repositoryTimers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<RepositoryKey, PersistenceMeters> repositoryPersistenceMeters = new ConcurrentHashMap<>();
+
+    public RequestMetrics(MeterRegistry meterRegistry)
+    {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("micasa.http.inflight", this.inFlight, AtomicInteger::get)
+                .description("Requests currently being handled")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Function to count a request as in flight.
+     */
+    public void requestStarted()
+    {
+        this.inFlight.incrementAndGet();
+    }
+
+    /**
+     * Function to record a finished request and take it out of in flight.
+     * Must be called on the request thread, so exemplars pick up its correlationId.
+     * @param timing : Timing of the request.
+     * @param endpoint : Matched endpoint pattern.
+     * @param method : Http method.
+     * @param status : Http status sent.
+     * @param exception : Exception the request ended with, null if none.
+     */
+    public void requestCompleted(RequestTiming timing, String endpoint, String method, int status, Throwable exception)
+    {
+        this.inFlight.decrementAndGet();
+        long elapsed = System.nanoTime() - timing.getStartNanos();
+        this.requestTimers.computeIfAbsent(new RequestKey(endpoint, method, status), this::requestTimer)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        EndpointMeters meters = this.endpointMeters.computeIfAbsent(endpoint, this::endpointMeters);
+        meters.dbTime.record(timing.getDbNanos(), TimeUnit.NANOSECONDS);
+        meters.dbCalls.record(timing.getDbCalls());
+        meters.persistence.record(timing.getPersistence());
+        if(null != exception)
+        {
+            this.errorCounters.computeIfAbsent(new ErrorKey(endpoint, exception.getClass().getSimpleName()), this::errorCounter)
+                    .increment();
+        }
+    }
+
+    /**
+     * Function to record a repository call.
+     * @param repository : Repository interface name.
+     * @param method : Repository method name.
+     * @param elapsedNanos : Duration of the call.
+     * @param persistence : Hibernate activity of the call.
+     */
+    public void repositoryCall(String repository, String method, long elapsedNanos, PersistenceStats persistence)
+    {
+        RepositoryKey key = new RepositoryKey(repository, method);
+        this.repositoryTimers.computeIfAbsent(key, this::repositoryTimer).record(elapsedNanos, TimeUnit.NANOSECONDS);
+        this.repositoryPersistenceMeters.computeIfAbsent(key, k -> this.persistenceMeters("micasa.repository.persistence",
+                Tags.of("repository", k.repository(), "method", k.method()))).record(persistence);
+    }
+
+    private Timer requestTimer(RequestKey key)
+    {
+        return Timer.builder("micasa.http.requests")
+                .description("Handler latency, from first interceptor to response completed")
+                .tags("endpoint", key.endpoint(), "method", key.method(), "status", String.valueOf(key.status()))
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_EXPECTED)
+                .maximumExpectedValue(MAX_EXPECTED)
+                .register(this.meterRegistry);
+    }
+
+    private EndpointMeters endpointMeters(String endpoint)
+    {
+        Timer dbTime = Timer.builder("micasa.http.db.time")
+                .description("Time spent in repository calls per request")
+                .tag("endpoint", endpoint)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_EXPECTED)
+                .maximumExpectedValue(MAX_EXPECTED)
+                .register(this.meterRegistry);
+        DistributionSummary dbCalls = DistributionSummary.builder("micasa.http.db.calls")
+                .description("Repository calls per request")
+                .tag("endpoint", endpoint)
+                .register(this.meterRegistry);
+        return new EndpointMeters(dbTime, dbCalls, this.persistenceMeters("micasa.http.persistence", Tags.of("endpoint", endpoint)));
+    }
+
+    private PersistenceMeters persistenceMeters(String name, Tags tags)
+    {
+        return new PersistenceMeters(
+                this.persistenceSummary(name, tags, "statements"),
+                this.persistenceSummary(name, tags, "entity_loads"),
+                this.persistenceSummary(name, tags, "cache_hits"),
+                this.persistenceSummary(name, tags, "cache_misses"),
+                this.persistenceSummary(name, tags, "flushes"));
+    }
+
+    private DistributionSummary persistenceSummary(String name, Tags tags, String kind)
+    {
+        return DistributionSummary.builder(name)
+                .description("Hibernate activity")
+                .tags(tags)
+                .tag("kind", kind)
+                .register(this.meterRegistry);
+    }
+
+    private Counter errorCounter(ErrorKey key)
+    {
+        return Counter.builder("micasa.http.errors")
+                .description("Requests that ended with an exception")
+                .tags("endpoint", key.endpoint(), "exception", key.exception())
+                .register(this.meterRegistry);
+    }
+
+    private Timer repositoryTimer(RepositoryKey key)
+    {
+        return Timer.builder("micasa.repository.calls")
+                .description("Latency of repository methods")
+                .tags("repository", key.repository(), "method", key.method())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_EXPECTED)
+                .maximumExpectedValue(MAX_EXPECTED)
+                .register(this.meterRegistry);
+    }
+
+    private record RequestKey(String endpoint, String method, int status) {}
+
+    private record ErrorKey(String endpoint, String exception) {}
+
+    private record RepositoryKey(String repository, String method) {}
+
+    private record EndpointMeters(Timer dbTime, DistributionSummary dbCalls, PersistenceMeters persistence) {}
+
+    private record PersistenceMeters(DistributionSummary statements, DistributionSummary entityLoads,
+                                     DistributionSummary cacheHits, DistributionSummary cacheMisses,
+                                     DistributionSummary flushes)
+    {
+        private void record(PersistenceStats persistenceStats)
+        {
+            this.statements.record(persistenceStats.getStatements());
+            this.entityLoads.record(persistenceStats.getEntityLoads());
+            this.cacheHits.record(persistenceStats.getCacheHits());
+            this.cacheMisses.record(persistenceStats.getCacheMisses());
+            this.flushes.record(persistenceStats.getFlushes());
+        }
+    }
+}
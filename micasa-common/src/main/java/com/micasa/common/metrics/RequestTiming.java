@@ -0,0 +1,74 @@
+package com.micasa.common.metrics;
+
+import lombok.Getter;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Timing of a single request, kept as request attribute from the first dispatch to completion.
+ * Repository time is only attributed on the request thread, work done on other threads
+ * (e.g. streaming exports) is not counted.
+ */
+@Getter
+public class RequestTiming
+{
+    //Request attribute holding the timing.
+    public static final String ATTRIBUTE = RequestTiming.class.getName();
+
+    private final long startNanos;
+    private long dbNanos;
+    private int dbCalls;
+    //Hibernate activity of all dispatches of the request.
+    private final PersistenceStats persistence = new PersistenceStats();
+    //Counters of the dispatching thread when the current dispatch started.
+    private PersistenceStats dispatchStart;
+
+    public RequestTiming(long startNanos)
+    {
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Function to add a repository call to this request.
+     * @param elapsedNanos : Duration of the call.
+     */
+    public void addDbCall(long elapsedNanos)
+    {
+        this.dbNanos += elapsedNanos;
+        this.dbCalls++;
+    }
+
+    /**
+     * Function to mark the start of a dispatch of this request on the current thread.
+     */
+    public void dispatchStarted()
+    {
+        this.dispatchStart = PersistenceStats.current().snapshot();
+    }
+
+    /**
+     * Function to add the Hibernate activity of the current dispatch, must be called on the thread that started it.
+     */
+    public void dispatchEnded()
+    {
+        if(null != this.dispatchStart)
+        {
+            this.persistence.addSince(this.dispatchStart);
+            this.dispatchStart = null;
+        }
+    }
+
+    /**
+     * Function to find the timing of the request handled by the current thread.
+     * @return : Timing, null outside of a request.
+     */
+    public static RequestTiming current()
+    {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if(null == requestAttributes)
+        {
+            return null;
+        }
+        return (RequestTiming) requestAttributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    }
+}
@@ -0,0 +1,36 @@
+package com.micasa.common.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Row of change_log, the invalidation channel between flat-service and society-service.
+ * Rows are written with JDBC by ChangeLogPublisher and read by ChangeLogPoller, the entity only defines the table.
+ */
+@Data
+@NoArgsConstructor
+@Entity(name = "change_log")
+@Table(indexes = {
+        @Index(name = "idx_change_log_created_at", columnList = "created_at")
+})
+public class ChangeLogEntry
+{
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    //FLAT or SOCIETY.
+    @Column(name = "entity", length = 16, nullable = false)
+    private String entity;
+    @Column(name = "entity_id", length = 64, nullable = false)
+    private String entityId;
+    //Society of a changed flat, so its flat list is invalidated too.
+    @Column(name = "society_id", length = 64)
+    private String societyId;
+    //Instance that wrote the change, it skips its own changes.
+    @Column(name = "origin", length = 64, nullable = false)
+    private String origin;
+    //Epoch millis of the write.
+    @Column(name = "created_at", nullable = false)
+    private long createdAt;
+}
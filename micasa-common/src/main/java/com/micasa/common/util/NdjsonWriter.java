@@ -0,0 +1,86 @@
+package com.micasa.common.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes values as newline delimited json to a stream, one line per value.
+ * The first value is flushed right away so clients get the first byte immediately, after that the
+ * stream is flushed every flushEvery values. Closing does not close the underlying stream.
+ * With a binary objectMapper (CBOR, Smile) values are written back to back as a sequence of documents instead.
+ */
+public class NdjsonWriter implements Closeable
+{
+    private final JsonGenerator generator;
+    private final ObjectWriter objectWriter;
+    private final int flushEvery;
+    //False for binary formats, which need no separator between documents.
+    private final boolean lineDelimited;
+    private long count;
+
+    public NdjsonWriter(ObjectMapper objectMapper, OutputStream outputStream, int flushEvery)
+    {
+        this.lineDelimited = !objectMapper.getFactory().canHandleBinaryNatively();
+        try
+        {
+            this.generator = objectMapper.getFactory().createGenerator(outputStream)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if(this.lineDelimited)
+            {
+                this.generator.setRootValueSeparator(null);
+            }
+        }
+        catch(IOException ioException)
+        {
+            throw new UncheckedIOException(ioException);
+        }
+        this.objectWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.flushEvery = flushEvery;
+    }
+
+    /**
+     * Function to write a value as a single line.
+     * @param value : Value to write.
+     */
+    public void write(Object value)
+    {
+        try
+        {
+            this.objectWriter.writeValue(this.generator, value);
+            if(this.lineDelimited)
+            {
+                this.generator.writeRaw('\n');
+            }
+            this.count++;
+            if(1 == this.count || 0 == this.count % this.flushEvery)
+            {
+                this.generator.flush();
+            }
+        }
+        catch(IOException ioException)
+        {
+            throw new UncheckedIOException(ioException);
+        }
+    }
+
+    /**
+     * @return : Number of values written.
+     */
+    public long getCount()
+    {
+        return this.count;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.generator.close();
+    }
+}
@@ -0,0 +1,133 @@
+package com.micasa.common.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key into one, so a burst of misses on a popular key costs one query.
+ * Structure:
+ *  1. The first caller of a key registers a future in inFlight with putIfAbsent and runs the load itself,
+ *     no lock is held while it runs.
+ *  2. Callers of the same key arriving meanwhile wait on that future and get its value, or its exception.
+ *  3. A waiter gives up after timeout and loads on its own, so a stuck load does not hold every caller.
+ *  4. The key is removed once the load completes, later callers load again. forget removes it earlier.
+ * Calls are counted as micasa.single_flight.calls by name and outcome: leader, coalesced or timeout.
+ * Values are shared between callers and must not be modified.
+ * @param <K> : Key type, needs equals and hashCode.
+ * @param <V> : Value type.
+ */
+public class SingleFlight<K, V>
+{
+    private static final String METRIC_PREFIX = "micasa.single_flight";
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long timeoutNanos;
+    private final Counter leaderCounter;
+    private final Counter coalescedCounter;
+    private final Counter timeoutCounter;
+
+    public SingleFlight(String name, Duration timeout, MeterRegistry meterRegistry)
+    {
+        this.timeoutNanos = timeout.toNanos();
+        this.leaderCounter = callCounter(name, "leader", meterRegistry);
+        this.coalescedCounter = callCounter(name, "coalesced", meterRegistry);
+        this.timeoutCounter = callCounter(name, "timeout", meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".inflight", this.inFlight, Map::size)
+                .description("Loads currently running")
+                .tag("name", name)
+                .register(meterRegistry);
+    }
+
+    private static Counter callCounter(String name, String outcome, MeterRegistry meterRegistry)
+    {
+        return Counter.builder(METRIC_PREFIX + ".calls")
+                .description("Calls that ran a load, shared a running load, or stopped waiting for it")
+                .tag("name", name)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Function to load the value of a key, sharing a load of the same key already running.
+     * @param key : Key to load.
+     * @param loader : Loads the value, run in the calling thread when no load of key is running.
+     * @return : Loaded value, shared with concurrent callers.
+     */
+    public V execute(K key, Supplier<V> loader)
+    {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> running = this.inFlight.putIfAbsent(key, call);
+        if(null == running)
+        {
+            this.leaderCounter.increment();
+            return this.lead(key, call, loader);
+        }
+        this.coalescedCounter.increment();
+        try
+        {
+            return running.get(this.timeoutNanos, TimeUnit.NANOSECONDS);
+        }
+        catch(TimeoutException timeoutException)
+        {
+            this.timeoutCounter.increment();
+            return loader.get();
+        }
+        catch(ExecutionException executionException)
+        {
+            Throwable cause = executionException.getCause();
+            if(cause instanceof RuntimeException runtimeException)
+            {
+                throw runtimeException;
+            }
+            if(cause instanceof Error error)
+            {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+        catch(InterruptedException interruptedException)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the load of " + key, interruptedException);
+        }
+    }
+
+    private V lead(K key, CompletableFuture<V> call, Supplier<V> loader)
+    {
+        try
+        {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        }
+        catch(RuntimeException | Error exception)
+        {
+            call.completeExceptionally(exception);
+            throw exception;
+        }
+        finally
+        {
+            this.inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * Function to let later callers of a key start a new load instead of joining a running one, call it once the value changed.
+     * Callers already waiting keep waiting for the running load.
+     * @param key : Key whose value changed.
+     */
+    public void forget(K key)
+    {
+        this.inFlight.remove(key);
+    }
+}
@@ -0,0 +1,34 @@
+package com.micasa.common.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Helpers around the current spring transaction.
+ */
+public class TransactionUtils
+{
+    private TransactionUtils() {}
+
+    /**
+     * Runs the action once the current transaction commits, or right away if there is no transaction.
+     * Nothing is run if the transaction rolls back.
+     * @param action : Action to run.
+     */
+    public static void afterCommit(Runnable action)
+    {
+        if(!TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+        {
+            @Override
+            public void afterCommit()
+            {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,112 @@
+package com.micasa.common.changelog;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * ChangeLogPoller gap handling against change_log in a private H2 database, with a mocked invalidator.
+ */
+class ChangeLogPollerTests
+{
+    private static final String OTHER_ORIGIN = "other-instance";
+
+    private JdbcTemplate jdbcTemplate;
+    private ChangeLogInvalidator changeLogInvalidator;
+
+    @BeforeEach
+    void setUp()
+    {
+        this.jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""));
+        this.jdbcTemplate.execute("create table change_log (id bigint primary key, entity varchar(16) not null, "
+                + "entity_id varchar(64) not null, society_id varchar(64), origin varchar(64) not null, created_at bigint not null)");
+        this.changeLogInvalidator = mock(ChangeLogInvalidator.class);
+    }
+
+    @Test
+    void trackedGapsInvalidateOnlyTheirEntries()
+    {
+        ChangeLogPoller poller = this.poller(Duration.ofSeconds(30));
+        poller.start();
+        this.insert(1);
+        this.insert(500);
+        poller.poll();
+
+        this.insert(250);
+        poller.poll();
+
+        verify(this.changeLogInvalidator, times(2)).invalidate(any());
+        verify(this.changeLogInvalidator, never()).invalidateAll();
+    }
+
+    @Test
+    void gapsBeyondLimitInvalidateAllCachesNowAndAfterGapTimeout() throws Exception
+    {
+        ChangeLogPoller poller = this.poller(Duration.ofMillis(200));
+        poller.start();
+        this.insert(1);
+        this.insert(5000);
+        poller.poll();
+
+        verify(this.changeLogInvalidator, times(1)).invalidateAll();
+
+        poller.poll();
+        verify(this.changeLogInvalidator, times(1)).invalidateAll();
+
+        Thread.sleep(300);
+        poller.poll();
+        verify(this.changeLogInvalidator, times(2)).invalidateAll();
+
+        poller.poll();
+        verify(this.changeLogInvalidator, times(2)).invalidateAll();
+    }
+
+    @Test
+    void failedInvalidationIsRetriedOnNextPoll()
+    {
+        ChangeLogPoller poller = this.poller(Duration.ofSeconds(30));
+        poller.start();
+        this.insert(1);
+        this.insert(3);
+        doThrow(new IllegalStateException("database down")).doNothing().when(this.changeLogInvalidator).invalidate(any());
+
+        poller.poll();
+        poller.poll();
+        poller.poll();
+
+        ArgumentCaptor<ChangeBatch> batches = ArgumentCaptor.forClass(ChangeBatch.class);
+        verify(this.changeLogInvalidator, times(2)).invalidate(batches.capture());
+        assertThat(batches.getAllValues()).allSatisfy(batch -> assertThat(batch.flatIds()).containsExactlyInAnyOrder("flat-1", "flat-3"));
+
+        this.insert(2);
+        poller.poll();
+        verify(this.changeLogInvalidator, times(3)).invalidate(any());
+    }
+
+    private ChangeLogPoller poller(Duration gapTimeout)
+    {
+        return new ChangeLogPoller(this.jdbcTemplate, new ChangeLogPublisher(this.jdbcTemplate), this.changeLogInvalidator,
+                new SimpleMeterRegistry(), 1000, gapTimeout, Duration.ofHours(1));
+    }
+
+    private void insert(long id)
+    {
+        this.jdbcTemplate.update("insert into change_log (id, entity, entity_id, society_id, origin, created_at) values (?, ?, ?, ?, ?, ?)",
+                id, ChangedEntity.FLAT.name(), "flat-" + id, null, OTHER_ORIGIN, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,186 @@
+package com.micasa.common.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * SingleFlight with concurrent callers, loads are held on a latch until every caller joined.
+ */
+class SingleFlightTests
+{
+    private static final int CALLERS = 8;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp()
+    {
+        this.executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        this.release.countDown();
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallsShareOneLoad() throws Exception
+    {
+        SingleFlight<String, Object> singleFlight = this.singleFlight(Duration.ofSeconds(10));
+
+        List<Future<Object>> calls = this.callConcurrently(singleFlight, () -> {
+            this.loads.incrementAndGet();
+            await(this.release);
+            return new Object();
+        });
+
+        Object value = calls.get(0).get(10, TimeUnit.SECONDS);
+        for(Future<Object> call : calls)
+        {
+            assertThat(call.get(10, TimeUnit.SECONDS)).isSameAs(value);
+        }
+        assertThat(this.loads).hasValue(1);
+        assertThat(this.calls("leader")).isEqualTo(1);
+        assertThat(this.calls("coalesced")).isEqualTo(CALLERS - 1);
+    }
+
+    @Test
+    void exceptionReachesEveryWaiter() throws Exception
+    {
+        SingleFlight<String, Object> singleFlight = this.singleFlight(Duration.ofSeconds(10));
+        IllegalStateException failure = new IllegalStateException("load failed");
+
+        List<Future<Object>> calls = this.callConcurrently(singleFlight, () -> {
+            this.loads.incrementAndGet();
+            await(this.release);
+            throw failure;
+        });
+
+        for(Future<Object> call : calls)
+        {
+            Throwable thrown = catchThrowable(() -> call.get(10, TimeUnit.SECONDS));
+            assertThat(thrown).isInstanceOf(ExecutionException.class);
+            assertThat(thrown.getCause()).isSameAs(failure);
+        }
+        assertThat(this.loads).hasValue(1);
+        assertThat(singleFlight.execute("key", () -> "loaded again")).isEqualTo("loaded again");
+    }
+
+    @Test
+    void waiterStopsWaitingAfterTimeoutAndLoadsItself() throws Exception
+    {
+        SingleFlight<String, Object> singleFlight = this.singleFlight(Duration.ofMillis(100));
+        CountDownLatch leading = new CountDownLatch(1);
+        Future<Object> leader = this.executor.submit(() -> singleFlight.execute("key", () -> {
+            leading.countDown();
+            await(this.release);
+            return "leader";
+        }));
+        await(leading);
+
+        assertThat(singleFlight.execute("key", () -> "own")).isEqualTo("own");
+        assertThat(this.calls("timeout")).isEqualTo(1);
+
+        this.release.countDown();
+        assertThat(leader.get(10, TimeUnit.SECONDS)).isEqualTo("leader");
+    }
+
+    @Test
+    void keyIsLoadedAgainAfterLoadCompletes()
+    {
+        SingleFlight<String, Object> singleFlight = this.singleFlight(Duration.ofSeconds(10));
+
+        singleFlight.execute("key", this.loads::incrementAndGet);
+        singleFlight.execute("key", this.loads::incrementAndGet);
+
+        assertThat(this.loads).hasValue(2);
+        assertThatThrownBy(() -> singleFlight.execute("key", () -> {
+            throw new IllegalArgumentException("bad key");
+        })).isInstanceOf(IllegalArgumentException.class);
+        assertThat(singleFlight.execute("key", () -> "after failure")).isEqualTo("after failure");
+    }
+
+    @Test
+    void forgetLetsNextCallerStartNewLoad() throws Exception
+    {
+        SingleFlight<String, Object> singleFlight = this.singleFlight(Duration.ofSeconds(10));
+        CountDownLatch leading = new CountDownLatch(1);
+        Future<Object> leader = this.executor.submit(() -> singleFlight.execute("key", () -> {
+            leading.countDown();
+            await(this.release);
+            return "stale";
+        }));
+        await(leading);
+
+        singleFlight.forget("key");
+
+        assertThat(singleFlight.execute("key", () -> "fresh")).isEqualTo("fresh");
+        this.release.countDown();
+        assertThat(leader.get(10, TimeUnit.SECONDS)).isEqualTo("stale");
+    }
+
+    private SingleFlight<String, Object> singleFlight(Duration timeout)
+    {
+        return new SingleFlight<>("test", timeout, this.meterRegistry);
+    }
+
+    /**
+     * Function to call execute of the same key from every caller thread, the load is released once all joined it.
+     */
+    private List<Future<Object>> callConcurrently(SingleFlight<String, Object> singleFlight, Supplier<Object> loader) throws Exception
+    {
+        List<Future<Object>> calls = new ArrayList<>();
+        for(int i = 0; i < CALLERS; i++)
+        {
+            calls.add(this.executor.submit(() -> singleFlight.execute("key", loader)));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while(this.calls("leader") + this.calls("coalesced") < CALLERS && System.nanoTime() < deadline)
+        {
+            Thread.sleep(5);
+        }
+        this.release.countDown();
+        return calls;
+    }
+
+    private double calls(String outcome)
+    {
+        return this.meterRegistry.get("micasa.single_flight.calls").tag("outcome", outcome).counter().count();
+    }
+
+    private static void await(CountDownLatch latch)
+    {
+        try
+        {
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        }
+        catch(InterruptedException interruptedException)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(interruptedException);
+        }
+    }
+}
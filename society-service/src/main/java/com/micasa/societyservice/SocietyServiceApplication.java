@@ -2,8 +2,11 @@ package com.micasa.societyservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
 
-@SpringBootApplication
+//Shared components and the change_log entity of micasa-common are picked up next to the ones of society-service.
+@SpringBootApplication(scanBasePackages = {"com.micasa.societyservice", "com.micasa.common"})
+@EntityScan(basePackages = {"com.micasa.societyservice.model", "com.micasa.common.model"})
 public class SocietyServiceApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,45 @@
+package com.micasa.societyservice.changelog;
+
+import com.micasa.common.changelog.ChangeBatch;
+import com.micasa.common.changelog.ChangeLogInvalidator;
+import com.micasa.societyservice.model.Flat;
+import com.micasa.societyservice.model.Society;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Evicts second-level cache entries made stale by writes of flat-service, see ChangeLogPoller.
+ */
+@Component
+public class SocietyChangeLogInvalidator implements ChangeLogInvalidator
+{
+    private static final String SOCIETY_FLAT_LIST_ROLE = Society.class.getName() + ".flatList";
+
+    private final Cache secondLevelCache;
+
+    @Autowired
+    public SocietyChangeLogInvalidator(EntityManagerFactory entityManagerFactory)
+    {
+        this.secondLevelCache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+
+    @Override
+    public void invalidate(ChangeBatch changeBatch)
+    {
+        changeBatch.flatIds().forEach(flatId -> this.secondLevelCache.evictEntityData(Flat.class, flatId));
+        changeBatch.societyIds().forEach(societyId -> this.secondLevelCache.evictEntityData(Society.class, societyId));
+        changeBatch.flatSocietyIds().forEach(societyId -> this.secondLevelCache.evictCollectionData(SOCIETY_FLAT_LIST_ROLE, societyId));
+    }
+
+    /**
+     * Function to drop the whole second-level cache, when changes of other instances were lost.
+     */
+    @Override
+    public void invalidateAll()
+    {
+        this.secondLevelCache.evictAllRegions();
+    }
+}
@@ -0,0 +1,34 @@
+package com.micasa.societyservice.config;
+
+import com.micasa.common.interceptor.MetricsRequestInterceptor;
+import com.micasa.common.metrics.RequestMetrics;
+import com.micasa.societyservice.interceptor.LoggingRequestInterceptor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Web configuration class for societyService.
+ */
+@Configuration
+public class SocietyServiceWebConfig implements WebMvcConfigurer
+{
+    //RequestMetrics instance.
+    private final RequestMetrics requestMetrics;
+
+    public SocietyServiceWebConfig(RequestMetrics requestMetrics)
+    {
+        this.requestMetrics = requestMetrics;
+    }
+
+    /**
+     * Adds request interceptors, metrics after logging so it still sees the correlationId.
+     * @param registry : interceptorRegistry object.
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry)
+    {
+        registry.addInterceptor(new LoggingRequestInterceptor());
+        registry.addInterceptor(new MetricsRequestInterceptor(this.requestMetrics));
+    }
+}
@@ -0,0 +1,21 @@
+package com.micasa.societyservice.constants;
+
+/**
+ * Common constants for society-service.
+ */
+public class CommonConstants
+{
+    //Media type of Smile, Spring only names the CBOR one.
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    //Media types of the columnar batch formats, one per encoding.
+    public static final String FLAT_COLUMNS_JSON_VALUE = "application/vnd.micasa.flat-columns+json";
+    public static final String FLAT_COLUMNS_CBOR_VALUE = "application/vnd.micasa.flat-columns+cbor";
+    public static final String FLAT_COLUMNS_SMILE_VALUE = "application/vnd.micasa.flat-columns+smile";
+    public static final String SOCIETY_COLUMNS_JSON_VALUE = "application/vnd.micasa.society-columns+json";
+    public static final String SOCIETY_COLUMNS_CBOR_VALUE = "application/vnd.micasa.society-columns+cbor";
+    public static final String SOCIETY_COLUMNS_SMILE_VALUE = "application/vnd.micasa.society-columns+smile";
+    //Societies per batch of a columnar export.
+    public static int COLUMN_BATCH_SIZE = 1000;
+
+    private CommonConstants() {}
+}
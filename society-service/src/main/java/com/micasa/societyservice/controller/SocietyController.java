@@ -1,19 +1,68 @@
 package com.micasa.societyservice.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.micasa.common.constants.CorrelationIdConstants;
+import com.micasa.common.util.NdjsonWriter;
+import com.micasa.societyservice.constants.CommonConstants;
+import com.micasa.societyservice.dto.BlockOccupancyDto;
+import com.micasa.societyservice.dto.FlatColumnsPageDto;
+import com.micasa.societyservice.dto.FlatPageDto;
+import com.micasa.societyservice.dto.SocietyDetailDto;
+import com.micasa.societyservice.dto.SocietyDto;
+import com.micasa.societyservice.dto.SocietyOccupancyDto;
+import com.micasa.societyservice.mapper.SocietyMapper;
 import com.micasa.societyservice.model.Society;
 import com.micasa.societyservice.service.SocietyService;
+import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @RestController
 public class SocietyController
 {
+    //Streaming responses are flushed to the client every this many records.
+    private static final int STREAM_FLUSH_EVERY = 1000;
+    //Columnar batch formats of exportSocieties.
+    private static final List<MediaType> SOCIETY_COLUMNS_MEDIA_TYPES = List.of(MediaType.parseMediaType(CommonConstants.SOCIETY_COLUMNS_JSON_VALUE),
+            MediaType.parseMediaType(CommonConstants.SOCIETY_COLUMNS_CBOR_VALUE), MediaType.parseMediaType(CommonConstants.SOCIETY_COLUMNS_SMILE_VALUE));
+    //Formats of exportSocieties in order of preference, rows first, then columnar batches.
+    private static final List<MediaType> EXPORT_MEDIA_TYPES = List.of(MediaType.APPLICATION_NDJSON, MediaType.APPLICATION_CBOR,
+            MediaType.parseMediaType(CommonConstants.APPLICATION_SMILE_VALUE), SOCIETY_COLUMNS_MEDIA_TYPES.get(0),
+            SOCIETY_COLUMNS_MEDIA_TYPES.get(1), SOCIETY_COLUMNS_MEDIA_TYPES.get(2));
+
     private final SocietyService societyService;
+    private final SocietyMapper societyMapper;
+    private final ObjectMapper objectMapper;
+    //Binary converters, their ObjectMappers write binary exports.
+    private final MappingJackson2CborHttpMessageConverter cborHttpMessageConverter;
+    private final MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter;
+    //Largest page size a client may request for flats of a society.
+    private final int maxPageSize;
 
     @Autowired
-    public SocietyController(SocietyService societyService)
+    public SocietyController(SocietyService societyService, SocietyMapper societyMapper, ObjectMapper objectMapper,
+                             MappingJackson2CborHttpMessageConverter cborHttpMessageConverter,
+                             MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter,
+                             @Value("${micasa.society.flats.page.max-size:500}") int maxPageSize)
     {
         this.societyService = societyService;
+        this.societyMapper = societyMapper;
+        this.objectMapper = objectMapper;
+        this.cborHttpMessageConverter = cborHttpMessageConverter;
+        this.smileHttpMessageConverter = smileHttpMessageConverter;
+        this.maxPageSize = maxPageSize;
     }
 
     @PostMapping("/add/society")
@@ -23,9 +72,127 @@ public class SocietyController
     }
 
     @GetMapping("/get/society/{societyId}")
-    public Society getSociety(@PathVariable String societyId)
+    public SocietyDetailDto getSociety(@PathVariable String societyId,
+                                       @RequestParam(defaultValue = "true") boolean includeFlats)
+    {
+        return this.societyService.getSocietyDetailById(societyId, includeFlats);
+    }
+
+    @GetMapping("/get/society/{societyId}/flats")
+    public FlatPageDto getSocietyFlats(@PathVariable String societyId,
+                                       @RequestParam(defaultValue = "0") int page,
+                                       @RequestParam(defaultValue = "50") int size)
+    {
+        PageRequest pageRequest = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), this.maxPageSize));
+        return this.societyService.getSocietyFlats(societyId, pageRequest);
+    }
+
+    /**
+     * Flat counts of a society and each of its blocks, read from occupancy_rollup.
+     */
+    @GetMapping("/get/society/{societyId}/occupancy")
+    public SocietyOccupancyDto getSocietyOccupancy(@PathVariable String societyId)
+    {
+        return this.societyService.getSocietyOccupancy(societyId);
+    }
+
+    /**
+     * Flat counts of a block over all societies, read from occupancy_rollup.
+     */
+    @GetMapping("/get/block/{flatBlock}/occupancy")
+    public BlockOccupancyDto getBlockOccupancy(@PathVariable String flatBlock)
+    {
+        return this.societyService.getBlockOccupancy(flatBlock);
+    }
+
+    /**
+     * Same page as getSocietyFlats in columnar form, for the flat-columns media types.
+     */
+    @GetMapping(value = "/get/society/{societyId}/flats", produces = {CommonConstants.FLAT_COLUMNS_JSON_VALUE,
+            CommonConstants.FLAT_COLUMNS_CBOR_VALUE, CommonConstants.FLAT_COLUMNS_SMILE_VALUE})
+    public FlatColumnsPageDto getSocietyFlatColumns(@PathVariable String societyId,
+                                                    @RequestParam(defaultValue = "0") int page,
+                                                    @RequestParam(defaultValue = "50") int size)
+    {
+        FlatPageDto flatPageDto = this.getSocietyFlats(societyId, page, size);
+        return new FlatColumnsPageDto(this.societyMapper.flatDtosToFlatColumnsDto(flatPageDto.getContent()),
+                flatPageDto.getPage(), flatPageDto.getSize(), flatPageDto.isHasNext());
+    }
+
+    /**
+     * Streams all societies with constant memory, in the first of EXPORT_MEDIA_TYPES the client accepts:
+     * one societyDto per line (NDJSON) or document (CBOR, Smile), or one societyColumnsDto per COLUMN_BATCH_SIZE
+     * societies for the society-columns media types.
+     */
+    @GetMapping(value = "/export/societies", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            CommonConstants.APPLICATION_SMILE_VALUE, CommonConstants.SOCIETY_COLUMNS_JSON_VALUE, CommonConstants.SOCIETY_COLUMNS_CBOR_VALUE,
+            CommonConstants.SOCIETY_COLUMNS_SMILE_VALUE})
+    public ResponseEntity<StreamingResponseBody> exportSocieties(@RequestHeader(value = HttpHeaders.ACCEPT, defaultValue = MediaType.ALL_VALUE) String accept)
+    {
+        MediaType mediaType = this.exportMediaType(accept);
+        ObjectMapper exportObjectMapper = this.exportObjectMapper(mediaType);
+        boolean columnar = SOCIETY_COLUMNS_MEDIA_TYPES.contains(mediaType);
+        //The body is written on an async thread, carry the correlationId of the request over for its logs.
+        String correlationId = MDC.get(CorrelationIdConstants.CORRELATION_ID_LOG_VAR_NAME);
+        StreamingResponseBody body = outputStream -> {
+            MDC.put(CorrelationIdConstants.CORRELATION_ID_LOG_VAR_NAME, correlationId);
+            try(NdjsonWriter writer = new NdjsonWriter(exportObjectMapper, outputStream, columnar ? 1 : STREAM_FLUSH_EVERY))
+            {
+                if(!columnar)
+                {
+                    this.societyService.exportSocieties(writer::write);
+                    return;
+                }
+                List<SocietyDto> batch = new ArrayList<>(CommonConstants.COLUMN_BATCH_SIZE);
+                this.societyService.exportSocieties(societyDto -> {
+                    batch.add(societyDto);
+                    if(CommonConstants.COLUMN_BATCH_SIZE == batch.size())
+                    {
+                        writer.write(this.societyMapper.societyDtosToSocietyColumnsDto(batch));
+                        batch.clear();
+                    }
+                });
+                if(!batch.isEmpty())
+                {
+                    writer.write(this.societyMapper.societyDtosToSocietyColumnsDto(batch));
+                }
+            }
+            finally
+            {
+                MDC.remove(CorrelationIdConstants.CORRELATION_ID_LOG_VAR_NAME);
+            }
+        };
+        return ResponseEntity.ok().contentType(mediaType).body(body);
+    }
+
+    private MediaType exportMediaType(String accept)
+    {
+        List<MediaType> acceptedMediaTypes = MediaType.parseMediaTypes(accept);
+        MimeTypeUtils.sortBySpecificity(acceptedMediaTypes);
+        for(MediaType acceptedMediaType : acceptedMediaTypes)
+        {
+            for(MediaType exportMediaType : EXPORT_MEDIA_TYPES)
+            {
+                if(acceptedMediaType.includes(exportMediaType))
+                {
+                    return exportMediaType;
+                }
+            }
+        }
+        return MediaType.APPLICATION_NDJSON;
+    }
+
+    private ObjectMapper exportObjectMapper(MediaType mediaType)
     {
-        return this.societyService.getSocietyById(societyId);
+        if(this.cborHttpMessageConverter.canWrite(SocietyDto.class, mediaType))
+        {
+            return this.cborHttpMessageConverter.getObjectMapper();
+        }
+        if(this.smileHttpMessageConverter.canWrite(SocietyDto.class, mediaType))
+        {
+            return this.smileHttpMessageConverter.getObjectMapper();
+        }
+        return this.objectMapper;
     }
 
     @DeleteMapping("/delete/society/{societyId}")
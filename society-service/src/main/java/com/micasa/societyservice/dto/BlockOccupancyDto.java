@@ -0,0 +1,21 @@
+package com.micasa.societyservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Flat counts of a block, of one society or of all societies.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BlockOccupancyDto
+{
+    private String flatBlock;
+    private long totalFlats;
+    private long occupiedFlats;
+    private long vacantFlats;
+}
@@ -0,0 +1,23 @@
+package com.micasa.societyservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Flats in columnar form, one column per field of flatDto with the same flat at the same index in every column.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlatColumnsDto
+{
+    private List<String> flatId;
+    private List<String> flatNumber;
+    private List<String> flatBlock;
+    private boolean[] occupied;
+}
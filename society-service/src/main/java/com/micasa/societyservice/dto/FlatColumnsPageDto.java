@@ -0,0 +1,21 @@
+package com.micasa.societyservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A single page of flats of a society in columnar form.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlatColumnsPageDto
+{
+    private FlatColumnsDto content;
+    private int page;
+    private int size;
+    private boolean hasNext;
+}
@@ -0,0 +1,18 @@
+package com.micasa.societyservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlatDto
+{
+    private String flatId;
+    private String flatNumber;
+    private String flatBlock;
+    private boolean occupied;
+}
@@ -0,0 +1,23 @@
+package com.micasa.societyservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * A single page of flats of a society.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlatPageDto
+{
+    private List<FlatDto> content;
+    private int page;
+    private int size;
+    private boolean hasNext;
+}
@@ -0,0 +1,22 @@
+package com.micasa.societyservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Societies in columnar form, one column per field of societyDto with the same society at the same index in every column.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SocietyColumnsDto
+{
+    private List<String> societyId;
+    private List<String> societyName;
+    private List<String> address;
+}
@@ -0,0 +1,23 @@
+package com.micasa.societyservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Society with its flats, flatList is null when flats were not requested.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SocietyDetailDto
+{
+    private String societyId;
+    private String societyName;
+    private String address;
+    private List<FlatDto> flatList;
+}
@@ -11,6 +11,7 @@ import lombok.Setter;
 @AllArgsConstructor
 public class SocietyDto
 {
+    private String societyId;
     private String societyName;
     private String address;
 }
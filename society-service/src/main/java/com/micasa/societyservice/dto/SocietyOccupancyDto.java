@@ -0,0 +1,24 @@
+package com.micasa.societyservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Flat counts of a society with one entry per block, read from occupancy_rollup.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SocietyOccupancyDto
+{
+    private String societyId;
+    private long totalFlats;
+    private long occupiedFlats;
+    private long vacantFlats;
+    private List<BlockOccupancyDto> blocks;
+}
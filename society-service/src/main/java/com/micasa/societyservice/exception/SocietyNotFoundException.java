@@ -0,0 +1,17 @@
+package com.micasa.societyservice.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when no society exists with the requested societyId, answered with 404.
+ * The same instance may reach every read sharing a load, so it carries no stack trace.
+ */
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class SocietyNotFoundException extends RuntimeException
+{
+    public SocietyNotFoundException(String societyId)
+    {
+        super("No society present with id: " + societyId, null, false, false);
+    }
+}
@@ -0,0 +1,103 @@
+package com.micasa.societyservice.interceptor;
+
+import com.micasa.common.constants.CorrelationIdConstants;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+import java.util.UUID;
+
+/**
+ * This class intercepts each request and sets correlationId to logs.
+ * CorrelationId is removed from logs when the request thread is released, so pooled platform threads
+ * and virtual threads never carry it over to another request.
+ */
+@Slf4j
+public class LoggingRequestInterceptor implements AsyncHandlerInterceptor
+{
+    //Variable name that will be used in logs.
+    private static final String CORRELATION_ID_LOG_VAR_NAME = CorrelationIdConstants.CORRELATION_ID_LOG_VAR_NAME;
+    //Request attribute holding the correlationId, so async dispatches of the same request reuse it.
+    private static final String CORRELATION_ID_ATTRIBUTE = LoggingRequestInterceptor.class.getName() + ".correlationId";
+
+    /**
+     * This intercepts request before handling.
+     * Structure:
+     *  1. Look for correlationId of an earlier dispatch of this request, then for correlationId header.
+     *      If present
+     *          1.1 Set in logs against CORRELATION_ID_LOG_VAR_NAME.
+     *      Else
+     *          1.1 Generate new correlationId.
+     *          1.2 Set in logs against CORRELATION_ID_LOG_VAR_NAME.
+     * @param request : request object.
+     * @param response : response object.
+     * @param handler : handler object.
+     * @return : true/false
+     * @throws Exception : Exception
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception
+    {
+        String correlationId = (String) request.getAttribute(CORRELATION_ID_ATTRIBUTE);
+        if(null == correlationId)
+        {
+            correlationId = request.getHeader(CorrelationIdConstants.CORRELATION_ID_HEADER);
+        }
+        if(null == correlationId)
+        {
+            correlationId = UUID.randomUUID().toString();
+            log.info("No correlation-id present in headers, generated new correlation-id: {}",correlationId);
+        }
+        request.setAttribute(CORRELATION_ID_ATTRIBUTE, correlationId);
+        MDC.put(CORRELATION_ID_LOG_VAR_NAME, correlationId);
+        return AsyncHandlerInterceptor.super.preHandle(request, response, handler);
+    }
+
+    /**
+     * Perform some operation after request handling is done.
+     * @param request : request object.
+     * @param response : response object.
+     * @param handler : handler object.
+     * @param modelAndView : model/view.
+     * @throws Exception : Exception
+     */
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) throws Exception
+    {
+        AsyncHandlerInterceptor.super.postHandle(request, response, handler, modelAndView);
+    }
+
+    /**
+     * Perform operation after response is sent.
+     * Removes correlationId from logs of this thread.
+     * @param request : request object.
+     * @param response : response object.
+     * @param handler : handler object.
+     * @param ex : exception object.
+     * @throws Exception : Exception.
+     */
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception
+    {
+        MDC.remove(CORRELATION_ID_LOG_VAR_NAME);
+        AsyncHandlerInterceptor.super.afterCompletion(request, response, handler, ex);
+    }
+
+    /**
+     * Perform operation when request handling continues asynchronously and the request thread is released.
+     * Removes correlationId from logs of this thread, the async dispatch sets it again.
+     * @param request : request object.
+     * @param response : response object.
+     * @param handler : handler object.
+     * @throws Exception : Exception.
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception
+    {
+        MDC.remove(CORRELATION_ID_LOG_VAR_NAME);
+        AsyncHandlerInterceptor.super.afterConcurrentHandlingStarted(request, response, handler);
+    }
+}
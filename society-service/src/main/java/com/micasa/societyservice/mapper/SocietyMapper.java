@@ -0,0 +1,149 @@
+package com.micasa.societyservice.mapper;
+
+import com.micasa.societyservice.dto.BlockOccupancyDto;
+import com.micasa.societyservice.dto.FlatColumnsDto;
+import com.micasa.societyservice.dto.FlatDto;
+import com.micasa.societyservice.dto.SocietyColumnsDto;
+import com.micasa.societyservice.dto.SocietyDetailDto;
+import com.micasa.societyservice.dto.SocietyDto;
+import com.micasa.societyservice.dto.SocietyOccupancyDto;
+import com.micasa.societyservice.model.Flat;
+import com.micasa.societyservice.model.OccupancyRollup;
+import com.micasa.societyservice.model.Society;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mapper class for Society and its dtos.
+ */
+@Component
+public class SocietyMapper
+{
+    /**
+     * This function maps a society to societyDetailDto.
+     * @param society : Society object, flatList must already be fetched when includeFlats is true.
+     * @param includeFlats : Whether flatList is mapped.
+     * @return : SocietyDetailDto object.
+     */
+    public SocietyDetailDto societyEntityToSocietyDetailDto(Society society, boolean includeFlats)
+    {
+        List<FlatDto> flatList = null;
+        if(includeFlats && null != society.getFlatList())
+        {
+            flatList = new ArrayList<>(society.getFlatList().size());
+            for(Flat flat : society.getFlatList())
+            {
+                flatList.add(this.flatEntityToFlatDto(flat));
+            }
+        }
+        return new SocietyDetailDto(society.getSocietyId(), society.getSocietyName(), society.getAddress(), flatList);
+    }
+
+    /**
+     * This function maps a society to societyDto, flatList is not touched.
+     * @param society : Society object.
+     * @return : SocietyDto object.
+     */
+    public SocietyDto societyEntityToSocietyDto(Society society)
+    {
+        return new SocietyDto(society.getSocietyId(), society.getSocietyName(), society.getAddress());
+    }
+
+    /**
+     * This function maps the rollup rows of a society to societyOccupancyDto, totals are summed over its blocks.
+     * @param societyId : Society of the rows.
+     * @param rows : Rollup rows of the society, one per block.
+     * @return : SocietyOccupancyDto object, all counts are 0 without rows.
+     */
+    public SocietyOccupancyDto occupancyRollupsToSocietyOccupancyDto(String societyId, List<OccupancyRollup> rows)
+    {
+        long totalFlats = 0;
+        long occupiedFlats = 0;
+        List<BlockOccupancyDto> blocks = new ArrayList<>(rows.size());
+        for(OccupancyRollup row : rows)
+        {
+            if(0 == row.getTotalFlats())
+            {
+                //Left by deletes until the next reconciliation in flat-service.
+                continue;
+            }
+            totalFlats += row.getTotalFlats();
+            occupiedFlats += row.getOccupiedFlats();
+            blocks.add(new BlockOccupancyDto(row.getFlatBlock(), row.getTotalFlats(), row.getOccupiedFlats(),
+                    row.getTotalFlats() - row.getOccupiedFlats()));
+        }
+        return new SocietyOccupancyDto(societyId, totalFlats, occupiedFlats, totalFlats - occupiedFlats, blocks);
+    }
+
+    /**
+     * This function maps the rollup rows of a block to blockOccupancyDto, counts are summed over societies.
+     * @param flatBlock : Block of the rows.
+     * @param rows : Rollup rows of the block, one per society.
+     * @return : BlockOccupancyDto object, all counts are 0 without rows.
+     */
+    public BlockOccupancyDto occupancyRollupsToBlockOccupancyDto(String flatBlock, List<OccupancyRollup> rows)
+    {
+        long totalFlats = 0;
+        long occupiedFlats = 0;
+        for(OccupancyRollup row : rows)
+        {
+            totalFlats += row.getTotalFlats();
+            occupiedFlats += row.getOccupiedFlats();
+        }
+        return new BlockOccupancyDto(flatBlock, totalFlats, occupiedFlats, totalFlats - occupiedFlats);
+    }
+
+    /**
+     * This function maps a flat to flatDto.
+     * @param flat : Flat object.
+     * @return : FlatDto object.
+     */
+    public FlatDto flatEntityToFlatDto(Flat flat)
+    {
+        return new FlatDto(flat.getFlatId(), flat.getFlatNumber(), flat.getFlatBlock(), flat.isOccupied());
+    }
+
+    /**
+     * This function maps flatDtos to one flatColumnsDto, a column per field.
+     * @param flatDtos : FlatDto objects in row order.
+     * @return : FlatColumnsDto object.
+     */
+    public FlatColumnsDto flatDtosToFlatColumnsDto(List<FlatDto> flatDtos)
+    {
+        int size = flatDtos.size();
+        List<String> flatIds = new ArrayList<>(size);
+        List<String> flatNumbers = new ArrayList<>(size);
+        List<String> flatBlocks = new ArrayList<>(size);
+        boolean[] occupied = new boolean[size];
+        for(int i = 0; i < size; i++)
+        {
+            FlatDto flatDto = flatDtos.get(i);
+            flatIds.add(flatDto.getFlatId());
+            flatNumbers.add(flatDto.getFlatNumber());
+            flatBlocks.add(flatDto.getFlatBlock());
+            occupied[i] = flatDto.isOccupied();
+        }
+        return new FlatColumnsDto(flatIds, flatNumbers, flatBlocks, occupied);
+    }
+
+    /**
+     * This function maps societyDtos to one societyColumnsDto, a column per field.
+     * @param societyDtos : SocietyDto objects in row order.
+     * @return : SocietyColumnsDto object.
+     */
+    public SocietyColumnsDto societyDtosToSocietyColumnsDto(List<SocietyDto> societyDtos)
+    {
+        List<String> societyIds = new ArrayList<>(societyDtos.size());
+        List<String> societyNames = new ArrayList<>(societyDtos.size());
+        List<String> addresses = new ArrayList<>(societyDtos.size());
+        for(SocietyDto societyDto : societyDtos)
+        {
+            societyIds.add(societyDto.getSocietyId());
+            societyNames.add(societyDto.getSocietyName());
+            addresses.add(societyDto.getAddress());
+        }
+        return new SocietyColumnsDto(societyIds, societyNames, addresses);
+    }
+}
@@ -5,6 +5,8 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.UuidGenerator;
 
 /**
@@ -14,8 +16,12 @@ import org.hibernate.annotations.UuidGenerator;
 @ToString
 @NoArgsConstructor
 @Entity(name = "flats")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "micasa.flat")
 @Table(uniqueConstraints = {
         @UniqueConstraint(columnNames = {"flat_number","flat_block"})
+}, indexes = {
+        @Index(name = "idx_flats_flat_block", columnList = "flat_block, flat_number")
 })
 public class Flat
 {
@@ -28,6 +34,9 @@ public class Flat
     @Column(name = "flat_block")
     private String flatBlock;
     private boolean occupied;
+    //Optimistic lock version, bumped on every update.
+    @Version
+    private long version;
 
     @JsonBackReference
     @ManyToOne(fetch = FetchType.LAZY)
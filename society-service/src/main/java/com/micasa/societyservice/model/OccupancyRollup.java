@@ -0,0 +1,32 @@
+package com.micasa.societyservice.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Row of occupancy_rollup, the number of flats and occupied flats per society and block.
+ * Kept by flat-service in the transaction of every flat write, read here instead of counting flats.
+ */
+@Data
+@NoArgsConstructor
+@Entity(name = "occupancy_rollup")
+@IdClass(OccupancyRollupId.class)
+@Table(indexes = {
+        @Index(name = "idx_occupancy_rollup_flat_block", columnList = "flat_block")
+})
+public class OccupancyRollup
+{
+    //Society of the counted flats, '' for flats without a society.
+    @Id
+    @Column(name = "society_id", length = 64)
+    private String societyId;
+    //Block of the counted flats, '' for flats without a block.
+    @Id
+    @Column(name = "flat_block")
+    private String flatBlock;
+    @Column(name = "total_flats", nullable = false)
+    private long totalFlats;
+    @Column(name = "occupied_flats", nullable = false)
+    private long occupiedFlats;
+}
@@ -0,0 +1,19 @@
+package com.micasa.societyservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Primary key of OccupancyRollup.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OccupancyRollupId implements Serializable
+{
+    private String societyId;
+    private String flatBlock;
+}
@@ -5,6 +5,8 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.UuidGenerator;
 
 import java.util.List;
@@ -14,6 +16,8 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity(name = "societies")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "micasa.society")
 public class Society
 {
     @Id
@@ -24,6 +28,7 @@ public class Society
     private String societyName;
     private String address;
 
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "micasa.society.flatList")
     @OneToMany(fetch = FetchType.LAZY, mappedBy = "society",cascade = CascadeType.ALL)
     private List<Flat> flatList;
 }
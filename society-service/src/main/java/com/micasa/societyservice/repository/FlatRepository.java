@@ -0,0 +1,24 @@
+package com.micasa.societyservice.repository;
+
+import com.micasa.societyservice.dto.FlatDto;
+import com.micasa.societyservice.model.Flat;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository(value = "flatRepository")
+public interface FlatRepository extends JpaRepository<Flat, String>
+{
+    /**
+     * This function finds a page of flats of a society, projected straight to flatDto without loading entities.
+     * @param societyId : Society whose flats will be searched.
+     * @param pageable : Page to fetch.
+     * @return : Slice of found flats ordered by flatBlock and flatNumber.
+     */
+    @Query("select new com.micasa.societyservice.dto.FlatDto(f.flatId, f.flatNumber, f.flatBlock, f.occupied) " +
+            "from flats f where f.society.societyId = :societyId order by f.flatBlock, f.flatNumber")
+    Slice<FlatDto> findFlatDtosBySocietyId(@Param("societyId") String societyId, Pageable pageable);
+}
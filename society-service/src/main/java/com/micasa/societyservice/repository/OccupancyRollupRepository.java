@@ -0,0 +1,54 @@
+package com.micasa.societyservice.repository;
+
+import com.micasa.societyservice.model.OccupancyRollup;
+import com.micasa.societyservice.model.OccupancyRollupId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository(value = "occupancyRollupRepository")
+public interface OccupancyRollupRepository extends JpaRepository<OccupancyRollup, OccupancyRollupId>
+{
+    /**
+     * This function finds the rollup rows of a society, one per block.
+     * @param societyId : Society to search.
+     * @return : Rows ordered by flatBlock.
+     */
+    List<OccupancyRollup> findBySocietyIdOrderByFlatBlock(String societyId);
+
+    /**
+     * This function finds the rollup rows of a block, one per society with flats in it.
+     * @param flatBlock : Block to search.
+     * @return : Rows ordered by societyId.
+     */
+    List<OccupancyRollup> findByFlatBlockOrderBySocietyId(String flatBlock);
+
+    /**
+     * This function adds to the counts of a row, the row is created if missing.
+     * Same upsert flat-service applies for its writes, rows are locked until the transaction ends.
+     * @param societyId : Society of the row, '' for flats without a society.
+     * @param flatBlock : Block of the row, '' for flats without a block.
+     * @param totalFlats : Change of the flat count.
+     * @param occupiedFlats : Change of the occupied flat count.
+     * @return : Number of rows affected.
+     */
+    @Modifying
+    @Query(value = "insert into occupancy_rollup (society_id, flat_block, total_flats, occupied_flats) " +
+            "values (:societyId, :flatBlock, :totalFlats, :occupiedFlats) on duplicate key update " +
+            "total_flats = total_flats + values(total_flats), occupied_flats = occupied_flats + values(occupied_flats)", nativeQuery = true)
+    int addCounts(@Param("societyId") String societyId, @Param("flatBlock") String flatBlock,
+                  @Param("totalFlats") long totalFlats, @Param("occupiedFlats") long occupiedFlats);
+
+    /**
+     * This function deletes all rollup rows of a society, used when the society is deleted with its flats.
+     * @param societyId : Society whose rows are deleted.
+     * @return : Number of deleted rows.
+     */
+    @Modifying
+    @Query("delete from occupancy_rollup r where r.societyId = :societyId")
+    int deleteRowsBySocietyId(@Param("societyId") String societyId);
+}
@@ -1,10 +1,37 @@
 package com.micasa.societyservice.repository;
 
 import com.micasa.societyservice.model.Society;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository(value = "societyRepository")
 public interface SocietyRepository extends JpaRepository<Society, String>
 {
+    /**
+     * This function finds a society and fetches its flatList in the same query.
+     * @param societyId : Society to search.
+     * @return : Found society with initialized flatList.
+     */
+    @EntityGraph(attributePaths = "flatList")
+    Optional<Society> findWithFlatListBySocietyId(String societyId);
+
+    /**
+     * This function streams all societies, forward only, 1000 rows per fetch.
+     * Must be consumed inside a transaction and closed.
+     * @return : Stream of all societies.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select s from societies s")
+    Stream<Society> streamAll();
 }
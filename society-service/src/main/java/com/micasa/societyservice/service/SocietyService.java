@@ -1,14 +1,23 @@
 package com.micasa.societyservice.service;
 
+import com.micasa.societyservice.dto.BlockOccupancyDto;
+import com.micasa.societyservice.dto.FlatPageDto;
+import com.micasa.societyservice.dto.SocietyDetailDto;
+import com.micasa.societyservice.dto.SocietyDto;
+import com.micasa.societyservice.dto.SocietyOccupancyDto;
 import com.micasa.societyservice.model.Society;
+import org.springframework.data.domain.Pageable;
 
-import java.util.List;
+import java.util.function.Consumer;
 
 public interface SocietyService
 {
     Society addSociety(Society society);
     Society updateSociety(Society society);
     void deleteSocietyById(String societyId);
-    List<Society> getAllSocieties();
-    Society getSocietyById(String societyId);
+    SocietyDetailDto getSocietyDetailById(String societyId, boolean includeFlats);
+    FlatPageDto getSocietyFlats(String societyId, Pageable pageable);
+    long exportSocieties(Consumer<SocietyDto> consumer);
+    SocietyOccupancyDto getSocietyOccupancy(String societyId);
+    BlockOccupancyDto getBlockOccupancy(String flatBlock);
 }
@@ -1,29 +1,110 @@
 package com.micasa.societyservice.service;
 
+import com.micasa.common.changelog.ChangeLogPublisher;
+import com.micasa.common.util.SingleFlight;
+import com.micasa.common.util.TransactionUtils;
+import com.micasa.societyservice.dto.BlockOccupancyDto;
+import com.micasa.societyservice.dto.FlatDto;
+import com.micasa.societyservice.dto.FlatPageDto;
+import com.micasa.societyservice.dto.SocietyDetailDto;
+import com.micasa.societyservice.dto.SocietyDto;
+import com.micasa.societyservice.dto.SocietyOccupancyDto;
+import com.micasa.societyservice.exception.SocietyNotFoundException;
+import com.micasa.societyservice.mapper.SocietyMapper;
+import com.micasa.societyservice.model.Flat;
+import com.micasa.societyservice.model.OccupancyRollupId;
 import com.micasa.societyservice.model.Society;
+import com.micasa.societyservice.repository.FlatRepository;
+import com.micasa.societyservice.repository.OccupancyRollupRepository;
 import com.micasa.societyservice.repository.SocietyRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.List;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service(value = "societyService")
 @Transactional
 public class SocietyServiceImpl implements SocietyService
 {
     private final SocietyRepository societyRepository;
+    private final FlatRepository flatRepository;
+    //Flat counts per society and block, kept with every write of flats.
+    private final OccupancyRollupRepository occupancyRollupRepository;
+    private final SocietyMapper societyMapper;
+    private final EntityManager entityManager;
+    private final ChangeLogPublisher changeLogPublisher;
+    //Concurrent reads of the same society detail share one load.
+    private final SingleFlight<DetailKey, SocietyDetailDto> detailLoads;
+    //Runs the load of a society detail in its own read-only transaction.
+    private final TransactionTemplate readTransactionTemplate;
 
     @Autowired
-    public SocietyServiceImpl(SocietyRepository societyRepository)
+    public SocietyServiceImpl(SocietyRepository societyRepository, FlatRepository flatRepository,
+                              OccupancyRollupRepository occupancyRollupRepository, SocietyMapper societyMapper, EntityManager entityManager,
+                              ChangeLogPublisher changeLogPublisher, PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${micasa.society.single-flight.timeout:2s}") Duration singleFlightTimeout)
     {
         this.societyRepository = societyRepository;
+        this.flatRepository = flatRepository;
+        this.occupancyRollupRepository = occupancyRollupRepository;
+        this.societyMapper = societyMapper;
+        this.entityManager = entityManager;
+        this.changeLogPublisher = changeLogPublisher;
+        this.detailLoads = new SingleFlight<>("societyDetail", singleFlightTimeout, meterRegistry);
+        this.readTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransactionTemplate.setReadOnly(true);
     }
 
+    /**
+     * Saves a society with its flats, records them in change_log for flat-service and counts them in occupancy_rollup.
+     */
     @Override
     public Society addSociety(Society society)
     {
-        return this.societyRepository.save(society);
+        Society savedSociety = this.societyRepository.save(society);
+        this.recordChanged(savedSociety);
+        this.addOccupancyCounts(savedSociety);
+        return savedSociety;
+    }
+
+    /**
+     * Adds the flats of a new society to occupancy_rollup, one upsert per block in key order like flat-service.
+     * Flats are counted under the society they were saved with, '' if none.
+     */
+    private void addOccupancyCounts(Society society)
+    {
+        if(null == society.getFlatList() || society.getFlatList().isEmpty())
+        {
+            return;
+        }
+        Map<OccupancyRollupId, long[]> counts = new TreeMap<>(Comparator.comparing(OccupancyRollupId::getSocietyId)
+                .thenComparing(OccupancyRollupId::getFlatBlock));
+        for(Flat flat : society.getFlatList())
+        {
+            String societyId = null == flat.getSociety() ? "" : flat.getSociety().getSocietyId();
+            String flatBlock = null == flat.getFlatBlock() ? "" : flat.getFlatBlock();
+            long[] count = counts.computeIfAbsent(new OccupancyRollupId(societyId, flatBlock), key -> new long[2]);
+            count[0]++;
+            count[1] += flat.isOccupied() ? 1 : 0;
+        }
+        counts.forEach((key, count) -> this.occupancyRollupRepository.addCounts(key.getSocietyId(), key.getFlatBlock(), count[0], count[1]));
     }
 
     @Override
@@ -31,19 +112,114 @@ public class SocietyServiceImpl implements SocietyService
         return null;
     }
 
+    /**
+     * Deletes a society with its flats, records them in change_log for flat-service and drops their occupancy_rollup rows.
+     */
     @Override
     public void deleteSocietyById(String societyId) {
-        this.societyRepository.deleteById(societyId);
+        this.societyRepository.findById(societyId).ifPresent(society -> {
+            this.recordChanged(society);
+            this.occupancyRollupRepository.deleteRowsBySocietyId(societyId);
+            this.societyRepository.delete(society);
+        });
+    }
+
+    private void recordChanged(Society society)
+    {
+        this.forgetDetailLoadsAfterCommit(society.getSocietyId());
+        this.changeLogPublisher.societyChanged(society.getSocietyId());
+        if(null != society.getFlatList())
+        {
+            society.getFlatList().forEach(flat -> this.changeLogPublisher.flatChanged(flat.getFlatId(), society.getSocietyId()));
+        }
+    }
+
+    /**
+     * Reads a society as dto. When flats are included they are fetched with the society in one query,
+     * instead of one lazy load per flat during serialization.
+     * Concurrent reads of the same society share one load, which runs in its own transaction, so a
+     * waiting read holds no connection. A missing society throws SocietyNotFoundException (404) to every waiting read.
+     */
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public SocietyDetailDto getSocietyDetailById(String societyId, boolean includeFlats)
+    {
+        return this.detailLoads.execute(new DetailKey(societyId, includeFlats),
+                () -> this.readTransactionTemplate.execute(status -> this.loadSocietyDetail(societyId, includeFlats)));
+    }
+
+    private SocietyDetailDto loadSocietyDetail(String societyId, boolean includeFlats)
+    {
+        Society society = includeFlats
+                ? this.societyRepository.findWithFlatListBySocietyId(societyId).orElseThrow(() -> new SocietyNotFoundException(societyId))
+                : this.societyRepository.findById(societyId).orElseThrow(() -> new SocietyNotFoundException(societyId));
+        return this.societyMapper.societyEntityToSocietyDetailDto(society, includeFlats);
+    }
+
+    /**
+     * Reads started after a society write commits must not join a load that may have read the old rows.
+     */
+    private void forgetDetailLoadsAfterCommit(String societyId)
+    {
+        TransactionUtils.afterCommit(() -> {
+            this.detailLoads.forget(new DetailKey(societyId, true));
+            this.detailLoads.forget(new DetailKey(societyId, false));
+        });
+    }
+
+    /**
+     * Reads one page of flats of a society, projected to dto without loading flat entities.
+     */
+    @Override
+    public FlatPageDto getSocietyFlats(String societyId, Pageable pageable)
+    {
+        Slice<FlatDto> flats = this.flatRepository.findFlatDtosBySocietyId(societyId, pageable);
+        return new FlatPageDto(flats.getContent(), flats.getNumber(), flats.getSize(), flats.hasNext());
+    }
+
+    /**
+     * Streams all societies to consumer, detaching each one after it is handed over so memory use
+     * does not depend on the number of societies.
+     */
+    @Override
+    public long exportSocieties(Consumer<SocietyDto> consumer)
+    {
+        long count = 0;
+        try(Stream<Society> societies = this.societyRepository.streamAll())
+        {
+            Iterator<Society> iterator = societies.iterator();
+            while(iterator.hasNext())
+            {
+                Society society = iterator.next();
+                consumer.accept(this.societyMapper.societyEntityToSocietyDto(society));
+                this.entityManager.detach(society);
+                count++;
+            }
+        }
+        return count;
     }
 
+    /**
+     * Reads flat counts of a society from occupancy_rollup, one row per block, flats are not counted.
+     */
     @Override
-    public List<Society> getAllSocieties() {
-        return List.of();
+    public SocietyOccupancyDto getSocietyOccupancy(String societyId)
+    {
+        return this.societyMapper.occupancyRollupsToSocietyOccupancyDto(societyId,
+                this.occupancyRollupRepository.findBySocietyIdOrderByFlatBlock(societyId));
     }
 
+    /**
+     * Reads flat counts of a block over all societies from occupancy_rollup, one row per society.
+     */
     @Override
-    public Society getSocietyById(String societyId)
+    public BlockOccupancyDto getBlockOccupancy(String flatBlock)
+    {
+        return this.societyMapper.occupancyRollupsToBlockOccupancyDto(flatBlock,
+                this.occupancyRollupRepository.findByFlatBlockOrderBySocietyId(flatBlock));
+    }
+
+    private record DetailKey(String societyId, boolean includeFlats)
     {
-        return this.societyRepository.findById(societyId).get();
     }
 }
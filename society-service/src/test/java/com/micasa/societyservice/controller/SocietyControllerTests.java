@@ -0,0 +1,119 @@
+package com.micasa.societyservice.controller;
+
+import com.micasa.common.constants.CorrelationIdConstants;
+import com.micasa.societyservice.exception.SocietyNotFoundException;
+import com.micasa.societyservice.model.Society;
+import com.micasa.societyservice.service.SocietyService;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Society reads and exports through SocietyController on H2.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class SocietyControllerTests
+{
+    @Autowired
+    private MockMvc mockMvc;
+    @SpyBean
+    private SocietyService societyService;
+
+    @Test
+    void missingSocietyIsNotFound() throws Exception
+    {
+        String societyId = UUID.randomUUID().toString();
+
+        this.mockMvc.perform(get("/get/society/{societyId}", societyId)).andExpect(status().isNotFound());
+        this.mockMvc.perform(get("/get/society/{societyId}", societyId).param("includeFlats", "false")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void existingSocietyIsFound() throws Exception
+    {
+        Society society = this.societyService.addSociety(new Society(null, "Test Society", "Test Address", null));
+
+        this.mockMvc.perform(get("/get/society/{societyId}", society.getSocietyId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.societyName").value("Test Society"));
+    }
+
+    @Test
+    void exportRunsWithCorrelationIdOfRequest() throws Exception
+    {
+        this.societyService.addSociety(new Society(null, "Export Society", "Export Address", null));
+        String correlationId = UUID.randomUUID().toString();
+        AtomicReference<String> exportCorrelationId = new AtomicReference<>();
+        AtomicReference<Thread> exportThread = new AtomicReference<>();
+        doAnswer(invocation -> {
+            exportCorrelationId.set(MDC.get(CorrelationIdConstants.CORRELATION_ID_LOG_VAR_NAME));
+            exportThread.set(Thread.currentThread());
+            return invocation.callRealMethod();
+        }).when(this.societyService).exportSocieties(any());
+
+        MvcResult mvcResult = this.mockMvc.perform(get("/export/societies").accept(MediaType.APPLICATION_NDJSON)
+                        .header(CorrelationIdConstants.CORRELATION_ID_HEADER, correlationId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        this.mockMvc.perform(asyncDispatch(mvcResult)).andExpect(status().isOk());
+
+        assertThat(exportThread.get()).isNotNull().isNotSameAs(Thread.currentThread());
+        assertThat(exportCorrelationId).hasValue(correlationId);
+    }
+
+    @Test
+    void concurrentReadsOfMissingSocietyAllGetNotFound() throws Exception
+    {
+        String societyId = UUID.randomUUID().toString();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try
+        {
+            List<Callable<Object>> reads = new ArrayList<>();
+            for(int i = 0; i < 8; i++)
+            {
+                boolean includeFlats = i % 2 == 0;
+                reads.add(() -> this.societyService.getSocietyDetailById(societyId, includeFlats));
+            }
+            for(Future<Object> read : executor.invokeAll(reads, 10, TimeUnit.SECONDS))
+            {
+                Throwable thrown = catchThrowable(read::get);
+                assertThat(thrown).isInstanceOf(ExecutionException.class);
+                assertThat(thrown.getCause()).isInstanceOf(SocietyNotFoundException.class).hasMessageContaining(societyId);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+}